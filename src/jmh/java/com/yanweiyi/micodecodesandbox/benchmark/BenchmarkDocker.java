@@ -0,0 +1,58 @@
+package com.yanweiyi.micodecodesandbox.benchmark;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.yanweiyi.micodecodesandbox.config.DockerClientProperties;
+import com.yanweiyi.micodecodesandbox.config.DockerConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基准测试使用的 Docker 连接
+ * <p>
+ * 系统属性 benchmark.docker 为 real 时连接 DOCKER_HOST 指定的（或默认的）真实 Docker 服务，
+ * 否则在进程内启动 {@link FakeDockerDaemon} 并将 DOCKER_HOST 指向它。
+ * 模拟服务在每个 JMH 子进程中只启动一次，必须在第一次获取 DockerClient 之前调用。
+ *
+ * @author yanweiyi
+ */
+public final class BenchmarkDocker {
+
+    public static final String MODE_PROPERTY = "benchmark.docker";
+
+    private static FakeDockerDaemon fakeDockerDaemon;
+
+    private static DockerClient dockerClient;
+
+    private BenchmarkDocker() {
+    }
+
+    public static boolean isReal() {
+        return "real".equalsIgnoreCase(System.getProperty(MODE_PROPERTY));
+    }
+
+    /**
+     * 获取 DockerClient，按需启动模拟服务；与服务使用相同的 httpclient5 传输层和默认连接配置
+     */
+    public static synchronized DockerClient getDockerClient() {
+        if (!isReal() && fakeDockerDaemon == null) {
+            try {
+                fakeDockerDaemon = new FakeDockerDaemon("ok\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            fakeDockerDaemon.start();
+            System.setProperty("DOCKER_HOST", fakeDockerDaemon.getDockerHost());
+        }
+        if (dockerClient == null) {
+            DockerClientProperties dockerClientProperties = new DockerClientProperties();
+            DockerClientConfig dockerClientConfig = DockerConfig.createClientConfig(dockerClientProperties);
+            dockerClient = DockerClientImpl.getInstance(dockerClientConfig,
+                    DockerConfig.createHttpClient(dockerClientConfig, dockerClientProperties));
+        }
+        return dockerClient;
+    }
+}
@@ -0,0 +1,97 @@
+package com.yanweiyi.micodecodesandbox.compiler;
+
+import cn.hutool.core.io.FileUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编译阶段基准测试：启动 javac 进程编译和进程内编译（含缓存命中）的耗时对比
+ *
+ * @author yanweiyi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompileBenchmark {
+
+    private static final String SOURCE = "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        java.util.Scanner scanner = new java.util.Scanner(System.in);\n"
+            + "        int a = scanner.nextInt();\n"
+            + "        int b = scanner.nextInt();\n"
+            + "        System.out.println(a + b);\n"
+            + "    }\n"
+            + "}\n";
+
+    private String javacPath;
+
+    private Path workDirectory;
+
+    private Path sourcePath;
+
+    // 不缓存编译结果，每次都完整编译
+    private InMemoryJavaCompiler uncachedCompiler;
+
+    private InMemoryJavaCompiler cachedCompiler;
+
+    @Setup
+    public void setup() throws IOException {
+        javacPath = findJavac();
+        workDirectory = Files.createTempDirectory("compile-benchmark");
+        sourcePath = workDirectory.resolve("Main.java");
+        Files.write(sourcePath, SOURCE.getBytes(StandardCharsets.UTF_8));
+        uncachedCompiler = new InMemoryJavaCompiler(0);
+        cachedCompiler = new InMemoryJavaCompiler(16);
+        cachedCompiler.compile("Main", SOURCE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.del(workDirectory);
+    }
+
+    @Benchmark
+    public int javacProcess() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(javacPath, "-encoding", "utf-8",
+                "-d", workDirectory.toString(), sourcePath.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(workDirectory.resolve("javac.log").toFile())
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("javac exited with code " + exitCode);
+        }
+        return exitCode;
+    }
+
+    @Benchmark
+    public CompileResult inMemory() {
+        return uncachedCompiler.compile("Main", SOURCE);
+    }
+
+    @Benchmark
+    public CompileResult inMemoryCached() {
+        return cachedCompiler.compile("Main", SOURCE);
+    }
+
+    private static String findJavac() {
+        File javaHome = new File(System.getProperty("java.home"));
+        // JDK 8 的 java.home 指向 jre 子目录
+        for (File home : new File[]{javaHome, javaHome.getParentFile()}) {
+            File javac = new File(home, "bin" + File.separator + "javac");
+            if (javac.canExecute()) {
+                return javac.getPath();
+            }
+        }
+        return "javac";
+    }
+}
@@ -0,0 +1,108 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.exec;
+
+import cn.hutool.core.io.FileUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.yanweiyi.micodecodesandbox.benchmark.BenchmarkDocker;
+import com.yanweiyi.micodecodesandbox.compiler.CompileResult;
+import com.yanweiyi.micodecodesandbox.compiler.InMemoryJavaCompiler;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.PooledContainer;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.DirectoryWorkspaceProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个用例执行开销的基准测试：在同一个容器中反复执行一个简单的程序
+ * <p>
+ * shell 执行一个立即退出的命令，测量 exec 创建、启动和输出回调本身的开销；
+ * java 在容器中启动 JVM 运行一个只输出一行的 Main 类，对应逐个用例执行时每个用例的固定开销。
+ *
+ * @author yanweiyi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecBenchmark {
+
+    private static final String SOURCE = "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        System.out.println(\"ok\");\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final long TIMEOUT_MILLIS = 10000L;
+
+    @Param({"shell", "java"})
+    private String program;
+
+    private Path workspaceRoot;
+
+    private DockerContainerPool containerPool;
+
+    private ContainerCleaner containerCleaner;
+
+    private PooledContainer container;
+
+    private AsyncDockerExecutor asyncDockerExecutor;
+
+    private String[] command;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        DockerClient dockerClient = BenchmarkDocker.getDockerClient();
+        workspaceRoot = Files.createTempDirectory("exec-benchmark");
+        ContainerPoolProperties.LanguagePool config = new ContainerPoolProperties.LanguagePool();
+        config.setImage(System.getProperty("benchmark.image", "openjdk:8-alpine"));
+        config.setMinIdle(0);
+        config.setMaxTotal(1);
+        SandboxMetrics sandboxMetrics = new SandboxMetrics(new SimpleMeterRegistry());
+        containerCleaner = new ContainerCleaner(new CleanupProperties(), dockerClient, sandboxMetrics);
+        containerPool = new DockerContainerPool("java", config, dockerClient,
+                new DirectoryWorkspaceProvider(workspaceRoot.resolve("workspaces"), 67108864L, true),
+                sandboxMetrics, containerCleaner);
+        container = containerPool.acquire(60000L);
+        asyncDockerExecutor = new AsyncDockerExecutor(dockerClient);
+
+        if ("java".equals(program)) {
+            CompileResult compileResult = new InMemoryJavaCompiler(0).compile("Main", SOURCE);
+            for (Map.Entry<String, byte[]> classFile : compileResult.getClassFiles().entrySet()) {
+                container.getWorkspace().write(classFile.getKey() + ".class", classFile.getValue());
+            }
+            command = new String[]{"java", "-cp", DockerContainerPool.CONTAINER_WORK_DIRECTORY, "Main"};
+        } else {
+            command = new String[]{"true"};
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        containerPool.release(container, true);
+        containerPool.shutdown();
+        containerCleaner.shutdown();
+        asyncDockerExecutor.shutdown();
+        FileUtil.del(workspaceRoot);
+    }
+
+    @Benchmark
+    public ExecResult exec() {
+        ExecOutputSink outputSink = new ExecOutputSink(65536, 65536, null);
+        ExecResult execResult = asyncDockerExecutor.exec(container.getContainerId(), command, TIMEOUT_MILLIS, outputSink).join();
+        if (!execResult.isCompleted()) {
+            throw new IllegalStateException("exec did not complete within " + TIMEOUT_MILLIS + " ms");
+        }
+        return execResult;
+    }
+}
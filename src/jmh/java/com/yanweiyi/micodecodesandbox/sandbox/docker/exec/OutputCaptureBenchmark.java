@@ -0,0 +1,65 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.exec;
+
+import com.github.dockerjava.api.model.StreamType;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 输出接收的基准测试：按 Docker 输出帧的大小逐帧写入，测量截断和与预期输出比对的开销
+ *
+ * @author yanweiyi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputCaptureBenchmark {
+
+    // Docker 输出帧的常见大小
+    private static final int FRAME_BYTES = 8192;
+
+    /**
+     * 一次执行的总输出字节数
+     */
+    @Param({"1024", "1048576"})
+    private int outputBytes;
+
+    private byte[][] frames;
+
+    private String expectedOutput;
+
+    @Setup
+    public void setup() {
+        byte[] output = new byte[outputBytes];
+        Arrays.fill(output, (byte) '7');
+        frames = new byte[(outputBytes + FRAME_BYTES - 1) / FRAME_BYTES][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = Arrays.copyOfRange(output, i * FRAME_BYTES, Math.min(outputBytes, (i + 1) * FRAME_BYTES));
+        }
+        expectedOutput = new String(output, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ExecResult capture() {
+        return capture(new ExecOutputSink(8L * 1024 * 1024, 65536, null));
+    }
+
+    @Benchmark
+    public ExecResult captureAndCompare() {
+        return capture(new ExecOutputSink(8L * 1024 * 1024, 65536, expectedOutput));
+    }
+
+    private ExecResult capture(ExecOutputSink outputSink) {
+        for (byte[] frame : frames) {
+            if (!outputSink.accept(StreamType.STDOUT, frame)) {
+                break;
+            }
+        }
+        return outputSink.buildResult(true, 0L);
+    }
+}
@@ -0,0 +1,103 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.pool;
+
+import cn.hutool.core.io.FileUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.yanweiyi.micodecodesandbox.benchmark.BenchmarkDocker;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.DirectoryWorkspaceProvider;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.TmpfsWorkspaceProvider;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.WorkspaceProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容器借出和归还的基准测试
+ * <p>
+ * reuse 测量从空闲容器借出、归还时健康检查和清空工作目录的开销；
+ * createAndDestroy 每次都创建新容器并在归还时销毁，对应容器被污染或池中没有空闲容器的情况。
+ * workspace 参数对比磁盘和内存文件系统上的工作目录。
+ *
+ * @author yanweiyi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerPoolBenchmark {
+
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 60000L;
+
+    @Param({"disk", "memory"})
+    private String workspace;
+
+    private Path workspaceRoot;
+
+    private DockerContainerPool reusePool;
+
+    private DockerContainerPool coldPool;
+
+    private ContainerCleaner containerCleaner;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        DockerClient dockerClient = BenchmarkDocker.getDockerClient();
+        // 内存工作目录放在 /dev/shm 下，对比清空和删除工作目录的开销
+        workspaceRoot = "memory".equals(workspace)
+                ? Paths.get("/dev/shm", "pool-benchmark-" + UUID.randomUUID())
+                : Files.createTempDirectory("pool-benchmark");
+        WorkspaceProvider workspaceProvider = "memory".equals(workspace)
+                ? new TmpfsWorkspaceProvider(workspaceRoot, 67108864L, true)
+                : new DirectoryWorkspaceProvider(workspaceRoot, 67108864L, true);
+        SandboxMetrics sandboxMetrics = new SandboxMetrics(new SimpleMeterRegistry());
+        containerCleaner = new ContainerCleaner(new CleanupProperties(), dockerClient, sandboxMetrics);
+        reusePool = new DockerContainerPool("java", newPoolConfig(1), dockerClient, workspaceProvider, sandboxMetrics,
+                containerCleaner);
+        coldPool = new DockerContainerPool("java", newPoolConfig(0), dockerClient, workspaceProvider, sandboxMetrics,
+                containerCleaner);
+        // 预先创建一个空闲容器
+        reusePool.release(reusePool.acquire(ACQUIRE_TIMEOUT_MILLIS), false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        reusePool.shutdown();
+        coldPool.shutdown();
+        containerCleaner.shutdown();
+        FileUtil.del(workspaceRoot);
+    }
+
+    @Benchmark
+    public PooledContainer reuse() throws InterruptedException {
+        PooledContainer container = reusePool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        reusePool.release(container, false);
+        return container;
+    }
+
+    @Benchmark
+    public PooledContainer createAndDestroy() throws InterruptedException {
+        PooledContainer container = coldPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        coldPool.release(container, true);
+        return container;
+    }
+
+    private static ContainerPoolProperties.LanguagePool newPoolConfig(int minIdle) {
+        ContainerPoolProperties.LanguagePool config = new ContainerPoolProperties.LanguagePool();
+        config.setImage(System.getProperty("benchmark.image", "openjdk:8-alpine"));
+        config.setMinIdle(minIdle);
+        config.setMaxTotal(64);
+        config.setMaxUses(Integer.MAX_VALUE);
+        return config;
+    }
+}
@@ -0,0 +1,105 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用例输入编码和执行结果汇总的基准测试
+ *
+ * @author yanweiyi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseCodecBenchmark {
+
+    private static final String FRAME_NONCE = CaseRunnerCodec.newFrameNonce();
+
+    /**
+     * 用例数
+     */
+    @Param({"10", "100"})
+    private int caseCount;
+
+    /**
+     * 每个用例输入和输出的字节数
+     */
+    @Param({"64", "65536"})
+    private int caseBytes;
+
+    private List<String> inputList;
+
+    private List<String> expectedOutputList;
+
+    private byte[] encodedInputs;
+
+    private byte[] harnessOutput;
+
+    @Setup
+    public void setup() {
+        inputList = new ArrayList<>(caseCount);
+        expectedOutputList = new ArrayList<>(caseCount);
+        for (int i = 0; i < caseCount; i++) {
+            inputList.add(repeat("1 2\n", caseBytes));
+            expectedOutputList.add(repeat("3\n", caseBytes));
+        }
+        encodedInputs = CaseRunnerCodec.encodeInputs(inputList, expectedOutputList);
+        harnessOutput = buildHarnessOutput(expectedOutputList);
+    }
+
+    @Benchmark
+    public byte[] encodeInputs() {
+        return CaseRunnerCodec.encodeInputs(inputList);
+    }
+
+    @Benchmark
+    public byte[] encodeInputsWithExpectedOutputs() {
+        return CaseRunnerCodec.encodeInputs(inputList, expectedOutputList);
+    }
+
+    @Benchmark
+    public CaseRunnerCodec.CaseInputs decodeInputs() {
+        return CaseRunnerCodec.decodeInputs(ByteBuffer.wrap(encodedInputs));
+    }
+
+    /**
+     * 解析执行器输出的结果帧，汇总为每个用例的结果
+     */
+    @Benchmark
+    public List<CaseRunnerCodec.CaseResult> decodeResults() {
+        return CaseRunnerCodec.decodeResults(harnessOutput, FRAME_NONCE);
+    }
+
+    /**
+     * 按执行器的帧格式生成全部用例执行完成时的标准输出
+     */
+    private static byte[] buildHarnessOutput(List<String> outputList) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < outputList.size(); i++) {
+            byte[] output = outputList.get(i).getBytes(StandardCharsets.UTF_8);
+            String header = CaseRunner.FRAME_MARKER + " " + FRAME_NONCE + " " + (i + 1) + " 1000000 800000 20480 "
+                    + CaseRunner.STATUS_FINISHED + " " + output.length + " 0\n";
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            outputStream.write(headerBytes, 0, headerBytes.length);
+            outputStream.write(output, 0, output.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static String repeat(String unit, int length) {
+        StringBuilder stringBuilder = new StringBuilder(length + unit.length());
+        while (stringBuilder.length() < length) {
+            stringBuilder.append(unit);
+        }
+        return stringBuilder.substring(0, length);
+    }
+}
@@ -0,0 +1,119 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import cn.hutool.core.io.FileUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.yanweiyi.micodecodesandbox.benchmark.BenchmarkDocker;
+import com.yanweiyi.micodecodesandbox.compiler.InMemoryJavaCompiler;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.config.JavaStartupProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.AsyncDockerExecutor;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.ExecOutputSink;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.ExecResult;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.PooledContainer;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.DirectoryWorkspaceProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐个用例执行时 JVM 启动开销的基准测试：对比原镜像和预热镜像
+ * <p>
+ * base 使用原镜像和默认 JVM 参数；startup 使用 {@link JavaStartupImageBuilder} 构建的预热镜像，
+ * 附加配置的 JVM 参数并映射类数据共享归档。两者都在容器中执行用例命令，运行一个读取输入并输出一行的 Main 类。
+ * 预热镜像需要真实的 Docker（-Dbenchmark.docker=real），模拟服务下构建失败时与 base 相同。
+ *
+ * @author yanweiyi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JvmStartupBenchmark {
+
+    private static final String SOURCE = "import java.util.Scanner;\n"
+            + "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        Scanner scanner = new Scanner(System.in);\n"
+            + "        System.out.println(scanner.nextInt() + scanner.nextInt());\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final long TIMEOUT_MILLIS = 10000L;
+
+    private static final long MEMORY_LIMIT_BYTES = 268435456L;
+
+    @Param({"base", "startup"})
+    private String image;
+
+    private Path workspaceRoot;
+
+    private DockerContainerPool containerPool;
+
+    private ContainerCleaner containerCleaner;
+
+    private PooledContainer container;
+
+    private AsyncDockerExecutor asyncDockerExecutor;
+
+    private String[] command;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        DockerClient dockerClient = BenchmarkDocker.getDockerClient();
+        InMemoryJavaCompiler inMemoryJavaCompiler = new InMemoryJavaCompiler(0);
+        JavaStartupImageBuilder javaStartupImageBuilder = "startup".equals(image)
+                ? new JavaStartupImageBuilder(new JavaStartupProperties(), dockerClient, inMemoryJavaCompiler) : null;
+        JavaLanguageRuntime runtime = new JavaLanguageRuntime(inMemoryJavaCompiler, javaStartupImageBuilder);
+
+        workspaceRoot = Files.createTempDirectory("jvm-startup-benchmark");
+        ContainerPoolProperties.LanguagePool config = new ContainerPoolProperties.LanguagePool();
+        config.setImage(runtime.prepareImage(System.getProperty("benchmark.image", runtime.getDefaultImage())));
+        config.setMinIdle(0);
+        config.setMaxTotal(1);
+        SandboxMetrics sandboxMetrics = new SandboxMetrics(new SimpleMeterRegistry());
+        containerCleaner = new ContainerCleaner(new CleanupProperties(), dockerClient, sandboxMetrics);
+        containerPool = new DockerContainerPool("java", config, dockerClient,
+                new DirectoryWorkspaceProvider(workspaceRoot.resolve("workspaces"), 67108864L, true),
+                sandboxMetrics, containerCleaner);
+        container = containerPool.acquire(60000L);
+        asyncDockerExecutor = new AsyncDockerExecutor(dockerClient);
+
+        for (Map.Entry<String, byte[]> file : runtime.compile(SOURCE).getFiles().entrySet()) {
+            container.getWorkspace().write(file.getKey(), file.getValue());
+        }
+        container.getWorkspace().write("input", "1 2\n".getBytes(StandardCharsets.UTF_8));
+        command = new String[]{"sh", "-c",
+                runtime.getCaseCommand(DockerContainerPool.CONTAINER_WORK_DIRECTORY + "/input", MEMORY_LIMIT_BYTES)};
+    }
+
+    @TearDown
+    public void tearDown() {
+        containerPool.release(container, true);
+        containerPool.shutdown();
+        containerCleaner.shutdown();
+        asyncDockerExecutor.shutdown();
+        FileUtil.del(workspaceRoot);
+    }
+
+    @Benchmark
+    public ExecResult caseStartup() {
+        ExecOutputSink outputSink = new ExecOutputSink(65536, 65536, null);
+        ExecResult execResult = asyncDockerExecutor.exec(container.getContainerId(), command, TIMEOUT_MILLIS, outputSink).join();
+        if (!execResult.isCompleted()) {
+            throw new IllegalStateException("exec did not complete within " + TIMEOUT_MILLIS + " ms");
+        }
+        return execResult;
+    }
+}
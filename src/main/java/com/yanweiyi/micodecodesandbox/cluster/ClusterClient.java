@@ -0,0 +1,81 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.controller.MainController;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteJobResponse;
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+import com.yanweiyi.micodecodesandbox.model.TestDataResponse;
+import com.yanweiyi.micodecodesandbox.model.TestDataUploadRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+/**
+ * 节点之间的 HTTP 调用：工作节点发送心跳，调度节点转发提交和测试数据集
+ * <p>
+ * 请求失败时抛出 {@link RestClientException}，由调用方决定是否换一个节点重试。
+ *
+ * @author yanweiyi
+ */
+public class ClusterClient {
+
+    private final RestTemplate restTemplate;
+
+    public ClusterClient(ClusterProperties clusterProperties) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(clusterProperties.getConnectTimeout());
+        requestFactory.setReadTimeout(clusterProperties.getReadTimeout());
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    public void sendHeartbeat(String dispatcherUrl, NodeHeartbeat heartbeat) {
+        restTemplate.postForEntity(dispatcherUrl + "/cluster/heartbeat", withAuth(heartbeat), Void.class);
+    }
+
+    /**
+     * 上传测试数据集，内容相同时工作节点返回的 id 与本节点相同
+     */
+    public String uploadTestData(String nodeUrl, List<String> inputList, List<String> expectedOutputList) {
+        TestDataUploadRequest testDataUploadRequest = new TestDataUploadRequest();
+        testDataUploadRequest.setInputList(inputList);
+        testDataUploadRequest.setExpectedOutputList(expectedOutputList);
+        TestDataResponse testDataResponse = restTemplate.postForObject(nodeUrl + "/testData",
+                withAuth(testDataUploadRequest), TestDataResponse.class);
+        return testDataResponse == null ? null : testDataResponse.getTestDataId();
+    }
+
+    /**
+     * 以异步方式提交到工作节点
+     *
+     * @return 工作节点上的任务
+     */
+    public ExecuteJobResponse submit(String nodeUrl, ExecuteCodeRequest executeCodeRequest) {
+        return restTemplate.postForObject(nodeUrl + "/executeCode/async", withAuth(executeCodeRequest),
+                ExecuteJobResponse.class);
+    }
+
+    /**
+     * 长轮询工作节点上的任务状态，任务完成或等待超时时返回
+     */
+    public ExecuteJobResponse getResult(String nodeUrl, String jobId, long waitMillis) {
+        return restTemplate.exchange(nodeUrl + "/executeCode/result/{jobId}?waitMillis={waitMillis}",
+                HttpMethod.GET, withAuth(null), ExecuteJobResponse.class,
+                jobId, waitMillis).getBody();
+    }
+
+    public void cancel(String nodeUrl, String jobId) {
+        restTemplate.postForEntity(nodeUrl + "/executeCode/cancel/{jobId}", withAuth(null), Void.class, jobId);
+    }
+
+    private static <T> HttpEntity<T> withAuth(T body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(MainController.AUTH_REQUEST_HEADER, MainController.AUTH_REQUEST_SECRET);
+        return new HttpEntity<>(body, headers);
+    }
+}
@@ -0,0 +1,112 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import cn.hutool.core.util.StrUtil;
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPoolManager;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionScheduler;
+import com.yanweiyi.micodecodesandbox.testdata.TestDataStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 工作节点定时向调度节点发送心跳，汇报各语言的空闲容器、调度器负载和持有的测试数据集
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "sandbox.cluster", name = "role", havingValue = "worker")
+public class HeartbeatSender {
+
+    @Resource
+    private ClusterProperties clusterProperties;
+
+    @Resource
+    private ExecutionScheduler executionScheduler;
+
+    @Resource
+    private DockerContainerPoolManager dockerContainerPoolManager;
+
+    @Resource
+    private List<LanguageRuntime> languageRuntimes;
+
+    @Resource
+    private TestDataStore testDataStore;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    private ClusterClient clusterClient;
+
+    private String nodeId;
+
+    private String url;
+
+    // 上一次心跳是否成功，只在状态变化时记录日志
+    private boolean connected = true;
+
+    @PostConstruct
+    public void init() throws UnknownHostException {
+        if (StrUtil.isBlank(clusterProperties.getDispatcherUrl())) {
+            throw new IllegalStateException("sandbox.cluster.dispatcher-url is required for worker nodes");
+        }
+        clusterClient = new ClusterClient(clusterProperties);
+        nodeId = StrUtil.isNotBlank(clusterProperties.getNodeId())
+                ? clusterProperties.getNodeId()
+                : UUID.randomUUID().toString();
+        url = StrUtil.isNotBlank(clusterProperties.getAdvertisedUrl())
+                ? clusterProperties.getAdvertisedUrl()
+                : "http://" + InetAddress.getLocalHost().getHostAddress() + ":" + serverPort;
+        log.info("worker node {} reporting to {}, url: {}", nodeId, clusterProperties.getDispatcherUrl(), url);
+    }
+
+    @Scheduled(fixedDelayString = "${sandbox.cluster.heartbeat-interval:2000}")
+    public void sendHeartbeat() {
+        try {
+            clusterClient.sendHeartbeat(clusterProperties.getDispatcherUrl(), buildHeartbeat());
+            if (!connected) {
+                log.info("heartbeat to dispatcher {} recovered", clusterProperties.getDispatcherUrl());
+            }
+            connected = true;
+        } catch (RestClientException e) {
+            if (connected) {
+                log.warn("error sending heartbeat to dispatcher {}: {}", clusterProperties.getDispatcherUrl(),
+                        e.getMessage());
+            }
+            connected = false;
+        }
+    }
+
+    private NodeHeartbeat buildHeartbeat() {
+        Map<String, Integer> idleContainers = new LinkedHashMap<>();
+        for (LanguageRuntime languageRuntime : languageRuntimes) {
+            DockerContainerPool pool = dockerContainerPoolManager.getPool(languageRuntime.getLanguage());
+            idleContainers.put(languageRuntime.getLanguage(), pool == null ? 0 : pool.getIdleCount());
+        }
+        NodeHeartbeat heartbeat = new NodeHeartbeat();
+        heartbeat.setNodeId(nodeId);
+        heartbeat.setUrl(url);
+        heartbeat.setIdleContainers(idleContainers);
+        heartbeat.setConcurrency(executionScheduler.getConcurrency());
+        heartbeat.setActiveCount(executionScheduler.getActiveCount());
+        heartbeat.setQueueSize(executionScheduler.getQueueSize());
+        heartbeat.setTestDataIds(testDataStore.getTestDataIds());
+        return heartbeat;
+    }
+}
@@ -0,0 +1,268 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.ExecuteJobResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteJobStatusEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionScheduler;
+import com.yanweiyi.micodecodesandbox.testdata.TestDataStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 调度节点：将提交转发给工作节点执行
+ * <p>
+ * 提交以异步方式发往 {@link NodeRegistry} 选中的节点，之后长轮询结果，取消时通知工作节点停止执行。
+ * 引用的测试数据集从调度节点本地读取，节点尚未持有或已淘汰时上传到该节点，本地也不存在时返回系统错误。
+ * 节点拒绝（队列已满）时换一个节点；节点无法访问或执行过程中失联时标记为失败，换一个节点重新执行，
+ * 最多尝试 max-attempts 个节点。
+ * <p>
+ * 转发在单独的线程池中进行，不占用调度器的工作线程；线程数和调度器的并发数都取已注册工作节点的并发数之和。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "sandbox.cluster", name = "role", havingValue = "dispatcher")
+public class NodeDispatcher {
+
+    private final ClusterProperties clusterProperties;
+
+    private final NodeRegistry nodeRegistry;
+
+    private final TestDataStore testDataStore;
+
+    private final ClusterClient clusterClient;
+
+    private final ExecutionScheduler executionScheduler;
+
+    private final ThreadPoolExecutor dispatchExecutor;
+
+    public NodeDispatcher(ClusterProperties clusterProperties, NodeRegistry nodeRegistry, TestDataStore testDataStore,
+                          ExecutionScheduler executionScheduler) {
+        this.clusterProperties = clusterProperties;
+        this.nodeRegistry = nodeRegistry;
+        this.testDataStore = testDataStore;
+        this.clusterClient = new ClusterClient(clusterProperties);
+        this.executionScheduler = executionScheduler;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatchExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "node-dispatcher-" + threadCount.incrementAndGet()));
+        dispatchExecutor.allowCoreThreadTimeOut(true);
+        nodeRegistry.setCapacityListener(this::updateCapacity);
+    }
+
+    /**
+     * 在转发线程池中选择工作节点执行提交，工作节点返回结果时完成
+     */
+    public CompletableFuture<ExecuteCodeResponse> dispatchAsync(String language, ExecuteCodeRequest executeCodeRequest,
+                                                                CancellationToken cancellationToken) {
+        return CompletableFuture.supplyAsync(() -> dispatch(language, executeCodeRequest, cancellationToken),
+                dispatchExecutor);
+    }
+
+    /**
+     * 选择工作节点执行提交，阻塞直到得到结果
+     *
+     * @return 执行结果，没有可用节点或全部尝试失败时返回系统错误
+     */
+    public ExecuteCodeResponse dispatch(String language, ExecuteCodeRequest executeCodeRequest,
+                                        CancellationToken cancellationToken) {
+        String codeKey = DigestUtil.sha256Hex(language + "\n" + executeCodeRequest.getCode());
+        String testDataId = executeCodeRequest.getTestDataId();
+        Set<String> attemptedNodeIds = new HashSet<>();
+        for (int attempt = 0; attempt < clusterProperties.getMaxAttempts(); attempt++) {
+            if (cancellationToken.isCancelled()) {
+                return toResponse(ExecuteInfoEnum.CANCELLED);
+            }
+            WorkerNode node = nodeRegistry.select(language, codeKey, testDataId, attemptedNodeIds);
+            if (node == null) {
+                break;
+            }
+            attemptedNodeIds.add(node.getNodeId());
+            node.getInFlightCount().incrementAndGet();
+            try {
+                ExecuteCodeResponse executeCodeResponse = executeWithTestData(node, executeCodeRequest, testDataId,
+                        cancellationToken);
+                nodeRegistry.recordSuccess(node, codeKey);
+                return executeCodeResponse;
+            } catch (TestDataNotFoundException e) {
+                log.error("error loading test data {}: {}", testDataId, e.getMessage());
+                ExecuteCodeResponse executeCodeResponse = toResponse(ExecuteInfoEnum.SYSTEM_ERROR);
+                executeCodeResponse.setErrorMessage("test data not found: " + testDataId);
+                return executeCodeResponse;
+            } catch (HttpStatusCodeException e) {
+                if (e.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS) {
+                    nodeRegistry.markFailed(node);
+                }
+                log.warn("worker node {} rejected submission: {}", node.getNodeId(), e.getStatusCode());
+            } catch (RestClientException | WorkerJobLostException e) {
+                nodeRegistry.markFailed(node);
+                log.warn("worker node {} failed: {}", node.getNodeId(), e.getMessage());
+            } finally {
+                node.getInFlightCount().decrementAndGet();
+            }
+        }
+        log.error("no worker node available for {} submission, attempted nodes: {}", language, attemptedNodeIds);
+        return toResponse(ExecuteInfoEnum.SYSTEM_ERROR);
+    }
+
+    /**
+     * 在节点上执行提交，节点尚未持有引用的测试数据集时先上传
+     * <p>
+     * 节点返回 404 表示测试数据集已被淘汰，重新上传后在同一节点上重试一次，不标记节点失败
+     */
+    private ExecuteCodeResponse executeWithTestData(WorkerNode node, ExecuteCodeRequest executeCodeRequest,
+                                                    String testDataId, CancellationToken cancellationToken) {
+        if (testDataId != null && !node.hasTestData(testDataId)) {
+            uploadTestData(node, testDataId);
+        }
+        try {
+            return execute(node, executeCodeRequest, cancellationToken);
+        } catch (HttpStatusCodeException e) {
+            if (testDataId == null || e.getStatusCode() != HttpStatus.NOT_FOUND) {
+                throw e;
+            }
+            log.info("worker node {} evicted test data {}, uploading again", node.getNodeId(), testDataId);
+            node.removeTestData(testDataId);
+            uploadTestData(node, testDataId);
+            return execute(node, executeCodeRequest, cancellationToken);
+        }
+    }
+
+    /**
+     * 从本地读取测试数据集并上传到节点
+     *
+     * @throws TestDataNotFoundException 本地的测试数据集无法读取或已被淘汰
+     */
+    private void uploadTestData(WorkerNode node, String testDataId) {
+        CaseRunnerCodec.CaseInputs caseInputs;
+        try {
+            caseInputs = testDataStore.load(testDataId);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new TestDataNotFoundException(e.getMessage());
+        }
+        if (caseInputs == null) {
+            throw new TestDataNotFoundException("test data " + testDataId + " has been evicted");
+        }
+        clusterClient.uploadTestData(node.getUrl(), caseInputs.getInputList(), caseInputs.getExpectedOutputList());
+        node.addTestData(testDataId);
+    }
+
+    /**
+     * 在节点上执行提交，长轮询直到任务完成
+     */
+    private ExecuteCodeResponse execute(WorkerNode node, ExecuteCodeRequest executeCodeRequest,
+                                        CancellationToken cancellationToken) {
+        ExecuteJobResponse job = clusterClient.submit(node.getUrl(), executeCodeRequest);
+        if (job == null || job.getJobId() == null) {
+            throw new WorkerJobLostException("empty submit response");
+        }
+        String jobId = job.getJobId();
+        Runnable unregister = cancellationToken.onCancel(() -> cancelQuietly(node, jobId));
+        try {
+            while (!isDone(job)) {
+                try {
+                    job = clusterClient.getResult(node.getUrl(), jobId, clusterProperties.getPollWaitMillis());
+                } catch (HttpStatusCodeException e) {
+                    // 任务结果不存在，工作节点在执行过程中重启过
+                    if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                        throw new WorkerJobLostException("job " + jobId + " not found");
+                    }
+                    throw e;
+                }
+                if (job == null) {
+                    throw new WorkerJobLostException("empty result response");
+                }
+            }
+            return job.getResult();
+        } catch (RestClientException | WorkerJobLostException e) {
+            // 换节点重试前取消已接受的任务，避免节点仍在执行时同一提交在两个节点上各跑一次
+            cancelQuietly(node, jobId);
+            throw e;
+        } finally {
+            unregister.run();
+        }
+    }
+
+    /**
+     * 尽力取消工作节点上的任务，节点无法访问或任务已不存在时忽略
+     */
+    private void cancelQuietly(WorkerNode node, String jobId) {
+        try {
+            clusterClient.cancel(node.getUrl(), jobId);
+        } catch (RestClientException e) {
+            log.debug("error cancelling job {} on worker node {}: {}", jobId, node.getNodeId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按工作节点的并发数之和调整转发线程数和调度器的并发数，没有工作节点时保留一个名额，使提交尽快返回系统错误
+     */
+    private synchronized void updateCapacity(int totalConcurrency) {
+        int capacity = Math.max(totalConcurrency, 1);
+        if (capacity > dispatchExecutor.getMaximumPoolSize()) {
+            dispatchExecutor.setMaximumPoolSize(capacity);
+            dispatchExecutor.setCorePoolSize(capacity);
+        } else if (capacity < dispatchExecutor.getMaximumPoolSize()) {
+            dispatchExecutor.setCorePoolSize(capacity);
+            dispatchExecutor.setMaximumPoolSize(capacity);
+        }
+        executionScheduler.updateConcurrency(capacity);
+    }
+
+    @PreDestroy
+    public void shutdownExecutor() {
+        dispatchExecutor.shutdownNow();
+    }
+
+    private static boolean isDone(ExecuteJobResponse job) {
+        return job.getResult() != null && (ExecuteJobStatusEnum.FINISHED.getValue().equals(job.getStatus())
+                || ExecuteJobStatusEnum.CANCELLED.getValue().equals(job.getStatus()));
+    }
+
+    private static ExecuteCodeResponse toResponse(ExecuteInfoEnum executeInfoEnum) {
+        ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+        executeCodeResponse.setStatus(executeInfoEnum.getValue());
+        return executeCodeResponse;
+    }
+
+    /**
+     * 工作节点上的任务丢失，需要换一个节点重新执行
+     */
+    private static class WorkerJobLostException extends RuntimeException {
+
+        WorkerJobLostException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 调度节点本地的测试数据集不存在，换节点重试也无法执行
+     */
+    private static class TestDataNotFoundException extends RuntimeException {
+
+        TestDataNotFoundException(String message) {
+            super(message);
+        }
+    }
+}
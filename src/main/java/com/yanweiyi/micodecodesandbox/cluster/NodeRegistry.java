@@ -0,0 +1,163 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 调度节点上的工作节点注册表
+ * <p>
+ * 工作节点通过心跳注册并汇报容量，超时未发送心跳或请求失败的节点不参与选择。
+ * 选择节点时优先选择最近执行过相同代码（已有编译结果）或已持有测试数据集、且仍有空闲执行名额的节点，
+ * 否则选择负载率最低的节点，负载率相同时选择空闲容器多的节点。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "sandbox.cluster", name = "role", havingValue = "dispatcher")
+public class NodeRegistry {
+
+    private final ClusterProperties clusterProperties;
+
+    private final Map<String, WorkerNode> nodes = new ConcurrentHashMap<>();
+
+    // 代码哈希到最近执行该代码的节点 id，按访问顺序淘汰
+    private final Map<String, String> codeAffinity;
+
+    // 工作节点注册、下线或并发数变化时，接收所有工作节点的并发数之和
+    private volatile IntConsumer capacityListener = totalConcurrency -> {
+    };
+
+    public NodeRegistry(ClusterProperties clusterProperties) {
+        this.clusterProperties = clusterProperties;
+        int affinityCacheSize = clusterProperties.getAffinityCacheSize();
+        this.codeAffinity = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > affinityCacheSize;
+            }
+        };
+    }
+
+    /**
+     * 处理工作节点的心跳，新节点在第一次心跳时注册
+     */
+    public void heartbeat(NodeHeartbeat heartbeat) {
+        heartbeat(heartbeat, System.currentTimeMillis());
+    }
+
+    void heartbeat(NodeHeartbeat heartbeat, long now) {
+        WorkerNode node = nodes.computeIfAbsent(heartbeat.getNodeId(), nodeId -> {
+            log.info("worker node {} registered, url: {}", nodeId, heartbeat.getUrl());
+            return new WorkerNode(nodeId);
+        });
+        node.updateHeartbeat(heartbeat, now);
+        capacityListener.accept(getTotalConcurrency());
+    }
+
+    /**
+     * 为提交选择工作节点
+     *
+     * @param codeKey         代码哈希
+     * @param testDataId      引用的测试数据集 id，可以为 null
+     * @param excludedNodeIds 本次提交已经尝试过的节点
+     * @return 选中的节点，没有可用节点时返回 null
+     */
+    public WorkerNode select(String language, String codeKey, String testDataId, Set<String> excludedNodeIds) {
+        return select(language, codeKey, testDataId, excludedNodeIds, System.currentTimeMillis());
+    }
+
+    WorkerNode select(String language, String codeKey, String testDataId, Set<String> excludedNodeIds, long now) {
+        List<WorkerNode> candidates = nodes.values().stream()
+                .filter(node -> node.isAvailable(now, clusterProperties.getNodeTimeout()))
+                .filter(node -> !excludedNodeIds.contains(node.getNodeId()))
+                .filter(node -> node.supports(language))
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Comparator<WorkerNode> byLoad = Comparator.comparingDouble(WorkerNode::getLoadFactor)
+                .thenComparing(Comparator.comparingInt((WorkerNode node) -> node.getIdleContainers(language)).reversed());
+        String affinityNodeId;
+        synchronized (codeAffinity) {
+            affinityNodeId = codeAffinity.get(codeKey);
+        }
+        List<WorkerNode> preferred = new ArrayList<>();
+        for (WorkerNode node : candidates) {
+            boolean warm = node.getNodeId().equals(affinityNodeId)
+                    || (testDataId != null && node.hasTestData(testDataId));
+            if (warm && node.hasFreeSlot()) {
+                preferred.add(node);
+            }
+        }
+        List<WorkerNode> selectFrom = preferred.isEmpty() ? candidates : preferred;
+        return selectFrom.stream().min(byLoad).orElse(null);
+    }
+
+    /**
+     * 记录节点执行成功，之后相同的代码优先发往该节点
+     */
+    public void recordSuccess(WorkerNode node, String codeKey) {
+        synchronized (codeAffinity) {
+            codeAffinity.put(codeKey, node.getNodeId());
+        }
+    }
+
+    /**
+     * 记录请求节点失败，直到该节点的下一次心跳前不再选择
+     */
+    public void markFailed(WorkerNode node) {
+        markFailed(node, System.currentTimeMillis());
+    }
+
+    void markFailed(WorkerNode node, long now) {
+        node.markFailed(now);
+    }
+
+    public Collection<WorkerNode> getNodes() {
+        return nodes.values();
+    }
+
+    /**
+     * 已注册的工作节点的并发数之和
+     */
+    public int getTotalConcurrency() {
+        return nodes.values().stream().mapToInt(node -> node.getHeartbeat().getConcurrency()).sum();
+    }
+
+    public void setCapacityListener(IntConsumer capacityListener) {
+        this.capacityListener = capacityListener;
+        capacityListener.accept(getTotalConcurrency());
+    }
+
+    /**
+     * 定时移除长时间没有心跳的节点，节点恢复后重新注册
+     */
+    @Scheduled(fixedDelay = 60000L)
+    public void removeExpiredNodes() {
+        long expireBefore = System.currentTimeMillis() - clusterProperties.getNodeTimeout();
+        nodes.values().removeIf(node -> {
+            boolean expired = node.getLastHeartbeatTime() < expireBefore;
+            if (expired) {
+                log.warn("worker node {} expired, last heartbeat: {}", node.getNodeId(), node.getLastHeartbeatTime());
+            }
+            return expired;
+        });
+        capacityListener.accept(getTotalConcurrency());
+    }
+}
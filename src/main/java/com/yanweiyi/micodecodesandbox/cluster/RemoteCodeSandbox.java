@@ -0,0 +1,36 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 调度节点上的代码沙箱，提交由 {@link NodeDispatcher} 转发给工作节点执行
+ *
+ * @author yanweiyi
+ */
+public class RemoteCodeSandbox implements DockerCodeSandbox {
+
+    private final String language;
+
+    private final NodeDispatcher nodeDispatcher;
+
+    public RemoteCodeSandbox(String language, NodeDispatcher nodeDispatcher) {
+        this.language = language;
+        this.nodeDispatcher = nodeDispatcher;
+    }
+
+    @Override
+    public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+        return nodeDispatcher.dispatch(language, executeCodeRequest, new CancellationToken());
+    }
+
+    @Override
+    public CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest,
+                                                                   CancellationToken cancellationToken) {
+        return nodeDispatcher.dispatchAsync(language, executeCodeRequest, cancellationToken);
+    }
+}
@@ -0,0 +1,127 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 调度节点记录的工作节点状态
+ *
+ * @author yanweiyi
+ */
+public class WorkerNode {
+
+    private final String nodeId;
+
+    private volatile NodeHeartbeat heartbeat;
+
+    private volatile Set<String> testDataIds = Collections.emptySet();
+
+    private volatile long lastHeartbeatTime;
+
+    private volatile long lastFailureTime;
+
+    // 调度节点已转发到该节点、尚未返回结果的提交数
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    public WorkerNode(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    void updateHeartbeat(NodeHeartbeat heartbeat, long now) {
+        this.heartbeat = heartbeat;
+        this.testDataIds = heartbeat.getTestDataIds() == null
+                ? Collections.emptySet()
+                : new HashSet<>(heartbeat.getTestDataIds());
+        this.lastHeartbeatTime = now;
+    }
+
+    /**
+     * 请求该节点失败，直到下一次心跳前不再选择该节点
+     */
+    void markFailed(long now) {
+        this.lastFailureTime = now;
+    }
+
+    /**
+     * 节点在超时时间内发送过心跳，且最近一次心跳之后没有请求失败
+     */
+    boolean isAvailable(long now, long nodeTimeout) {
+        return now - lastHeartbeatTime <= nodeTimeout && lastFailureTime < lastHeartbeatTime;
+    }
+
+    boolean supports(String language) {
+        return heartbeat.getIdleContainers() != null && heartbeat.getIdleContainers().containsKey(language);
+    }
+
+    boolean hasTestData(String testDataId) {
+        return testDataIds.contains(testDataId);
+    }
+
+    /**
+     * 节点上执行中和排队中的提交数估计值
+     * <p>
+     * 心跳之间转发的提交尚未反映在心跳中，取心跳汇报值和本调度节点转发中的提交数的较大值
+     */
+    int getEstimatedLoad() {
+        NodeHeartbeat current = heartbeat;
+        return Math.max(current.getActiveCount() + current.getQueueSize(), inFlightCount.get());
+    }
+
+    /**
+     * 负载率：估计的提交数与并发数之比
+     */
+    double getLoadFactor() {
+        return (double) getEstimatedLoad() / Math.max(heartbeat.getConcurrency(), 1);
+    }
+
+    boolean hasFreeSlot() {
+        return getEstimatedLoad() < heartbeat.getConcurrency();
+    }
+
+    int getIdleContainers(String language) {
+        Integer idleContainers = heartbeat.getIdleContainers().get(language);
+        return idleContainers == null ? 0 : idleContainers;
+    }
+
+    /**
+     * 记录测试数据集已上传到该节点，下一次心跳前不需要重复上传
+     */
+    void addTestData(String testDataId) {
+        Set<String> updated = new HashSet<>(testDataIds);
+        updated.add(testDataId);
+        testDataIds = updated;
+    }
+
+    /**
+     * 节点已淘汰该测试数据集，下一次执行前需要重新上传
+     */
+    void removeTestData(String testDataId) {
+        Set<String> updated = new HashSet<>(testDataIds);
+        updated.remove(testDataId);
+        testDataIds = updated;
+    }
+
+    AtomicInteger getInFlightCount() {
+        return inFlightCount;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getUrl() {
+        return heartbeat.getUrl();
+    }
+
+    public NodeHeartbeat getHeartbeat() {
+        return heartbeat;
+    }
+
+    public long getLastHeartbeatTime() {
+        return lastHeartbeatTime;
+    }
+}
@@ -0,0 +1,29 @@
+package com.yanweiyi.micodecodesandbox.compiler;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 编译结果
+ *
+ * @author yanweiyi
+ */
+@Data
+public class CompileResult {
+
+    /**
+     * 是否编译成功
+     */
+    private final boolean success;
+
+    /**
+     * 编译产物，key 为类的全限定名，value 为 class 文件内容
+     */
+    private final Map<String, byte[]> classFiles;
+
+    /**
+     * 编译错误信息（编译成功就没有）
+     */
+    private final String errorMessage;
+}
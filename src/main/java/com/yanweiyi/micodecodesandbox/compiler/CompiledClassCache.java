@@ -0,0 +1,75 @@
+package com.yanweiyi.micodecodesandbox.compiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编译结果的 LRU 缓存，key 为源代码和编译参数的哈希值
+ *
+ * @author yanweiyi
+ */
+public class CompiledClassCache {
+
+    private final int maxSize;
+
+    private final LinkedHashMap<String, CompileResult> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public CompiledClassCache(int maxSize) {
+        this.maxSize = maxSize;
+        // accessOrder 为 true 时按访问顺序排序，最久未访问的元素在最前面
+        this.cache = new LinkedHashMap<String, CompileResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompileResult> eldest) {
+                if (size() > CompiledClassCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的编译结果
+     *
+     * @return 编译结果，未命中时返回 null
+     */
+    public synchronized CompileResult get(String key) {
+        CompileResult compileResult = cache.get(key);
+        if (compileResult == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return compileResult;
+    }
+
+    public synchronized void put(String key, CompileResult compileResult) {
+        if (maxSize > 0) {
+            cache.put(key, compileResult);
+        }
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+}
@@ -0,0 +1,175 @@
+package com.yanweiyi.micodecodesandbox.compiler;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 进程内 Java 编译器
+ * <p>
+ * 通过 javax.tools.JavaCompiler 在内存中完成编译，避免每次编译都启动一个 javac 进程；
+ * 编译结果按源代码和编译参数的哈希值缓存，重复提交和重判时直接复用。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class InMemoryJavaCompiler {
+
+    // 编译参数，运行镜像为 Java 8，高版本 JDK 需要指定目标版本；关闭注解处理，避免加载服务自身类路径中的注解处理器
+    private static final List<String> COMPILE_OPTIONS;
+
+    static {
+        List<String> options = new ArrayList<>(Arrays.asList("-encoding", "utf-8", "-proc:none"));
+        if (SourceVersion.latest().compareTo(SourceVersion.RELEASE_8) > 0) {
+            options.addAll(Arrays.asList("--release", "8"));
+        }
+        COMPILE_OPTIONS = Collections.unmodifiableList(options);
+    }
+
+    private final JavaCompiler javaCompiler;
+
+    private final CompiledClassCache compiledClassCache;
+
+    public InMemoryJavaCompiler(@Value("${sandbox.compiler.cache-size:256}") int cacheSize) {
+        this.javaCompiler = ToolProvider.getSystemJavaCompiler();
+        if (this.javaCompiler == null) {
+            throw new IllegalStateException("system java compiler not available, a JDK is required");
+        }
+        this.compiledClassCache = new CompiledClassCache(cacheSize);
+    }
+
+    /**
+     * 编译单个 Java 源文件
+     *
+     * @param className 类名（同时作为源文件名）
+     * @param source    源代码
+     * @return 编译结果，源代码相同时返回缓存的结果
+     */
+    public CompileResult compile(String className, String source) {
+        String cacheKey = DigestUtil.sha256Hex(String.join(" ", COMPILE_OPTIONS) + "\n" + className + "\n" + source);
+        CompileResult cachedResult = compiledClassCache.get(cacheKey);
+        if (cachedResult != null) {
+            log.info("compile cache hit, class: {}", className);
+            return cachedResult;
+        }
+        CompileResult compileResult = doCompile(className, source);
+        compiledClassCache.put(cacheKey, compileResult);
+        return compileResult;
+    }
+
+    public CompiledClassCache getCompiledClassCache() {
+        return compiledClassCache;
+    }
+
+    private CompileResult doCompile(String className, String source) {
+        DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager = javaCompiler
+                .getStandardFileManager(diagnosticCollector, Locale.ROOT, StandardCharsets.UTF_8);
+        try (MemoryJavaFileManager fileManager = new MemoryJavaFileManager(standardFileManager)) {
+            // 用户代码只依赖 JDK，不能引用服务自身类路径中的类
+            standardFileManager.setLocation(StandardLocation.CLASS_PATH, Collections.emptyList());
+            JavaFileObject sourceFile = new SourceJavaFileObject(className, source);
+            Boolean success = javaCompiler.getTask(null, fileManager, diagnosticCollector,
+                    COMPILE_OPTIONS, null, Collections.singletonList(sourceFile)).call();
+            if (Boolean.TRUE.equals(success)) {
+                return new CompileResult(true, fileManager.getClassFiles(), null);
+            }
+            String errorMessage = formatDiagnostics(className, diagnosticCollector.getDiagnostics());
+            log.error("compilation error, error output: {}", errorMessage);
+            return new CompileResult(false, Collections.emptyMap(), errorMessage);
+        } catch (IOException e) {
+            throw new RuntimeException("error compiling code", e);
+        }
+    }
+
+    /**
+     * 按 javac 的输出格式拼接编译错误
+     */
+    private static String formatDiagnostics(String className, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        StringBuilder errorBuilder = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            errorBuilder.append(className).append(".java:").append(diagnostic.getLineNumber())
+                    .append(": error: ").append(diagnostic.getMessage(Locale.ROOT)).append("\n");
+        }
+        return errorBuilder.toString();
+    }
+
+    /**
+     * 从字符串读取的源文件
+     */
+    private static class SourceJavaFileObject extends SimpleJavaFileObject {
+
+        private final String source;
+
+        SourceJavaFileObject(String className, String source) {
+            super(URI.create("string:///" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /**
+     * 写入内存的 class 文件
+     */
+    private static class ClassJavaFileObject extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ClassJavaFileObject(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return outputStream;
+        }
+
+        byte[] getBytes() {
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * 将编译产物保存在内存中的文件管理器
+     */
+    private static class MemoryJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ClassJavaFileObject> classFileObjects = new LinkedHashMap<>();
+
+        MemoryJavaFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            ClassJavaFileObject classFileObject = new ClassJavaFileObject(className);
+            classFileObjects.put(className, classFileObject);
+            return classFileObject;
+        }
+
+        Map<String, byte[]> getClassFiles() {
+            Map<String, byte[]> classFiles = new LinkedHashMap<>();
+            classFileObjects.forEach((className, classFileObject) -> classFiles.put(className, classFileObject.getBytes()));
+            return Collections.unmodifiableMap(classFiles);
+        }
+    }
+}
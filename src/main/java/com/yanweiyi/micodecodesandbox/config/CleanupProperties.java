@@ -0,0 +1,61 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 容器和工作目录清理配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.cleanup")
+public class CleanupProperties {
+
+    /**
+     * 清理线程数
+     */
+    private int threads = 2;
+
+    /**
+     * 等待清理的任务数上限，队列已满时由提交清理的线程直接执行，形成背压
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 清理线程每次从队列中取出的最大任务数
+     */
+    private int batchSize = 16;
+
+    /**
+     * 单个清理任务的最大尝试次数
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 重试间隔（ms），每次重试翻倍
+     */
+    private long retryBackoffMillis = 500L;
+
+    /**
+     * 关闭服务时等待剩余清理任务完成的最长时间（ms）
+     */
+    private long shutdownTimeoutMillis = 30000L;
+
+    /**
+     * 孤儿容器和过期工作目录的扫描间隔（ms）
+     */
+    private long reapInterval = 60000L;
+
+    /**
+     * 不属于任何容器池的容器和工作目录超过该时长（ms）后才会被回收，避免回收正在创建的容器
+     */
+    private long orphanGracePeriod = 120000L;
+
+    /**
+     * 容器的所有者标签值，同一 Docker 服务上运行多个沙箱实例时需各不相同，为空时使用主机名
+     */
+    private String owner;
+}
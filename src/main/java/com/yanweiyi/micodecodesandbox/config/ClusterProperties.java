@@ -0,0 +1,89 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 多节点部署配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.cluster")
+public class ClusterProperties {
+
+    /**
+     * 节点角色
+     */
+    private Role role = Role.STANDALONE;
+
+    /**
+     * 工作节点 id，为空时启动时随机生成
+     */
+    private String nodeId;
+
+    /**
+     * 工作节点对外的访问地址，如 http://10.0.0.2:11090，为空时使用本机地址和服务端口
+     */
+    private String advertisedUrl;
+
+    /**
+     * 调度节点的访问地址，工作节点向该地址发送心跳
+     */
+    private String dispatcherUrl;
+
+    /**
+     * 工作节点发送心跳的间隔（ms）
+     */
+    private long heartbeatInterval = 2000L;
+
+    /**
+     * 超过该时长没有收到心跳的工作节点视为下线（ms）
+     */
+    private long nodeTimeout = 10000L;
+
+    /**
+     * 单个提交最多尝试的工作节点数，节点不可用或执行过程中失联时换一个节点重新执行
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 记录代码最近由哪个节点执行的条目数，相同代码优先发往已有编译结果的节点
+     */
+    private int affinityCacheSize = 4096;
+
+    /**
+     * 调度节点长轮询工作节点执行结果的单次等待时间（ms），不能超过工作节点的 max-poll-wait-millis
+     */
+    private long pollWaitMillis = 10000L;
+
+    /**
+     * 调度节点到工作节点的连接超时时间（ms）
+     */
+    private int connectTimeout = 2000;
+
+    /**
+     * 调度节点到工作节点的读取超时时间（ms），需要大于 poll-wait-millis
+     */
+    private int readTimeout = 30000;
+
+    public enum Role {
+
+        /**
+         * 单机部署，直接在本机的 Docker 中执行
+         */
+        STANDALONE,
+
+        /**
+         * 工作节点，在本机的 Docker 中执行，并定时向调度节点汇报容量
+         */
+        WORKER,
+
+        /**
+         * 调度节点，不连接 Docker，将提交转发给负载最低的工作节点
+         */
+        DISPATCHER
+    }
+}
@@ -0,0 +1,79 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 容器池配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.pool")
+public class ContainerPoolProperties {
+
+    /**
+     * 获取容器的最长等待时间（ms）
+     */
+    private long acquireTimeout = 10000L;
+
+    /**
+     * 空闲容器健康检查间隔（ms）
+     */
+    private long healthCheckInterval = 30000L;
+
+    /**
+     * 各语言的容器池配置，key 为语言名称
+     */
+    private Map<String, LanguagePool> languages = new LinkedHashMap<>();
+
+    @Data
+    public static class LanguagePool {
+
+        /**
+         * 容器使用的镜像
+         */
+        private String image;
+
+        /**
+         * 最少保持的空闲容器数（预热数量）
+         */
+        private int minIdle = 2;
+
+        /**
+         * 容器总数上限
+         */
+        private int maxTotal = 8;
+
+        /**
+         * 单个容器最多被使用的次数，超过后回收重建
+         */
+        private int maxUses = 50;
+
+        /**
+         * 创建容器时的内存限制（byte），内存加交换分区的上限与之相同，即不允许使用交换分区；
+         * 执行时按请求或语言运行时的内存限制调整
+         */
+        private long memoryLimit = 1073741824L;
+
+        /**
+         * 未指定请求 CPU 限制时每个容器可以使用的 CPU 核数（按 CFS 配额限制，可以是小数），为 0 时不限制
+         */
+        private double cpus = 1.0;
+
+        /**
+         * 容器内的进程数（包含线程）上限，防止 fork 炸弹，为 0 时不限制
+         */
+        private long pidsLimit = 128L;
+
+        /**
+         * 是否将每个容器绑定到一个 CPU 核（按创建顺序在 Docker 宿主机的 CPU 核间轮流分配），并行执行用例时各容器互不争抢 CPU，计时更稳定
+         */
+        private boolean cpuPinning = false;
+    }
+}
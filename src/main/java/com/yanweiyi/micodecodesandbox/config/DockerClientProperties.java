@@ -0,0 +1,37 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Docker 客户端配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.docker")
+public class DockerClientProperties {
+
+    /**
+     * Docker 服务地址，为空时使用 DOCKER_HOST 环境变量或默认的 unix:///var/run/docker.sock
+     */
+    private String host;
+
+    /**
+     * 到 Docker 服务的最大连接数；每个执行中的命令和资源统计都会占用一个连接直到结束，
+     * 需要大于容器总数加上并发的容器管理调用数
+     */
+    private int maxConnections = 128;
+
+    /**
+     * 建立连接的超时时间（ms）
+     */
+    private long connectTimeout = 5000L;
+
+    /**
+     * 等待响应数据的超时时间（ms），为 0 时不限制；需要大于单个用例的墙钟时间上限，否则没有输出的命令会被提前断开
+     */
+    private long responseTimeout = 120000L;
+}
@@ -0,0 +1,68 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
+import com.github.dockerjava.transport.DockerHttpClient;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.client.InstrumentedDockerHttpClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Docker 客户端配置：所有组件共享一个基于 httpclient5 连接池的 DockerClient，服务关闭时释放连接
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Configuration
+public class DockerConfig {
+
+    @Bean
+    public InstrumentedDockerHttpClient dockerHttpClient(DockerClientProperties dockerClientProperties,
+                                                         SandboxMetrics sandboxMetrics) {
+        DockerHttpClient dockerHttpClient = createHttpClient(createClientConfig(dockerClientProperties),
+                dockerClientProperties);
+        return new InstrumentedDockerHttpClient(dockerHttpClient, sandboxMetrics);
+    }
+
+    @Bean
+    public DockerClient dockerClient(DockerClientProperties dockerClientProperties,
+                                     InstrumentedDockerHttpClient dockerHttpClient) {
+        DockerClientConfig dockerClientConfig = createClientConfig(dockerClientProperties);
+        log.info("docker host: {}, max connections: {}", dockerClientConfig.getDockerHost(),
+                dockerClientProperties.getMaxConnections());
+        return DockerClientImpl.getInstance(dockerClientConfig, dockerHttpClient);
+    }
+
+    /**
+     * 读取 DOCKER_HOST 等环境变量和系统属性，配置中指定了地址时以配置为准
+     */
+    public static DockerClientConfig createClientConfig(DockerClientProperties dockerClientProperties) {
+        DefaultDockerClientConfig.Builder builder = DefaultDockerClientConfig.createDefaultConfigBuilder();
+        if (StrUtil.isNotBlank(dockerClientProperties.getHost())) {
+            builder.withDockerHost(dockerClientProperties.getHost());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 创建 httpclient5 传输层，连接数上限同时作为单个地址的连接数上限
+     */
+    public static DockerHttpClient createHttpClient(DockerClientConfig dockerClientConfig,
+                                                    DockerClientProperties dockerClientProperties) {
+        return new ApacheDockerHttpClient.Builder()
+                .dockerHost(dockerClientConfig.getDockerHost())
+                .sslConfig(dockerClientConfig.getSSLConfig())
+                .maxConnections(dockerClientProperties.getMaxConnections())
+                .connectionTimeout(Duration.ofMillis(dockerClientProperties.getConnectTimeout()))
+                .responseTimeout(Duration.ofMillis(dockerClientProperties.getResponseTimeout()))
+                .build();
+    }
+}
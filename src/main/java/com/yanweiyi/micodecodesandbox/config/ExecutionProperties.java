@@ -0,0 +1,121 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 代码执行配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.execution")
+public class ExecutionProperties {
+
+    /**
+     * 是否在一个 JVM 中批量执行全部用例，关闭时每个用例单独启动一个 JVM
+     */
+    private boolean batchEnabled = true;
+
+    /**
+     * 执行流水线模式
+     */
+    private Pipeline pipeline = Pipeline.BLOCKING;
+
+    /**
+     * 是否在第一个失败的用例后停止执行剩余用例，关闭时执行全部用例以便按用例计分
+     */
+    private boolean failFast = true;
+
+    /**
+     * 单个提交最多同时使用的容器数，大于 1 时用例按序号轮流分配到多个空闲容器中并行执行
+     */
+    private int caseParallelism = 1;
+
+    /**
+     * 单个用例标准输出的上限（byte），超出后停止该用例
+     */
+    private long outputLimitBytes = 8388608L;
+
+    /**
+     * 单个用例错误输出的上限（byte），超出部分被截断
+     */
+    private long errorOutputLimitBytes = 65536L;
+
+    /**
+     * 请求中可以指定的单个用例时间限制的上限（ms）
+     */
+    private long maxTimeLimitMillis = 10000L;
+
+    /**
+     * 请求中可以指定的单个用例内存限制的下限（byte）
+     */
+    private long minMemoryLimitBytes = 16777216L;
+
+    /**
+     * 请求中可以指定的单个用例内存限制的上限（byte）
+     */
+    private long maxMemoryLimitBytes = 1073741824L;
+
+    /**
+     * 请求中可以指定的 CPU 核数的上限
+     */
+    private double maxCpuLimit = 2.0;
+
+    /**
+     * 用例时间限制的判定方式
+     */
+    private TimeLimit timeLimit = TimeLimit.CPU;
+
+    /**
+     * 按 CPU 时间判定时，墙钟时间上限为时间限制的倍数，防止 sleep 或等待中的用例一直占用容器
+     */
+    private int wallTimeLimitFactor = 3;
+
+    /**
+     * 单个用例的 CPU 时间上限（ms），为 0 时只限制墙钟时间
+     */
+    public long getCpuLimitMillis(long timeLimitMillis) {
+        return timeLimit == TimeLimit.CPU ? timeLimitMillis : 0L;
+    }
+
+    /**
+     * 单个用例的墙钟时间上限（ms）
+     */
+    public long getWallLimitMillis(long timeLimitMillis) {
+        return timeLimit == TimeLimit.CPU ? timeLimitMillis * Math.max(wallTimeLimitFactor, 1) : timeLimitMillis;
+    }
+
+    public enum TimeLimit {
+
+        /**
+         * 按用户程序自身的 CPU 时间（user + sys）判定，宿主机繁忙时判定结果保持稳定
+         */
+        CPU,
+
+        /**
+         * 按墙钟时间判定
+         */
+        WALL
+    }
+
+    public enum Pipeline {
+
+        /**
+         * 每个执行中的提交占用一个平台线程阻塞等待
+         */
+        BLOCKING,
+
+        /**
+         * 基于回调的异步流水线，等待 Docker 期间不占用调度线程
+         */
+        ASYNC,
+
+        /**
+         * 每个提交使用一个虚拟线程阻塞等待，需要运行在 Java 21 及以上，低版本退化为 BLOCKING
+         */
+        VIRTUAL_THREAD
+    }
+}
@@ -0,0 +1,41 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用例输入文件缓存配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.input-cache")
+public class InputCacheProperties {
+
+    /**
+     * 宿主机上的缓存目录，为空时使用 tempCode/inputs
+     */
+    private String directory;
+
+    /**
+     * 缓存文件的总大小上限（byte），超出时淘汰最久未使用且未被占用的文件
+     */
+    private long maxBytes = 1073741824L;
+
+    /**
+     * 宿主机上存放测试数据集（含预期输出）的目录，不挂载到容器，为空时使用 tempCode/testdata
+     */
+    private String testDataDirectory;
+
+    /**
+     * 测试数据集文件的总大小上限（byte），超出时淘汰最久未使用的数据集
+     */
+    private long testDataMaxBytes = 1073741824L;
+
+    /**
+     * 内存中保留的已解码测试数据集个数
+     */
+    private int testDataCacheSize = 64;
+}
@@ -0,0 +1,46 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java 启动优化配置：启动时基于 Java 镜像构建预热镜像，内置用例执行器和类数据共享（CDS）归档
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.java-startup")
+public class JavaStartupProperties {
+
+    /**
+     * 是否构建并使用预热镜像，构建或校验失败时使用原镜像
+     */
+    private boolean enabled = true;
+
+    /**
+     * 预热镜像的仓库名，标签为构建内容的哈希
+     */
+    private String imageRepository = "micode-sandbox-java";
+
+    /**
+     * 使用预热镜像时附加的 JVM 参数，构建归档和执行用户代码时相同
+     */
+    private List<String> jvmOptions = new ArrayList<>(Arrays.asList(
+            "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-XX:-UsePerfData", "-Xms16m"));
+
+    /**
+     * 构建预热镜像的超时时间（ms）
+     */
+    private long buildTimeoutMillis = 300000L;
+
+    /**
+     * 启动时校验预热镜像的超时时间（ms）
+     */
+    private long verifyTimeoutMillis = 30000L;
+}
@@ -0,0 +1,35 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import com.github.dockerjava.api.DockerClient;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.CgroupResourceMeter;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.DockerStatsResourceMeter;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.ResourceMeter;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.ResourceUsage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * 资源计量器配置
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Configuration
+public class MeteringConfig {
+
+    @Bean
+    public ResourceMeter resourceMeter(MeteringProperties meteringProperties, DockerClient dockerClient) {
+        MeteringProperties.Mode mode = meteringProperties.getMode();
+        log.info("resource metering mode: {}", mode);
+        if (mode == MeteringProperties.Mode.DOCKER_STATS) {
+            return new DockerStatsResourceMeter(dockerClient);
+        }
+        ResourceMeter fallbackMeter = mode == MeteringProperties.Mode.CGROUP
+                ? containerId -> ResourceUsage::new
+                : new DockerStatsResourceMeter(dockerClient);
+        return new CgroupResourceMeter(Paths.get(meteringProperties.getCgroupRoot()), fallbackMeter);
+    }
+}
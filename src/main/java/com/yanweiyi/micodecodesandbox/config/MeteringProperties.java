@@ -0,0 +1,44 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 资源计量配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.metering")
+public class MeteringProperties {
+
+    /**
+     * 计量方式
+     */
+    private Mode mode = Mode.AUTO;
+
+    /**
+     * 宿主机 cgroup 文件系统的挂载位置，服务运行在容器中时需要把宿主机的 /sys/fs/cgroup 挂载进来
+     */
+    private String cgroupRoot = "/sys/fs/cgroup";
+
+    public enum Mode {
+
+        /**
+         * 优先读取 cgroup 文件，找不到容器的 cgroup 目录时使用 Docker 统计信息接口
+         */
+        AUTO,
+
+        /**
+         * 只读取 cgroup 文件
+         */
+        CGROUP,
+
+        /**
+         * 只使用 Docker 统计信息接口
+         */
+        DOCKER_STATS
+    }
+}
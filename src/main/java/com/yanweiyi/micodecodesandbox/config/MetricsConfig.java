@@ -0,0 +1,140 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import cn.hutool.core.io.FileUtil;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.client.InstrumentedDockerHttpClient;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.engine.ExecutionResultCache;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.input.InputFileCache;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPoolManager;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionScheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 监控指标配置：调度器、容器池、清理队列、结果缓存、临时目录和 Docker 连接池的状态指标，在每次采集时读取当前值
+ *
+ * @author yanweiyi
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder schedulerMetrics(ExecutionScheduler executionScheduler) {
+        return meterRegistry -> {
+            Gauge.builder("sandbox.submissions.in.flight", executionScheduler, ExecutionScheduler::getActiveCount)
+                    .description("submissions currently executing")
+                    .register(meterRegistry);
+            Gauge.builder("sandbox.submissions.queued", executionScheduler, ExecutionScheduler::getQueueSize)
+                    .description("submissions waiting in the execution queue")
+                    .register(meterRegistry);
+            Gauge.builder("sandbox.submissions.batch.queued", executionScheduler, ExecutionScheduler::getBatchQueueSize)
+                    .description("batch submissions waiting in the low priority queue")
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public MeterBinder containerPoolMetrics(List<LanguageRuntime> languageRuntimes,
+                                            @Lazy DockerContainerPoolManager dockerContainerPoolManager) {
+        // 容器池管理器依赖 SandboxMetrics，延迟到采集时再获取，避免与 MeterRegistry 循环依赖；
+        // Gauge 默认只弱引用被观测对象，延迟代理没有其他引用，因此使用强引用
+        return meterRegistry -> languageRuntimes.stream().map(LanguageRuntime::getLanguage).forEach(language -> {
+            // 容器池在启动后才创建，采集时按语言查找
+            Gauge.builder("sandbox.pool.containers", dockerContainerPoolManager,
+                            poolGauge(language, DockerContainerPool::getTotalCount))
+                    .description("pooled containers, including leased ones")
+                    .tag(SandboxMetrics.LANGUAGE_TAG, language)
+                    .tag("state", "total")
+                    .strongReference(true)
+                    .register(meterRegistry);
+            Gauge.builder("sandbox.pool.containers", dockerContainerPoolManager,
+                            poolGauge(language, DockerContainerPool::getIdleCount))
+                    .description("pooled containers, including leased ones")
+                    .tag(SandboxMetrics.LANGUAGE_TAG, language)
+                    .tag("state", "idle")
+                    .strongReference(true)
+                    .register(meterRegistry);
+        });
+    }
+
+    @Bean
+    public MeterBinder cleanupMetrics(@Lazy ContainerCleaner containerCleaner) {
+        return meterRegistry -> Gauge.builder("sandbox.cleanup.backlog", containerCleaner, ContainerCleaner::getBacklog)
+                .description("container and workspace cleanup tasks waiting or running")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder resultCacheMetrics(@Lazy ExecutionResultCache executionResultCache) {
+        return meterRegistry -> Gauge.builder("sandbox.result.cache.size", executionResultCache, ExecutionResultCache::size)
+                .description("cached execution results")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder diskUsageMetrics(@Lazy DockerContainerPoolManager dockerContainerPoolManager,
+                                       InputFileCache inputFileCache) {
+        return meterRegistry -> {
+            Gauge.builder("sandbox.disk.usage", dockerContainerPoolManager, manager -> {
+                        File workspaceRoot = manager.getWorkspaceRoot().toFile();
+                        return workspaceRoot.exists() ? FileUtil.size(workspaceRoot) : 0;
+                    })
+                    .description("bytes used on the host by sandbox temporary directories")
+                    .baseUnit("bytes")
+                    .tag("directory", "workspace")
+                    .strongReference(true)
+                    .register(meterRegistry);
+            Gauge.builder("sandbox.disk.usage", inputFileCache, InputFileCache::getTotalBytes)
+                    .description("bytes used on the host by sandbox temporary directories")
+                    .baseUnit("bytes")
+                    .tag("directory", "input-cache")
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public MeterBinder dockerConnectionMetrics(@Lazy InstrumentedDockerHttpClient dockerHttpClient) {
+        // 客户端依赖 SandboxMetrics，同样延迟到采集时再获取
+        return meterRegistry -> {
+            // leased 为正在使用的连接，available 为可以复用的空闲连接，pending 为等待连接的请求
+            registerConnectionGauge(meterRegistry, dockerHttpClient, "leased", PoolStats::getLeased);
+            registerConnectionGauge(meterRegistry, dockerHttpClient, "available", PoolStats::getAvailable);
+            registerConnectionGauge(meterRegistry, dockerHttpClient, "pending", PoolStats::getPending);
+            registerConnectionGauge(meterRegistry, dockerHttpClient, "max", PoolStats::getMax);
+        };
+    }
+
+    private static void registerConnectionGauge(MeterRegistry meterRegistry, InstrumentedDockerHttpClient dockerHttpClient,
+                                                String state, ToDoubleFunction<PoolStats> getter) {
+        Gauge.builder("sandbox.docker.connections", dockerHttpClient, client -> {
+                    PoolStats poolStats = client.getConnectionPoolStats();
+                    return poolStats == null ? Double.NaN : getter.applyAsDouble(poolStats);
+                })
+                .description("docker api connection pool")
+                .tag("state", state)
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    private static ToDoubleFunction<DockerContainerPoolManager> poolGauge(String language,
+                                                                         ToDoubleFunction<DockerContainerPool> getter) {
+        return manager -> {
+            DockerContainerPool pool = manager.getPool(language);
+            return pool == null ? Double.NaN : getter.applyAsDouble(pool);
+        };
+    }
+}
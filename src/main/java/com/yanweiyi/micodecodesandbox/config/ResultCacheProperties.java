@@ -0,0 +1,36 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 执行结果缓存配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.result-cache")
+public class ResultCacheProperties {
+
+    /**
+     * 是否缓存执行结果并合并同时执行的相同提交
+     */
+    private boolean enabled = false;
+
+    /**
+     * 缓存的结果个数上限，超出时淘汰最久未访问的结果
+     */
+    private int maxEntries = 1024;
+
+    /**
+     * 结果的有效期（ms）
+     */
+    private long ttlMillis = 600000L;
+
+    /**
+     * 单个结果的输出和错误消息总长度上限（字符），超出的结果不缓存
+     */
+    private long maxEntryChars = 1048576L;
+}
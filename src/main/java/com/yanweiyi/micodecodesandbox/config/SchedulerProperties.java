@@ -0,0 +1,61 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 执行调度器配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.scheduler")
+public class SchedulerProperties {
+
+    /**
+     * 同时执行的提交数上限，小于等于 0 时根据宿主机 CPU 核数和内存自动计算；调度节点取工作节点的并发数之和
+     */
+    private int concurrency = 0;
+
+    /**
+     * 自动计算并发数时，每个提交预留的内存（byte）
+     */
+    private long memoryPerSubmission = 1073741824L;
+
+    /**
+     * 等待队列容量，队列已满时拒绝新的提交
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * 拒绝提交时建议客户端重试的间隔（s）
+     */
+    private int retryAfterSeconds = 5;
+
+    /**
+     * 已完成任务结果的保留时长（ms）
+     */
+    private long jobRetentionMillis = 600000L;
+
+    /**
+     * 长轮询获取结果的最长等待时间（ms）
+     */
+    private long maxPollWaitMillis = 30000L;
+
+    /**
+     * 单个批量请求的提交数上限
+     */
+    private int maxBatchSize = 10000;
+
+    /**
+     * 单个批量请求同时提交到调度器的提交数上限，一个完成后再提交下一个
+     */
+    private int batchWindow = 32;
+
+    /**
+     * 批量请求的超时时间（ms），超时后停止剩余的提交
+     */
+    private long batchTimeoutMillis = 3600000L;
+}
@@ -0,0 +1,44 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.DirectoryWorkspaceProvider;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.TmpfsWorkspaceProvider;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.WorkspaceProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 容器工作目录配置
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Configuration
+public class WorkspaceConfig {
+
+    // 默认的磁盘工作目录
+    private static final String DEFAULT_DISK_DIRECTORY = "tempCode" + File.separator + "pool";
+
+    @Bean
+    public WorkspaceProvider workspaceProvider(WorkspaceProperties workspaceProperties) {
+        WorkspaceProperties.Mode mode = workspaceProperties.getMode();
+        long quotaBytes = workspaceProperties.getQuotaBytes();
+        boolean readOnly = workspaceProperties.isReadOnly();
+        Path memoryDirectory = Paths.get(workspaceProperties.getMemoryDirectory());
+        if (mode == WorkspaceProperties.Mode.MEMORY
+                || mode == WorkspaceProperties.Mode.AUTO && TmpfsWorkspaceProvider.isSupported(memoryDirectory)) {
+            log.info("container workspaces on tmpfs: {}", memoryDirectory);
+            return new TmpfsWorkspaceProvider(memoryDirectory, quotaBytes, readOnly);
+        }
+        Path diskDirectory = StrUtil.isBlank(workspaceProperties.getDiskDirectory())
+                ? Paths.get(System.getProperty("user.dir"), DEFAULT_DISK_DIRECTORY)
+                : Paths.get(workspaceProperties.getDiskDirectory());
+        log.info("container workspaces on disk: {}", diskDirectory);
+        return new DirectoryWorkspaceProvider(diskDirectory, quotaBytes, readOnly);
+    }
+}
@@ -0,0 +1,59 @@
+package com.yanweiyi.micodecodesandbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 容器工作目录配置
+ *
+ * @author yanweiyi
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sandbox.workspace")
+public class WorkspaceProperties {
+
+    /**
+     * 工作目录的存放方式
+     */
+    private Mode mode = Mode.AUTO;
+
+    /**
+     * 内存文件系统（tmpfs）上的工作目录根目录
+     */
+    private String memoryDirectory = "/dev/shm/micode-sandbox";
+
+    /**
+     * 磁盘上的工作目录根目录，为空时使用 tempCode/pool
+     */
+    private String diskDirectory;
+
+    /**
+     * 单个工作目录可写入的最大字节数
+     */
+    private long quotaBytes = 67108864L;
+
+    /**
+     * 是否以只读方式将工作目录挂载到容器内，容器内的程序只需要读取 class 文件
+     */
+    private boolean readOnly = true;
+
+    public enum Mode {
+
+        /**
+         * 内存文件系统目录可用时使用内存，否则使用磁盘
+         */
+        AUTO,
+
+        /**
+         * 只使用内存文件系统
+         */
+        MEMORY,
+
+        /**
+         * 只使用磁盘
+         */
+        DISK
+    }
+}
@@ -0,0 +1,66 @@
+package com.yanweiyi.micodecodesandbox.controller;
+
+import com.yanweiyi.micodecodesandbox.cluster.NodeRegistry;
+import com.yanweiyi.micodecodesandbox.cluster.WorkerNode;
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 调度节点接收工作节点心跳的接口
+ *
+ * @author yanweiyi
+ */
+@RestController
+@RequestMapping("/cluster")
+@ConditionalOnProperty(prefix = "sandbox.cluster", name = "role", havingValue = "dispatcher")
+public class ClusterController {
+
+    @Resource
+    private NodeRegistry nodeRegistry;
+
+    @PostMapping("/heartbeat")
+    public void heartbeat(@RequestBody NodeHeartbeat heartbeat,
+                          HttpServletRequest request,
+                          HttpServletResponse response) {
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        if (heartbeat == null || heartbeat.getNodeId() == null || heartbeat.getUrl() == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        nodeRegistry.heartbeat(heartbeat);
+    }
+
+    /**
+     * 已注册的工作节点最近一次汇报的容量
+     */
+    @GetMapping("/nodes")
+    public List<NodeHeartbeat> listNodes(HttpServletRequest request, HttpServletResponse response) {
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        return nodeRegistry.getNodes().stream()
+                .map(WorkerNode::getHeartbeat)
+                .collect(Collectors.toList());
+    }
+
+    private boolean isAuthorized(HttpServletRequest request) {
+        return MainController.AUTH_REQUEST_SECRET.equals(request.getHeader(MainController.AUTH_REQUEST_HEADER));
+    }
+}
@@ -1,59 +1,464 @@
 package com.yanweiyi.micodecodesandbox.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.model.BatchExecuteRequest;
+import com.yanweiyi.micodecodesandbox.model.BatchExecuteResult;
+import com.yanweiyi.micodecodesandbox.model.BatchSubmission;
 import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
 import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.ExecuteJobResponse;
+import com.yanweiyi.micodecodesandbox.model.TestDataResponse;
+import com.yanweiyi.micodecodesandbox.model.TestDataUploadRequest;
 import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
 import com.yanweiyi.micodecodesandbox.sandbox.docker.factory.DockerCodeSandboxFactory;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RestController;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import com.yanweiyi.micodecodesandbox.scheduler.BatchExecution;
+import com.yanweiyi.micodecodesandbox.scheduler.BatchExecutor;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionJob;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionRejectedException;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionScheduler;
+import com.yanweiyi.micodecodesandbox.testdata.TestDataStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author yanweiyi
  */
+@Slf4j
 @RestController("/")
 public class MainController {
 
     /**
      * 鉴权请求头和密钥
      */
-    private static final String AUTH_REQUEST_HEADER = "nnnu";
+    public static final String AUTH_REQUEST_HEADER = "nnnu";
 
-    private static final String AUTH_REQUEST_SECRET = "231510029";
+    public static final String AUTH_REQUEST_SECRET = "231510029";
 
+    /**
+     * 请求过多时返回的状态码
+     */
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * 批量执行结果的 NDJSON 格式，每行一个 JSON
+     */
+    private static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+
+    @Resource
+    private DockerCodeSandboxFactory dockerCodeSandboxFactory;
+
+    @Resource
+    private ExecutionScheduler executionScheduler;
+
+    @Resource
+    private SchedulerProperties schedulerProperties;
+
+    @Resource
+    private ExecutionProperties executionProperties;
+
+    @Resource
+    private TestDataStore testDataStore;
+
+    @Resource
+    private BatchExecutor batchExecutor;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 同步执行代码，请求在调度器中排队，执行完成后返回结果
+     */
     @PostMapping("/executeCode")
-    public ExecuteCodeResponse executeCode(@RequestBody ExecuteCodeRequest executeCodeRequest,
+    public CompletableFuture<ExecuteCodeResponse> executeCode(@RequestBody ExecuteCodeRequest executeCodeRequest,
+                                                              HttpServletRequest request,
+                                                              HttpServletResponse response) {
+        ExecutionJob job = submitJob(executeCodeRequest, request, response);
+        if (job == null) {
+            return null;
+        }
+        return job.getFuture();
+    }
+
+    /**
+     * 异步执行代码，立即返回任务 id
+     */
+    @PostMapping("/executeCode/async")
+    public ExecuteJobResponse executeCodeAsync(@RequestBody ExecuteCodeRequest executeCodeRequest,
+                                               HttpServletRequest request,
+                                               HttpServletResponse response) {
+        ExecutionJob job = submitJob(executeCodeRequest, request, response);
+        if (job == null) {
+            return null;
+        }
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        return toJobResponse(job);
+    }
+
+    /**
+     * 查询异步执行结果，waitMillis 大于 0 时长轮询等待任务完成
+     */
+    @GetMapping("/executeCode/result/{jobId}")
+    public DeferredResult<ExecuteJobResponse> getExecuteResult(@PathVariable String jobId,
+                                                               @RequestParam(defaultValue = "0") long waitMillis,
+                                                               HttpServletRequest request,
+                                                               HttpServletResponse response) {
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        ExecutionJob job = executionScheduler.getJob(jobId);
+        if (job == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        long timeoutMillis = Math.min(Math.max(waitMillis, 0L), schedulerProperties.getMaxPollWaitMillis());
+        // 等待超时时返回任务当前状态
+        DeferredResult<ExecuteJobResponse> deferredResult = new DeferredResult<>(timeoutMillis, () -> toJobResponse(job));
+        if (timeoutMillis == 0 || job.getFuture().isDone()) {
+            deferredResult.setResult(toJobResponse(job));
+        } else {
+            job.getFuture().whenComplete((executeCodeResponse, throwable) -> deferredResult.setResult(toJobResponse(job)));
+        }
+        return deferredResult;
+    }
+
+    /**
+     * 取消执行任务，排队中的任务直接移出队列，执行中的任务立即停止
+     */
+    @PostMapping("/executeCode/cancel/{jobId}")
+    public ExecuteJobResponse cancelExecute(@PathVariable String jobId,
+                                            HttpServletRequest request,
+                                            HttpServletResponse response) {
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        ExecutionJob job = executionScheduler.getJob(jobId);
+        if (job == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        if (!executionScheduler.cancel(jobId)) {
+            // 任务已经完成，无法取消
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+        }
+        return toJobResponse(job);
+    }
+
+    /**
+     * 批量执行代码，用于测试数据变化后重判大量提交
+     * <p>
+     * 所有提交共享同一组用例，inputList 只上传一次并在容器间共享；提交在调度器的低优先级队列中按窗口执行，
+     * 完全相同的代码只执行一次。结果按完成顺序流式返回：Accept 为 text/event-stream 时每个结果为一个 result 事件，
+     * 全部完成后发送 done 事件；否则以 NDJSON 每行返回一个结果。客户端断开时停止剩余的提交。
+     */
+    @PostMapping("/executeCode/batch")
+    public ResponseBodyEmitter executeCodeBatch(@RequestBody BatchExecuteRequest batchExecuteRequest,
+                                                HttpServletRequest request,
+                                                HttpServletResponse response) throws IOException {
+        // 请求参数校验
+        List<BatchSubmission> submissions = batchExecuteRequest == null ? null : batchExecuteRequest.getSubmissions();
+        if (submissions == null || submissions.isEmpty() || submissions.size() > schedulerProperties.getMaxBatchSize()
+                || !isValidLimits(batchExecuteRequest.getTimeLimit(), batchExecuteRequest.getMemoryLimit(),
+                batchExecuteRequest.getCpuLimit())) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        List<String> inputList = batchExecuteRequest.getInputList();
+        List<String> expectedOutputList = batchExecuteRequest.getExpectedOutputList();
+        String testDataId = batchExecuteRequest.getTestDataId();
+        if (testDataId == null && (inputList == null
+                || (expectedOutputList != null && expectedOutputList.size() != inputList.size()))) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        // 根据语言选择代码沙箱
+        List<DockerCodeSandbox> dockerCodeSandboxes = new ArrayList<>(submissions.size());
+        for (BatchSubmission submission : submissions) {
+            DockerCodeSandbox dockerCodeSandbox = submission == null ? null
+                    : dockerCodeSandboxFactory.getCodeSandbox(submission.getLanguage());
+            if (dockerCodeSandbox == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+            dockerCodeSandboxes.add(dockerCodeSandbox);
+        }
+        // 用例只上传一次，所有提交引用同一个测试数据集
+        if (testDataId == null) {
+            testDataId = testDataStore.upload(inputList, expectedOutputList);
+        } else if (!testDataStore.exists(testDataId)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        List<ExecuteCodeRequest> executeCodeRequests = new ArrayList<>(submissions.size());
+        for (BatchSubmission submission : submissions) {
+            executeCodeRequests.add(toExecuteCodeRequest(batchExecuteRequest, submission, testDataId));
+        }
+
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        boolean eventStream = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        ResponseBodyEmitter emitter;
+        if (eventStream) {
+            emitter = new SseEmitter(schedulerProperties.getBatchTimeoutMillis());
+        } else {
+            emitter = new ResponseBodyEmitter(schedulerProperties.getBatchTimeoutMillis());
+            response.setContentType(APPLICATION_NDJSON.toString());
+        }
+        BatchResultWriter batchResultWriter = new BatchResultWriter(emitter, eventStream, submissions);
+        BatchExecution batchExecution = batchExecutor.execute(dockerCodeSandboxes, executeCodeRequests,
+                batchResultWriter::write, batchResultWriter::complete);
+        batchResultWriter.setBatchExecution(batchExecution);
+        // 超时或客户端断开时停止剩余的提交
+        emitter.onTimeout(batchExecution::cancel);
+        emitter.onError(throwable -> batchExecution.cancel());
+        log.info("batch of {} submissions started, {} distinct executions", submissions.size(),
+                batchExecution.getExecutionCount());
+        return emitter;
+    }
+
+    /**
+     * 上传测试数据集，之后的执行请求可以通过返回的 id 引用
+     */
+    @PostMapping("/testData")
+    public TestDataResponse uploadTestData(@RequestBody TestDataUploadRequest testDataUploadRequest,
                                            HttpServletRequest request,
-                                           HttpServletResponse response) {
+                                           HttpServletResponse response) throws IOException {
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        // 请求参数校验
+        List<String> inputList = testDataUploadRequest.getInputList();
+        List<String> expectedOutputList = testDataUploadRequest.getExpectedOutputList();
+        if (inputList == null || (expectedOutputList != null && expectedOutputList.size() != inputList.size())) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        String testDataId = testDataStore.upload(inputList, expectedOutputList);
+        return toTestDataResponse(testDataId, inputList.size(), expectedOutputList != null);
+    }
+
+    /**
+     * 查询测试数据集是否仍然可用，已被淘汰时返回 404，需要重新上传
+     */
+    @GetMapping("/testData/{testDataId}")
+    public TestDataResponse getTestData(@PathVariable String testDataId,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response) throws IOException {
+        // 权限认证
+        if (!isAuthorized(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+        CaseRunnerCodec.CaseInputs caseInputs = testDataStore.load(testDataId);
+        if (caseInputs == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        return toTestDataResponse(testDataId, caseInputs.getInputList().size(), caseInputs.getExpectedOutputList() != null);
+    }
+
+    @GetMapping("/health")
+    public String healthCheck() {
+        return "ok";
+    }
+
+    /**
+     * 校验请求并提交到调度器
+     *
+     * @return 执行任务，请求不合法或被拒绝时设置响应状态码并返回 null
+     */
+    private ExecutionJob submitJob(ExecuteCodeRequest executeCodeRequest,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) {
         // 请求参数校验
         if (executeCodeRequest == null) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             return null;
         }
+        if (!isValidLimits(executeCodeRequest.getTimeLimit(), executeCodeRequest.getMemoryLimit(),
+                executeCodeRequest.getCpuLimit())) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        // 必须提供用例输入或引用测试数据集
+        if (executeCodeRequest.getInputList() == null && executeCodeRequest.getTestDataId() == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
         // 权限认证
-        String authHeader = request.getHeader(AUTH_REQUEST_HEADER);
-        if (!AUTH_REQUEST_SECRET.equals(authHeader)) {
+        if (!isAuthorized(request)) {
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
             return null;
         }
         // 根据语言选择代码沙箱
-        DockerCodeSandbox dockerCodeSandbox = DockerCodeSandboxFactory
+        DockerCodeSandbox dockerCodeSandbox = dockerCodeSandboxFactory
                 .getCodeSandbox(executeCodeRequest.getLanguage());
         if (dockerCodeSandbox == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return null;
         }
-        return dockerCodeSandbox.executeCode(executeCodeRequest);
+        // 引用的测试数据集不存在或已被淘汰，需要重新上传
+        String testDataId = executeCodeRequest.getTestDataId();
+        if (testDataId != null && !testDataStore.exists(testDataId)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        try {
+            return executionScheduler.submit(dockerCodeSandbox, executeCodeRequest);
+        } catch (ExecutionRejectedException e) {
+            // 等待队列已满，通知客户端稍后重试
+            response.setStatus(SC_TOO_MANY_REQUESTS);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(schedulerProperties.getRetryAfterSeconds()));
+            return null;
+        }
     }
 
-    @GetMapping("/health")
-    public String healthCheck() {
-        return "ok";
+    /**
+     * 校验请求的时间、内存和 CPU 限制，未提供的限制不校验
+     */
+    private boolean isValidLimits(Long timeLimit, Long memoryLimit, Double cpuLimit) {
+        if (timeLimit != null && (timeLimit <= 0 || timeLimit > executionProperties.getMaxTimeLimitMillis())) {
+            return false;
+        }
+        if (memoryLimit != null && (memoryLimit < executionProperties.getMinMemoryLimitBytes()
+                || memoryLimit > executionProperties.getMaxMemoryLimitBytes())) {
+            return false;
+        }
+        return cpuLimit == null || (cpuLimit > 0 && cpuLimit <= executionProperties.getMaxCpuLimit());
+    }
+
+    private boolean isAuthorized(HttpServletRequest request) {
+        String authHeader = request.getHeader(AUTH_REQUEST_HEADER);
+        return AUTH_REQUEST_SECRET.equals(authHeader);
+    }
+
+    private static TestDataResponse toTestDataResponse(String testDataId, int caseCount, boolean hasExpectedOutput) {
+        TestDataResponse testDataResponse = new TestDataResponse();
+        testDataResponse.setTestDataId(testDataId);
+        testDataResponse.setCaseCount(caseCount);
+        testDataResponse.setHasExpectedOutput(hasExpectedOutput);
+        return testDataResponse;
+    }
+
+    private static ExecuteCodeRequest toExecuteCodeRequest(BatchExecuteRequest batchExecuteRequest,
+                                                           BatchSubmission submission, String testDataId) {
+        ExecuteCodeRequest executeCodeRequest = new ExecuteCodeRequest();
+        executeCodeRequest.setLanguage(submission.getLanguage());
+        executeCodeRequest.setCode(submission.getCode());
+        executeCodeRequest.setTestDataId(testDataId);
+        executeCodeRequest.setFailFast(batchExecuteRequest.getFailFast());
+        executeCodeRequest.setTimeLimit(batchExecuteRequest.getTimeLimit());
+        executeCodeRequest.setMemoryLimit(batchExecuteRequest.getMemoryLimit());
+        executeCodeRequest.setCpuLimit(batchExecuteRequest.getCpuLimit());
+        executeCodeRequest.setBypassCache(batchExecuteRequest.getBypassCache());
+        return executeCodeRequest;
+    }
+
+    private static ExecuteJobResponse toJobResponse(ExecutionJob job) {
+        ExecuteJobResponse executeJobResponse = new ExecuteJobResponse();
+        executeJobResponse.setJobId(job.getJobId());
+        executeJobResponse.setStatus(job.getStatus().getValue());
+        executeJobResponse.setResult(job.getFuture().getNow(null));
+        return executeJobResponse;
     }
 
+
+    /**
+     * 将批量执行的结果写入流式响应，写入失败（客户端已断开）时停止剩余的提交
+     */
+    private class BatchResultWriter {
+
+        private final ResponseBodyEmitter emitter;
+
+        private final boolean eventStream;
+
+        private final List<BatchSubmission> submissions;
+
+        private BatchExecution batchExecution;
+
+        // 批量执行开始前写入失败时，在设置批量执行后取消
+        private boolean failed;
+
+        BatchResultWriter(ResponseBodyEmitter emitter, boolean eventStream, List<BatchSubmission> submissions) {
+            this.emitter = emitter;
+            this.eventStream = eventStream;
+            this.submissions = submissions;
+        }
+
+        void setBatchExecution(BatchExecution batchExecution) {
+            boolean cancel;
+            synchronized (this) {
+                this.batchExecution = batchExecution;
+                cancel = failed;
+            }
+            if (cancel) {
+                batchExecution.cancel();
+            }
+        }
+
+        void write(Integer index, ExecuteCodeResponse executeCodeResponse) {
+            BatchExecuteResult batchExecuteResult = new BatchExecuteResult();
+            batchExecuteResult.setIndex(index);
+            batchExecuteResult.setSubmissionId(submissions.get(index).getSubmissionId());
+            batchExecuteResult.setResult(executeCodeResponse);
+            try {
+                if (eventStream) {
+                    ((SseEmitter) emitter).send(SseEmitter.event().name("result")
+                            .data(batchExecuteResult, MediaType.APPLICATION_JSON));
+                } else {
+                    // 每行作为一次完整的写入，避免不同线程的结果交错
+                    emitter.send(objectMapper.writeValueAsString(batchExecuteResult) + "\n", APPLICATION_NDJSON);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.warn("error writing batch result, cancelling remaining submissions: {}", e.getMessage());
+                BatchExecution execution;
+                synchronized (this) {
+                    failed = true;
+                    execution = batchExecution;
+                }
+                if (execution != null) {
+                    execution.cancel();
+                }
+                emitter.completeWithError(e);
+            }
+        }
+
+        void complete() {
+            try {
+                if (eventStream) {
+                    ((SseEmitter) emitter).send(SseEmitter.event().name("done").data(submissions.size()));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,175 @@
+package com.yanweiyi.micodecodesandbox.metrics;
+
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码执行各阶段的监控指标，所有指标按语言打标签，通过 Actuator 的 /actuator/prometheus 暴露
+ * <p>
+ * 耗时指标记录为直方图，可以在 Prometheus 中按任意分位数聚合，用于判断延迟主要来自编译、Docker 还是用户代码。
+ *
+ * @author yanweiyi
+ */
+@Component
+public class SandboxMetrics {
+
+    public static final String COMPILE_TIMER = "sandbox.compile";
+
+    public static final String CONTAINER_CREATE_TIMER = "sandbox.container.create";
+
+    public static final String CONTAINER_START_TIMER = "sandbox.container.start";
+
+    public static final String CONTAINER_CLEANUP_TIMER = "sandbox.container.cleanup";
+
+    public static final String CASE_EXEC_TIMER = "sandbox.case.exec";
+
+    public static final String EXEC_KILL_TIMER = "sandbox.exec.kill";
+
+    public static final String DOCKER_API_TIMER = "sandbox.docker.api";
+
+    public static final String EXECUTION_COUNTER = "sandbox.executions";
+
+    public static final String CLEANUP_FAILURE_COUNTER = "sandbox.cleanup.failures";
+
+    public static final String RESULT_CACHE_COUNTER = "sandbox.result.cache";
+
+    public static final String LANGUAGE_TAG = "language";
+
+    private final MeterRegistry meterRegistry;
+
+    public SandboxMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录一次编译的耗时（含缓存命中）
+     *
+     * @param success 是否编译成功
+     */
+    public void recordCompile(String language, boolean success, long elapsedNanos) {
+        timer(COMPILE_TIMER, "compile time", language, "result", success ? "success" : "error")
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录创建容器的耗时
+     */
+    public void recordContainerCreate(String language, long elapsedNanos) {
+        timer(CONTAINER_CREATE_TIMER, "container create time", language).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录启动容器的耗时
+     */
+    public void recordContainerStart(String language, long elapsedNanos) {
+        timer(CONTAINER_START_TIMER, "container start time", language).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录归还容器时清理的耗时
+     *
+     * @param action reset 为清空工作目录后复用，destroy 为销毁容器
+     */
+    public void recordContainerCleanup(String language, String action, long elapsedNanos) {
+        timer(CONTAINER_CLEANUP_TIMER, "container cleanup time", language, "action", action)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录单个用例的执行耗时
+     */
+    public void recordCaseExec(String language, long elapsedMillis) {
+        timer(CASE_EXEC_TIMER, "per-case execution time", language).record(elapsedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录停止未正常结束的命令的耗时，即从开始停止到容器中的命令进程退出
+     */
+    public void recordExecKill(String language, long killLatencyNanos) {
+        timer(EXEC_KILL_TIMER, "time to kill a timed-out or stopped exec", language)
+                .record(killLatencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次 Docker 接口调用的耗时，调用次数即为计时器的计数
+     *
+     * @param method   HTTP 方法
+     * @param endpoint 去掉版本和 id 后的接口路径
+     * @param status   响应状态码类别（如 2xx），调用出错时为 error
+     */
+    public void recordDockerApiCall(String method, String endpoint, String status, long elapsedNanos) {
+        Timer.builder(DOCKER_API_TIMER)
+                .description("docker api call latency until response headers")
+                .tag("method", method)
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 按实际执行的结果计数
+     */
+    public void recordOutcome(String language, ExecuteInfoEnum outcome) {
+        recordOutcome(language, outcome, false);
+    }
+
+    /**
+     * 按执行结果计数
+     *
+     * @param cached 结果来自缓存或合并到执行中的相同提交时为 true，以 source=cache 单独计数，不计入实际执行
+     */
+    public void recordOutcome(String language, ExecuteInfoEnum outcome, boolean cached) {
+        Counter.builder(EXECUTION_COUNTER)
+                .description("submissions by outcome")
+                .tag(LANGUAGE_TAG, language)
+                .tag("outcome", outcome.name().toLowerCase())
+                .tag("source", cached ? "cache" : "execution")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次重试后仍失败、留给定期回收的清理任务
+     */
+    public void recordCleanupFailure(String language) {
+        Counter.builder(CLEANUP_FAILURE_COUNTER)
+                .description("cleanup tasks given up after retries")
+                .tag(LANGUAGE_TAG, language)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次结果缓存查询
+     *
+     * @param result hit 为命中缓存，coalesced 为合并到执行中的相同提交，miss 为需要执行，bypass 为请求跳过缓存
+     */
+    public void recordResultCache(String language, String result) {
+        Counter.builder(RESULT_CACHE_COUNTER)
+                .description("result cache lookups by result")
+                .tag(LANGUAGE_TAG, language)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    private Timer timer(String name, String description, String language, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(LANGUAGE_TAG, language)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量执行请求：多个提交使用同一组用例和限制
+ *
+ * @author yanweiyi
+ */
+@Data
+public class BatchExecuteRequest {
+    /**
+     * 待执行的提交
+     */
+    List<BatchSubmission> submissions;
+
+    /**
+     * 输入用例，所有提交共享，只上传一次
+     */
+    List<String> inputList;
+
+    /**
+     * 预期输出，可选
+     */
+    List<String> expectedOutputList;
+
+    /**
+     * 测试数据集 id，可选，提供时使用已上传的数据集代替 inputList 和 expectedOutputList
+     */
+    String testDataId;
+
+    /**
+     * 是否在第一个失败的用例后停止执行，可选，未提供时使用服务端配置
+     */
+    Boolean failFast;
+
+    /**
+     * 单个用例的时间限制（ms），可选
+     */
+    Long timeLimit;
+
+    /**
+     * 单个用例的内存限制（byte），可选
+     */
+    Long memoryLimit;
+
+    /**
+     * 可以使用的 CPU 核数，可选
+     */
+    Double cpuLimit;
+
+    /**
+     * 是否跳过结果缓存，可选，重判时测试数据变化前的结果已不可用，需要设置为 true
+     */
+    Boolean bypassCache;
+}
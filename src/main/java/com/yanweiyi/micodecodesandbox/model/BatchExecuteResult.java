@@ -0,0 +1,26 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+/**
+ * 批量执行中一个提交的结果，按完成顺序返回
+ *
+ * @author yanweiyi
+ */
+@Data
+public class BatchExecuteResult {
+    /**
+     * 提交在请求中的下标
+     */
+    Integer index;
+
+    /**
+     * 调用方的提交 id
+     */
+    String submissionId;
+
+    /**
+     * 执行结果
+     */
+    ExecuteCodeResponse result;
+}
@@ -0,0 +1,26 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+/**
+ * 批量执行中的一个提交
+ *
+ * @author yanweiyi
+ */
+@Data
+public class BatchSubmission {
+    /**
+     * 调用方的提交 id，可选，原样返回在结果中
+     */
+    String submissionId;
+
+    /**
+     * 待执行代码
+     */
+    String code;
+
+    /**
+     * 代码语言
+     */
+    String language;
+}
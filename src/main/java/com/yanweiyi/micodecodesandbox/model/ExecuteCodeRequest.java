@@ -14,6 +14,41 @@ public class ExecuteCodeRequest {
      */
     List<String> inputList;
 
+    /**
+     * 预期输出，可选，提供时在执行过程中逐字节比对，第一次不一致时立即停止
+     */
+    List<String> expectedOutputList;
+
+    /**
+     * 测试数据集 id，可选，提供时使用已上传的数据集代替 inputList 和 expectedOutputList
+     */
+    String testDataId;
+
+    /**
+     * 是否在第一个失败的用例后停止执行，可选，未提供时使用服务端配置；关闭时执行全部用例以便按用例计分
+     */
+    Boolean failFast;
+
+    /**
+     * 单个用例的时间限制（ms），可选，未提供时使用语言运行时的默认值，不能超过服务端配置的上限
+     */
+    Long timeLimit;
+
+    /**
+     * 单个用例的内存限制（byte），可选，未提供时使用语言运行时的默认值，不能超过服务端配置的上限
+     */
+    Long memoryLimit;
+
+    /**
+     * 可以使用的 CPU 核数，可选，可以是小数，未提供时使用容器池配置，不能超过服务端配置的上限
+     */
+    Double cpuLimit;
+
+    /**
+     * 是否跳过结果缓存，可选，需要重新测量时间和内存时设置为 true，执行结果仍会更新缓存
+     */
+    Boolean bypassCache;
+
     /**
      * 待执行代码
      */
@@ -26,10 +26,20 @@ public class ExecuteCodeResponse {
     private List<Long> memoryUsedList;
 
     /**
-     * 程序执行消耗的时间，单位为 ms
+     * 程序执行消耗的墙钟时间，单位为 ms
      */
     private List<Long> timeUsedList;
 
+    /**
+     * 程序执行消耗的 CPU 时间（user + sys），单位为 ms，无法测量时为 null
+     */
+    private List<Long> cpuTimeUsedList;
+
+    /**
+     * 每个已执行用例的执行状态
+     */
+    private List<Integer> caseStatusList;
+
     /**
      * 执行状态
      */
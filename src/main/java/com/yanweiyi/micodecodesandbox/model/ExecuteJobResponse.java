@@ -0,0 +1,27 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+/**
+ * 异步执行任务的状态和结果
+ *
+ * @author yanweiyi
+ */
+@Data
+public class ExecuteJobResponse {
+
+    /**
+     * 任务 id
+     */
+    private String jobId;
+
+    /**
+     * 任务状态
+     */
+    private String status;
+
+    /**
+     * 执行结果（任务完成后才有）
+     */
+    private ExecuteCodeResponse result;
+}
@@ -26,10 +26,15 @@ public class ExecuteMessage {
     private Long memoryUsed;
 
     /**
-     * 程序执行消耗的时间，单位为 ms
+     * 程序执行消耗的墙钟时间，单位为 ms
      */
     private Long timeUsed;
 
+    /**
+     * 程序执行消耗的 CPU 时间，单位为 ms
+     */
+    private Long cpuTimeUsed;
+
     /**
      * 程序是否执行超时
      */
@@ -39,5 +44,15 @@ public class ExecuteMessage {
      * 程序是否内存溢出
      */
     private Boolean isMemoryOverflow;
+
+    /**
+     * 程序输出是否超出上限
+     */
+    private Boolean isOutputLimitExceeded;
+
+    /**
+     * 程序输出是否与预期输出不一致
+     */
+    private Boolean isWrongAnswer;
 }
 
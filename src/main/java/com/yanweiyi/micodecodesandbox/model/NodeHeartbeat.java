@@ -0,0 +1,50 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作节点定时发送给调度节点的心跳，包含节点当前的容量
+ *
+ * @author yanweiyi
+ */
+@Data
+public class NodeHeartbeat {
+
+    /**
+     * 节点 id
+     */
+    private String nodeId;
+
+    /**
+     * 节点的访问地址
+     */
+    private String url;
+
+    /**
+     * 各语言的空闲容器数，只包含节点支持的语言
+     */
+    private Map<String, Integer> idleContainers;
+
+    /**
+     * 同时执行的提交数上限
+     */
+    private int concurrency;
+
+    /**
+     * 正在执行的提交数
+     */
+    private int activeCount;
+
+    /**
+     * 排队等待的提交数
+     */
+    private int queueSize;
+
+    /**
+     * 节点上仍然可用的测试数据集 id
+     */
+    private List<String> testDataIds;
+}
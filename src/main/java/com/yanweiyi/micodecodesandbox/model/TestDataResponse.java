@@ -0,0 +1,27 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+/**
+ * 测试数据集信息
+ *
+ * @author yanweiyi
+ */
+@Data
+public class TestDataResponse {
+
+    /**
+     * 数据集 id，执行代码时通过该 id 引用数据集
+     */
+    private String testDataId;
+
+    /**
+     * 用例数
+     */
+    private Integer caseCount;
+
+    /**
+     * 是否包含预期输出
+     */
+    private Boolean hasExpectedOutput;
+}
@@ -0,0 +1,24 @@
+package com.yanweiyi.micodecodesandbox.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 上传测试数据集的请求
+ *
+ * @author yanweiyi
+ */
+@Data
+public class TestDataUploadRequest {
+
+    /**
+     * 输入用例
+     */
+    private List<String> inputList;
+
+    /**
+     * 预期输出，可选，提供时数量需与输入用例一致
+     */
+    private List<String> expectedOutputList;
+}
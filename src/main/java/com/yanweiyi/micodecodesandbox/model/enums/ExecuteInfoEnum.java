@@ -17,7 +17,10 @@ public enum ExecuteInfoEnum {
     EXECUTION_TIMEOUT("执行超时", 3),
     EXECUTION_ERROR("执行错误", 4),
     SYSTEM_ERROR("系统错误", 5),
-    MEMORY_OVERFLOW("内存溢出", 6);
+    MEMORY_OVERFLOW("内存溢出", 6),
+    OUTPUT_LIMIT_EXCEEDED("输出超限", 7),
+    WRONG_ANSWER("答案错误", 8),
+    CANCELLED("已取消", 9);
 
     private final String message;
 
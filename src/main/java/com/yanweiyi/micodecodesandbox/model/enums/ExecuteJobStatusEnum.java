@@ -0,0 +1,24 @@
+package com.yanweiyi.micodecodesandbox.model.enums;
+
+import lombok.Getter;
+
+/**
+ * 异步执行任务状态枚举
+ */
+@Getter
+public enum ExecuteJobStatusEnum {
+
+    QUEUED("排队中", "queued"),
+    RUNNING("执行中", "running"),
+    FINISHED("已完成", "finished"),
+    CANCELLED("已取消", "cancelled");
+
+    private final String message;
+
+    private final String value;
+
+    ExecuteJobStatusEnum(String message, String value) {
+        this.message = message;
+        this.value = value;
+    }
+}
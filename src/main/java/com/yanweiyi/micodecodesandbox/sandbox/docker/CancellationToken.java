@@ -0,0 +1,73 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 代码执行的取消信号
+ * <p>
+ * 执行过程中正在进行的操作（如容器命令）通过 {@link #onCancel(Runnable)} 注册取消回调，
+ * 调用 {@link #cancel()} 时立即执行全部回调；取消后注册的回调会被立即执行。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+public class CancellationToken {
+
+    private final Set<Runnable> callbacks = new LinkedHashSet<>();
+
+    private boolean cancelled;
+
+    /**
+     * 取消执行，重复调用无效果
+     */
+    public void cancel() {
+        List<Runnable> cancelCallbacks;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancelCallbacks = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        cancelCallbacks.forEach(CancellationToken::runQuietly);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 注册取消回调
+     *
+     * @return 注销该回调的操作，操作结束后调用以免回调堆积
+     */
+    public Runnable onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        runQuietly(callback);
+        return () -> {
+        };
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.error("error running cancel callback: {}", e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.yanweiyi.micodecodesandbox.sandbox.docker;
 import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
 import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author yanweiyi
  */
@@ -12,4 +14,35 @@ public interface DockerCodeSandbox {
      * 执行代码
      */
     ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest);
+
+    /**
+     * 异步执行代码，执行完成时结果通过回调返回，等待期间不占用线程
+     * <p>
+     * 默认在调用线程上同步执行
+     */
+    default CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest) {
+        return CompletableFuture.completedFuture(executeCode(executeCodeRequest));
+    }
+
+    /**
+     * 可取消的异步执行，取消时停止正在执行的用例并以已取消状态返回
+     * <p>
+     * 默认不支持取消
+     */
+    default CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest,
+                                                                    CancellationToken cancellationToken) {
+        return executeCodeAsync(executeCodeRequest);
+    }
+
+    /**
+     * 只查询结果缓存，命中或合并到正在执行的相同提交时返回结果，调度器据此跳过排队
+     * <p>
+     * 默认不缓存，返回 null
+     *
+     * @return 需要执行时返回 null
+     */
+    default CompletableFuture<ExecuteCodeResponse> findCached(ExecuteCodeRequest executeCodeRequest,
+                                                              CancellationToken cancellationToken) {
+        return null;
+    }
 }
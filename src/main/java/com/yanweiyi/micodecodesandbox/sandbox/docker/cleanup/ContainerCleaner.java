@@ -0,0 +1,263 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 容器和工作目录的清理器
+ * <p>
+ * 清理任务进入有界队列，由固定数量的清理线程批量取出执行，失败时按指数退避重试；
+ * 队列已满时由提交任务的线程直接执行，避免清理积压无限增长。多次重试仍失败的容器和目录留给
+ * {@link ContainerReaper} 定期回收。创建的容器都带有所有者标签，服务异常退出后也能找到遗留的容器。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class ContainerCleaner {
+
+    /**
+     * 容器所有者标签，值为沙箱实例的所有者名称
+     */
+    public static final String OWNER_LABEL = "micode.sandbox.owner";
+
+    /**
+     * 容器语言标签
+     */
+    public static final String LANGUAGE_LABEL = "micode.sandbox.language";
+
+    private final CleanupProperties cleanupProperties;
+
+    private final DockerClient dockerClient;
+
+    private final SandboxMetrics sandboxMetrics;
+
+    private final String owner;
+
+    // 等待清理的任务
+    private final BlockingQueue<CleanupTask> pendingTasks;
+
+    // 已提交但尚未清理完成的容器 id 和工作目录，避免重复提交
+    private final Set<String> pendingTargets = ConcurrentHashMap.newKeySet();
+
+    // 正在执行的清理任务数
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean closed = false;
+
+    public ContainerCleaner(CleanupProperties cleanupProperties, DockerClient dockerClient, SandboxMetrics sandboxMetrics) {
+        this.cleanupProperties = cleanupProperties;
+        this.dockerClient = dockerClient;
+        this.sandboxMetrics = sandboxMetrics;
+        this.owner = StrUtil.isBlank(cleanupProperties.getOwner()) ? getHostName() : cleanupProperties.getOwner();
+        this.pendingTasks = new ArrayBlockingQueue<>(Math.max(cleanupProperties.getQueueCapacity(), 1));
+        for (int i = 1; i <= Math.max(cleanupProperties.getThreads(), 1); i++) {
+            Thread worker = new Thread(this::processTasks, "container-cleaner-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 提交清理任务：强制删除容器并删除其工作目录
+     *
+     * @param containerId   容器 id，为 null 时只删除工作目录
+     * @param workspacePath 工作目录，为 null 时只删除容器
+     * @param onFinished    清理结束（无论成功与否）后执行，可以为 null
+     * @return 已提交时返回 true，同一个容器或目录已在等待清理时返回 false
+     */
+    public boolean submit(String language, String containerId, Path workspacePath, Runnable onFinished) {
+        String target = containerId != null ? containerId : String.valueOf(workspacePath);
+        if (!pendingTargets.add(target)) {
+            return false;
+        }
+        CleanupTask task = new CleanupTask(language, target, containerId, workspacePath, onFinished);
+        if (closed || !pendingTasks.offer(task)) {
+            // 队列已满或已关闭时在当前线程清理
+            log.warn("cleanup queue is full, cleaning up {} on the caller thread", target);
+            runningCount.incrementAndGet();
+            run(task);
+        }
+        return true;
+    }
+
+    /**
+     * 容器或工作目录是否在等待清理
+     */
+    public boolean isPending(String containerIdOrWorkspace) {
+        return pendingTargets.contains(containerIdOrWorkspace);
+    }
+
+    /**
+     * 等待和正在执行的清理任务数
+     */
+    public int getBacklog() {
+        return pendingTasks.size() + runningCount.get();
+    }
+
+    /**
+     * 当前实例创建的容器的所有者标签值
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * 停止接收新任务，等待队列中剩余的任务清理完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cleanupProperties.getShutdownTimeoutMillis());
+        for (Thread worker : workers) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                if (remainingMillis > 0) {
+                    worker.join(remainingMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int backlog = getBacklog();
+        if (backlog > 0) {
+            log.warn("{} cleanup tasks unfinished at shutdown, left for the reaper", backlog);
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 清理线程：每次取出一批任务依次执行，关闭后处理完队列中的剩余任务再退出
+     */
+    private void processTasks() {
+        List<CleanupTask> batch = new ArrayList<>();
+        while (!closed || !pendingTasks.isEmpty()) {
+            try {
+                CleanupTask task = pendingTasks.poll(1, TimeUnit.SECONDS);
+                if (task == null) {
+                    continue;
+                }
+                runningCount.incrementAndGet();
+                batch.add(task);
+                runningCount.addAndGet(pendingTasks.drainTo(batch, Math.max(cleanupProperties.getBatchSize(), 1) - 1));
+            } catch (InterruptedException e) {
+                return;
+            }
+            batch.forEach(this::run);
+            batch.clear();
+        }
+    }
+
+    private void run(CleanupTask task) {
+        long startNanos = System.nanoTime();
+        try {
+            boolean containerRemoved = task.containerId == null || retry(() -> removeContainer(task.containerId));
+            boolean workspaceDeleted = task.workspacePath == null || retry(() -> deleteWorkspace(task.workspacePath));
+            if (!containerRemoved || !workspaceDeleted) {
+                sandboxMetrics.recordCleanupFailure(task.language);
+                log.warn("giving up cleaning up {} after {} attempts, left for the reaper",
+                        task.target, cleanupProperties.getMaxAttempts());
+            }
+            sandboxMetrics.recordContainerCleanup(task.language, "destroy", System.nanoTime() - startNanos);
+        } finally {
+            pendingTargets.remove(task.target);
+            runningCount.decrementAndGet();
+            if (task.onFinished != null) {
+                task.onFinished.run();
+            }
+        }
+    }
+
+    private void removeContainer(String containerId) {
+        try {
+            dockerClient.removeContainerCmd(containerId).withForce(true).withRemoveVolumes(true).exec();
+        } catch (NotFoundException e) {
+            // 容器已经不存在
+        }
+    }
+
+    private static void deleteWorkspace(Path workspacePath) {
+        FileUtil.del(workspacePath);
+        if (Files.exists(workspacePath)) {
+            throw new IllegalStateException("workspace still exists: " + workspacePath);
+        }
+    }
+
+    /**
+     * 执行清理操作，失败时按指数退避重试
+     *
+     * @return 是否成功
+     */
+    private boolean retry(Runnable action) {
+        long backoffMillis = cleanupProperties.getRetryBackoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                action.run();
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= cleanupProperties.getMaxAttempts()) {
+                    log.error("cleanup failed after {} attempts: {}", attempt, e.getMessage());
+                    return false;
+                }
+                log.warn("cleanup attempt {} failed, retrying in {} ms: {}", attempt, backoffMillis, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoffMillis *= 2;
+        }
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    private static class CleanupTask {
+
+        private final String language;
+
+        private final String target;
+
+        private final String containerId;
+
+        private final Path workspacePath;
+
+        private final Runnable onFinished;
+
+        private CleanupTask(String language, String target, String containerId, Path workspacePath, Runnable onFinished) {
+            this.language = language;
+            this.target = target;
+            this.containerId = containerId;
+            this.workspacePath = workspacePath;
+            this.onFinished = onFinished;
+        }
+    }
+}
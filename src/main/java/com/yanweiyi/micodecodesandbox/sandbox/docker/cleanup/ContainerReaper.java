@@ -0,0 +1,128 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPoolManager;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.PooledContainer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期回收孤儿容器和过期工作目录
+ * <p>
+ * 带有当前实例所有者标签、但不属于任何容器池的容器（服务异常退出或清理多次失败后遗留的），
+ * 以及容器池工作目录下不属于任何现存容器的子目录，超过宽限期后交给 {@link ContainerCleaner} 清理。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class ContainerReaper {
+
+    @Resource
+    private CleanupProperties cleanupProperties;
+
+    @Resource
+    private ContainerCleaner containerCleaner;
+
+    @Resource
+    private DockerContainerPoolManager dockerContainerPoolManager;
+
+    @Resource
+    private DockerClient dockerClient;
+
+    @Resource
+    private ClusterProperties clusterProperties;
+
+    @Scheduled(initialDelayString = "${sandbox.cleanup.reap-interval:60000}",
+            fixedDelayString = "${sandbox.cleanup.reap-interval:60000}")
+    public void reap() {
+        // 调度节点不创建容器
+        if (clusterProperties.getRole() == ClusterProperties.Role.DISPATCHER) {
+            return;
+        }
+        Set<String> liveContainerIds = new HashSet<>();
+        Set<Path> liveWorkspaces = new HashSet<>();
+        for (DockerContainerPool pool : dockerContainerPoolManager.getPools()) {
+            for (PooledContainer container : pool.getLiveContainers()) {
+                liveContainerIds.add(container.getContainerId());
+                liveWorkspaces.add(container.getWorkspacePath());
+            }
+        }
+        long expireBefore = System.currentTimeMillis() - cleanupProperties.getOrphanGracePeriod();
+        try {
+            reapContainers(liveContainerIds, expireBefore);
+        } catch (RuntimeException e) {
+            log.error("error listing sandbox containers: {}", e.getMessage());
+        }
+        reapWorkspaces(liveWorkspaces, expireBefore);
+    }
+
+    /**
+     * 回收带有当前实例标签、但不属于任何容器池的容器
+     */
+    private void reapContainers(Set<String> liveContainerIds, long expireBefore) {
+        List<Container> containers = dockerClient.listContainersCmd()
+                .withShowAll(true)
+                .withLabelFilter(Collections.singletonMap(ContainerCleaner.OWNER_LABEL, containerCleaner.getOwner()))
+                .exec();
+        int reapedCount = 0;
+        for (Container container : containers) {
+            String containerId = container.getId();
+            if (liveContainerIds.contains(containerId) || containerCleaner.isPending(containerId)) {
+                continue;
+            }
+            // 刚创建、尚未加入容器池的容器不回收
+            if (container.getCreated() == null || TimeUnit.SECONDS.toMillis(container.getCreated()) > expireBefore) {
+                continue;
+            }
+            String language = container.getLabels() == null ? null : container.getLabels().get(ContainerCleaner.LANGUAGE_LABEL);
+            if (containerCleaner.submit(language == null ? "unknown" : language, containerId, null, null)) {
+                reapedCount++;
+            }
+        }
+        if (reapedCount > 0) {
+            log.warn("reaping {} orphaned sandbox containers", reapedCount);
+        }
+    }
+
+    /**
+     * 回收不属于任何现存容器的工作目录
+     */
+    private void reapWorkspaces(Set<Path> liveWorkspaces, long expireBefore) {
+        File[] workspaces = dockerContainerPoolManager.getWorkspaceRoot().toFile().listFiles(File::isDirectory);
+        if (workspaces == null) {
+            return;
+        }
+        int reapedCount = 0;
+        for (File workspace : workspaces) {
+            Path workspacePath = workspace.toPath();
+            if (liveWorkspaces.contains(workspacePath) || containerCleaner.isPending(workspacePath.toString())
+                    || workspace.lastModified() > expireBefore) {
+                continue;
+            }
+            // 工作目录名以语言开头，如 java-<uuid>
+            String language = workspace.getName().contains("-")
+                    ? workspace.getName().substring(0, workspace.getName().indexOf('-')) : "unknown";
+            if (containerCleaner.submit(language, null, workspacePath, null)) {
+                reapedCount++;
+            }
+        }
+        if (reapedCount > 0) {
+            log.warn("reaping {} stale sandbox workspaces", reapedCount);
+        }
+    }
+}
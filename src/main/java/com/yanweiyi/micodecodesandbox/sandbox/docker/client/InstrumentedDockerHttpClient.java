@@ -0,0 +1,109 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.client;
+
+import com.github.dockerjava.transport.DockerHttpClient;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.regex.Pattern;
+
+/**
+ * 记录每次 Docker 接口调用耗时的 HTTP 客户端，并暴露底层连接池的使用情况
+ * <p>
+ * 调用耗时为发出请求到收到响应头，流式接口（执行命令的输出、资源统计）不包含读取输出的时间。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+public class InstrumentedDockerHttpClient implements DockerHttpClient {
+
+    // 路径开头的接口版本，如 /v1.41
+    private static final Pattern VERSION_PATTERN = Pattern.compile("^/v[0-9.]+(?=/)");
+
+    // 路径中的容器 id 和命令 id
+    private static final Pattern ID_PATTERN = Pattern.compile("/[0-9a-f]{12,64}(?=/|$)");
+
+    private final DockerHttpClient delegate;
+
+    private final SandboxMetrics sandboxMetrics;
+
+    // httpclient5 的连接池，无法获取时为 null
+    private final ConnPoolControl<?> connectionPool;
+
+    public InstrumentedDockerHttpClient(DockerHttpClient delegate, SandboxMetrics sandboxMetrics) {
+        this.delegate = delegate;
+        this.sandboxMetrics = sandboxMetrics;
+        this.connectionPool = findConnectionPool(delegate);
+    }
+
+    @Override
+    public Response execute(Request request) {
+        long startNanos = System.nanoTime();
+        String status = "error";
+        try {
+            Response response = delegate.execute(request);
+            status = response.getStatusCode() / 100 + "xx";
+            return response;
+        } finally {
+            sandboxMetrics.recordDockerApiCall(request.method(), toEndpoint(request.path()), status,
+                    System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /**
+     * 连接池的总体状态：借出的连接、可以复用的空闲连接、等待连接的请求数和连接上限
+     *
+     * @return 连接池状态，无法获取连接池时返回 null
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionPool == null ? null : connectionPool.getTotalStats();
+    }
+
+    /**
+     * 去掉接口版本，将 id 替换为占位符，并去掉查询参数，避免指标的标签值无限增长
+     */
+    static String toEndpoint(String path) {
+        int queryIndex = path.indexOf('?');
+        String endpoint = queryIndex < 0 ? path : path.substring(0, queryIndex);
+        endpoint = VERSION_PATTERN.matcher(endpoint).replaceFirst("");
+        return ID_PATTERN.matcher(endpoint).replaceAll("/{id}");
+    }
+
+    /**
+     * docker-java 不暴露 httpclient5 的连接池，通过反射读取 ApacheDockerHttpClient.httpClient.connManager
+     */
+    private static ConnPoolControl<?> findConnectionPool(DockerHttpClient dockerHttpClient) {
+        try {
+            Object httpClient = readField(dockerHttpClient, "httpClient");
+            Object connectionManager = httpClient == null ? null : readField(httpClient, "connManager");
+            if (connectionManager instanceof ConnPoolControl) {
+                return (ConnPoolControl<?>) connectionManager;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("docker connection pool not accessible: {}", e.getMessage());
+        }
+        log.warn("docker connection pool metrics unavailable for {}", dockerHttpClient.getClass().getName());
+        return null;
+    }
+
+    private static Object readField(Object target, String name) throws ReflectiveOperationException {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(target);
+            } catch (NoSuchFieldException e) {
+                // 继续在父类中查找
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,736 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.engine;
+
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.ExecuteMessage;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.AsyncDockerExecutor;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.ExecOutputSink;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.ExecResult;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.input.InputFileCache;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.ResourceMeter;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.ResourceUsage;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPoolManager;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.PooledContainer;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.Workspace;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.CompiledProgram;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+import com.yanweiyi.micodecodesandbox.testdata.TestDataStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有语言共享的执行引擎
+ * <p>
+ * 负责编译、从容器池借出容器、写入工作目录、分片并行执行用例、资源计量和整理执行结果；
+ * 语言相关的镜像、编译步骤和运行命令由 {@link LanguageRuntime} 提供。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class ExecutionEngine {
+
+    // 每个用例结果帧头部的最大长度（byte）
+    private static final long FRAME_HEADER_BYTES = 128L;
+
+    // 工作目录中存放本次执行的用例输入文件的目录
+    private static final String INPUT_DIRECTORY = ".input";
+
+    @Resource
+    private DockerContainerPoolManager dockerContainerPoolManager;
+
+    @Resource
+    private ContainerPoolProperties containerPoolProperties;
+
+    @Resource
+    private ExecutionProperties executionProperties;
+
+    @Resource
+    private AsyncDockerExecutor asyncDockerExecutor;
+
+    @Resource
+    private ResourceMeter resourceMeter;
+
+    @Resource
+    private InputFileCache inputFileCache;
+
+    @Resource
+    private TestDataStore testDataStore;
+
+    @Resource
+    private SandboxMetrics sandboxMetrics;
+
+    @Resource
+    private ExecutionResultCache executionResultCache;
+
+    /**
+     * 异步执行代码，取消时停止正在执行的用例并以已取消状态返回
+     * <p>
+     * 开启结果缓存时，相同的提交直接返回缓存的结果或合并到正在进行的执行
+     */
+    public CompletableFuture<ExecuteCodeResponse> execute(LanguageRuntime runtime, ExecuteCodeRequest executeCodeRequest,
+                                                          CancellationToken cancellationToken) {
+        return executionResultCache.execute(runtime.getLanguage(), executeCodeRequest, cancellationToken,
+                token -> executeAndRecord(runtime, executeCodeRequest, token));
+    }
+
+    /**
+     * 只查询结果缓存，命中或合并到正在进行的相同提交时返回结果，需要执行时返回 null
+     */
+    public CompletableFuture<ExecuteCodeResponse> findCached(LanguageRuntime runtime, ExecuteCodeRequest executeCodeRequest,
+                                                             CancellationToken cancellationToken) {
+        return executionResultCache.lookup(runtime.getLanguage(), executeCodeRequest, cancellationToken);
+    }
+
+    /**
+     * 实际执行提交并按执行结果计数，缓存命中和合并的提交由结果缓存单独计数
+     */
+    private CompletableFuture<ExecuteCodeResponse> executeAndRecord(LanguageRuntime runtime,
+                                                                    ExecuteCodeRequest executeCodeRequest,
+                                                                    CancellationToken cancellationToken) {
+        CompletableFuture<ExecuteCodeResponse> responseFuture;
+        try {
+            responseFuture = doExecute(runtime, executeCodeRequest, cancellationToken);
+        } catch (RuntimeException e) {
+            responseFuture = AsyncDockerExecutor.failedFuture(e);
+        }
+        return responseFuture.whenComplete((executeCodeResponse, throwable) -> {
+            ExecuteInfoEnum outcome = throwable == null
+                    ? ExecuteInfoEnum.getEnumByValue(executeCodeResponse.getStatus()) : ExecuteInfoEnum.SYSTEM_ERROR;
+            sandboxMetrics.recordOutcome(runtime.getLanguage(), outcome == null ? ExecuteInfoEnum.SYSTEM_ERROR : outcome);
+        });
+    }
+
+    private CompletableFuture<ExecuteCodeResponse> doExecute(LanguageRuntime runtime, ExecuteCodeRequest executeCodeRequest,
+                                                             CancellationToken cancellationToken) {
+        String language = runtime.getLanguage();
+        // 获取请求中的输入列表、用户代码
+        List<String> inputList = executeCodeRequest.getInputList();
+        String userCode = executeCodeRequest.getCode();
+        List<String> expectedOutputList = executeCodeRequest.getExpectedOutputList();
+        boolean failFast = executeCodeRequest.getFailFast() != null
+                ? executeCodeRequest.getFailFast() : executionProperties.isFailFast();
+        long timeLimitMillis = executeCodeRequest.getTimeLimit() != null
+                ? executeCodeRequest.getTimeLimit() : runtime.getTimeLimitMillis();
+        long memoryLimitBytes = executeCodeRequest.getMemoryLimit() != null
+                ? executeCodeRequest.getMemoryLimit() : runtime.getMaxMemoryBytes();
+
+        // 准备执行结果响应对象
+        ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+        if (cancellationToken.isCancelled()) {
+            executeCodeResponse.setStatus(ExecuteInfoEnum.CANCELLED.getValue());
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+
+        // 引用了测试数据集时使用数据集中的用例
+        String testDataId = executeCodeRequest.getTestDataId();
+        if (testDataId != null) {
+            CaseRunnerCodec.CaseInputs caseInputs;
+            try {
+                caseInputs = testDataStore.load(testDataId);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("error loading test data {}: {}", testDataId, e.getMessage());
+                caseInputs = null;
+            }
+            if (caseInputs == null) {
+                executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+                executeCodeResponse.setErrorMessage("test data not found: " + testDataId);
+                return CompletableFuture.completedFuture(executeCodeResponse);
+            }
+            inputList = caseInputs.getInputList();
+            expectedOutputList = caseInputs.getExpectedOutputList();
+        }
+        // 未提供用例输入也未引用测试数据集时不执行
+        if (inputList == null) {
+            executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+            executeCodeResponse.setErrorMessage("no input list or test data id");
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+        // 预期输出与输入一一对应时才在执行过程中比对
+        if (expectedOutputList != null && expectedOutputList.size() != inputList.size()) {
+            log.warn("expected output count {} does not match input count {}, comparison skipped",
+                    expectedOutputList.size(), inputList.size());
+            expectedOutputList = null;
+        }
+
+        // 编译用户代码
+        CompiledProgram compiledProgram;
+        long compileStartNanos = System.nanoTime();
+        try {
+            compiledProgram = runtime.compile(userCode);
+            sandboxMetrics.recordCompile(language, compiledProgram.isSuccess(), System.nanoTime() - compileStartNanos);
+        } catch (RuntimeException e) {
+            sandboxMetrics.recordCompile(language, false, System.nanoTime() - compileStartNanos);
+            log.error("error compiling code, error: {}", e.getMessage());
+            executeCodeResponse.setStatus(ExecuteInfoEnum.COMPILE_ERROR.getValue()); // TODO 编译失败
+            executeCodeResponse.setErrorMessage(getSanitizeErrorMessage(e.getMessage()));
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+        if (!compiledProgram.isSuccess()) {
+            // 编译失败，返回编译输出的错误信息
+            executeCodeResponse.setStatus(ExecuteInfoEnum.COMPILE_ERROR.getValue()); // TODO 编译失败
+            executeCodeResponse.setErrorMessage(getSanitizeErrorMessage(compiledProgram.getErrorMessage()));
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+        // 从容器池借出一个预热好的容器
+        DockerContainerPool containerPool = dockerContainerPoolManager.getPool(language);
+        if (containerPool == null) {
+            log.error("container pool for {} not configured", language);
+            executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+        PooledContainer pooledContainer = null;
+        try {
+            pooledContainer = containerPool.acquire(containerPoolProperties.getAcquireTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error("interrupted while acquiring container: {}", e.getMessage());
+        }
+        if (pooledContainer == null) {
+            executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+        // 等待编译和容器期间被取消
+        if (cancellationToken.isCancelled()) {
+            containerPool.release(pooledContainer, false);
+            executeCodeResponse.setStatus(ExecuteInfoEnum.CANCELLED.getValue());
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+        // 用例多于一个时，额外借出已预热的空闲容器并行执行，没有空闲容器时不等待
+        List<PooledContainer> leasedContainers = new ArrayList<>();
+        leasedContainers.add(pooledContainer);
+        int parallelism = Math.min(executionProperties.getCaseParallelism(), inputList.size());
+        while (leasedContainers.size() < parallelism) {
+            PooledContainer idleContainer = containerPool.tryAcquireIdle();
+            if (idleContainer == null) {
+                break;
+            }
+            leasedContainers.add(idleContainer);
+        }
+        // 按本次执行的要求调整容器的内存和 CPU 限制，将编译产物写入容器映射的工作目录
+        try {
+            for (PooledContainer leasedContainer : leasedContainers) {
+                containerPool.applyLimits(leasedContainer, memoryLimitBytes, executeCodeRequest.getCpuLimit());
+                writeFiles(compiledProgram.getFiles(), leasedContainer.getWorkspace(), "");
+            }
+        } catch (IOException e) {
+            log.error("error writing program files: {}", e.getMessage());
+            leasedContainers.forEach(leasedContainer -> containerPool.release(leasedContainer, false));
+            executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        } catch (RuntimeException e) {
+            // 限制可能只调整了一部分，销毁容器而不复用
+            log.error("error updating container limits: {}", e.getMessage());
+            leasedContainers.forEach(leasedContainer -> containerPool.release(leasedContainer, true));
+            executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+            return CompletableFuture.completedFuture(executeCodeResponse);
+        }
+
+        // 执行用户的代码并收集执行信息(包括用例输入、执行时间、内存使用等)
+        // 用例按序号轮流分配到各容器，每个容器内按顺序执行
+        log.info("start input to the container, containers: {}", leasedContainers.size());
+        int shardCount = leasedContainers.size();
+        List<CompletableFuture<ShardResult>> shardFutures = new ArrayList<>(shardCount);
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            shardFutures.add(runShard(runtime, containerPool, leasedContainers.get(shardIndex),
+                    stripe(inputList, shardIndex, shardCount), stripe(expectedOutputList, shardIndex, shardCount),
+                    shardCount == 1 ? testDataId : null, failFast, timeLimitMillis, memoryLimitBytes, cancellationToken));
+        }
+        int caseCount = inputList.size();
+        return CompletableFuture.allOf(shardFutures.toArray(new CompletableFuture<?>[0])).handle((ignored, throwable) -> {
+            if (throwable != null && cancellationToken.isCancelled()) {
+                log.info("execution cancelled");
+                executeCodeResponse.setStatus(ExecuteInfoEnum.CANCELLED.getValue());
+                return executeCodeResponse;
+            }
+            if (throwable != null) {
+                log.error("error occurred during execution: {}", throwable.getMessage());
+                executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue()); // TODO 系统错误
+                return executeCodeResponse;
+            }
+            // 在容器内编译的语言由执行器报告编译错误，每个容器的结果相同
+            String compileError = shardFutures.get(0).join().compileError;
+            if (compileError != null) {
+                executeCodeResponse.setStatus(ExecuteInfoEnum.COMPILE_ERROR.getValue());
+                executeCodeResponse.setErrorMessage(getSanitizeErrorMessage(compileError));
+                return executeCodeResponse;
+            }
+            // 按输入顺序合并各容器的执行信息，快速失败时各容器在失败的用例后停止，合并到第一个未执行的用例为止
+            List<ExecuteMessage> executeMessageList = new ArrayList<>(caseCount);
+            for (int caseIndex = 0; caseIndex < caseCount; caseIndex++) {
+                List<ExecuteMessage> shardMessageList = shardFutures.get(caseIndex % shardCount).join().executeMessageList;
+                if (caseIndex / shardCount >= shardMessageList.size()) {
+                    break;
+                }
+                executeMessageList.add(shardMessageList.get(caseIndex / shardCount));
+            }
+            fillExecuteResults(language, executeCodeResponse, executeMessageList, failFast);
+            return executeCodeResponse;
+        });
+    }
+
+    /**
+     * 在一个容器中执行分配给它的用例，执行结束后归还容器
+     * <p>
+     * 开启批量执行或运行时不支持单独执行用例时通过执行器在一个进程中执行全部用例
+     */
+    private CompletableFuture<ShardResult> runShard(LanguageRuntime runtime, DockerContainerPool containerPool,
+                                                    PooledContainer pooledContainer, List<String> inputList,
+                                                    List<String> expectedOutputList, String testDataId,
+                                                    boolean failFast, long timeLimitMillis, long memoryLimitBytes,
+                                                    CancellationToken cancellationToken) {
+        boolean batch = executionProperties.isBatchEnabled() || !runtime.supportsPerCaseExec();
+        CompletableFuture<ShardResult> shardFuture = batch
+                ? runCasesInBatch(runtime, pooledContainer, inputList, expectedOutputList, testDataId, failFast,
+                timeLimitMillis, memoryLimitBytes, cancellationToken)
+                : runCasesOneByOne(runtime, pooledContainer, inputList, expectedOutputList, failFast, timeLimitMillis,
+                memoryLimitBytes, cancellationToken)
+                .thenApply(executeMessageList -> new ShardResult(executeMessageList, null));
+        return shardFuture.whenComplete((shardResult, throwable) -> {
+            // 容器中可能残留用户进程时标记为污染，归还时销毁而不复用；被中途停止的用例可能仍有进程在容器中运行
+            // 批量执行时答案错误在服务端判定，用例不会被中途停止
+            boolean contaminated = throwable != null || shardResult.executeMessageList.stream()
+                    .anyMatch(executeMessage -> executeMessage.getIsTimeout() || executeMessage.getIsMemoryOverflow()
+                            || executeMessage.getIsOutputLimitExceeded() || !batch && executeMessage.getIsWrongAnswer());
+            if (throwable != null && cancellationToken.isCancelled()) {
+                // 被取消的容器中仍有用户进程，销毁容器以立即停止
+                log.info("{} container {} torn down after cancellation", runtime.getLanguage(),
+                        pooledContainer.getContainerId());
+            }
+            // 有用例执行失败时用户进程可能在后台残留，归还时检查容器状态；正常结束的容器直接复用
+            boolean failed = throwable == null && shardResult.executeMessageList.stream()
+                    .anyMatch(executeMessage -> getCaseStatus(executeMessage) != ExecuteInfoEnum.SUCCESS);
+            // 归还容器，容器工作目录由容器池负责清空
+            containerPool.release(pooledContainer, contaminated, failed);
+        });
+    }
+
+    /**
+     * 整理每个用例的执行信息，设置响应结果，响应状态为第一个失败的用例的状态
+     *
+     * @param failFast 为 true 时在第一个失败的用例处停止整理，否则整理全部用例以便按用例计分
+     */
+    private void fillExecuteResults(String language, ExecuteCodeResponse executeCodeResponse,
+                                    List<ExecuteMessage> executeMessageList, boolean failFast) {
+        log.info("organizing execution results...");
+        List<Long> excuteTimeList = new ArrayList<>();
+        List<Long> cpuTimeUsedList = new ArrayList<>();
+        List<Long> memoryUsedList = new ArrayList<>();
+        List<String> outputList = new ArrayList<>();
+        List<Integer> caseStatusList = new ArrayList<>();
+
+        // 设置默认状态值
+        executeCodeResponse.setStatus(ExecuteInfoEnum.SUCCESS.getValue()); // TODO 执行成功
+
+        for (ExecuteMessage executeMessage : executeMessageList) {
+            excuteTimeList.add(executeMessage.getTimeUsed());
+            cpuTimeUsedList.add(executeMessage.getCpuTimeUsed());
+            sandboxMetrics.recordCaseExec(language, executeMessage.getTimeUsed());
+            memoryUsedList.add(executeMessage.getMemoryUsed());
+            ExecuteInfoEnum caseStatus = getCaseStatus(executeMessage);
+            caseStatusList.add(caseStatus.getValue());
+
+            if (caseStatus != ExecuteInfoEnum.SUCCESS) {
+                if (ExecuteInfoEnum.SUCCESS.equalsValue(executeCodeResponse.getStatus())) {
+                    executeCodeResponse.setStatus(caseStatus.getValue());
+                    if (caseStatus == ExecuteInfoEnum.EXECUTION_ERROR) {
+                        executeCodeResponse.setErrorMessage(getSanitizeErrorMessage(executeMessage.getErrorOutput()));
+                    }
+                }
+                if (failFast) {
+                    break;
+                }
+            }
+            outputList.add(executeMessage.getOutput());
+        }
+
+        executeCodeResponse.setTimeUsedList(excuteTimeList);
+        executeCodeResponse.setCpuTimeUsedList(cpuTimeUsedList);
+        executeCodeResponse.setMemoryUsedList(memoryUsedList);
+        executeCodeResponse.setOutputList(outputList);
+        executeCodeResponse.setCaseStatusList(caseStatusList);
+    }
+
+    /**
+     * 判断单个用例的执行状态
+     */
+    private static ExecuteInfoEnum getCaseStatus(ExecuteMessage executeMessage) {
+        if (executeMessage.getIsMemoryOverflow()) { // 判断是否内存溢出
+            return ExecuteInfoEnum.MEMORY_OVERFLOW; // TODO 内存溢出
+        }
+        if (executeMessage.getIsTimeout()) { // 判断是否超时
+            return ExecuteInfoEnum.EXECUTION_TIMEOUT; // TODO 执行超时
+        }
+        if (executeMessage.getIsOutputLimitExceeded()) { // 判断是否输出超限
+            return ExecuteInfoEnum.OUTPUT_LIMIT_EXCEEDED;
+        }
+        if (executeMessage.getIsWrongAnswer()) { // 判断输出是否与预期输出一致
+            return ExecuteInfoEnum.WRONG_ANSWER;
+        }
+        if (StrUtil.isNotBlank(executeMessage.getErrorOutput())) { // 判断是否有异常输出
+            return ExecuteInfoEnum.EXECUTION_ERROR; // TODO 执行错误
+        }
+        return ExecuteInfoEnum.SUCCESS; // TODO 执行成功
+    }
+
+    /**
+     * 每个用例单独启动一个进程，按顺序依次执行
+     *
+     * @param failFast 为 true 时在第一个失败的用例后不再执行剩余用例
+     */
+    private CompletableFuture<List<ExecuteMessage>> runCasesOneByOne(LanguageRuntime runtime,
+                                                                     PooledContainer pooledContainer,
+                                                                     List<String> inputList,
+                                                                     List<String> expectedOutputList, boolean failFast,
+                                                                     long timeLimitMillis, long memoryLimitBytes,
+                                                                     CancellationToken cancellationToken) {
+        // 存储每个用例执行的详细信息
+        List<ExecuteMessage> executeMessageList = new ArrayList<>();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int caseCount = 1; caseCount <= inputList.size(); caseCount++) {
+            int finalCaseCount = caseCount;
+            String expectedOutput = expectedOutputList == null ? null : expectedOutputList.get(caseCount - 1);
+            chain = chain.thenCompose(ignored -> {
+                if (cancellationToken.isCancelled()) {
+                    throw new CancellationException();
+                }
+                if (failFast && !executeMessageList.isEmpty()
+                        && getCaseStatus(executeMessageList.get(executeMessageList.size() - 1)) != ExecuteInfoEnum.SUCCESS) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return runCase(runtime, pooledContainer, inputList.get(finalCaseCount - 1), expectedOutput, finalCaseCount,
+                        timeLimitMillis, memoryLimitBytes, cancellationToken).thenAccept(executeMessageList::add);
+            });
+        }
+        return chain.thenApply(ignored -> executeMessageList);
+    }
+
+    /**
+     * 执行单个用例，执行前后通过计量器采集容器的峰值内存、CPU 时间和 OOM 事件
+     * <p>
+     * 墙钟时间包含 Docker 调用和进程启动的开销，按 CPU 时间判定时以计量器采集的 CPU 时间为准，
+     * 计量器不支持 CPU 时间时退化为按墙钟时间判定；
+     * 容器的内存限制与用例的内存上限相同，进程被内核 OOM killer 停止或峰值内存达到上限时判定为内存溢出
+     *
+     * @param expectedOutput   预期输出，为 null 时不比对；在服务端接收输出时比对，不传入容器
+     * @param timeLimitMillis  单个用例的时间限制（ms）
+     * @param memoryLimitBytes 单个用例的内存上限（byte）
+     */
+    private CompletableFuture<ExecuteMessage> runCase(LanguageRuntime runtime, PooledContainer pooledContainer,
+                                                      String inputCases, String expectedOutput, int caseCount,
+                                                      long timeLimitMillis, long memoryLimitBytes,
+                                                      CancellationToken cancellationToken) {
+        // 初始化执行信息收集对象
+        ExecuteMessage executeMessage = new ExecuteMessage();
+
+        // 输入写入共享的输入缓存并放入容器的工作目录，容器内通过重定向作为程序的标准输入
+        String containerId = pooledContainer.getContainerId();
+        InputFileCache.Lease inputLease;
+        try {
+            inputLease = inputFileCache.store(inputCases.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return AsyncDockerExecutor.failedFuture(e);
+        }
+        String inputPath;
+        try {
+            inputPath = stageInput(pooledContainer, inputLease);
+        } catch (IOException e) {
+            inputLease.close();
+            return AsyncDockerExecutor.failedFuture(e);
+        }
+        String command = runtime.getCaseCommand(inputPath, memoryLimitBytes);
+
+        // 开始计量资源使用量
+        ResourceMeter.Session meteringSession = resourceMeter.start(containerId);
+
+        long cpuLimitMillis = executionProperties.getCpuLimitMillis(timeLimitMillis);
+        ExecOutputSink outputSink = new ExecOutputSink(executionProperties.getOutputLimitBytes(),
+                executionProperties.getErrorOutputLimitBytes(), expectedOutput);
+        return cancellable(asyncDockerExecutor.exec(containerId, new String[]{"sh", "-c", command},
+                        executionProperties.getWallLimitMillis(timeLimitMillis), outputSink), cancellationToken)
+                .whenComplete((execResult, throwable) -> recordKill(runtime, execResult))
+                .whenComplete((execResult, throwable) -> {
+                    inputLease.close();
+                    // 结束计量，设置峰值内存和 CPU 时间
+                    ResourceUsage resourceUsage = meteringSession.stop();
+                    Long peakMemoryBytes = resourceUsage.getPeakMemoryBytes();
+                    Long cpuTimeNanos = resourceUsage.getCpuTimeNanos();
+                    executeMessage.setMemoryUsed(peakMemoryBytes == null ? 0L : peakMemoryBytes / 1024); // byte 转换为 kb
+                    executeMessage.setCpuTimeUsed(cpuTimeNanos == null ? null : TimeUnit.NANOSECONDS.toMillis(cpuTimeNanos));
+                    // 检查是否超过内存限制，峰值内存可能来自之前的用例时只按 OOM 事件判定
+                    Long oomKillCount = resourceUsage.getOomKillCount();
+                    boolean memoryOverflow = oomKillCount != null && oomKillCount > 0
+                            || peakMemoryBytes != null && resourceUsage.isPeakMemoryExact()
+                            && peakMemoryBytes >= memoryLimitBytes;
+                    if (memoryOverflow) {
+                        log.error("out of memory");
+                    }
+                    executeMessage.setIsMemoryOverflow(memoryOverflow);
+                })
+                .thenApply(execResult -> {
+                    // 输出超限或答案错误时提前停止，其余执行完成前停止的判定为超时
+                    executeMessage.setIsOutputLimitExceeded(execResult.isOutputLimitExceeded());
+                    executeMessage.setIsWrongAnswer(execResult.isWrongAnswer());
+                    boolean cpuLimitExceeded = cpuLimitMillis > 0 && executeMessage.getCpuTimeUsed() != null
+                            && executeMessage.getCpuTimeUsed() > cpuLimitMillis;
+                    executeMessage.setIsTimeout(cpuLimitExceeded || !execResult.isCompleted()
+                            && !execResult.isOutputLimitExceeded() && !execResult.isWrongAnswer());
+                    log.info("case {}: code {}", caseCount, executeMessage.getIsTimeout() ? "timed out" : "not timed out");
+                    executeMessage.setOutput(toOutput(execResult.getStdout()));
+                    executeMessage.setErrorOutput(new String(execResult.getStderr(), StandardCharsets.UTF_8));
+                    // 设置代码执行时间
+                    executeMessage.setTimeUsed(TimeUnit.NANOSECONDS.toMillis(execResult.getElapsedNanos()));
+                    return executeMessage;
+                });
+    }
+
+    /**
+     * 在一个进程中通过用例执行器依次执行全部用例
+     *
+     * @param expectedOutputList 预期输出，为 null 时不比对；执行结束后在服务端比对，不传入容器
+     * @param testDataId         测试数据集 id，不为 null 时使用数据集在输入缓存中只含输入的文件
+     * @param failFast           为 true 时执行器在第一个失败的用例后停止
+     * @param timeLimitMillis    单个用例的时间限制（ms）
+     * @param memoryLimitBytes   单个用例的内存上限（byte）
+     */
+    private CompletableFuture<ShardResult> runCasesInBatch(LanguageRuntime runtime, PooledContainer pooledContainer,
+                                                           List<String> inputList, List<String> expectedOutputList,
+                                                           String testDataId, boolean failFast, long timeLimitMillis,
+                                                           long memoryLimitBytes, CancellationToken cancellationToken) {
+        // 将用例执行器写入容器工作目录，与用户代码分开存放
+        try {
+            writeFiles(runtime.getHarnessFiles(), pooledContainer.getWorkspace(), LanguageRuntime.HARNESS_DIRECTORY + "/");
+        } catch (IOException e) {
+            return AsyncDockerExecutor.failedFuture(e);
+        }
+
+        // 将全部用例输入编码为一个文件写入共享的输入缓存，同一题目的用例只写入一次，放入容器的工作目录后由执行器直接读取
+        // 预期输出不写入容器可读取的文件，执行结束后在服务端与实际输出比对
+        // 测试数据集只含输入的文件仍在缓存中时不需要重新编码
+        InputFileCache.Lease inputLease;
+        try {
+            inputLease = testDataId == null ? null : testDataStore.openInputs(testDataId);
+            if (inputLease == null) {
+                inputLease = inputFileCache.store(CaseRunnerCodec.encodeInputs(inputList));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return AsyncDockerExecutor.failedFuture(e);
+        }
+        String inputPath;
+        try {
+            inputPath = stageInput(pooledContainer, inputLease);
+        } catch (IOException e) {
+            inputLease.close();
+            return AsyncDockerExecutor.failedFuture(e);
+        }
+        // 每个用例的 CPU 时间和墙钟时间由执行器在容器内测量并控制，不包含 Docker 调用和执行器启动的开销
+        long cpuLimitMillis = executionProperties.getCpuLimitMillis(timeLimitMillis);
+        long wallLimitMillis = executionProperties.getWallLimitMillis(timeLimitMillis);
+        long outputLimitBytes = executionProperties.getOutputLimitBytes();
+        long errorOutputLimitBytes = executionProperties.getErrorOutputLimitBytes();
+        // 每次执行使用新的结果帧标识，用户代码输出的伪造帧无法通过解析
+        String frameNonce = CaseRunnerCodec.newFrameNonce();
+        String[] command = runtime.getBatchCommand(inputPath, cpuLimitMillis, wallLimitMillis,
+                memoryLimitBytes, outputLimitBytes, errorOutputLimitBytes, failFast, frameNonce);
+        InputFileCache.Lease finalInputLease = inputLease;
+        // 额外留出执行器启动的时间
+        long batchTimeoutMillis = wallLimitMillis * inputList.size() + runtime.getStartupMillis();
+        // 每个用例的输出上限由执行器控制，这里只限制全部结果帧的总大小
+        long frameLimitBytes = (outputLimitBytes + errorOutputLimitBytes + FRAME_HEADER_BYTES) * inputList.size();
+        ExecOutputSink outputSink = new ExecOutputSink(frameLimitBytes, errorOutputLimitBytes, null);
+        // 执行器自身被内核 OOM killer 停止时不会输出剩余用例的结果帧，执行前记录 OOM 事件计数用于判定
+        String containerId = pooledContainer.getContainerId();
+        Long startOomKillCount = resourceMeter.readOomKillCount(containerId);
+        return cancellable(asyncDockerExecutor.exec(pooledContainer.getContainerId(), command, batchTimeoutMillis,
+                        outputSink), cancellationToken)
+                .whenComplete((execResult, throwable) -> {
+                    finalInputLease.close();
+                    recordKill(runtime, execResult);
+                })
+                .thenApply(execResult -> {
+                    String compileError = CaseRunnerCodec.decodeCompileError(execResult.getStdout(), frameNonce);
+                    if (compileError != null) {
+                        return new ShardResult(new ArrayList<>(), compileError);
+                    }
+                    List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(execResult.getStdout(), frameNonce);
+                    boolean harnessOomKilled = false;
+                    if (startOomKillCount != null && caseResults.size() < inputList.size()) {
+                        Long endOomKillCount = resourceMeter.readOomKillCount(containerId);
+                        harnessOomKilled = endOomKillCount != null && endOomKillCount > startOomKillCount;
+                    }
+                    return new ShardResult(toExecuteMessages(execResult, caseResults, inputList.size(),
+                            expectedOutputList, failFast, memoryLimitBytes, harnessOomKilled), null);
+                });
+    }
+
+    /**
+     * 将用例执行器的结果帧转换为每个用例的执行信息，并与预期输出比对
+     *
+     * @param memoryLimitBytes 单个用例的内存上限（byte）
+     * @param harnessOomKilled 执行器是否被内核 OOM killer 停止，是时第一个未报告结果的用例判定为内存溢出
+     */
+    private List<ExecuteMessage> toExecuteMessages(ExecResult execResult, List<CaseRunnerCodec.CaseResult> caseResults,
+                                                   int caseCount, List<String> expectedOutputList, boolean failFast,
+                                                   long memoryLimitBytes, boolean harnessOomKilled) {
+        List<ExecuteMessage> executeMessageList = new ArrayList<>();
+        for (int caseIndex = 0; caseIndex < caseCount; caseIndex++) {
+            // 快速失败时执行器在失败的用例后正常退出，剩余用例未执行
+            if (failFast && execResult.isCompleted() && !executeMessageList.isEmpty() && caseIndex >= caseResults.size()
+                    && getCaseStatus(executeMessageList.get(caseIndex - 1)) != ExecuteInfoEnum.SUCCESS) {
+                break;
+            }
+            ExecuteMessage executeMessage = new ExecuteMessage();
+            executeMessage.setIsMemoryOverflow(false);
+            executeMessage.setIsOutputLimitExceeded(false);
+            executeMessage.setIsWrongAnswer(false);
+            if (caseIndex < caseResults.size()) {
+                CaseRunnerCodec.CaseResult caseResult = caseResults.get(caseIndex);
+                String output = toOutput(caseResult.getOutput());
+                executeMessage.setOutput(output);
+                executeMessage.setErrorOutput(caseResult.getErrorOutput());
+                executeMessage.setTimeUsed(TimeUnit.NANOSECONDS.toMillis(caseResult.getWallTimeNanos()));
+                executeMessage.setCpuTimeUsed(TimeUnit.NANOSECONDS.toMillis(caseResult.getCpuTimeNanos()));
+                executeMessage.setMemoryUsed(caseResult.getMemoryKb());
+                executeMessage.setIsTimeout(caseResult.isTimeout());
+                executeMessage.setIsOutputLimitExceeded(caseResult.isOutputLimitExceeded());
+                // 输出完整时才比对，比对规则与 CaseOutputStream 相同：实际输出可以比预期输出多一个末尾换行
+                executeMessage.setIsWrongAnswer(caseResult.isWrongAnswer() || expectedOutputList != null
+                        && !caseResult.isOutputLimitExceeded() && !caseResult.isTimeout()
+                        && !output.equals(toOutput(expectedOutputList.get(caseIndex))));
+                executeMessage.setIsMemoryOverflow(caseResult.isMemoryLimitExceeded()
+                        || caseResult.getMemoryKb() * 1024 > memoryLimitBytes);
+            } else {
+                // 执行器异常退出时剩余用例按执行错误处理，执行器未结束或无法停止超时用例时按超时处理
+                String errorOutput = new String(execResult.getStderr(), StandardCharsets.UTF_8);
+                executeMessage.setOutput("");
+                executeMessage.setErrorOutput(errorOutput);
+                executeMessage.setMemoryUsed(0L);
+                executeMessage.setTimeUsed(0L);
+                if (harnessOomKilled && caseIndex == caseResults.size()) {
+                    executeMessage.setIsMemoryOverflow(true);
+                    executeMessage.setIsTimeout(false);
+                } else {
+                    executeMessage.setIsTimeout(!execResult.isCompleted() || StrUtil.isBlank(errorOutput));
+                }
+            }
+            executeMessageList.add(executeMessage);
+        }
+        log.info("batch execution finished, {} of {} cases reported", caseResults.size(), caseCount);
+        return executeMessageList;
+    }
+
+    /**
+     * 记录停止未正常结束的命令的耗时
+     */
+    private void recordKill(LanguageRuntime runtime, ExecResult execResult) {
+        if (execResult != null && execResult.getKillLatencyNanos() != null) {
+            sandboxMetrics.recordExecKill(runtime.getLanguage(), execResult.getKillLatencyNanos());
+        }
+    }
+
+    /**
+     * 整理用例输出：去掉最后一个换行，返回程序的实际输出
+     */
+    private static String toOutput(byte[] stdout) {
+        return toOutput(new String(stdout, StandardCharsets.UTF_8));
+    }
+
+    private static String toOutput(String output) {
+        if (output.endsWith("\n")) {
+            output = output.substring(0, output.length() - 1); // 去重最后一个\n
+        }
+        return output;
+    }
+
+    /**
+     * 取消执行时取消正在执行的容器命令，命令被取消后关闭输出流
+     */
+    private static CompletableFuture<ExecResult> cancellable(CompletableFuture<ExecResult> execFuture,
+                                                             CancellationToken cancellationToken) {
+        Runnable unregister = cancellationToken.onCancel(() -> execFuture.cancel(true));
+        execFuture.whenComplete((execResult, throwable) -> unregister.run());
+        return execFuture;
+    }
+
+    /**
+     * 将输入缓存中的文件放入容器的工作目录，容器只能读取本次执行使用的输入文件
+     *
+     * @return 文件在容器内的路径
+     */
+    private static String stageInput(PooledContainer pooledContainer, InputFileCache.Lease inputLease)
+            throws IOException {
+        String relativePath = INPUT_DIRECTORY + "/" + inputLease.getHash();
+        pooledContainer.getWorkspace().link(relativePath, inputLease.getHostPath());
+        return DockerContainerPool.CONTAINER_WORK_DIRECTORY + "/" + relativePath;
+    }
+
+    /**
+     * 取出序号除以分片数余数为 shardIndex 的元素
+     */
+    private static <T> List<T> stripe(List<T> list, int shardIndex, int shardCount) {
+        if (list == null || shardCount == 1) {
+            return list;
+        }
+        List<T> stripeList = new ArrayList<>();
+        for (int i = shardIndex; i < list.size(); i += shardCount) {
+            stripeList.add(list.get(i));
+        }
+        return stripeList;
+    }
+
+    /**
+     * 将内存中的文件写入容器工作目录
+     *
+     * @param prefix 相对路径前缀
+     */
+    private static void writeFiles(Map<String, byte[]> files, Workspace workspace, String prefix) throws IOException {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            workspace.write(prefix + file.getKey(), file.getValue());
+        }
+    }
+
+    /**
+     * 错误消息脱敏，防止返回值中带有本机的信息
+     */
+    private static String getSanitizeErrorMessage(String errorMessage) {
+        String regex = "/root/micode-code-sandbox/tempCode/[0-9a-fA-F\\-]+/";
+        return ReUtil.replaceAll(errorMessage, regex, "");
+    }
+
+    /**
+     * 单个容器的执行结果
+     */
+    private static class ShardResult {
+
+        private final List<ExecuteMessage> executeMessageList;
+
+        /**
+         * 执行器报告的编译错误，没有时为 null
+         */
+        private final String compileError;
+
+        private ShardResult(List<ExecuteMessage> executeMessageList, String compileError) {
+            this.executeMessageList = executeMessageList;
+            this.compileError = compileError;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.engine;
+
+import cn.hutool.core.util.HexUtil;
+import com.yanweiyi.micodecodesandbox.config.ResultCacheProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 执行结果缓存
+ * <p>
+ * 以语言、代码、用例（或测试数据集 id）、预期输出和各项限制的哈希为 key。命中时直接返回之前的结果；
+ * 相同的提交正在执行时合并到该次执行，共享执行结果。合并的请求各自取消时只结束自己的等待，
+ * 全部请求都取消后才停止共享的执行。
+ * <p>
+ * 只缓存由代码和输入决定的结果；系统错误、已取消，以及任一用例超时或内存溢出的结果不缓存：
+ * 超时受宿主机负载影响，内存溢出可能由内核 OOM killer 判定，受页缓存等容器外因素影响。
+ * 缓存中保存结果的副本，命中时也返回副本，调用方修改结果不会影响缓存。
+ * 请求设置 bypassCache 时不查询缓存也不合并，但执行结果仍会更新缓存。
+ * <p>
+ * 调度器在提交占用执行名额前先通过 {@link #lookup} 查询，命中和合并的提交不进入等待队列；
+ * 这些提交的执行结果以 source=cache 单独计数，实际执行的结果由调用方计数。
+ *
+ * @author yanweiyi
+ */
+@Component
+public class ExecutionResultCache {
+
+    private final ResultCacheProperties resultCacheProperties;
+
+    private final SandboxMetrics sandboxMetrics;
+
+    // 按访问顺序淘汰
+    private final LinkedHashMap<String, CacheEntry> cache;
+
+    // 正在执行的提交
+    private final Map<String, SharedExecution> inFlight = new HashMap<>();
+
+    public ExecutionResultCache(ResultCacheProperties resultCacheProperties, SandboxMetrics sandboxMetrics) {
+        this.resultCacheProperties = resultCacheProperties;
+        this.sandboxMetrics = sandboxMetrics;
+        int maxEntries = resultCacheProperties.getMaxEntries();
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 查询缓存或合并到执行中的相同提交，都没有时执行
+     *
+     * @param executor 使用给定的取消信号执行提交
+     */
+    public CompletableFuture<ExecuteCodeResponse> execute(String language, ExecuteCodeRequest executeCodeRequest,
+                                                          CancellationToken cancellationToken,
+                                                          Function<CancellationToken, CompletableFuture<ExecuteCodeResponse>> executor) {
+        if (!resultCacheProperties.isEnabled()) {
+            return executor.apply(cancellationToken);
+        }
+        String key = computeKey(language, executeCodeRequest);
+        if (Boolean.TRUE.equals(executeCodeRequest.getBypassCache())) {
+            sandboxMetrics.recordResultCache(language, "bypass");
+            return executor.apply(cancellationToken).whenComplete((executeCodeResponse, throwable) -> {
+                if (throwable == null) {
+                    store(key, executeCodeResponse);
+                }
+            });
+        }
+        SharedExecution sharedExecution;
+        boolean leader = false;
+        synchronized (this) {
+            ExecuteCodeResponse cached = getCached(key);
+            if (cached != null) {
+                return hit(language, cached);
+            }
+            sharedExecution = inFlight.get(key);
+            if (sharedExecution == null) {
+                sharedExecution = new SharedExecution();
+                inFlight.put(key, sharedExecution);
+                leader = true;
+            }
+            sharedExecution.waiterCount++;
+        }
+        if (!leader) {
+            return coalesce(language, key, sharedExecution, cancellationToken);
+        }
+        sandboxMetrics.recordResultCache(language, "miss");
+        CompletableFuture<ExecuteCodeResponse> responseFuture = join(key, sharedExecution, cancellationToken);
+        SharedExecution execution = sharedExecution;
+        CompletableFuture<ExecuteCodeResponse> executionFuture;
+        try {
+            executionFuture = executor.apply(execution.cancellationToken);
+        } catch (RuntimeException e) {
+            executionFuture = new CompletableFuture<>();
+            executionFuture.completeExceptionally(e);
+        }
+        executionFuture.whenComplete((executeCodeResponse, throwable) -> {
+            synchronized (this) {
+                inFlight.remove(key, execution);
+            }
+            if (throwable != null) {
+                execution.future.completeExceptionally(throwable);
+                return;
+            }
+            if (!execution.cancellationToken.isCancelled()) {
+                store(key, executeCodeResponse);
+            }
+            execution.future.complete(executeCodeResponse);
+        });
+        return responseFuture;
+    }
+
+    /**
+     * 只查询缓存或合并到执行中的相同提交，不执行；调度器在提交占用执行名额前调用
+     *
+     * @return 命中或合并时返回结果，需要执行、未开启缓存或请求跳过缓存时返回 null
+     */
+    public CompletableFuture<ExecuteCodeResponse> lookup(String language, ExecuteCodeRequest executeCodeRequest,
+                                                         CancellationToken cancellationToken) {
+        if (!resultCacheProperties.isEnabled() || Boolean.TRUE.equals(executeCodeRequest.getBypassCache())) {
+            return null;
+        }
+        String key = computeKey(language, executeCodeRequest);
+        SharedExecution sharedExecution;
+        synchronized (this) {
+            ExecuteCodeResponse cached = getCached(key);
+            if (cached != null) {
+                return hit(language, cached);
+            }
+            sharedExecution = inFlight.get(key);
+            if (sharedExecution == null) {
+                return null;
+            }
+            sharedExecution.waiterCount++;
+        }
+        return coalesce(language, key, sharedExecution, cancellationToken);
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * 取出未过期的缓存结果，过期的结果直接移除，只在持有缓存锁时调用
+     */
+    private ExecuteCodeResponse getCached(String key) {
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireTime <= System.currentTimeMillis()) {
+            cache.remove(key);
+            return null;
+        }
+        return entry.executeCodeResponse;
+    }
+
+    private CompletableFuture<ExecuteCodeResponse> hit(String language, ExecuteCodeResponse cached) {
+        sandboxMetrics.recordResultCache(language, "hit");
+        ExecuteCodeResponse executeCodeResponse = copy(cached);
+        recordOutcome(language, executeCodeResponse, null);
+        return CompletableFuture.completedFuture(executeCodeResponse);
+    }
+
+    /**
+     * 合并到执行中的相同提交，调用前已增加等待的请求数
+     */
+    private CompletableFuture<ExecuteCodeResponse> coalesce(String language, String key, SharedExecution sharedExecution,
+                                                            CancellationToken cancellationToken) {
+        sandboxMetrics.recordResultCache(language, "coalesced");
+        return join(key, sharedExecution, cancellationToken)
+                .whenComplete((executeCodeResponse, throwable) -> recordOutcome(language, executeCodeResponse, throwable));
+    }
+
+    private void recordOutcome(String language, ExecuteCodeResponse executeCodeResponse, Throwable throwable) {
+        ExecuteInfoEnum outcome = throwable == null ? ExecuteInfoEnum.getEnumByValue(executeCodeResponse.getStatus()) : null;
+        sandboxMetrics.recordOutcome(language, outcome == null ? ExecuteInfoEnum.SYSTEM_ERROR : outcome, true);
+    }
+
+    /**
+     * 等待共享的执行结果，每个请求得到各自的副本；请求取消时以已取消状态结束等待，最后一个等待的请求取消时停止执行
+     */
+    private CompletableFuture<ExecuteCodeResponse> join(String key, SharedExecution sharedExecution,
+                                                        CancellationToken cancellationToken) {
+        CompletableFuture<ExecuteCodeResponse> responseFuture = new CompletableFuture<>();
+        sharedExecution.future.whenComplete((executeCodeResponse, throwable) -> {
+            if (throwable != null) {
+                responseFuture.completeExceptionally(throwable);
+            } else {
+                responseFuture.complete(copy(executeCodeResponse));
+            }
+        });
+        Runnable unregister = cancellationToken.onCancel(() -> {
+            ExecuteCodeResponse cancelledResponse = new ExecuteCodeResponse();
+            cancelledResponse.setStatus(ExecuteInfoEnum.CANCELLED.getValue());
+            if (!responseFuture.complete(cancelledResponse)) {
+                return;
+            }
+            boolean lastWaiter;
+            synchronized (this) {
+                lastWaiter = --sharedExecution.waiterCount == 0;
+                if (lastWaiter) {
+                    // 已取消的执行不再接收新的请求
+                    inFlight.remove(key, sharedExecution);
+                }
+            }
+            if (lastWaiter) {
+                sharedExecution.cancellationToken.cancel();
+            }
+        });
+        responseFuture.whenComplete((executeCodeResponse, throwable) -> unregister.run());
+        return responseFuture;
+    }
+
+    private void store(String key, ExecuteCodeResponse executeCodeResponse) {
+        if (!isCacheable(executeCodeResponse)) {
+            return;
+        }
+        synchronized (this) {
+            cache.put(key, new CacheEntry(copy(executeCodeResponse),
+                    System.currentTimeMillis() + resultCacheProperties.getTtlMillis()));
+        }
+    }
+
+    private boolean isCacheable(ExecuteCodeResponse executeCodeResponse) {
+        Integer status = executeCodeResponse.getStatus();
+        if (status == null || status.equals(ExecuteInfoEnum.SYSTEM_ERROR.getValue())
+                || status.equals(ExecuteInfoEnum.CANCELLED.getValue()) || isHostDependent(status)) {
+            return false;
+        }
+        // 不快速失败时响应状态只是第一个失败用例的状态，后面的用例仍可能超时或内存溢出
+        if (executeCodeResponse.getCaseStatusList() != null) {
+            for (Integer caseStatus : executeCodeResponse.getCaseStatusList()) {
+                if (isHostDependent(caseStatus)) {
+                    return false;
+                }
+            }
+        }
+        long chars = executeCodeResponse.getErrorMessage() == null ? 0 : executeCodeResponse.getErrorMessage().length();
+        if (executeCodeResponse.getOutputList() != null) {
+            for (String output : executeCodeResponse.getOutputList()) {
+                chars += output == null ? 0 : output.length();
+            }
+        }
+        return chars <= resultCacheProperties.getMaxEntryChars();
+    }
+
+    private static boolean isHostDependent(Integer status) {
+        return ExecuteInfoEnum.EXECUTION_TIMEOUT.equalsValue(status) || ExecuteInfoEnum.MEMORY_OVERFLOW.equalsValue(status);
+    }
+
+    private static ExecuteCodeResponse copy(ExecuteCodeResponse executeCodeResponse) {
+        ExecuteCodeResponse copied = new ExecuteCodeResponse();
+        copied.setStatus(executeCodeResponse.getStatus());
+        copied.setErrorMessage(executeCodeResponse.getErrorMessage());
+        copied.setOutputList(copyList(executeCodeResponse.getOutputList()));
+        copied.setMemoryUsedList(copyList(executeCodeResponse.getMemoryUsedList()));
+        copied.setTimeUsedList(copyList(executeCodeResponse.getTimeUsedList()));
+        copied.setCpuTimeUsedList(copyList(executeCodeResponse.getCpuTimeUsedList()));
+        copied.setCaseStatusList(copyList(executeCodeResponse.getCaseStatusList()));
+        return copied;
+    }
+
+    private static <T> List<T> copyList(List<T> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    /**
+     * 计算提交的缓存 key，各字段带长度前缀写入摘要，避免不同字段拼接后相同
+     */
+    static String computeKey(String language, ExecuteCodeRequest executeCodeRequest) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, language);
+        update(digest, executeCodeRequest.getCode());
+        update(digest, executeCodeRequest.getInputList());
+        update(digest, executeCodeRequest.getExpectedOutputList());
+        update(digest, executeCodeRequest.getTestDataId());
+        update(digest, String.valueOf(executeCodeRequest.getFailFast()));
+        update(digest, String.valueOf(executeCodeRequest.getTimeLimit()));
+        update(digest, String.valueOf(executeCodeRequest.getMemoryLimit()));
+        update(digest, String.valueOf(executeCodeRequest.getCpuLimit()));
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, List<String> values) {
+        if (values == null) {
+            updateLength(digest, -1);
+            return;
+        }
+        updateLength(digest, values.size());
+        values.forEach(value -> update(digest, value));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            updateLength(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateLength(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void updateLength(MessageDigest digest, int length) {
+        digest.update((byte) (length >>> 24));
+        digest.update((byte) (length >>> 16));
+        digest.update((byte) (length >>> 8));
+        digest.update((byte) length);
+    }
+
+    private static class CacheEntry {
+
+        private final ExecuteCodeResponse executeCodeResponse;
+
+        private final long expireTime;
+
+        CacheEntry(ExecuteCodeResponse executeCodeResponse, long expireTime) {
+            this.executeCodeResponse = executeCodeResponse;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * 多个相同提交共享的一次执行
+     */
+    private static class SharedExecution {
+
+        private final CompletableFuture<ExecuteCodeResponse> future = new CompletableFuture<>();
+
+        private final CancellationToken cancellationToken = new CancellationToken();
+
+        // 仍在等待结果的请求数，只在持有缓存锁时访问
+        private int waiterCount;
+    }
+}
@@ -0,0 +1,204 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.exec;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Frame;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * 基于回调的容器命令执行器
+ * <p>
+ * 命令的完成和超时都通过 CompletableFuture 通知，调用方不需要占用线程阻塞等待；
+ * 所有执行共用一个定时线程处理超时。输出写入调用方提供的 {@link ExecOutputSink}，
+ * 输出超限或与预期输出不一致时立即停止接收并以未完成的状态返回。
+ * 调用方取消返回的 future 时关闭输出流。
+ * <p>
+ * 命令未正常结束时（超时、输出被停止或被取消），容器内的进程不会随输出流关闭而停止，
+ * 由看门狗强制停止容器中的进程，确认命令进程退出后才返回结果，保证下一个用例不会与之争抢资源。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class AsyncDockerExecutor {
+
+    // 停止容器内除 1 号进程和自身外的所有进程
+    private static final String[] KILL_COMMAND = {"sh", "-c", "kill -9 -1"};
+
+    // 等待命令进程退出的最长时间（ms）
+    private static final long KILL_TIMEOUT_MILLISECONDS = 2000L;
+
+    // 检查命令进程是否已退出的间隔（ms）
+    private static final long KILL_POLL_MILLISECONDS = 10L;
+
+    private final DockerClient dockerClient;
+
+    // 处理执行超时的定时线程
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "docker-exec-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 停止进程时需要阻塞调用 Docker，不占用定时线程
+    private final ExecutorService killExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "docker-exec-kill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AsyncDockerExecutor(DockerClient dockerClient) {
+        this.dockerClient = dockerClient;
+    }
+
+    /**
+     * 在容器中执行命令
+     *
+     * @param containerId   容器 id
+     * @param command       命令及参数
+     * @param timeoutMillis 超时时间（ms），超时后停止接收输出、停止容器中的进程并以未完成的状态返回
+     * @param outputSink    输出接收器
+     * @return 执行结果，Docker 调用出错或无法停止进程时异常完成
+     */
+    public CompletableFuture<ExecResult> exec(String containerId, String[] command, long timeoutMillis,
+                                              ExecOutputSink outputSink) {
+        // 输出流结束或被停止时完成
+        CompletableFuture<ExecResult> resultFuture = new CompletableFuture<>();
+        String execId;
+        try {
+            execId = dockerClient.execCreateCmd(containerId)
+                    .withCmd(command)
+                    .withAttachStdin(true)
+                    .withAttachStdout(true)
+                    .withAttachStderr(true)
+                    .exec()
+                    .getId();
+        } catch (RuntimeException e) {
+            resultFuture.completeExceptionally(e);
+            return resultFuture;
+        }
+
+        long startNanos = System.nanoTime();
+        ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<Frame>() {
+            @Override
+            public void onNext(Frame frame) {
+                if (!outputSink.accept(frame.getStreamType(), frame.getPayload())
+                        && resultFuture.complete(outputSink.buildResult(false, System.nanoTime() - startNanos))) {
+                    closeQuietly(this);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                resultFuture.complete(outputSink.buildResult(true, System.nanoTime() - startNanos));
+                super.onComplete();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                resultFuture.completeExceptionally(throwable);
+                super.onError(throwable);
+            }
+        };
+
+        ScheduledFuture<?> timeoutFuture = timeoutScheduler.schedule(() -> {
+            if (resultFuture.complete(outputSink.buildResult(false, System.nanoTime() - startNanos))) {
+                closeQuietly(callback);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        resultFuture.whenComplete((execResult, throwable) -> {
+            timeoutFuture.cancel(false);
+            if (resultFuture.isCancelled()) {
+                closeQuietly(callback);
+            }
+        });
+
+        try {
+            dockerClient.execStartCmd(execId).exec(callback);
+        } catch (RuntimeException e) {
+            resultFuture.completeExceptionally(e);
+        }
+
+        // 未正常结束的命令在进程确认退出后返回，并记录停止进程的耗时
+        CompletableFuture<ExecResult> killedFuture = resultFuture.thenCompose(execResult -> execResult.isCompleted()
+                ? CompletableFuture.completedFuture(execResult)
+                : kill(containerId, execId).thenApply(killLatencyNanos -> {
+                    execResult.setKillLatencyNanos(killLatencyNanos);
+                    return execResult;
+                }));
+        killedFuture.whenComplete((execResult, throwable) -> {
+            if (killedFuture.isCancelled()) {
+                resultFuture.cancel(false);
+                kill(containerId, execId).whenComplete((killLatencyNanos, killThrowable) -> {
+                    if (killThrowable != null) {
+                        log.error("error killing cancelled exec {}: {}", execId, killThrowable.getMessage());
+                    }
+                });
+            }
+        });
+        return killedFuture;
+    }
+
+    /**
+     * 停止容器中的全部进程并等待命令进程退出
+     * <p>
+     * 容器借出期间只执行一个提交的命令，停止除 1 号进程外的所有进程即停止了该命令的整个进程树，
+     * 包括用户程序创建的子进程
+     *
+     * @return 从开始停止到命令进程退出的时长（ns），超过等待时间仍未退出时异常完成
+     */
+    private CompletableFuture<Long> kill(String containerId, String execId) {
+        return CompletableFuture.supplyAsync(() -> {
+            long killStartNanos = System.nanoTime();
+            long deadlineNanos = killStartNanos + TimeUnit.MILLISECONDS.toNanos(KILL_TIMEOUT_MILLISECONDS);
+            String killExecId = dockerClient.execCreateCmd(containerId)
+                    .withCmd(KILL_COMMAND)
+                    .exec()
+                    .getId();
+            try {
+                dockerClient.execStartCmd(killExecId).exec(new ResultCallback.Adapter<>())
+                        .awaitCompletion(KILL_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+                while (Boolean.TRUE.equals(dockerClient.inspectExecCmd(execId).exec().isRunning())) {
+                    if (System.nanoTime() - deadlineNanos > 0) {
+                        throw new IllegalStateException("exec " + execId + " still running after kill");
+                    }
+                    Thread.sleep(KILL_POLL_MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // 重新设置中断状态
+                throw new IllegalStateException("interrupted while killing exec " + execId, e);
+            }
+            long killLatencyNanos = System.nanoTime() - killStartNanos;
+            log.info("exec {} killed in {} ms", execId, TimeUnit.NANOSECONDS.toMillis(killLatencyNanos));
+            return killLatencyNanos;
+        }, killExecutor);
+    }
+
+    /**
+     * 用于串联异步阶段的异常完成的 future
+     */
+    public static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
+        killExecutor.shutdownNow();
+    }
+
+    private static void closeQuietly(ResultCallback.Adapter<Frame> callback) {
+        try {
+            callback.close();
+        } catch (IOException e) {
+            log.error("error closing exec stream: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.exec;
+
+import com.github.dockerjava.api.model.StreamType;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseOutputStream;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 接收容器命令的输出，按字节数限制标准输出和错误输出，可选地与预期输出逐字节比对
+ * <p>
+ * 输出以原始字节保存，执行结束后再统一按 UTF-8 解码，多字节字符跨帧时不会被截断。
+ *
+ * @author yanweiyi
+ */
+public class ExecOutputSink {
+
+    private final CaseOutputStream stdoutStream;
+
+    private final CaseOutputStream stderrStream;
+
+    /**
+     * @param stdoutLimitBytes 标准输出上限（byte），超出后停止执行
+     * @param stderrLimitBytes 错误输出上限（byte），超出后截断
+     * @param expectedOutput   预期输出，为 null 时不比对
+     */
+    public ExecOutputSink(long stdoutLimitBytes, long stderrLimitBytes, String expectedOutput) {
+        // 设置停止监听器后超出上限不再截断接收，由调用方根据 accept 的返回值停止执行
+        this.stdoutStream = new CaseOutputStream(stdoutLimitBytes,
+                expectedOutput == null ? null : expectedOutput.getBytes(StandardCharsets.UTF_8), () -> {
+                });
+        this.stderrStream = new CaseOutputStream(stderrLimitBytes, null, null);
+    }
+
+    /**
+     * 接收一帧输出
+     *
+     * @return 需要停止执行时返回 false
+     */
+    public boolean accept(StreamType streamType, byte[] payload) {
+        if (StreamType.STDERR.equals(streamType)) {
+            stderrStream.write(payload, 0, payload.length);
+            return true;
+        }
+        stdoutStream.write(payload, 0, payload.length);
+        return !isStopped();
+    }
+
+    /**
+     * 标准输出超出上限或与预期输出不一致
+     */
+    public boolean isStopped() {
+        return stdoutStream.isLimitExceeded() || stdoutStream.isMismatched();
+    }
+
+    /**
+     * 根据接收到的输出生成执行结果
+     *
+     * @param completed 命令是否正常执行完成，只有完成时才检查输出是否比预期输出短
+     */
+    ExecResult buildResult(boolean completed, long elapsedNanos) {
+        if (completed) {
+            stdoutStream.finish();
+        }
+        ExecResult execResult = new ExecResult();
+        execResult.setStdout(stdoutStream.toByteArray());
+        execResult.setStderr(stderrStream.toByteArray());
+        execResult.setCompleted(completed);
+        execResult.setOutputLimitExceeded(stdoutStream.isLimitExceeded());
+        execResult.setWrongAnswer(stdoutStream.isMismatched());
+        execResult.setElapsedNanos(elapsedNanos);
+        return execResult;
+    }
+}
@@ -0,0 +1,47 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.exec;
+
+import lombok.Data;
+
+/**
+ * 容器内一次命令执行的结果
+ *
+ * @author yanweiyi
+ */
+@Data
+public class ExecResult {
+
+    /**
+     * 标准输出
+     */
+    private byte[] stdout;
+
+    /**
+     * 错误输出
+     */
+    private byte[] stderr;
+
+    /**
+     * 是否在超时前执行完成
+     */
+    private boolean completed;
+
+    /**
+     * 标准输出是否超出上限
+     */
+    private boolean outputLimitExceeded;
+
+    /**
+     * 标准输出是否与预期输出不一致
+     */
+    private boolean wrongAnswer;
+
+    /**
+     * 从开始执行到执行完成（或超时）的时长（ns）
+     */
+    private long elapsedNanos;
+
+    /**
+     * 未正常结束时停止容器中进程的耗时（ns），正常结束时为 null
+     */
+    private Long killLatencyNanos;
+}
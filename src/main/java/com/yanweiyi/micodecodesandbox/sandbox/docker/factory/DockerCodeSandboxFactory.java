@@ -1,18 +1,51 @@
 package com.yanweiyi.micodecodesandbox.sandbox.docker.factory;
 
+import com.yanweiyi.micodecodesandbox.cluster.NodeDispatcher;
+import com.yanweiyi.micodecodesandbox.cluster.RemoteCodeSandbox;
 import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
-import com.yanweiyi.micodecodesandbox.sandbox.docker.impl.JavaDockerCodeSandbox;
-import com.yanweiyi.micodecodesandbox.sandbox.docker.impl.PythonDockerCodeSandbox;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.engine.ExecutionEngine;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.impl.RuntimeDockerCodeSandbox;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时为每个已注册的语言运行时创建一个代码沙箱，之后按语言直接查表返回
+ * <p>
+ * 调度节点上创建的代码沙箱将提交转发给工作节点执行
+ */
+@Component
 public class DockerCodeSandboxFactory {
-    public static DockerCodeSandbox getCodeSandbox(String language) {
-        switch (language) {
-            case "java":
-                return new JavaDockerCodeSandbox();
-            case "python":
-                return new PythonDockerCodeSandbox();
-            default:
-                return null;
+
+    private final Map<String, DockerCodeSandbox> codeSandboxes;
+
+    /**
+     * @param nodeDispatcher 调度节点的转发器，不是调度节点时为 null
+     */
+    public DockerCodeSandboxFactory(List<LanguageRuntime> languageRuntimes, ExecutionEngine executionEngine,
+                                    @Nullable NodeDispatcher nodeDispatcher) {
+        Map<String, DockerCodeSandbox> codeSandboxMap = new LinkedHashMap<>();
+        for (LanguageRuntime languageRuntime : languageRuntimes) {
+            DockerCodeSandbox codeSandbox = nodeDispatcher == null
+                    ? new RuntimeDockerCodeSandbox(languageRuntime, executionEngine)
+                    : new RemoteCodeSandbox(languageRuntime.getLanguage(), nodeDispatcher);
+            DockerCodeSandbox previous = codeSandboxMap.put(languageRuntime.getLanguage(), codeSandbox);
+            if (previous != null) {
+                throw new IllegalStateException("duplicate language runtime: " + languageRuntime.getLanguage());
+            }
         }
+        this.codeSandboxes = Collections.unmodifiableMap(codeSandboxMap);
+    }
+
+    /**
+     * @return 语言对应的代码沙箱，不支持该语言时返回 null
+     */
+    public DockerCodeSandbox getCodeSandbox(String language) {
+        return codeSandboxes.get(language);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.impl;
+
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.engine.ExecutionEngine;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 基于语言运行时的代码沙箱，执行流程由共享的 {@link ExecutionEngine} 完成
+ *
+ * @author yanweiyi
+ */
+public class RuntimeDockerCodeSandbox implements DockerCodeSandbox {
+
+    private final LanguageRuntime languageRuntime;
+
+    private final ExecutionEngine executionEngine;
+
+    public RuntimeDockerCodeSandbox(LanguageRuntime languageRuntime, ExecutionEngine executionEngine) {
+        this.languageRuntime = languageRuntime;
+        this.executionEngine = executionEngine;
+    }
+
+    public LanguageRuntime getLanguageRuntime() {
+        return languageRuntime;
+    }
+
+    @Override
+    public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+        return executeCodeAsync(executeCodeRequest).join();
+    }
+
+    @Override
+    public CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest) {
+        return executeCodeAsync(executeCodeRequest, new CancellationToken());
+    }
+
+    @Override
+    public CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest,
+                                                                   CancellationToken cancellationToken) {
+        return executionEngine.execute(languageRuntime, executeCodeRequest, cancellationToken);
+    }
+
+    @Override
+    public CompletableFuture<ExecuteCodeResponse> findCached(ExecuteCodeRequest executeCodeRequest,
+                                                             CancellationToken cancellationToken) {
+        return executionEngine.findCached(languageRuntime, executeCodeRequest, cancellationToken);
+    }
+}
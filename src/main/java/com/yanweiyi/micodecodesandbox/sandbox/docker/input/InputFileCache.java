@@ -0,0 +1,215 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.input;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.yanweiyi.micodecodesandbox.config.InputCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 宿主机上按内容哈希存放用例输入的文件缓存
+ * <p>
+ * 相同内容的输入只写入一次，执行时只把本次使用的文件放入容器的工作目录（可以时使用硬链接），
+ * 容器内的程序直接从文件读取标准输入，不需要编码到命令行中；缓存目录本身不挂载到容器，其他提交的输入对容器不可见。
+ * 正在被执行使用的文件不会被淘汰，使用方通过 {@link Lease#close()} 释放占用。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class InputFileCache {
+
+    // 默认缓存目录
+    private static final String DEFAULT_CACHE_DIRECTORY = "tempCode" + File.separator + "inputs";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    // 按访问顺序排列的缓存文件，key 为内容哈希
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    public InputFileCache(InputCacheProperties inputCacheProperties) {
+        this.directory = StrUtil.isBlank(inputCacheProperties.getDirectory())
+                ? Paths.get(System.getProperty("user.dir"), DEFAULT_CACHE_DIRECTORY)
+                : Paths.get(inputCacheProperties.getDirectory());
+        this.maxBytes = inputCacheProperties.getMaxBytes();
+        loadExistingFiles();
+    }
+
+    /**
+     * 宿主机上的缓存目录
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 写入输入内容（已存在时直接复用），并占用该文件直到租约关闭
+     *
+     * @return 文件租约，可获取容器内的文件路径
+     * @throws IOException 写入文件失败
+     */
+    public Lease store(byte[] content) throws IOException {
+        String hash = DigestUtil.sha256Hex(content);
+        synchronized (this) {
+            CacheEntry entry = entries.get(hash);
+            if (entry != null) {
+                entry.leaseCount++;
+                return new Lease(hash);
+            }
+        }
+        // 先写入临时文件再原子移动，容器内不会读到写了一半的文件
+        Path filePath = directory.resolve(hash);
+        Path tempPath = directory.resolve(hash + ".tmp-" + UUID.randomUUID());
+        Files.write(tempPath, content);
+        try {
+            Files.move(tempPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        synchronized (this) {
+            CacheEntry entry = entries.get(hash);
+            if (entry == null) {
+                entry = new CacheEntry(content.length);
+                entries.put(hash, entry);
+                totalBytes += content.length;
+            }
+            entry.leaseCount++;
+            evictIfNeeded();
+        }
+        return new Lease(hash);
+    }
+
+    /**
+     * 按内容哈希占用已缓存的文件
+     *
+     * @return 文件租约，文件不存在（未写入或已被淘汰）时返回 null
+     */
+    public synchronized Lease open(String hash) {
+        CacheEntry entry = entries.get(hash);
+        if (entry == null) {
+            return null;
+        }
+        entry.leaseCount++;
+        return new Lease(hash);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized void release(String hash) {
+        CacheEntry entry = entries.get(hash);
+        if (entry != null) {
+            entry.leaseCount--;
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * 淘汰最久未使用且未被占用的文件，直到总大小不超过上限
+     */
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, CacheEntry> entry = iterator.next();
+            if (entry.getValue().leaseCount > 0) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                log.error("error deleting cached input {}: {}", entry.getKey(), e.getMessage());
+                continue;
+            }
+            totalBytes -= entry.getValue().size;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 加载重启前留下的缓存文件，删除未写完的临时文件
+     */
+    private void loadExistingFiles() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String fileName = file.getFileName().toString();
+                    if (fileName.matches("[0-9a-f]{64}")) {
+                        long size = Files.size(file);
+                        entries.put(fileName, new CacheEntry(size));
+                        totalBytes += size;
+                    } else {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to initialize input cache directory", e);
+        }
+        evictIfNeeded();
+        log.info("file cache {} loaded, files: {}, bytes: {}", directory, entries.size(), totalBytes);
+    }
+
+    private static class CacheEntry {
+
+        private final long size;
+
+        // 正在使用该文件的执行数
+        private int leaseCount;
+
+        private CacheEntry(long size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * 缓存文件的占用租约
+     */
+    public class Lease implements AutoCloseable {
+
+        private final String hash;
+
+        private boolean closed;
+
+        private Lease(String hash) {
+            this.hash = hash;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * 文件在宿主机上的路径
+         */
+        public Path getHostPath() {
+            return directory.resolve(hash);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(hash);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.metering;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 直接读取容器 cgroup 文件的计量器，支持 cgroup v1 和 v2
+ * <p>
+ * 用例开始时重置峰值内存并记录 CPU 时间，结束时读取峰值内存和 CPU 时间差，不需要额外调用 Docker 接口；
+ * 同时记录内核 OOM killer 停止进程的次数，用于可靠地判定内存超限。
+ * 内核不支持重置峰值时记录开始时的峰值，结束时峰值没有超过它则无法区分是否来自之前的用例，标记为不精确。
+ * 找不到容器的 cgroup 目录时（如服务本身运行在未挂载宿主机 cgroup 的容器中）交给后备计量器处理。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+public class CgroupResourceMeter implements ResourceMeter {
+
+    private final Path cgroupRoot;
+
+    private final ResourceMeter fallbackMeter;
+
+    // cgroup v2 的根目录下存在 cgroup.controllers 文件
+    private final boolean unified;
+
+    // 内核不支持重置峰值内存时只警告一次
+    private final AtomicBoolean peakResetWarned = new AtomicBoolean();
+
+    public CgroupResourceMeter(Path cgroupRoot, ResourceMeter fallbackMeter) {
+        this.cgroupRoot = cgroupRoot;
+        this.fallbackMeter = fallbackMeter;
+        this.unified = Files.exists(cgroupRoot.resolve("cgroup.controllers"));
+    }
+
+    @Override
+    public Session start(String containerId) {
+        try {
+            if (unified) {
+                Path containerPath = findContainerPath(containerId, "");
+                if (containerPath != null) {
+                    return startUnified(containerPath);
+                }
+            } else {
+                Path memoryPath = findContainerPath(containerId, "memory");
+                Path cpuPath = findContainerPath(containerId, "cpuacct");
+                if (cpuPath == null) {
+                    cpuPath = findContainerPath(containerId, "cpu,cpuacct");
+                }
+                if (memoryPath != null && cpuPath != null) {
+                    return startLegacy(memoryPath, cpuPath);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("error reading cgroup of container {}: {}", containerId, e.getMessage());
+        }
+        return fallbackMeter.start(containerId);
+    }
+
+    @Override
+    public Long readOomKillCount(String containerId) {
+        try {
+            Path memoryPath = findContainerPath(containerId, unified ? "" : "memory");
+            if (memoryPath != null) {
+                return readOomKillCount(memoryPath);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("error reading cgroup of container {}: {}", containerId, e.getMessage());
+        }
+        return fallbackMeter.readOomKillCount(containerId);
+    }
+
+    /**
+     * cgroup v2：向 memory.peak 写入内容会把通过同一个文件描述符读到的峰值重置为当前用量（Linux 6.12+），
+     * 内核不支持重置时读到的是容器生命周期内的峰值
+     */
+    private Session startUnified(Path containerPath) throws IOException {
+        long startCpuNanos = readCpuStatUsageNanos(containerPath.resolve("cpu.stat"));
+        Long startOomKillCount = readOomKillCount(containerPath);
+        FileChannel peakChannel = FileChannel.open(containerPath.resolve("memory.peak"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Long startPeakBytes = null;
+        try {
+            peakChannel.write(ByteBuffer.wrap("reset\n".getBytes(StandardCharsets.US_ASCII)), 0);
+        } catch (IOException e) {
+            warnPeakResetUnsupported("memory.peak", e);
+            try {
+                startPeakBytes = readLong(peakChannel);
+            } catch (IOException | RuntimeException readException) {
+                closeQuietly(peakChannel);
+                throw readException;
+            }
+        }
+        Long finalStartPeakBytes = startPeakBytes;
+        return () -> {
+            ResourceUsage resourceUsage = new ResourceUsage();
+            try {
+                setPeakMemory(resourceUsage, readLong(peakChannel), finalStartPeakBytes);
+                resourceUsage.setCpuTimeNanos(readCpuStatUsageNanos(containerPath.resolve("cpu.stat")) - startCpuNanos);
+                resourceUsage.setOomKillCount(subtract(readOomKillCount(containerPath), startOomKillCount));
+            } catch (IOException | RuntimeException e) {
+                log.error("error reading cgroup files: {}", e.getMessage());
+            } finally {
+                closeQuietly(peakChannel);
+            }
+            return resourceUsage;
+        };
+    }
+
+    /**
+     * cgroup v1：向 memory.max_usage_in_bytes 写入 0 重置峰值，CPU 时间取 cpuacct.usage 的差值
+     */
+    private Session startLegacy(Path memoryPath, Path cpuPath) throws IOException {
+        long startCpuNanos = readLong(cpuPath.resolve("cpuacct.usage"));
+        Long startOomKillCount = readOomKillCount(memoryPath);
+        Path maxUsagePath = memoryPath.resolve("memory.max_usage_in_bytes");
+        Long startPeakBytes = null;
+        try {
+            Files.write(maxUsagePath, "0".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            warnPeakResetUnsupported("memory.max_usage_in_bytes", e);
+            startPeakBytes = readLong(maxUsagePath);
+        }
+        Long finalStartPeakBytes = startPeakBytes;
+        return () -> {
+            ResourceUsage resourceUsage = new ResourceUsage();
+            try {
+                setPeakMemory(resourceUsage, readLong(maxUsagePath), finalStartPeakBytes);
+                resourceUsage.setCpuTimeNanos(readLong(cpuPath.resolve("cpuacct.usage")) - startCpuNanos);
+                resourceUsage.setOomKillCount(subtract(readOomKillCount(memoryPath), startOomKillCount));
+            } catch (IOException | RuntimeException e) {
+                log.error("error reading cgroup files: {}", e.getMessage());
+            }
+            return resourceUsage;
+        };
+    }
+
+    /**
+     * 设置峰值内存，未能重置时只有峰值超过开始时的峰值才确定来自本次计量
+     *
+     * @param startPeakBytes 未能重置时开始计量时的峰值，重置成功时为 null
+     */
+    private static void setPeakMemory(ResourceUsage resourceUsage, long peakBytes, Long startPeakBytes) {
+        resourceUsage.setPeakMemoryBytes(peakBytes);
+        resourceUsage.setPeakMemoryExact(startPeakBytes == null || peakBytes > startPeakBytes);
+    }
+
+    private void warnPeakResetUnsupported(String fileName, IOException e) {
+        if (peakResetWarned.compareAndSet(false, true)) {
+            log.warn("{} reset not supported, peak memory is only used for memory limit checks when it rises: {}",
+                    fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * 按 systemd 和 cgroupfs 两种 cgroup 驱动的目录结构查找容器的 cgroup 目录
+     *
+     * @param controller cgroup v1 的控制器目录名，cgroup v2 传空字符串
+     */
+    private Path findContainerPath(String containerId, String controller) {
+        Path controllerRoot = controller.isEmpty() ? cgroupRoot : cgroupRoot.resolve(controller);
+        List<Path> candidates = Arrays.asList(
+                controllerRoot.resolve("system.slice").resolve("docker-" + containerId + ".scope"),
+                controllerRoot.resolve("docker").resolve(containerId));
+        for (Path candidate : candidates) {
+            if (Files.isDirectory(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取 cpu.stat 中的 usage_usec 并转换为 ns
+     */
+    private static long readCpuStatUsageNanos(Path cpuStatPath) throws IOException {
+        for (String line : Files.readAllLines(cpuStatPath, StandardCharsets.US_ASCII)) {
+            if (line.startsWith("usage_usec ")) {
+                return Long.parseLong(line.substring("usage_usec ".length()).trim()) * 1000L;
+            }
+        }
+        throw new IOException("usage_usec not found in " + cpuStatPath);
+    }
+
+    /**
+     * 读取 OOM killer 停止进程的累计次数：cgroup v2 为 memory.events 中的 oom_kill，
+     * cgroup v1 为 memory.oom_control 中的 oom_kill（Linux 4.13+）
+     *
+     * @return 累计次数，内核不支持时返回 null
+     */
+    private Long readOomKillCount(Path memoryPath) throws IOException {
+        Path eventsPath = memoryPath.resolve(unified ? "memory.events" : "memory.oom_control");
+        if (!Files.exists(eventsPath)) {
+            return null;
+        }
+        for (String line : Files.readAllLines(eventsPath, StandardCharsets.US_ASCII)) {
+            if (line.startsWith("oom_kill ")) {
+                return Long.parseLong(line.substring("oom_kill ".length()).trim());
+            }
+        }
+        return null;
+    }
+
+    private static Long subtract(Long end, Long start) {
+        return end == null || start == null ? null : end - start;
+    }
+
+    private static long readLong(Path path) throws IOException {
+        return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.US_ASCII).trim());
+    }
+
+    private static long readLong(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        channel.read(buffer, 0);
+        return Long.parseLong(new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim());
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("error closing cgroup file: {}", e.getMessage());
+        }
+    }
+}
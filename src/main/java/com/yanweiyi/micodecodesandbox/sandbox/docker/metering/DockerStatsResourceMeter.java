@@ -0,0 +1,55 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.metering;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.StatsCmd;
+import com.github.dockerjava.api.model.Statistics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通过 Docker 统计信息接口计量，Docker 约每秒采样一次，运行时间很短的程序可能取不到数据
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+public class DockerStatsResourceMeter implements ResourceMeter {
+
+    private final DockerClient dockerClient;
+
+    public DockerStatsResourceMeter(DockerClient dockerClient) {
+        this.dockerClient = dockerClient;
+    }
+
+    @Override
+    public Session start(String containerId) {
+        // 开启内存监控，获取程序运行期间的最大内存占用量
+        AtomicLong maxMemoryUsage = new AtomicLong(Long.MIN_VALUE);
+        StatsCmd statsCmd = dockerClient.statsCmd(containerId);
+        ResultCallback.Adapter<Statistics> statisticsResultCallback = new ResultCallback.Adapter<Statistics>() {
+            @Override
+            public void onNext(Statistics statistics) {
+                Long currentMemoryUsage = statistics.getMemoryStats().getUsage();
+                if (currentMemoryUsage != null) {
+                    maxMemoryUsage.accumulateAndGet(currentMemoryUsage, Math::max);
+                }
+                super.onNext(statistics);
+            }
+        };
+        statsCmd.exec(statisticsResultCallback);
+        return () -> {
+            try {
+                statisticsResultCallback.close(); // 关闭内存监控
+                statsCmd.close();
+            } catch (IOException e) {
+                log.error("error closing memory monitoring: {}", e.getMessage());
+            }
+            ResourceUsage resourceUsage = new ResourceUsage();
+            long peakMemory = maxMemoryUsage.get();
+            resourceUsage.setPeakMemoryBytes(peakMemory == Long.MIN_VALUE ? null : peakMemory);
+            return resourceUsage;
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.metering;
+
+/**
+ * 容器资源计量器，在每个用例开始和结束时采集容器的内存和 CPU 使用量
+ *
+ * @author yanweiyi
+ */
+public interface ResourceMeter {
+
+    /**
+     * 开始计量
+     *
+     * @param containerId 容器 id
+     * @return 计量会话，用例结束时调用 {@link Session#stop()} 获取资源使用量
+     */
+    Session start(String containerId);
+
+    /**
+     * 读取容器自创建以来进程被内核因超出内存限制而停止的累计次数
+     *
+     * @return 累计次数，不支持时返回 null
+     */
+    default Long readOomKillCount(String containerId) {
+        return null;
+    }
+
+    interface Session {
+
+        /**
+         * 结束计量并返回本次计量期间的资源使用量
+         */
+        ResourceUsage stop();
+    }
+}
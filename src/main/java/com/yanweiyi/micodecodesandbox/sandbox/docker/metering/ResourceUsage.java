@@ -0,0 +1,32 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.metering;
+
+import lombok.Data;
+
+/**
+ * 一次计量期间容器的资源使用量
+ *
+ * @author yanweiyi
+ */
+@Data
+public class ResourceUsage {
+
+    /**
+     * 峰值内存（byte），无法获取时为 null
+     */
+    private Long peakMemoryBytes;
+
+    /**
+     * 峰值内存是否只包含计量期间的用量，为 false 时峰值可能来自之前的用例，只能作为上限，不能用于判定内存超限
+     */
+    private boolean peakMemoryExact = true;
+
+    /**
+     * CPU 时间（user + sys，ns），无法获取时为 null
+     */
+    private Long cpuTimeNanos;
+
+    /**
+     * 计量期间容器内进程被内核因超出内存限制而停止的次数，无法获取时为 null
+     */
+    private Long oomKillCount;
+}
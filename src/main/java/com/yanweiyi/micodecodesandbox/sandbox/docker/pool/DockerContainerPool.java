@@ -0,0 +1,432 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.pool;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.command.TopContainerResponse;
+import com.github.dockerjava.api.command.UpdateContainerCmd;
+import com.github.dockerjava.api.model.AccessMode;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Volume;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.Workspace;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.WorkspaceProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个语言的预热容器池
+ * <p>
+ * 容器在创建时将 {@link WorkspaceProvider} 提供的独立工作目录映射到容器的 /app 目录，每次归还时清空工作目录后复用；
+ * 容器使用次数达到上限、健康检查失败或被标记为污染时交给 {@link ContainerCleaner} 销毁并按需补充。
+ * 健康检查需要查看容器状态和进程列表，只在执行失败的容器归还时和定期维护空闲容器时进行，正常归还的容器直接复用。
+ * 容器创建时设置内存、交换分区、CPU 配额和进程数限制，借出后按每次执行的要求通过 docker update 调整内存和 CPU 限制。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+public class DockerContainerPool {
+
+    // 容器内的工作目录
+    public static final String CONTAINER_WORK_DIRECTORY = "/app";
+
+    // 等待空闲容器时的单次轮询时长（ms）
+    private static final long POLL_INTERVAL_MILLISECONDS = 100L;
+
+    // CFS 调度周期（μs），CPU 配额按核数乘以该周期计算
+    private static final int CPU_PERIOD_MICROSECONDS = 100000;
+
+    private final String language;
+
+    private final ContainerPoolProperties.LanguagePool config;
+
+    private final DockerClient dockerClient;
+
+    // 创建和清空各容器的工作目录
+    private final WorkspaceProvider workspaceProvider;
+
+    private final SandboxMetrics sandboxMetrics;
+
+    private final ContainerCleaner containerCleaner;
+
+    // 池中现存的容器（包含空闲和借出的容器），key 为容器 id
+    private final Map<String, PooledContainer> liveContainers = new ConcurrentHashMap<>();
+
+    // 空闲容器，后进先出以便优先复用最近使用过的容器
+    private final LinkedBlockingDeque<PooledContainer> idleContainers = new LinkedBlockingDeque<>();
+
+    // 容器总数（包含空闲、借出和正在创建的容器）
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    // 正在后台创建的容器数
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // 开启 CPU 绑定时下一个容器使用的 CPU 序号
+    private final AtomicInteger nextCpuIndex = new AtomicInteger();
+
+    // Docker 宿主机的 CPU 核数，开启 CPU 绑定时在创建容器池时读取一次
+    private final int hostCpuCount;
+
+    // 后台创建和销毁容器的线程
+    private final ExecutorService maintainExecutor;
+
+    private volatile boolean closed = false;
+
+    public DockerContainerPool(String language, ContainerPoolProperties.LanguagePool config,
+                               DockerClient dockerClient, WorkspaceProvider workspaceProvider,
+                               SandboxMetrics sandboxMetrics, ContainerCleaner containerCleaner) {
+        this.language = language;
+        this.sandboxMetrics = sandboxMetrics;
+        this.containerCleaner = containerCleaner;
+        this.config = config;
+        this.dockerClient = dockerClient;
+        this.workspaceProvider = workspaceProvider;
+        this.hostCpuCount = config.isCpuPinning() ? readHostCpuCount() : 0;
+        this.maintainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "container-pool-" + language);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 借出一个容器，没有空闲容器且已达到容器上限时等待
+     *
+     * @param timeoutMillis 最长等待时间（ms）
+     * @return 可用的容器，等待超时返回 null
+     */
+    public PooledContainer acquire(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!closed) {
+            PooledContainer container = idleContainers.pollFirst();
+            if (container != null) {
+                return container;
+            }
+            if (tryReserve()) {
+                try {
+                    return createContainer();
+                } catch (RuntimeException e) {
+                    totalCount.decrementAndGet();
+                    throw e;
+                }
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                log.warn("{} container pool exhausted, acquire timed out", language);
+                return null;
+            }
+            long waitNanos = Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLISECONDS));
+            container = idleContainers.pollFirst(waitNanos, TimeUnit.NANOSECONDS);
+            if (container != null) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 借出一个已经预热好的空闲容器，不创建新容器也不等待
+     *
+     * @return 空闲容器，没有空闲容器时返回 null
+     */
+    public PooledContainer tryAcquireIdle() {
+        return closed ? null : idleContainers.pollFirst();
+    }
+
+    /**
+     * 归还容器，不检查容器状态
+     *
+     * @param container    借出的容器
+     * @param contaminated 容器是否可能被污染（如有超时进程残留），被污染的容器直接销毁
+     */
+    public void release(PooledContainer container, boolean contaminated) {
+        release(container, contaminated, false);
+    }
+
+    /**
+     * 归还容器
+     *
+     * @param container    借出的容器
+     * @param contaminated 容器是否可能被污染（如有超时进程残留），被污染的容器直接销毁
+     * @param checkHealth  是否在复用前检查容器状态，用户进程异常退出等执行失败的情况下可能有进程残留
+     */
+    public void release(PooledContainer container, boolean contaminated, boolean checkHealth) {
+        container.setUseCount(container.getUseCount() + 1);
+        if (closed) {
+            destroyContainer(container);
+            return;
+        }
+        if (contaminated || container.getUseCount() >= config.getMaxUses() || checkHealth && !isHealthy(container)) {
+            log.info("{} container {} recycled after {} uses", language, container.getContainerId(), container.getUseCount());
+            destroyContainer(container);
+            replenish();
+            return;
+        }
+        try {
+            long startNanos = System.nanoTime();
+            workspaceProvider.reset(container.getWorkspace());
+            sandboxMetrics.recordContainerCleanup(language, "reset", System.nanoTime() - startNanos);
+        } catch (IOException e) {
+            log.error("error resetting container workspace: {}", e.getMessage());
+            destroyContainer(container);
+            replenish();
+            return;
+        }
+        idleContainers.offerFirst(container);
+    }
+
+    /**
+     * 调整借出容器的内存和 CPU 限制，与当前生效的限制相同时不调用 Docker
+     * <p>
+     * 内存加交换分区的上限与内存限制相同，超出时由内核 OOM killer 停止容器内的进程
+     *
+     * @param memoryLimitBytes 内存限制（byte）
+     * @param cpus             可以使用的 CPU 核数，为 null 时使用容器池配置
+     */
+    public void applyLimits(PooledContainer container, long memoryLimitBytes, Double cpus) {
+        Integer cpuQuota = toCpuQuota(cpus != null ? cpus : config.getCpus());
+        if (container.getMemoryLimitBytes() == memoryLimitBytes && Objects.equals(container.getCpuQuota(), cpuQuota)) {
+            return;
+        }
+        UpdateContainerCmd updateContainerCmd = dockerClient.updateContainerCmd(container.getContainerId())
+                .withMemory(memoryLimitBytes)
+                .withMemorySwap(memoryLimitBytes);
+        if (cpuQuota != null) {
+            updateContainerCmd.withCpuPeriod(CPU_PERIOD_MICROSECONDS).withCpuQuota(cpuQuota);
+        } else if (container.getCpuQuota() != null) {
+            // 取消 CPU 配额
+            updateContainerCmd.withCpuQuota(-1);
+        }
+        updateContainerCmd.exec();
+        container.setMemoryLimitBytes(memoryLimitBytes);
+        container.setCpuQuota(cpuQuota);
+    }
+
+    /**
+     * 检查空闲容器的健康状态，移除异常容器并补充到最少空闲数
+     */
+    public void maintain() {
+        List<PooledContainer> checkingContainers = new ArrayList<>();
+        idleContainers.drainTo(checkingContainers);
+        for (PooledContainer container : checkingContainers) {
+            if (isHealthy(container)) {
+                idleContainers.offerLast(container);
+            } else {
+                log.warn("{} container {} failed health check", language, container.getContainerId());
+                destroyContainer(container);
+            }
+        }
+        replenish();
+    }
+
+    /**
+     * 在后台补充容器到最少空闲数
+     */
+    public void replenish() {
+        if (closed) {
+            return;
+        }
+        int missingCount = config.getMinIdle() - idleContainers.size() - pendingCount.get();
+        for (int i = 0; i < missingCount && tryReserve(); i++) {
+            pendingCount.incrementAndGet();
+            maintainExecutor.execute(() -> {
+                try {
+                    idleContainers.offerLast(createContainer());
+                } catch (RuntimeException e) {
+                    totalCount.decrementAndGet();
+                    log.error("error warming up {} container: {}", language, e.getMessage());
+                } finally {
+                    pendingCount.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 池中现存的容器（包含空闲和借出的容器）
+     */
+    public Collection<PooledContainer> getLiveContainers() {
+        return Collections.unmodifiableCollection(liveContainers.values());
+    }
+
+    /**
+     * 关闭容器池，销毁所有空闲容器，借出的容器在归还时销毁
+     */
+    public void shutdown() {
+        closed = true;
+        maintainExecutor.shutdownNow();
+        List<PooledContainer> containers = new ArrayList<>();
+        idleContainers.drainTo(containers);
+        containers.forEach(this::destroyContainer);
+    }
+
+    public int getIdleCount() {
+        return idleContainers.size();
+    }
+
+    public int getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * 占用一个容器名额，已达上限时返回 false
+     */
+    private boolean tryReserve() {
+        while (true) {
+            int current = totalCount.get();
+            if (current >= config.getMaxTotal()) {
+                return false;
+            }
+            if (totalCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 创建并启动一个容器
+     */
+    private PooledContainer createContainer() {
+        Workspace workspace;
+        try {
+            workspace = workspaceProvider.create(language);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create container workspace", e);
+        }
+        log.info("docker container create");
+        CreateContainerCmd containerCommand = dockerClient.createContainerCmd(config.getImage());
+        // 开启获取 Docker 执行的输入和输出
+        containerCommand.withAttachStdin(true);
+        containerCommand.withAttachStdout(true);
+        containerCommand.withAttachStderr(true);
+        // 禁用网络，防止被刷带宽等
+        containerCommand.withNetworkDisabled(true);
+        // 关闭交互终端
+        containerCommand.withTty(true);
+        // 所有者标签用于在服务异常退出后找到遗留的容器
+        Map<String, String> labels = new HashMap<>();
+        labels.put(ContainerCleaner.OWNER_LABEL, containerCleaner.getOwner());
+        labels.put(ContainerCleaner.LANGUAGE_LABEL, language);
+        containerCommand.withLabels(labels);
+
+        // 容器配置对象（目录映射、容器内存限制、只读根目录）
+        HostConfig hostConfig = containerCommand.getHostConfig();
+        if (hostConfig == null) {
+            containerCleaner.submit(language, null, workspace.getPath(), null);
+            throw new RuntimeException("hostConfig creation failed");
+        }
+        // 将工作目录映射到容器内，编译好的文件和本次执行的用例输入通过该目录上传到容器环境，容器内只需读取时以只读方式挂载
+        // 共享的用例输入缓存目录不挂载，容器只能看到放入自己工作目录的输入文件
+        hostConfig.setBinds(new Bind(workspace.getPath().toString(), new Volume(CONTAINER_WORK_DIRECTORY),
+                workspaceProvider.isReadOnly() ? AccessMode.ro : AccessMode.rw));
+        // 设置内存限制，不允许使用交换分区
+        hostConfig.withMemory(config.getMemoryLimit());
+        hostConfig.withMemorySwap(config.getMemoryLimit());
+        // 按 CFS 配额限制 CPU 核数（与 --cpus 等效），借出后可以通过 docker update 调整
+        Integer cpuQuota = toCpuQuota(config.getCpus());
+        if (cpuQuota != null) {
+            hostConfig.withCpuPeriod((long) CPU_PERIOD_MICROSECONDS);
+            hostConfig.withCpuQuota((long) cpuQuota);
+        }
+        // 限制进程数，防止 fork 炸弹耗尽宿主机的进程号
+        if (config.getPidsLimit() > 0) {
+            hostConfig.withPidsLimit(config.getPidsLimit());
+        }
+        // 限制用户不能往根目录写入
+        hostConfig.withReadonlyRootfs(true);
+        // 按创建顺序轮流绑定 CPU 核
+        if (config.isCpuPinning()) {
+            int cpuIndex = Math.floorMod(nextCpuIndex.getAndIncrement(), hostCpuCount);
+            hostConfig.withCpusetCpus(String.valueOf(cpuIndex));
+        }
+        containerCommand.withHostConfig(hostConfig);
+
+        String containerId = null;
+        try {
+            long createStartNanos = System.nanoTime();
+            containerId = containerCommand.exec().getId();
+            sandboxMetrics.recordContainerCreate(language, System.nanoTime() - createStartNanos);
+            log.info("docker container start");
+            long startStartNanos = System.nanoTime();
+            dockerClient.startContainerCmd(containerId).exec();
+            sandboxMetrics.recordContainerStart(language, System.nanoTime() - startStartNanos);
+            PooledContainer container = new PooledContainer(containerId, workspace, System.currentTimeMillis());
+            container.setMemoryLimitBytes(config.getMemoryLimit());
+            container.setCpuQuota(cpuQuota);
+            container.setBaselineProcessCount(countProcesses(containerId));
+            liveContainers.put(containerId, container);
+            return container;
+        } catch (RuntimeException e) {
+            containerCleaner.submit(language, containerId, workspace.getPath(), null);
+            throw e;
+        }
+    }
+
+    /**
+     * 交给清理器销毁容器并删除其工作目录，清理结束后释放容器名额
+     */
+    private void destroyContainer(PooledContainer container) {
+        log.info("docker container clear");
+        liveContainers.remove(container.getContainerId());
+        containerCleaner.submit(language, container.getContainerId(), container.getWorkspacePath(),
+                totalCount::decrementAndGet);
+    }
+
+    /**
+     * 容器仍在运行且没有残留的用户进程时视为健康
+     */
+    private boolean isHealthy(PooledContainer container) {
+        try {
+            InspectContainerResponse.ContainerState state = dockerClient
+                    .inspectContainerCmd(container.getContainerId()).exec().getState();
+            if (!Boolean.TRUE.equals(state.getRunning())) {
+                return false;
+            }
+            return countProcesses(container.getContainerId()) <= container.getBaselineProcessCount();
+        } catch (RuntimeException e) {
+            log.error("error checking container {}: {}", container.getContainerId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 读取 Docker 宿主机的 CPU 核数，服务与 Docker 不在同一台机器上时与本机核数不同；读取失败时使用本机核数
+     */
+    private int readHostCpuCount() {
+        try {
+            Integer cpuCount = dockerClient.infoCmd().exec().getNCPU();
+            if (cpuCount != null && cpuCount > 0) {
+                return cpuCount;
+            }
+            log.warn("docker reported no cpu count, pinning {} containers to local cpus", language);
+        } catch (RuntimeException e) {
+            log.warn("error reading docker cpu count, pinning {} containers to local cpus: {}", language, e.getMessage());
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * CPU 核数转换为每个调度周期的 CFS 配额（μs）
+     *
+     * @return 配额，核数不大于 0 时返回 null 表示不限制
+     */
+    private static Integer toCpuQuota(double cpus) {
+        return cpus > 0 ? (int) Math.round(cpus * CPU_PERIOD_MICROSECONDS) : null;
+    }
+
+    /**
+     * 统计容器内的进程数
+     */
+    private int countProcesses(String containerId) {
+        TopContainerResponse topContainerResponse = dockerClient.topContainerCmd(containerId).exec();
+        String[][] processes = topContainerResponse.getProcesses();
+        return processes == null ? 0 : processes.length;
+    }
+}
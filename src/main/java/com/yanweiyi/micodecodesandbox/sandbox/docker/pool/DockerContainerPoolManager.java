@@ -0,0 +1,125 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.pool;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.WorkspaceProvider;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+import com.yanweiyi.micodecodesandbox.service.DockerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 管理各语言的容器池
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class DockerContainerPoolManager {
+
+    @Resource
+    private ContainerPoolProperties containerPoolProperties;
+
+    @Resource
+    private DockerService dockerService;
+
+    @Resource
+    private SandboxMetrics sandboxMetrics;
+
+    @Resource
+    private ContainerCleaner containerCleaner;
+
+    @Resource
+    private WorkspaceProvider workspaceProvider;
+
+    @Resource
+    private List<LanguageRuntime> languageRuntimes;
+
+    @Resource
+    private DockerClient dockerClient;
+
+    @Resource
+    private ClusterProperties clusterProperties;
+
+    private final Map<String, DockerContainerPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * 为每个已注册的语言运行时创建容器池，并在后台预热容器
+     * <p>
+     * 未配置的语言使用默认的容器池配置，未指定镜像时使用运行时的默认镜像；调度节点不执行代码，不创建容器池
+     */
+    @PostConstruct
+    public void initPools() {
+        if (clusterProperties.getRole() == ClusterProperties.Role.DISPATCHER) {
+            log.info("dispatcher node, container pools disabled");
+            return;
+        }
+        languageRuntimes.forEach(languageRuntime -> {
+            String language = languageRuntime.getLanguage();
+            ContainerPoolProperties.LanguagePool config = containerPoolProperties.getLanguages()
+                    .computeIfAbsent(language, key -> new ContainerPoolProperties.LanguagePool());
+            if (StrUtil.isBlank(config.getImage())) {
+                config.setImage(languageRuntime.getDefaultImage());
+            }
+            dockerService.pullDockerImageIfNeeded(config.getImage());
+            config.setImage(languageRuntime.prepareImage(config.getImage()));
+            DockerContainerPool pool = new DockerContainerPool(language, config, dockerClient, workspaceProvider,
+                    sandboxMetrics, containerCleaner);
+            pools.put(language, pool);
+            pool.replenish();
+            log.info("{} container pool initialized, image: {}, min idle: {}, max total: {}",
+                    language, config.getImage(), config.getMinIdle(), config.getMaxTotal());
+        });
+    }
+
+    /**
+     * 获取语言对应的容器池
+     *
+     * @param language 代码语言
+     * @return 容器池，未配置该语言时返回 null
+     */
+    public DockerContainerPool getPool(String language) {
+        return pools.get(language);
+    }
+
+    /**
+     * 所有语言的容器池
+     */
+    public Collection<DockerContainerPool> getPools() {
+        return pools.values();
+    }
+
+    /**
+     * 宿主机上存放各容器工作目录的根目录
+     */
+    public Path getWorkspaceRoot() {
+        return workspaceProvider.getRoot();
+    }
+
+    /**
+     * 定时检查空闲容器健康状态并补充容器
+     */
+    @Scheduled(fixedDelayString = "${sandbox.pool.health-check-interval:30000}")
+    public void maintainPools() {
+        pools.values().forEach(DockerContainerPool::maintain);
+    }
+
+    @PreDestroy
+    public void shutdownPools() {
+        pools.values().forEach(DockerContainerPool::shutdown);
+    }
+}
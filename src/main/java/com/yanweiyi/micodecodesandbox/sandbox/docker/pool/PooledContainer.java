@@ -0,0 +1,54 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.pool;
+
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.Workspace;
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/**
+ * 池化的 Docker 容器
+ *
+ * @author yanweiyi
+ */
+@Data
+public class PooledContainer {
+
+    /**
+     * 容器 id
+     */
+    private final String containerId;
+
+    /**
+     * 映射到容器 /app 目录的宿主机工作目录
+     */
+    private final Workspace workspace;
+
+    /**
+     * 容器创建时间
+     */
+    private final long createdTime;
+
+    /**
+     * 容器空闲时的进程数，用于判断是否有用户进程残留
+     */
+    private int baselineProcessCount;
+
+    /**
+     * 已被使用的次数
+     */
+    private int useCount;
+
+    /**
+     * 当前生效的内存限制（byte）
+     */
+    private long memoryLimitBytes;
+
+    /**
+     * 当前生效的 CFS CPU 配额（μs），不限制时为 null
+     */
+    private Integer cpuQuota;
+
+    public Path getWorkspacePath() {
+        return workspace.getPath();
+    }
+}
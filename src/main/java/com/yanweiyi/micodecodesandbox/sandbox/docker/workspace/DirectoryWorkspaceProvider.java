@@ -0,0 +1,65 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.workspace;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IORuntimeException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * 在宿主机的普通目录下创建工作目录
+ *
+ * @author yanweiyi
+ */
+public class DirectoryWorkspaceProvider implements WorkspaceProvider {
+
+    private final Path root;
+
+    private final long quotaBytes;
+
+    private final boolean readOnly;
+
+    public DirectoryWorkspaceProvider(Path root, long quotaBytes, boolean readOnly) {
+        this.root = root.toAbsolutePath().normalize();
+        this.quotaBytes = quotaBytes;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public Workspace create(String language) throws IOException {
+        Path workspacePath = root.resolve(language + "-" + UUID.randomUUID());
+        Files.createDirectories(workspacePath);
+        return new Workspace(workspacePath, quotaBytes, readOnly);
+    }
+
+    @Override
+    public void reset(Workspace workspace) throws IOException {
+        try {
+            FileUtil.clean(workspace.getPath().toFile());
+        } catch (IORuntimeException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        workspace.resetUsage();
+    }
+
+    @Override
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isMemoryBacked() {
+        return false;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    protected long getQuotaBytes() {
+        return quotaBytes;
+    }
+}
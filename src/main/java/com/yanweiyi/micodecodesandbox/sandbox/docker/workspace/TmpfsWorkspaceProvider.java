@@ -0,0 +1,59 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.workspace;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 在内存文件系统（tmpfs，如 /dev/shm）上创建工作目录
+ * <p>
+ * 写入 class 文件和清空、删除工作目录都只在内存中进行，不产生磁盘 I/O，磁盘负载不再随提交量增长。
+ * 工作目录占用宿主机内存，创建时要求文件系统剩余空间不少于单个工作目录的配额。
+ *
+ * @author yanweiyi
+ */
+public class TmpfsWorkspaceProvider extends DirectoryWorkspaceProvider {
+
+    private static final String TMPFS_TYPE = "tmpfs";
+
+    public TmpfsWorkspaceProvider(Path root, long quotaBytes, boolean readOnly) {
+        super(root, quotaBytes, readOnly);
+        if (!isSupported(root)) {
+            throw new IllegalStateException(root + " is not on a tmpfs file system");
+        }
+    }
+
+    /**
+     * 目录（或其最近的已存在的上级目录）是否位于 tmpfs 上
+     */
+    public static boolean isSupported(Path directory) {
+        Path existingPath = directory.toAbsolutePath().normalize();
+        while (existingPath != null && !Files.exists(existingPath)) {
+            existingPath = existingPath.getParent();
+        }
+        if (existingPath == null) {
+            return false;
+        }
+        try {
+            return TMPFS_TYPE.equals(Files.getFileStore(existingPath).type());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Workspace create(String language) throws IOException {
+        Files.createDirectories(getRoot());
+        FileStore fileStore = Files.getFileStore(getRoot());
+        if (fileStore.getUsableSpace() < getQuotaBytes()) {
+            throw new IOException("not enough space on " + getRoot() + " for a new workspace");
+        }
+        return super.create(language);
+    }
+
+    @Override
+    public boolean isMemoryBacked() {
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.workspace;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个容器的工作目录，写入的总字节数不能超过配额
+ *
+ * @author yanweiyi
+ */
+public class Workspace {
+
+    private final Path path;
+
+    private final long quotaBytes;
+
+    // 容器是否以只读方式挂载工作目录
+    private final boolean readOnly;
+
+    // 自上次清空以来写入的字节数
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public Workspace(Path path, long quotaBytes, boolean readOnly) {
+        this.path = path;
+        this.quotaBytes = quotaBytes;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * 写入文件，父目录不存在时自动创建
+     *
+     * @param relativePath 相对于工作目录的路径
+     * @throws IOException 写入失败或超出配额
+     */
+    public void write(String relativePath, byte[] content) throws IOException {
+        Path filePath = prepare(relativePath);
+        reserve(content.length);
+        Files.write(filePath, content);
+    }
+
+    /**
+     * 将宿主机上内容不再变化的文件放入工作目录，目标文件已存在时认为内容相同，不再重复放入
+     * <p>
+     * 容器以只读方式挂载工作目录时优先创建硬链接，不复制内容也不计入配额；
+     * 不在同一文件系统时复制文件，容器可以写入工作目录时也复制，防止容器内的修改影响源文件
+     *
+     * @param relativePath 相对于工作目录的路径
+     * @throws IOException 复制失败或超出配额
+     */
+    public void link(String relativePath, Path source) throws IOException {
+        Path filePath = prepare(relativePath);
+        if (Files.exists(filePath)) {
+            return;
+        }
+        if (readOnly) {
+            try {
+                Files.createLink(filePath, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // 跨文件系统等无法创建硬链接的情况退化为复制
+            }
+        }
+        reserve(Files.size(source));
+        Files.copy(source, filePath);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * 检查路径不超出工作目录，并创建父目录
+     */
+    private Path prepare(String relativePath) throws IOException {
+        Path filePath = path.resolve(relativePath).normalize();
+        if (!filePath.startsWith(path)) {
+            throw new IOException("path escapes workspace: " + relativePath);
+        }
+        Path parentPath = filePath.getParent();
+        if (!parentPath.equals(path)) {
+            Files.createDirectories(parentPath);
+        }
+        return filePath;
+    }
+
+    private void reserve(long bytes) throws IOException {
+        long totalBytes = usedBytes.addAndGet(bytes);
+        if (totalBytes > quotaBytes) {
+            usedBytes.addAndGet(-bytes);
+            throw new IOException("workspace quota exceeded: " + totalBytes + " > " + quotaBytes + " bytes");
+        }
+    }
+
+    /**
+     * 清空后重新计算配额
+     */
+    void resetUsage() {
+        usedBytes.set(0);
+    }
+}
@@ -0,0 +1,42 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.workspace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 容器工作目录的提供者，负责在宿主机上创建、清空工作目录
+ * <p>
+ * 工作目录映射到容器的 /app 目录，编译好的文件通过 {@link Workspace#write(String, byte[])} 写入。
+ * 整个工作目录的删除交给 {@link com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner}。
+ *
+ * @author yanweiyi
+ */
+public interface WorkspaceProvider {
+
+    /**
+     * 创建一个空的工作目录
+     *
+     * @param language 代码语言，作为目录名前缀
+     */
+    Workspace create(String language) throws IOException;
+
+    /**
+     * 清空工作目录中的文件，保留目录本身以维持目录映射
+     */
+    void reset(Workspace workspace) throws IOException;
+
+    /**
+     * 存放各工作目录的根目录
+     */
+    Path getRoot();
+
+    /**
+     * 工作目录是否位于内存文件系统上
+     */
+    boolean isMemoryBacked();
+
+    /**
+     * 是否以只读方式挂载到容器内
+     */
+    boolean isReadOnly();
+}
@@ -0,0 +1,143 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * 限制字节数的用例输出流，可选地与预期输出逐字节比对
+ * <p>
+ * 该类同时被容器内的 {@link CaseRunner} 和服务端的输出接收使用，只能依赖 JDK 且需要兼容 Java 8。
+ * 比对模式下第一个不一致的字节出现时立即判定答案错误，已接收的输出仍然保存；
+ * 实际输出比预期输出多一个末尾换行时视为一致。
+ * 超出字节上限或答案错误时丢弃后续输出，并通知停止监听器（若有）。
+ *
+ * @author yanweiyi
+ */
+public class CaseOutputStream extends OutputStream {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    private final long limitBytes;
+
+    private final byte[] expectedOutput;
+
+    private final Runnable stopListener;
+
+    private long writtenBytes;
+
+    private boolean limitExceeded;
+
+    private boolean mismatched;
+
+    /**
+     * @param limitBytes     最多接收的字节数
+     * @param expectedOutput 预期输出，为 null 时不比对
+     * @param stopListener   超出上限或答案错误时调用一次，为 null 时超出上限只截断输出
+     */
+    public CaseOutputStream(long limitBytes, byte[] expectedOutput, Runnable stopListener) {
+        this.limitBytes = limitBytes;
+        this.expectedOutput = expectedOutput == null ? null : stripTrailingNewline(expectedOutput);
+        this.stopListener = stopListener;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        if (isStopped() || length <= 0) {
+            return;
+        }
+        int acceptLength = (int) Math.min(length, limitBytes - writtenBytes);
+        buffer.write(bytes, offset, acceptLength);
+        if (expectedOutput != null) {
+            for (int i = 0; i < acceptLength; i++) {
+                if (!matches(writtenBytes + i, bytes[offset + i])) {
+                    mismatched = true;
+                    notifyStop();
+                    return;
+                }
+            }
+        }
+        writtenBytes += acceptLength;
+        if (acceptLength < length) {
+            limitExceeded = true;
+            notifyStop();
+        }
+    }
+
+    /**
+     * 输出结束，比对模式下检查实际输出是否比预期输出短
+     */
+    public synchronized void finish() {
+        if (expectedOutput != null && !isStopped() && writtenBytes < expectedOutput.length) {
+            mismatched = true;
+        }
+    }
+
+    /**
+     * 已保存的输出，截断时去掉末尾不完整的 UTF-8 字符
+     */
+    public synchronized byte[] toByteArray() {
+        byte[] bytes = buffer.toByteArray();
+        return limitExceeded ? trimIncompleteUtf8(bytes) : bytes;
+    }
+
+    public synchronized boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    public synchronized boolean isMismatched() {
+        return mismatched;
+    }
+
+    /**
+     * 只有设置了停止监听器时超出上限才停止接收，否则继续截断
+     */
+    private boolean isStopped() {
+        return mismatched || (limitExceeded && stopListener != null);
+    }
+
+    private boolean matches(long position, byte b) {
+        if (position < expectedOutput.length) {
+            return expectedOutput[(int) position] == b;
+        }
+        return position == expectedOutput.length && b == '\n';
+    }
+
+    private void notifyStop() {
+        if (stopListener != null) {
+            stopListener.run();
+        }
+    }
+
+    private static byte[] stripTrailingNewline(byte[] bytes) {
+        if (bytes.length > 0 && bytes[bytes.length - 1] == '\n') {
+            byte[] stripped = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 0, stripped, 0, stripped.length);
+            return stripped;
+        }
+        return bytes;
+    }
+
+    private static byte[] trimIncompleteUtf8(byte[] bytes) {
+        // 从末尾向前找到最后一个字符的首字节，检查该字符是否完整
+        int start = bytes.length - 1;
+        while (start >= 0 && start > bytes.length - 4 && (bytes[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        if (start < 0) {
+            return bytes;
+        }
+        int lead = bytes[start] & 0xFF;
+        int charLength = lead < 0x80 ? 1 : lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        if (bytes.length - start >= charLength) {
+            return bytes;
+        }
+        byte[] trimmed = new byte[start];
+        System.arraycopy(bytes, 0, trimmed, 0, start);
+        return trimmed;
+    }
+}
@@ -0,0 +1,511 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.lang.reflect.ReflectPermission;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.Permission;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.PropertyPermission;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.LoggingPermission;
+
+/**
+ * 在容器内的一个 JVM 中依次运行全部用例的执行器
+ * <p>
+ * 该类会被复制到容器中单独运行，只能依赖 JDK 且需要兼容 Java 8。
+ * 每个用例使用新的类加载器加载用户类以重置静态状态，并重定向标准输入输出；
+ * 执行结果按 {@link CaseRunnerCodec} 约定的帧格式写到标准输出，每个帧带有启动参数中的帧标识。
+ * 标准输出超出上限或与预期输出不一致时立即停止该用例，错误输出超出上限时只截断。
+ * <p>
+ * 用户代码只拥有 {@link CasePolicy} 授予的权限，不能直接写文件描述符或文件、读取 /proc 和环境变量，
+ * 也就无法绕过重定向写出结果帧或获得帧标识。
+ * 每个用例结束后停止其遗留的线程并恢复系统属性，遗留线程无法停止时该用例判定为运行错误。
+ * <p>
+ * 用例的时间限制按用例所有线程的 CPU 时间之和判定，不包含 JVM 启动、GC 和 JIT 编译，也不受宿主机负载影响；
+ * 另设墙钟时间上限，防止 sleep 或等待中的用例一直占用容器。
+ * <p>
+ * 启动参数：用户类名、单个用例的 CPU 时间上限（ms，0 表示只限制墙钟时间）、用户类所在目录、标准输出上限（byte）、
+ * 错误输出上限（byte）、编码后的用例输入文件（为 "-" 时从标准输入读取）、
+ * 是否在第一个失败的用例后停止（1 表示停止）、单个用例的墙钟时间上限（ms）、结果帧标识
+ *
+ * @author yanweiyi
+ */
+public class CaseRunner {
+
+    /**
+     * 每个用例结果帧的起始标记
+     */
+    public static final String FRAME_MARKER = "#CASE";
+
+    /**
+     * 结果帧中的用例状态：正常结束、超时、输出超限、答案错误、内存超限
+     */
+    public static final int STATUS_FINISHED = 0;
+
+    public static final int STATUS_TIMEOUT = 1;
+
+    public static final int STATUS_OUTPUT_LIMIT_EXCEEDED = 2;
+
+    public static final int STATUS_WRONG_ANSWER = 3;
+
+    public static final int STATUS_MEMORY_LIMIT_EXCEEDED = 4;
+
+    // 用户代码调用 System.exit 时抛出的异常消息
+    private static final String EXIT_MESSAGE = "case runner: System.exit intercepted";
+
+    // 用例结束后仍有线程无法停止时写入错误输出的消息
+    private static final String SURVIVING_THREADS_MESSAGE = "case runner: threads still running after the case finished\n";
+
+    // 强制停止超时线程后等待其退出的时长（ms）
+    private static final long STOP_WAIT_MILLISECONDS = 100L;
+
+    // 检查用例 CPU 时间的间隔（ms）
+    private static final long CPU_POLL_MILLISECONDS = 10L;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    // 执行器自身退出时才放行 exit
+    private static volatile boolean exiting = false;
+
+    // 当前用例的线程是否抛出了未捕获的 OutOfMemoryError
+    private static volatile boolean outOfMemory = false;
+
+    public static void main(String[] args) throws Exception {
+        String mainClassName = args[0];
+        long cpuLimitMillis = Long.parseLong(args[1]);
+        URL userClassPath = new File(args[2]).toURI().toURL();
+        long outputLimitBytes = Long.parseLong(args[3]);
+        long errorLimitBytes = Long.parseLong(args[4]);
+        boolean failFast = "1".equals(args[6]);
+        long wallLimitMillis = Long.parseLong(args[7]);
+        String frameNonce = args[8];
+        long cpuLimitNanos = cpuLimitMillis * 1_000_000L;
+
+        PrintStream realOut = new PrintStream(new FileOutputStream(FileDescriptor.out), false);
+        List<byte[]> inputs = new ArrayList<>();
+        List<byte[]> expectedOutputs = new ArrayList<>();
+        try (InputStream inputStream = !"-".equals(args[5]) ? new FileInputStream(args[5]) : System.in) {
+            readInputs(new DataInputStream(new BufferedInputStream(inputStream)), inputs, expectedOutputs);
+        }
+        // 启动命令中包含帧标识，用户代码可以读取的系统属性中去掉启动命令
+        System.getProperties().remove("sun.java.command");
+        Policy.setPolicy(new CasePolicy());
+        System.setSecurityManager(new ExitTrap());
+        // 用户创建的线程的未捕获异常同样记录内存溢出，输出与 JVM 默认的处理一致
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+            if (throwable instanceof ThreadDeath) {
+                return;
+            }
+            if (throwable instanceof OutOfMemoryError) {
+                outOfMemory = true;
+            }
+            System.err.print("Exception in thread \"" + thread.getName() + "\" ");
+            throwable.printStackTrace(System.err);
+        });
+        Thread harnessThread = Thread.currentThread();
+        Properties systemProperties = (Properties) System.getProperties().clone();
+
+        for (int i = 0; i < inputs.size(); i++) {
+            // 输出超限或答案错误时中断执行器线程，使其停止等待用例结束
+            CaseOutputStream outputStream = new CaseOutputStream(outputLimitBytes,
+                    expectedOutputs.isEmpty() ? null : expectedOutputs.get(i), harnessThread::interrupt);
+            CaseOutputStream errorStream = new CaseOutputStream(errorLimitBytes, null, null);
+            System.setIn(new ByteArrayInputStream(inputs.get(i)));
+            System.setOut(new PrintStream(outputStream, true));
+            System.setErr(new PrintStream(errorStream, true));
+            System.gc();
+            resetPeakHeapUsage();
+            outOfMemory = false;
+
+            // 父加载器为扩展类加载器，用户类不会被应用类加载器缓存，每个用例都重新初始化
+            URLClassLoader classLoader = new URLClassLoader(new URL[]{userClassPath},
+                    CaseRunner.class.getClassLoader().getParent());
+            ThreadGroup caseGroup = new ThreadGroup("case-" + (i + 1));
+            CaseCpuClock cpuClock = new CaseCpuClock(caseGroup);
+            Thread mainThread = new Thread(caseGroup, () -> {
+                invokeMain(classLoader, mainClassName);
+                cpuClock.record(Thread.currentThread().getId(), THREAD_MX_BEAN.getCurrentThreadCpuTime());
+            }, "main");
+            mainThread.setContextClassLoader(classLoader);
+
+            long startNanos = System.nanoTime();
+            long deadlineNanos = startNanos + wallLimitMillis * 1_000_000L;
+            mainThread.start();
+            boolean timeout;
+            try {
+                timeout = !awaitCaseThreads(caseGroup, mainThread, cpuClock, cpuLimitNanos, deadlineNanos);
+            } catch (InterruptedException e) {
+                timeout = false;
+            }
+            Thread.interrupted(); // 清除输出流设置的中断状态
+            long wallNanos = System.nanoTime() - startNanos;
+            long cpuNanos = cpuClock.sample();
+            // 两次检查之间超出 CPU 时间上限后结束的用例同样判定为超时
+            timeout |= cpuLimitNanos > 0 && cpuNanos > cpuLimitNanos;
+            // 正常结束的用例可能遗留守护线程，超时或输出停止的用例仍有线程在运行，都需要停止
+            boolean stopped = stopCaseThreads(caseGroup);
+            if (!stopped) {
+                System.err.print(SURVIVING_THREADS_MESSAGE);
+            }
+            System.setProperties((Properties) systemProperties.clone());
+            System.out.flush();
+            System.err.flush();
+            outputStream.finish();
+            int status = outputStream.isLimitExceeded() ? STATUS_OUTPUT_LIMIT_EXCEEDED
+                    : outputStream.isMismatched() ? STATUS_WRONG_ANSWER
+                    : outOfMemory ? STATUS_MEMORY_LIMIT_EXCEEDED
+                    : timeout ? STATUS_TIMEOUT : STATUS_FINISHED;
+            long memoryKb = getPeakHeapUsage() / 1024;
+            writeFrame(realOut, frameNonce, i + 1, wallNanos, cpuNanos, memoryKb, status,
+                    outputStream.toByteArray(), errorStream.toByteArray());
+            classLoader.close();
+            if (!stopped) {
+                // 用户线程无法停止，会影响后续用例的执行，剩余用例不再执行
+                break;
+            }
+            if (failFast && (status != STATUS_FINISHED || !isBlank(errorStream.toByteArray()))) {
+                // 用例失败，剩余用例不再执行
+                break;
+            }
+        }
+        realOut.flush();
+        exiting = true;
+        Runtime.getRuntime().halt(0);
+    }
+
+    /**
+     * 读取输入：第一行为用例数，带预期输出时后面跟一个 1；
+     * 每个用例为一行字节长度加上对应长度的内容，带预期输出时再跟一段同样格式的预期输出
+     */
+    private static void readInputs(DataInputStream inputStream, List<byte[]> inputs, List<byte[]> expectedOutputs)
+            throws IOException {
+        String[] header = readLine(inputStream).split(" ");
+        int caseCount = Integer.parseInt(header[0]);
+        boolean withExpectedOutputs = header.length > 1 && "1".equals(header[1]);
+        for (int i = 0; i < caseCount; i++) {
+            inputs.add(readBlock(inputStream));
+            if (withExpectedOutputs) {
+                expectedOutputs.add(readBlock(inputStream));
+            }
+        }
+    }
+
+    private static byte[] readBlock(DataInputStream inputStream) throws IOException {
+        byte[] block = new byte[Integer.parseInt(readLine(inputStream))];
+        inputStream.readFully(block);
+        return block;
+    }
+
+    private static String readLine(DataInputStream inputStream) throws IOException {
+        StringBuilder lineBuilder = new StringBuilder();
+        int b;
+        while ((b = inputStream.read()) != -1 && b != '\n') {
+            lineBuilder.append((char) b);
+        }
+        return lineBuilder.toString().trim();
+    }
+
+    /**
+     * 调用用户类的 main 方法，异常输出与 JVM 默认的未捕获异常输出一致
+     */
+    private static void invokeMain(ClassLoader classLoader, String mainClassName) {
+        try {
+            Class<?> mainClass = Class.forName(mainClassName, true, classLoader);
+            Method mainMethod = mainClass.getMethod("main", String[].class);
+            mainMethod.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            reportUncaught(e.getCause());
+        } catch (Throwable e) {
+            reportUncaught(e);
+        }
+    }
+
+    private static void reportUncaught(Throwable throwable) {
+        if (throwable instanceof SecurityException && EXIT_MESSAGE.equals(throwable.getMessage())) {
+            return;
+        }
+        if (throwable instanceof ThreadDeath) {
+            return;
+        }
+        if (throwable instanceof OutOfMemoryError) {
+            outOfMemory = true;
+        }
+        // 去掉执行器自身和反射调用的栈帧，使输出与直接运行用户类时一致
+        StackTraceElement[] stackTrace = throwable.getStackTrace();
+        int end = stackTrace.length;
+        for (int i = 0; i < stackTrace.length; i++) {
+            if (CaseRunner.class.getName().equals(stackTrace[i].getClassName())) {
+                end = i;
+                break;
+            }
+        }
+        while (end > 0 && isReflectionFrame(stackTrace[end - 1])) {
+            end--;
+        }
+        throwable.setStackTrace(Arrays.copyOf(stackTrace, end));
+        System.err.print("Exception in thread \"main\" ");
+        throwable.printStackTrace();
+    }
+
+    private static boolean isBlank(byte[] bytes) {
+        for (byte b : bytes) {
+            if (!Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isReflectionFrame(StackTraceElement element) {
+        String className = element.getClassName();
+        return className.startsWith("sun.reflect.") || className.startsWith("jdk.internal.reflect.")
+                || className.startsWith("java.lang.reflect.");
+    }
+
+    /**
+     * 等待用例的主线程以及其创建的非守护线程全部结束，等待期间定时检查用例的 CPU 时间
+     *
+     * @param cpuLimitNanos CPU 时间上限（ns），为 0 时只检查墙钟时间
+     * @return 在截止时间前且未超出 CPU 时间上限时结束返回 true
+     */
+    private static boolean awaitCaseThreads(ThreadGroup caseGroup, Thread mainThread, CaseCpuClock cpuClock,
+                                            long cpuLimitNanos, long deadlineNanos) throws InterruptedException {
+        Thread current = mainThread;
+        while (current != null) {
+            long remainingMillis = (deadlineNanos - System.nanoTime()) / 1_000_000L;
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            current.join(cpuLimitNanos > 0 ? Math.min(remainingMillis, CPU_POLL_MILLISECONDS) : remainingMillis);
+            if (cpuLimitNanos > 0 && cpuClock.sample() > cpuLimitNanos) {
+                return false;
+            }
+            if (!current.isAlive()) {
+                current = findAliveNonDaemon(caseGroup);
+            }
+        }
+        return true;
+    }
+
+    private static Thread findAliveNonDaemon(ThreadGroup caseGroup) {
+        Thread[] threads = new Thread[caseGroup.activeCount() + 1];
+        int count = caseGroup.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive() && !threads[i].isDaemon()) {
+                return threads[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 强制停止用例的所有线程，并等待其退出
+     *
+     * @return 所有线程都已停止返回 true
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean stopCaseThreads(ThreadGroup caseGroup) throws InterruptedException {
+        caseGroup.stop();
+        long deadlineNanos = System.nanoTime() + STOP_WAIT_MILLISECONDS * 1_000_000L;
+        Thread[] threads = new Thread[caseGroup.activeCount() + 1];
+        int count = caseGroup.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            long remainingMillis = Math.max((deadlineNanos - System.nanoTime()) / 1_000_000L, 1L);
+            threads[i].join(remainingMillis);
+            if (threads[i].isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeapUsage() {
+        long peakUsage = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                peakUsage += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        return peakUsage;
+    }
+
+    /**
+     * 输出一个用例的结果帧：
+     * 头部为一行 "#CASE 帧标识 序号 墙钟时间(ns) CPU时间(ns) 内存(kb) 用例状态 标准输出长度 错误输出长度"，
+     * 随后依次为标准输出和错误输出的原始字节
+     */
+    private static void writeFrame(PrintStream realOut, String frameNonce, int caseIndex, long wallNanos, long cpuNanos,
+                                   long memoryKb, int status, byte[] output, byte[] errorOutput) {
+        String header = FRAME_MARKER + " " + frameNonce + " " + caseIndex + " " + wallNanos + " " + cpuNanos + " " + memoryKb + " "
+                + status + " " + output.length + " " + errorOutput.length + "\n";
+        realOut.write(header.getBytes(StandardCharsets.US_ASCII), 0, header.length());
+        realOut.write(output, 0, output.length);
+        realOut.write(errorOutput, 0, errorOutput.length);
+        realOut.flush();
+    }
+
+    /**
+     * 统计一个用例所有线程的 CPU 时间
+     * <p>
+     * 线程结束后无法再读取其 CPU 时间，因此保存每个线程最近一次读到的值；
+     * 主线程在结束前自行记录，其余线程最多少计最后一次检查之后的部分。
+     */
+    static class CaseCpuClock {
+
+        private final ThreadGroup caseGroup;
+
+        private final Map<Long, Long> threadCpuNanos = new ConcurrentHashMap<>();
+
+        CaseCpuClock(ThreadGroup caseGroup) {
+            this.caseGroup = caseGroup;
+        }
+
+        void record(long threadId, long cpuNanos) {
+            if (cpuNanos >= 0) {
+                threadCpuNanos.merge(threadId, cpuNanos, Math::max);
+            }
+        }
+
+        /**
+         * 读取用例中仍在运行的线程的 CPU 时间
+         *
+         * @return 用例所有线程的 CPU 时间之和（ns）
+         */
+        long sample() {
+            Thread[] threads = new Thread[caseGroup.activeCount() + 1];
+            int count = caseGroup.enumerate(threads, true);
+            for (int i = 0; i < count; i++) {
+                long threadId = threads[i].getId();
+                record(threadId, THREAD_MX_BEAN.getThreadCpuTime(threadId));
+            }
+            long totalNanos = 0;
+            for (long cpuNanos : threadCpuNanos.values()) {
+                totalNanos += cpuNanos;
+            }
+            return totalNanos;
+        }
+    }
+
+    /**
+     * 拦截用户代码的 System.exit，禁止替换自身，其余权限按调用栈上的代码来源由 {@link CasePolicy} 判定
+     */
+    static class ExitTrap extends SecurityManager {
+
+        @Override
+        public void checkExit(int status) {
+            if (!exiting) {
+                throw new SecurityException(EXIT_MESSAGE);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+            // 禁止用户代码移除拦截器
+            if ("setSecurityManager".equals(perm.getName())) {
+                throw new SecurityException("case runner: setSecurityManager denied");
+            }
+            AccessController.checkPermission(perm);
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            if (!(context instanceof AccessControlContext)) {
+                throw new SecurityException("case runner: unknown security context");
+            }
+            ((AccessControlContext) context).checkPermission(perm);
+        }
+    }
+
+    /**
+     * 执行器和 JDK 的代码拥有全部权限；用户代码只能读写系统属性、管理自己的线程、使用日志和不绕过访问控制的反射，
+     * 以及读取 /proc、/dev 和 JVM 性能数据以外的文件
+     */
+    static class CasePolicy extends Policy {
+
+        // 用户代码不能拥有的运行时权限，按名称前缀匹配
+        private static final String[] DENIED_RUNTIME_PERMISSIONS = {"writeFileDescriptor", "readFileDescriptor",
+                "loadLibrary.", "getenv.", "accessClassInPackage.", "defineClassInPackage.", "manageProcess",
+                "setSecurityManager"};
+
+        // 加载执行器和 JDK 的类加载器，在安装 SecurityManager 之前获取
+        private final Set<ClassLoader> trustedLoaders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        CasePolicy() {
+            for (ClassLoader loader = CaseRunner.class.getClassLoader(); loader != null; loader = loader.getParent()) {
+                trustedLoaders.add(loader);
+            }
+        }
+
+        @Override
+        public boolean implies(ProtectionDomain domain, Permission permission) {
+            return trustedLoaders.contains(domain.getClassLoader()) || isGranted(permission);
+        }
+
+        private static boolean isGranted(Permission permission) {
+            if (permission instanceof FilePermission) {
+                for (String action : permission.getActions().split(",")) {
+                    if (!"read".equals(action) && !"readlink".equals(action)) {
+                        return false;
+                    }
+                }
+                return !isHiddenPath(permission.getName());
+            }
+            if (permission instanceof RuntimePermission) {
+                for (String deniedName : DENIED_RUNTIME_PERMISSIONS) {
+                    if (permission.getName().startsWith(deniedName)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (permission instanceof ReflectPermission) {
+                return !"suppressAccessChecks".equals(permission.getName());
+            }
+            return permission instanceof PropertyPermission || permission instanceof LoggingPermission;
+        }
+
+        /**
+         * /proc 中有执行器的启动参数和文件描述符，/dev 中有指向它们的链接，JVM 性能数据文件中有启动命令
+         */
+        private static boolean isHiddenPath(String name) {
+            if ("<<ALL FILES>>".equals(name)) {
+                return true;
+            }
+            String path;
+            try {
+                path = new File(name).getCanonicalPath();
+            } catch (IOException e) {
+                return true;
+            }
+            return "/proc".equals(path) || path.startsWith("/proc/")
+                    || "/dev".equals(path) || path.startsWith("/dev/") || path.contains("/hsperfdata_");
+        }
+    }
+}
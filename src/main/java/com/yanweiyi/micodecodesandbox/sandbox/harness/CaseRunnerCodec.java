@@ -0,0 +1,274 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import lombok.Data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 用例执行器的输入编码和结果帧解析
+ *
+ * @author yanweiyi
+ */
+public class CaseRunnerCodec {
+
+    /**
+     * 需要复制到容器中的执行器 class 文件，key 为 class 文件相对路径
+     */
+    private static final Map<String, byte[]> HARNESS_CLASS_FILES = loadHarnessClassFiles(
+            CaseRunner.class.getName(), CaseRunner.class.getName() + "$ExitTrap",
+            CaseRunner.class.getName() + "$CaseCpuClock", CaseRunner.class.getName() + "$CasePolicy",
+            CaseOutputStream.class.getName());
+
+    /**
+     * Python 用例执行器脚本，结果帧格式与 {@link CaseRunner} 相同
+     */
+    private static final byte[] PYTHON_SUPERVISOR = loadResource("harness/supervisor.py");
+
+    /**
+     * Python 执行器在用户代码无法编译时输出的帧标记，头部为一行 "#COMPILE_ERROR 帧标识 错误信息长度"，随后为错误信息
+     */
+    public static final String COMPILE_ERROR_MARKER = "#COMPILE_ERROR";
+
+    private CaseRunnerCodec() {
+    }
+
+    public static Map<String, byte[]> getHarnessClassFiles() {
+        return HARNESS_CLASS_FILES;
+    }
+
+    public static byte[] getPythonSupervisor() {
+        return PYTHON_SUPERVISOR;
+    }
+
+    /**
+     * 生成一次执行的结果帧标识，通过启动参数传给执行器并写入每个结果帧，用户代码无法预知
+     */
+    public static String newFrameNonce() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * 编码全部用例输入：第一行为用例数，每个用例为一行字节长度加上对应长度的内容
+     */
+    public static byte[] encodeInputs(List<String> inputList) {
+        return encodeInputs(inputList, null);
+    }
+
+    /**
+     * 编码全部用例输入和预期输出：第一行为用例数和标记 1，每个用例的输入后跟同样格式的预期输出
+     *
+     * @param expectedOutputList 预期输出，为 null 时与 {@link #encodeInputs(List)} 相同
+     */
+    public static byte[] encodeInputs(List<String> inputList, List<String> expectedOutputList) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeAscii(outputStream, inputList.size() + (expectedOutputList == null ? "\n" : " 1\n"));
+        for (int i = 0; i < inputList.size(); i++) {
+            writeBlock(outputStream, inputList.get(i));
+            if (expectedOutputList != null) {
+                writeBlock(outputStream, expectedOutputList.get(i));
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 解码 {@link #encodeInputs(List, List)} 编码的用例输入和预期输出
+     *
+     * @throws IllegalArgumentException 数据格式不正确
+     */
+    public static CaseInputs decodeInputs(ByteBuffer buffer) {
+        try {
+            String[] header = readLine(buffer).split(" ");
+            int caseCount = Integer.parseInt(header[0]);
+            boolean withExpectedOutputs = header.length > 1 && "1".equals(header[1]);
+            List<String> inputList = new ArrayList<>(caseCount);
+            List<String> expectedOutputList = withExpectedOutputs ? new ArrayList<>(caseCount) : null;
+            for (int i = 0; i < caseCount; i++) {
+                inputList.add(readBlock(buffer));
+                if (withExpectedOutputs) {
+                    expectedOutputList.add(readBlock(buffer));
+                }
+            }
+            CaseInputs caseInputs = new CaseInputs();
+            caseInputs.setInputList(inputList);
+            caseInputs.setExpectedOutputList(expectedOutputList);
+            return caseInputs;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("malformed case inputs", e);
+        }
+    }
+
+    /**
+     * 解析执行器的标准输出，输出不完整时只返回已完整读取的用例结果
+     * <p>
+     * 帧标识与本次执行不一致或用例序号不连续的帧不是执行器输出的，从该帧起的输出全部丢弃
+     *
+     * @param frameNonce 本次执行的结果帧标识
+     */
+    public static List<CaseResult> decodeResults(byte[] data, String frameNonce) {
+        List<CaseResult> caseResults = new ArrayList<>();
+        int position = 0;
+        while (position < data.length) {
+            int lineEnd = indexOf(data, (byte) '\n', position);
+            if (lineEnd < 0) {
+                break;
+            }
+            String[] header = new String(data, position, lineEnd - position, StandardCharsets.US_ASCII).split(" ");
+            if (header.length != 9 || !CaseRunner.FRAME_MARKER.equals(header[0]) || !frameNonce.equals(header[1])
+                    || Integer.parseInt(header[2]) != caseResults.size() + 1) {
+                break;
+            }
+            int outputLength = Integer.parseInt(header[7]);
+            int errorLength = Integer.parseInt(header[8]);
+            int outputStart = lineEnd + 1;
+            if (outputStart + outputLength + errorLength > data.length) {
+                break;
+            }
+            CaseResult caseResult = new CaseResult();
+            caseResult.setCaseIndex(caseResults.size() + 1);
+            caseResult.setWallTimeNanos(Long.parseLong(header[3]));
+            caseResult.setCpuTimeNanos(Long.parseLong(header[4]));
+            caseResult.setMemoryKb(Long.parseLong(header[5]));
+            int status = Integer.parseInt(header[6]);
+            caseResult.setTimeout(status == CaseRunner.STATUS_TIMEOUT);
+            caseResult.setOutputLimitExceeded(status == CaseRunner.STATUS_OUTPUT_LIMIT_EXCEEDED);
+            caseResult.setWrongAnswer(status == CaseRunner.STATUS_WRONG_ANSWER);
+            caseResult.setMemoryLimitExceeded(status == CaseRunner.STATUS_MEMORY_LIMIT_EXCEEDED);
+            caseResult.setOutput(new String(data, outputStart, outputLength, StandardCharsets.UTF_8));
+            caseResult.setErrorOutput(new String(data, outputStart + outputLength, errorLength, StandardCharsets.UTF_8));
+            caseResults.add(caseResult);
+            position = outputStart + outputLength + errorLength;
+        }
+        return caseResults;
+    }
+
+    /**
+     * 解析执行器输出的编译错误帧
+     *
+     * @param frameNonce 本次执行的结果帧标识
+     * @return 编译错误信息，输出不是编译错误帧时返回 null
+     */
+    public static String decodeCompileError(byte[] data, String frameNonce) {
+        int lineEnd = indexOf(data, (byte) '\n', 0);
+        if (lineEnd < 0) {
+            return null;
+        }
+        String[] header = new String(data, 0, lineEnd, StandardCharsets.US_ASCII).split(" ");
+        if (header.length != 3 || !COMPILE_ERROR_MARKER.equals(header[0]) || !frameNonce.equals(header[1])) {
+            return null;
+        }
+        int messageLength = Math.min(Integer.parseInt(header[2]), data.length - lineEnd - 1);
+        return new String(data, lineEnd + 1, messageLength, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] data, byte target, int fromIndex) {
+        for (int i = fromIndex; i < data.length; i++) {
+            if (data[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String readLine(ByteBuffer buffer) {
+        StringBuilder lineBuilder = new StringBuilder();
+        byte b;
+        while ((b = buffer.get()) != '\n') {
+            lineBuilder.append((char) b);
+        }
+        return lineBuilder.toString().trim();
+    }
+
+    private static String readBlock(ByteBuffer buffer) {
+        byte[] bytes = new byte[Integer.parseInt(readLine(buffer))];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBlock(ByteArrayOutputStream outputStream, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeAscii(outputStream, bytes.length + "\n");
+        outputStream.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeAscii(ByteArrayOutputStream outputStream, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        outputStream.write(bytes, 0, bytes.length);
+    }
+
+    private static Map<String, byte[]> loadHarnessClassFiles(String... classNames) {
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        for (String className : classNames) {
+            String classFilePath = className.replace('.', '/') + ".class";
+            classFiles.put(classFilePath, loadResource(classFilePath));
+        }
+        return classFiles;
+    }
+
+    private static byte[] loadResource(String resourcePath) {
+        try (InputStream inputStream = CaseRunnerCodec.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("harness resource not found: " + resourcePath);
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load harness resource: " + resourcePath, e);
+        }
+    }
+
+    /**
+     * 解码后的用例输入和预期输出
+     */
+    @Data
+    public static class CaseInputs {
+
+        private List<String> inputList;
+
+        /**
+         * 预期输出，编码时未提供则为 null
+         */
+        private List<String> expectedOutputList;
+    }
+
+    /**
+     * 单个用例的执行结果
+     */
+    @Data
+    public static class CaseResult {
+
+        private int caseIndex;
+
+        private long wallTimeNanos;
+
+        private long cpuTimeNanos;
+
+        private long memoryKb;
+
+        private boolean timeout;
+
+        private boolean outputLimitExceeded;
+
+        private boolean wrongAnswer;
+
+        private boolean memoryLimitExceeded;
+
+        private String output;
+
+        private String errorOutput;
+    }
+}
@@ -0,0 +1,38 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 语言运行时的编译结果
+ *
+ * @author yanweiyi
+ */
+@Data
+public class CompiledProgram {
+
+    /**
+     * 是否编译成功
+     */
+    private final boolean success;
+
+    /**
+     * 需要写入容器工作目录的文件，key 为相对路径
+     */
+    private final Map<String, byte[]> files;
+
+    /**
+     * 编译错误信息（编译成功就没有）
+     */
+    private final String errorMessage;
+
+    public static CompiledProgram success(Map<String, byte[]> files) {
+        return new CompiledProgram(true, files, null);
+    }
+
+    public static CompiledProgram failure(String errorMessage) {
+        return new CompiledProgram(false, Collections.emptyMap(), errorMessage);
+    }
+}
@@ -0,0 +1,137 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import com.yanweiyi.micodecodesandbox.compiler.CompileResult;
+import com.yanweiyi.micodecodesandbox.compiler.InMemoryJavaCompiler;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunner;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java 运行时：在服务端内存中编译，批量执行时由 {@link CaseRunner} 在一个 JVM 中依次运行全部用例
+ * <p>
+ * 预热镜像可用时，执行器直接从镜像内的 jar 加载，JVM 附加预热镜像的启动参数映射类数据共享归档；否则执行器写入工作目录。
+ *
+ * @author yanweiyi
+ */
+@Component
+public class JavaLanguageRuntime implements LanguageRuntime {
+
+    // 用户代码类名
+    private static final String USER_JAVA_CLASS_NAME = "Main";
+
+    // 最大堆内存的下限（MB）
+    private static final long MIN_HEAP_MEGABYTES = 16L;
+
+    // 为元空间、代码缓存、线程栈等堆外内存预留的内存下限（MB），内存上限较大时预留 1/4
+    private static final long MIN_NON_HEAP_MEGABYTES = 48L;
+
+    private final InMemoryJavaCompiler inMemoryJavaCompiler;
+
+    private final JavaStartupImageBuilder javaStartupImageBuilder;
+
+    // 校验通过的预热镜像，为 null 时使用原镜像
+    private volatile JavaStartupImage startupImage;
+
+    // 预热镜像构建器依赖 DockerClient，延迟到准备镜像时再创建，避免与容器池指标形成循环依赖
+    public JavaLanguageRuntime(InMemoryJavaCompiler inMemoryJavaCompiler,
+                               @Lazy @Nullable JavaStartupImageBuilder javaStartupImageBuilder) {
+        this.inMemoryJavaCompiler = inMemoryJavaCompiler;
+        this.javaStartupImageBuilder = javaStartupImageBuilder;
+    }
+
+    @Override
+    public String getLanguage() {
+        return "java";
+    }
+
+    @Override
+    public String getDefaultImage() {
+        return "openjdk:8-alpine";
+    }
+
+    @Override
+    public String prepareImage(String image) {
+        if (javaStartupImageBuilder == null) {
+            return image;
+        }
+        startupImage = javaStartupImageBuilder.prepare(image);
+        return startupImage == null ? image : startupImage.getImage();
+    }
+
+    @Override
+    public CompiledProgram compile(String code) {
+        // 相同代码直接复用缓存的编译结果
+        CompileResult compileResult = inMemoryJavaCompiler.compile(USER_JAVA_CLASS_NAME, code);
+        if (!compileResult.isSuccess()) {
+            return CompiledProgram.failure(compileResult.getErrorMessage());
+        }
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        compileResult.getClassFiles().forEach((className, classFile) -> files.put(className + ".class", classFile));
+        return CompiledProgram.success(files);
+    }
+
+    @Override
+    public Map<String, byte[]> getHarnessFiles() {
+        // 预热镜像中已包含执行器
+        return startupImage == null ? CaseRunnerCodec.getHarnessClassFiles() : Collections.emptyMap();
+    }
+
+    @Override
+    public String[] getBatchCommand(String inputPath, long cpuLimitMillis, long wallLimitMillis, long memoryLimitBytes,
+                                    long outputLimitBytes, long errorOutputLimitBytes, boolean failFast,
+                                    String frameNonce) {
+        String workDirectory = DockerContainerPool.CONTAINER_WORK_DIRECTORY;
+        JavaStartupImage image = startupImage;
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        String harnessClasspath = workDirectory + "/" + HARNESS_DIRECTORY;
+        if (image != null) {
+            command.addAll(image.getJvmOptions());
+            harnessClasspath = image.getHarnessClasspath();
+        }
+        command.addAll(Arrays.asList(getMaxHeapOption(memoryLimitBytes), "-cp", harnessClasspath, CaseRunner.class.getName(),
+                USER_JAVA_CLASS_NAME, String.valueOf(cpuLimitMillis), workDirectory, String.valueOf(outputLimitBytes),
+                String.valueOf(errorOutputLimitBytes), inputPath, failFast ? "1" : "0", String.valueOf(wallLimitMillis),
+                frameNonce));
+        return command.toArray(new String[0]);
+    }
+
+    @Override
+    public boolean supportsPerCaseExec() {
+        return true;
+    }
+
+    @Override
+    public String getCaseCommand(String inputPath, long memoryLimitBytes) {
+        // exec 替换 shell 进程，容器内只剩用户程序一个进程
+        JavaStartupImage image = startupImage;
+        if (image == null) {
+            return String.format("exec java %s -cp %s %s < %s", getMaxHeapOption(memoryLimitBytes),
+                    DockerContainerPool.CONTAINER_WORK_DIRECTORY, USER_JAVA_CLASS_NAME, inputPath);
+        }
+        // 归档要求类路径以构建时的类路径开头，工作目录追加在执行器之后
+        return String.format("exec java %s %s -cp %s:%s %s < %s", String.join(" ", image.getJvmOptions()),
+                getMaxHeapOption(memoryLimitBytes), image.getHarnessClasspath(),
+                DockerContainerPool.CONTAINER_WORK_DIRECTORY, USER_JAVA_CLASS_NAME, inputPath);
+    }
+
+    /**
+     * 最大堆内存为内存上限减去堆外内存的预留量，未指定时 JVM 只使用容器内存的 1/4；
+     * 堆内存不足时用户代码抛出 OutOfMemoryError，判定为内存溢出，而不是堆外内存没有余量导致 JVM 被内核停止
+     */
+    static String getMaxHeapOption(long memoryLimitBytes) {
+        long memoryLimitMegabytes = memoryLimitBytes >> 20;
+        long nonHeapMegabytes = Math.max(memoryLimitMegabytes / 4, MIN_NON_HEAP_MEGABYTES);
+        return "-Xmx" + Math.max(memoryLimitMegabytes - nonHeapMegabytes, MIN_HEAP_MEGABYTES) + "m";
+    }
+}
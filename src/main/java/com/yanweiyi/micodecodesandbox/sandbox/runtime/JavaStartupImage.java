@@ -0,0 +1,29 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 启动时构建并校验通过的 Java 预热镜像
+ *
+ * @author yanweiyi
+ */
+@Data
+public class JavaStartupImage {
+
+    /**
+     * 预热镜像名称
+     */
+    private final String image;
+
+    /**
+     * 启动 JVM 时附加的参数，包括配置的 JVM 参数和类数据共享归档参数
+     */
+    private final List<String> jvmOptions;
+
+    /**
+     * 镜像中用例执行器的类路径，构建归档时使用相同的类路径
+     */
+    private final String harnessClasspath;
+}
@@ -0,0 +1,417 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.BuildImageResultCallback;
+import com.github.dockerjava.api.command.WaitContainerResultCallback;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.StreamType;
+import com.yanweiyi.micodecodesandbox.compiler.CompileResult;
+import com.yanweiyi.micodecodesandbox.compiler.InMemoryJavaCompiler;
+import com.yanweiyi.micodecodesandbox.config.JavaStartupProperties;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunner;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+
+/**
+ * Java 预热镜像构建器
+ * <p>
+ * 基于 Java 镜像构建一个派生镜像：用例执行器打包为镜像内的 jar，构建时用执行器运行一个读取输入、使用常用集合和流的预热程序，
+ * 记录加载过的类并生成类数据共享（AppCDS）归档，执行时 JVM 直接映射归档中已解析的类，减少每次启动加载和校验类的时间。
+ * JDK 8 不支持应用类归档，此时只为 JDK 自身的类生成默认归档。
+ * <p>
+ * 镜像标签为基础镜像 id 和构建内容的哈希，内容不变时复用已构建的镜像。
+ * 启动时用与执行用户代码相同的参数强制映射归档，分别直接运行预热程序和由执行器运行预热程序，校验通过才使用预热镜像，否则使用原镜像。
+ * <p>
+ * 执行器需要安装 SecurityManager 并强制停止用例线程：JDK 18 及以上需要附加 {@value #ALLOW_SECURITY_MANAGER_OPTION} 参数，
+ * JDK 20 起不能强制停止线程，因此只支持 JDK 8 到 19 的镜像，其他版本使用原镜像。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class JavaStartupImageBuilder {
+
+    /**
+     * 镜像中存放执行器和归档的目录
+     */
+    public static final String IMAGE_DIRECTORY = "/opt/sandbox";
+
+    /**
+     * 镜像中用例执行器 jar 的路径
+     */
+    public static final String HARNESS_JAR_PATH = IMAGE_DIRECTORY + "/harness.jar";
+
+    /**
+     * 允许运行时安装 SecurityManager 的 JVM 参数，JDK 18 及以上未指定时执行器无法拦截 System.exit
+     */
+    public static final String ALLOW_SECURITY_MANAGER_OPTION = "-Djava.security.manager=allow";
+
+    // 默认不允许运行时安装 SecurityManager 的最低版本
+    private static final int SECURITY_MANAGER_DISALLOWED_VERSION = 18;
+
+    // 不能强制停止线程的最低版本
+    private static final int THREAD_STOP_UNSUPPORTED_VERSION = 20;
+
+    // java -version 输出中的版本号，如 "1.8.0_212"、"17.0.2"、"19"
+    private static final Pattern JAVA_VERSION_PATTERN = Pattern.compile("version \"(\\d+)(?:\\.(\\d+))?");
+
+    // 记录归档参数的文件，构建时按 JDK 版本写入
+    private static final String ARCHIVE_OPTIONS_PATH = IMAGE_DIRECTORY + "/archive.options";
+
+    private static final String WARMUP_DIRECTORY = IMAGE_DIRECTORY + "/warmup";
+
+    // jar 条目使用固定的修改时间，相同内容生成相同的 jar
+    private static final long JAR_ENTRY_TIME = 318211200000L;
+
+    // 预热程序：覆盖常见提交中读取输入、解析数字、集合和流的写法
+    private static final String WARMUP_SOURCE = "import java.io.*;\n"
+            + "import java.util.*;\n"
+            + "public class Main {\n"
+            + "    public static void main(String[] args) throws IOException {\n"
+            + "        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));\n"
+            + "        StringTokenizer tokenizer = new StringTokenizer(reader.readLine());\n"
+            + "        long a = Long.parseLong(tokenizer.nextToken());\n"
+            + "        long b = new Scanner(tokenizer.nextToken()).nextLong();\n"
+            + "        List<Long> values = new ArrayList<>(Arrays.asList(a, b));\n"
+            + "        Map<String, Long> sums = new HashMap<>();\n"
+            + "        sums.put(\"sum\", values.stream().mapToLong(Long::longValue).sum());\n"
+            + "        StringBuilder builder = new StringBuilder();\n"
+            + "        builder.append(sums.get(\"sum\"));\n"
+            + "        System.out.println(builder);\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String WARMUP_INPUT = "1 2\n";
+
+    private static final String WARMUP_OUTPUT = "3";
+
+    // 预热和校验时执行器使用的结果帧标识，只运行预热程序，不需要随机生成
+    private static final String WARMUP_FRAME_NONCE = "warmup";
+
+    private final JavaStartupProperties javaStartupProperties;
+
+    private final DockerClient dockerClient;
+
+    private final InMemoryJavaCompiler inMemoryJavaCompiler;
+
+    public JavaStartupImageBuilder(JavaStartupProperties javaStartupProperties, DockerClient dockerClient,
+                                   InMemoryJavaCompiler inMemoryJavaCompiler) {
+        this.javaStartupProperties = javaStartupProperties;
+        this.dockerClient = dockerClient;
+        this.inMemoryJavaCompiler = inMemoryJavaCompiler;
+    }
+
+    /**
+     * 构建（或复用）并校验预热镜像
+     *
+     * @param baseImage 已拉取的 Java 镜像
+     * @return 预热镜像，未启用或构建、校验失败时返回 null
+     */
+    public JavaStartupImage prepare(String baseImage) {
+        if (!javaStartupProperties.isEnabled()) {
+            return null;
+        }
+        try {
+            ContainerOutput version = run(baseImage, "java", "-version");
+            int javaVersion = parseJavaVersion(version.stderr + version.stdout);
+            if (javaVersion < 0 || javaVersion >= THREAD_STOP_UNSUPPORTED_VERSION) {
+                log.warn("java startup image requires jdk 8 to {}, found {} in {}, using base image",
+                        THREAD_STOP_UNSUPPORTED_VERSION - 1, version.stderr.trim(), baseImage);
+                return null;
+            }
+            List<String> jvmOptions = resolveJvmOptions(javaStartupProperties.getJvmOptions(), javaVersion);
+            Map<String, byte[]> buildContext = createBuildContext(baseImage, jvmOptions, compileWarmup());
+            String baseImageId = dockerClient.inspectImageCmd(baseImage).exec().getId();
+            String image = javaStartupProperties.getImageRepository() + ":" + computeTag(baseImageId, buildContext);
+            if (imageExists(image)) {
+                log.info("java startup image {} already exists, skipping build", image);
+            } else {
+                build(image, buildContext);
+            }
+
+            ContainerOutput options = run(image, "cat", ARCHIVE_OPTIONS_PATH);
+            if (options.exitCode != 0) {
+                throw new IllegalStateException("error reading archive options: " + options.stderr);
+            }
+            List<String> startupOptions = new ArrayList<>(jvmOptions);
+            startupOptions.addAll(parseArchiveOptions(options.stdout));
+            // 强制映射归档，归档不可用或参数导致额外输出时校验失败
+            List<String> verifyOptions = new ArrayList<>(startupOptions);
+            if (startupOptions.size() > jvmOptions.size()) {
+                verifyOptions.add("-Xshare:on");
+            }
+            ContainerOutput verification = run(image, "sh", "-c", String.format("exec java %s -cp %s:%s Main < %s",
+                    String.join(" ", verifyOptions), HARNESS_JAR_PATH, WARMUP_DIRECTORY, WARMUP_DIRECTORY + "/stdin"));
+            if (verification.exitCode != 0 || !WARMUP_OUTPUT.equals(verification.stdout.trim())) {
+                throw new IllegalStateException("verification exited with " + verification.exitCode
+                        + ", output: " + verification.stdout + verification.stderr);
+            }
+            // 执行器需要安装 SecurityManager，按执行用户代码的方式运行一次确认参数有效
+            ContainerOutput harnessVerification = run(image, "sh", "-c", String.format(
+                    "exec java %s -cp %s %s Main 5000 %s 65536 65536 %s 0 15000 %s", String.join(" ", verifyOptions),
+                    HARNESS_JAR_PATH, CaseRunner.class.getName(), WARMUP_DIRECTORY, WARMUP_DIRECTORY + "/input",
+                    WARMUP_FRAME_NONCE));
+            if (harnessVerification.exitCode != 0 || !isWarmupResult(harnessVerification.stdout)) {
+                throw new IllegalStateException("harness verification exited with " + harnessVerification.exitCode
+                        + ", output: " + harnessVerification.stdout + harnessVerification.stderr);
+            }
+            log.info("java startup image {} verified, jvm options: {}", image, startupOptions);
+            return new JavaStartupImage(image, Collections.unmodifiableList(startupOptions), HARNESS_JAR_PATH);
+        } catch (RuntimeException | IOException e) {
+            log.warn("error preparing java startup image from {}, using base image: {}", baseImage, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("interrupted preparing java startup image from {}, using base image", baseImage);
+            return null;
+        }
+    }
+
+    /**
+     * 执行器的结果帧中只有一个正常结束的用例，输出为预热程序的结果且没有错误输出
+     */
+    private static boolean isWarmupResult(String output) {
+        try {
+            List<CaseRunnerCodec.CaseResult> results = CaseRunnerCodec.decodeResults(output.getBytes(StandardCharsets.UTF_8),
+                    WARMUP_FRAME_NONCE);
+            if (results.size() != 1) {
+                return false;
+            }
+            CaseRunnerCodec.CaseResult result = results.get(0);
+            return !result.isTimeout() && !result.isOutputLimitExceeded() && !result.isMemoryLimitExceeded()
+                    && WARMUP_OUTPUT.equals(result.getOutput().trim()) && result.getErrorOutput().isEmpty();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Map<String, byte[]> compileWarmup() {
+        CompileResult compileResult = inMemoryJavaCompiler.compile("Main", WARMUP_SOURCE);
+        if (!compileResult.isSuccess()) {
+            throw new IllegalStateException("error compiling warmup program: " + compileResult.getErrorMessage());
+        }
+        return compileResult.getClassFiles();
+    }
+
+    private boolean imageExists(String image) {
+        try {
+            dockerClient.inspectImageCmd(image).exec();
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    private void build(String image, Map<String, byte[]> buildContext) throws IOException {
+        log.info("building java startup image {}...", image);
+        Path directory = Files.createTempDirectory("java-startup-image");
+        try {
+            for (Map.Entry<String, byte[]> file : buildContext.entrySet()) {
+                Path path = directory.resolve(file.getKey());
+                Files.createDirectories(path.getParent());
+                Files.write(path, file.getValue());
+            }
+            File baseDirectory = directory.toFile();
+            dockerClient.buildImageCmd()
+                    .withBaseDirectory(baseDirectory)
+                    .withDockerfile(new File(baseDirectory, "Dockerfile"))
+                    .withTags(Collections.singleton(image))
+                    .withPull(false)
+                    .exec(new BuildImageResultCallback())
+                    .awaitImageId(javaStartupProperties.getBuildTimeoutMillis(), TimeUnit.MILLISECONDS);
+            log.info("java startup image {} built successfully", image);
+        } finally {
+            FileUtil.del(directory);
+        }
+    }
+
+    /**
+     * 在只读根目录、禁用网络的临时容器中运行命令，等待结束后读取输出
+     */
+    private ContainerOutput run(String image, String... command) throws InterruptedException, IOException {
+        HostConfig hostConfig = HostConfig.newHostConfig().withReadonlyRootfs(true);
+        String containerId = dockerClient.createContainerCmd(image)
+                .withCmd(command)
+                .withNetworkDisabled(true)
+                .withHostConfig(hostConfig)
+                .exec()
+                .getId();
+        try {
+            dockerClient.startContainerCmd(containerId).exec();
+            long timeoutMillis = javaStartupProperties.getVerifyTimeoutMillis();
+            int exitCode = dockerClient.waitContainerCmd(containerId).exec(new WaitContainerResultCallback())
+                    .awaitStatusCode(timeoutMillis, TimeUnit.MILLISECONDS);
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            try (ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<Frame>() {
+                @Override
+                public void onNext(Frame frame) {
+                    (frame.getStreamType() == StreamType.STDERR ? stderr : stdout)
+                            .write(frame.getPayload(), 0, frame.getPayload().length);
+                }
+            }) {
+                dockerClient.logContainerCmd(containerId).withStdOut(true).withStdErr(true)
+                        .exec(callback).awaitCompletion(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            return new ContainerOutput(exitCode, new String(stdout.toByteArray(), StandardCharsets.UTF_8),
+                    new String(stderr.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            dockerClient.removeContainerCmd(containerId).withForce(true).exec();
+        }
+    }
+
+    /**
+     * 生成构建上下文，key 为相对路径
+     * <p>
+     * JDK 10 及以上先用执行器运行预热程序记录加载的类，再以相同的类路径和 JVM 参数生成应用类归档；
+     * 不支持记录类列表的 JDK 8 只生成 JDK 自身类的默认归档。生成失败时归档参数为空，校验时不强制映射归档。
+     */
+    static Map<String, byte[]> createBuildContext(String baseImage, List<String> jvmOptions,
+                                                  Map<String, byte[]> warmupClassFiles) throws IOException {
+        String options = String.join(" ", jvmOptions);
+        String archivePath = IMAGE_DIRECTORY + "/app.jsa";
+        String classListPath = IMAGE_DIRECTORY + "/classes.lst";
+        String trainingCommand = String.join(" ", "java -Xshare:off -XX:DumpLoadedClassList=" + classListPath,
+                options, "-cp", HARNESS_JAR_PATH, CaseRunner.class.getName(), "Main 5000", WARMUP_DIRECTORY,
+                "65536 65536", WARMUP_DIRECTORY + "/input", "0 15000", WARMUP_FRAME_NONCE);
+        String dumpCommand = String.join(" ", "java -Xshare:dump -XX:SharedClassListFile=" + classListPath,
+                "-XX:SharedArchiveFile=" + archivePath, options, "-cp", HARNESS_JAR_PATH);
+        String dockerfile = "FROM " + baseImage + "\n"
+                + "COPY harness.jar " + HARNESS_JAR_PATH + "\n"
+                + "COPY warmup " + WARMUP_DIRECTORY + "\n"
+                + "RUN if java -XX:DumpLoadedClassList=/tmp/probe.lst -version > /dev/null 2>&1; then \\\n"
+                + "      " + trainingCommand + " > /dev/null \\\n"
+                + "      && " + dumpCommand + " > /dev/null \\\n"
+                + "      && echo \"-Xshare:auto -XX:SharedArchiveFile=" + archivePath + "\" > " + ARCHIVE_OPTIONS_PATH + "; \\\n"
+                + "    else \\\n"
+                + "      java -Xshare:dump " + options + " > /dev/null \\\n"
+                + "      && echo \"-Xshare:auto\" > " + ARCHIVE_OPTIONS_PATH + "; \\\n"
+                + "    fi; \\\n"
+                + "    touch " + ARCHIVE_OPTIONS_PATH + " && rm -f " + classListPath + " /tmp/probe.lst\n";
+
+        Map<String, byte[]> buildContext = new TreeMap<>();
+        buildContext.put("Dockerfile", dockerfile.getBytes(StandardCharsets.UTF_8));
+        buildContext.put("harness.jar", createHarnessJar());
+        warmupClassFiles.forEach((className, classFile) -> buildContext.put("warmup/" + className + ".class", classFile));
+        buildContext.put("warmup/input", CaseRunnerCodec.encodeInputs(Collections.singletonList(WARMUP_INPUT)));
+        buildContext.put("warmup/stdin", WARMUP_INPUT.getBytes(StandardCharsets.UTF_8));
+        return buildContext;
+    }
+
+    /**
+     * 将执行器的类文件打包为 jar，条目顺序和时间固定
+     */
+    static byte[] createHarnessJar() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            for (Map.Entry<String, byte[]> classFile : new TreeMap<>(CaseRunnerCodec.getHarnessClassFiles()).entrySet()) {
+                ZipEntry entry = new ZipEntry(classFile.getKey());
+                entry.setTime(JAR_ENTRY_TIME);
+                jarOutputStream.putNextEntry(entry);
+                jarOutputStream.write(classFile.getValue());
+                jarOutputStream.closeEntry();
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 镜像标签：基础镜像 id 和构建上下文中各文件的哈希
+     */
+    static String computeTag(String baseImageId, Map<String, byte[]> buildContext) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, baseImageId.getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, byte[]> file : new TreeMap<>(buildContext).entrySet()) {
+            update(digest, file.getKey().getBytes(StandardCharsets.UTF_8));
+            update(digest, file.getValue());
+        }
+        return HexUtil.encodeHexStr(digest.digest()).substring(0, 16);
+    }
+
+    // 带长度前缀写入摘要，避免不同文件拼接后相同
+    private static void update(MessageDigest digest, byte[] bytes) {
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    /**
+     * 解析构建时写入的归档参数
+     */
+    static List<String> parseArchiveOptions(String content) {
+        String trimmed = content.trim();
+        return trimmed.isEmpty() ? Collections.emptyList() : Arrays.asList(trimmed.split("\\s+"));
+    }
+
+    /**
+     * 解析 java -version 输出中的主版本号，JDK 8 及以下为 "1.x" 格式
+     *
+     * @return 主版本号，无法解析时返回 -1
+     */
+    static int parseJavaVersion(String versionOutput) {
+        Matcher matcher = JAVA_VERSION_PATTERN.matcher(versionOutput);
+        if (!matcher.find()) {
+            return -1;
+        }
+        int major = Integer.parseInt(matcher.group(1));
+        return major == 1 && matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : major;
+    }
+
+    /**
+     * 构建和执行时使用的 JVM 参数：JDK 18 及以上附加允许安装 SecurityManager 的参数
+     */
+    static List<String> resolveJvmOptions(List<String> jvmOptions, int javaVersion) {
+        if (javaVersion < SECURITY_MANAGER_DISALLOWED_VERSION || jvmOptions.contains(ALLOW_SECURITY_MANAGER_OPTION)) {
+            return jvmOptions;
+        }
+        List<String> resolved = new ArrayList<>(jvmOptions);
+        resolved.add(ALLOW_SECURITY_MANAGER_OPTION);
+        return resolved;
+    }
+
+    private static class ContainerOutput {
+
+        private final int exitCode;
+
+        private final String stdout;
+
+        private final String stderr;
+
+        ContainerOutput(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+    }
+}
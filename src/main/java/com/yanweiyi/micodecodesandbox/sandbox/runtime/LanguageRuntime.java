@@ -0,0 +1,107 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import java.util.Map;
+
+/**
+ * 语言运行时描述：镜像、编译步骤、运行命令和资源默认值
+ * <p>
+ * 运行时以 Spring Bean 的形式注册，启动时由 {@link com.yanweiyi.micodecodesandbox.sandbox.docker.factory.DockerCodeSandboxFactory}
+ * 为每个运行时创建一个代码沙箱，容器池、资源计量和输入输出都由共享的执行引擎负责。
+ * 新增一种语言只需要实现该接口。
+ *
+ * @author yanweiyi
+ */
+public interface LanguageRuntime {
+
+    /**
+     * 容器工作目录中存放用例执行器的子目录
+     */
+    String HARNESS_DIRECTORY = ".harness";
+
+    /**
+     * 语言名称，与请求中的 language 对应
+     */
+    String getLanguage();
+
+    /**
+     * 默认镜像，容器池配置中未指定镜像时使用
+     */
+    String getDefaultImage();
+
+    /**
+     * 启动时在镜像拉取完成后调用，准备容器池实际使用的镜像
+     *
+     * @param image 配置的（或默认的）镜像
+     * @return 容器池使用的镜像，默认不做处理
+     */
+    default String prepareImage(String image) {
+        return image;
+    }
+
+    /**
+     * 单个用例的时间限制（ms），默认按 CPU 时间判定，见 {@link com.yanweiyi.micodecodesandbox.config.ExecutionProperties.TimeLimit}
+     */
+    default long getTimeLimitMillis() {
+        return 5000L;
+    }
+
+    /**
+     * 批量执行时额外预留的执行器启动时长（ms）
+     */
+    default long getStartupMillis() {
+        return 5000L;
+    }
+
+    /**
+     * 单个用例默认的内存上限（byte），请求未指定内存限制时使用；执行时容器的内存限制调整为该值，超过时判定为内存溢出
+     */
+    default long getMaxMemoryBytes() {
+        return 1073741824L;
+    }
+
+    /**
+     * 编译用户代码
+     *
+     * @return 编译结果，成功时包含需要写入容器工作目录的文件
+     */
+    CompiledProgram compile(String code);
+
+    /**
+     * 用例执行器文件，写入容器工作目录的 {@link #HARNESS_DIRECTORY} 子目录，key 为相对路径
+     */
+    Map<String, byte[]> getHarnessFiles();
+
+    /**
+     * 在一个进程中依次执行全部用例的命令，执行器按 CaseRunnerCodec 约定的帧格式输出结果，
+     * 并在容器内分别测量每个用例的 CPU 时间和墙钟时间
+     *
+     * @param inputPath             容器内编码后的用例输入文件
+     * @param cpuLimitMillis        单个用例的 CPU 时间上限（ms），为 0 时只限制墙钟时间
+     * @param wallLimitMillis       单个用例的墙钟时间上限（ms）
+     * @param memoryLimitBytes      单个用例的内存上限（byte），与容器的内存限制相同
+     * @param outputLimitBytes      单个用例标准输出的上限（byte）
+     * @param errorOutputLimitBytes 单个用例错误输出的上限（byte）
+     * @param failFast              是否在第一个失败的用例后停止
+     * @param frameNonce            本次执行的结果帧标识，执行器写入每个结果帧，解析时丢弃标识不一致的帧
+     */
+    String[] getBatchCommand(String inputPath, long cpuLimitMillis, long wallLimitMillis, long memoryLimitBytes,
+                             long outputLimitBytes, long errorOutputLimitBytes, boolean failFast, String frameNonce);
+
+    /**
+     * 是否支持单独执行一个用例，不支持时总是批量执行
+     */
+    default boolean supportsPerCaseExec() {
+        return false;
+    }
+
+    /**
+     * 单独执行一个用例的 shell 命令，从输入文件读取标准输入，只在 {@link #supportsPerCaseExec()} 为 true 时调用
+     *
+     * @param inputPath        容器内的用例输入文件
+     * @param memoryLimitBytes 单个用例的内存上限（byte），与容器的内存限制相同
+     * @return shell 命令
+     */
+    default String getCaseCommand(String inputPath, long memoryLimitBytes) {
+        throw new UnsupportedOperationException(getLanguage() + " runtime only runs cases in batch");
+    }
+}
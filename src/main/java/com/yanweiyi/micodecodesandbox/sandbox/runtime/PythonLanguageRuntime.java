@@ -0,0 +1,69 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Python 运行时
+ * <p>
+ * 容器中的用例执行器（supervisor.py）预先导入常用模块并编译用户代码，每个用例从已初始化好的解释器
+ * fork 出子进程执行，不需要为每个用例重新启动解释器；语法错误由执行器以编译错误帧报告。
+ * 子进程因超出容器内存限制被内核停止时，执行器根据容器 cgroup 的 OOM 事件计数判定为内存溢出。
+ *
+ * @author yanweiyi
+ */
+@Component
+public class PythonLanguageRuntime implements LanguageRuntime {
+
+    // 用户代码文件名
+    private static final String USER_CODE_FILE_NAME = "Main.py";
+
+    // 用例执行器脚本文件名
+    private static final String SUPERVISOR_FILE_NAME = "supervisor.py";
+
+    private static final Map<String, byte[]> HARNESS_FILES =
+            Collections.singletonMap(SUPERVISOR_FILE_NAME, CaseRunnerCodec.getPythonSupervisor());
+
+    @Override
+    public String getLanguage() {
+        return "python";
+    }
+
+    @Override
+    public String getDefaultImage() {
+        return "python:3.9-alpine";
+    }
+
+    @Override
+    public long getStartupMillis() {
+        return 2000L;
+    }
+
+    @Override
+    public CompiledProgram compile(String code) {
+        return CompiledProgram.success(
+                Collections.singletonMap(USER_CODE_FILE_NAME, code.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public Map<String, byte[]> getHarnessFiles() {
+        return HARNESS_FILES;
+    }
+
+    @Override
+    public String[] getBatchCommand(String inputPath, long cpuLimitMillis, long wallLimitMillis, long memoryLimitBytes,
+                                    long outputLimitBytes, long errorOutputLimitBytes, boolean failFast,
+                                    String frameNonce) {
+        // 内存由容器的内存限制约束，超出时执行器根据 OOM 事件判定内存溢出
+        String workDirectory = DockerContainerPool.CONTAINER_WORK_DIRECTORY;
+        return new String[]{"python3", "-B", workDirectory + "/" + HARNESS_DIRECTORY + "/" + SUPERVISOR_FILE_NAME,
+                workDirectory + "/" + USER_CODE_FILE_NAME, String.valueOf(cpuLimitMillis),
+                String.valueOf(outputLimitBytes), String.valueOf(errorOutputLimitBytes), inputPath,
+                failFast ? "1" : "0", String.valueOf(wallLimitMillis), frameNonce};
+    }
+}
@@ -0,0 +1,182 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * 一次批量执行，由 {@link BatchExecutor} 创建
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+public class BatchExecution {
+
+    private final ExecutionScheduler executionScheduler;
+
+    private final int window;
+
+    private final BiConsumer<Integer, ExecuteCodeResponse> resultConsumer;
+
+    private final Runnable completion;
+
+    // 去重后的执行，按第一次出现的顺序提交
+    private final List<Execution> executions;
+
+    private final Iterator<Execution> pendingExecutions;
+
+    private final Set<ExecutionJob> runningJobs = new HashSet<>();
+
+    // 已选出但尚未完成的执行数，只在持有锁时访问
+    private int inFlightCount;
+
+    // 尚未返回结果的提交数，只在持有锁时访问
+    private int remainingCount;
+
+    private boolean cancelled;
+
+    // 提交循环的重入计数，同一时间只有一个线程向调度器提交
+    private final AtomicInteger feedRequests = new AtomicInteger();
+
+    BatchExecution(ExecutionScheduler executionScheduler, int window, List<DockerCodeSandbox> dockerCodeSandboxes,
+                   List<ExecuteCodeRequest> executeCodeRequests, BiConsumer<Integer, ExecuteCodeResponse> resultConsumer,
+                   Runnable completion) {
+        this.executionScheduler = executionScheduler;
+        this.window = window;
+        this.resultConsumer = resultConsumer;
+        this.completion = completion;
+        Map<ExecuteCodeRequest, Execution> uniqueExecutions = new LinkedHashMap<>();
+        for (int i = 0; i < executeCodeRequests.size(); i++) {
+            DockerCodeSandbox dockerCodeSandbox = dockerCodeSandboxes.get(i);
+            uniqueExecutions.computeIfAbsent(executeCodeRequests.get(i),
+                    executeCodeRequest -> new Execution(dockerCodeSandbox, executeCodeRequest)).indexes.add(i);
+        }
+        this.executions = new ArrayList<>(uniqueExecutions.values());
+        this.pendingExecutions = executions.iterator();
+        this.remainingCount = executeCodeRequests.size();
+    }
+
+    void start() {
+        if (remainingCount == 0) {
+            completion.run();
+            return;
+        }
+        feed();
+    }
+
+    /**
+     * 去重后实际执行的次数
+     */
+    public int getExecutionCount() {
+        return executions.size();
+    }
+
+    /**
+     * 停止剩余的提交：排队中的移出队列，执行中的立即停止，之后不再回调
+     */
+    public void cancel() {
+        List<ExecutionJob> jobs;
+        int unfinishedCount;
+        synchronized (this) {
+            if (cancelled || remainingCount == 0) {
+                return;
+            }
+            cancelled = true;
+            jobs = new ArrayList<>(runningJobs);
+            unfinishedCount = remainingCount;
+        }
+        jobs.forEach(executionScheduler::cancel);
+        log.info("batch execution cancelled, {} submissions unfinished", unfinishedCount);
+    }
+
+    /**
+     * 窗口未满时继续提交，其他线程正在提交时由该线程再检查一次
+     */
+    private void feed() {
+        if (feedRequests.getAndIncrement() > 0) {
+            return;
+        }
+        do {
+            while (true) {
+                Execution execution;
+                synchronized (this) {
+                    if (cancelled || inFlightCount >= window || !pendingExecutions.hasNext()) {
+                        break;
+                    }
+                    execution = pendingExecutions.next();
+                    inFlightCount++;
+                }
+                ExecutionJob job = executionScheduler.submitBatch(execution.dockerCodeSandbox, execution.executeCodeRequest);
+                boolean cancelJob;
+                synchronized (this) {
+                    // 提交过程中批量执行被取消
+                    cancelJob = cancelled;
+                    if (!cancelJob) {
+                        runningJobs.add(job);
+                    }
+                }
+                if (cancelJob) {
+                    executionScheduler.cancel(job);
+                }
+                job.getFuture().whenComplete((executeCodeResponse, throwable) ->
+                        finish(execution, job, executeCodeResponse, throwable));
+            }
+        } while (feedRequests.decrementAndGet() > 0);
+    }
+
+    private void finish(Execution execution, ExecutionJob job, ExecuteCodeResponse executeCodeResponse, Throwable throwable) {
+        synchronized (this) {
+            runningJobs.remove(job);
+            inFlightCount--;
+            if (cancelled) {
+                return;
+            }
+        }
+        if (throwable != null) {
+            executeCodeResponse = new ExecuteCodeResponse();
+            executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue());
+        }
+        for (Integer index : execution.indexes) {
+            resultConsumer.accept(index, executeCodeResponse);
+        }
+        boolean done;
+        synchronized (this) {
+            remainingCount -= execution.indexes.size();
+            done = remainingCount == 0;
+        }
+        if (done) {
+            completion.run();
+        } else {
+            feed();
+        }
+    }
+
+    /**
+     * 请求相同的一组提交共享的一次执行
+     */
+    private static class Execution {
+
+        private final DockerCodeSandbox dockerCodeSandbox;
+
+        private final ExecuteCodeRequest executeCodeRequest;
+
+        private final List<Integer> indexes = new ArrayList<>();
+
+        Execution(DockerCodeSandbox dockerCodeSandbox, ExecuteCodeRequest executeCodeRequest) {
+            this.dockerCodeSandbox = dockerCodeSandbox;
+            this.executeCodeRequest = executeCodeRequest;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * 批量执行器：将一批提交按窗口提交到调度器的低优先级队列
+ * <p>
+ * 每批同时在调度器中的提交数不超过 batch-window，一个完成后再提交下一个，批量提交再多也不会占满调度器；
+ * 请求完全相同（语言、代码、用例和限制都相同）的提交只执行一次，结果分别返回给每个提交。
+ *
+ * @author yanweiyi
+ */
+@Component
+public class BatchExecutor {
+
+    private final ExecutionScheduler executionScheduler;
+
+    private final SchedulerProperties schedulerProperties;
+
+    public BatchExecutor(ExecutionScheduler executionScheduler, SchedulerProperties schedulerProperties) {
+        this.executionScheduler = executionScheduler;
+        this.schedulerProperties = schedulerProperties;
+    }
+
+    /**
+     * 开始执行一批提交
+     *
+     * @param dockerCodeSandboxes 与 executeCodeRequests 一一对应的代码沙箱
+     * @param resultConsumer      每个提交完成时以提交的下标和结果回调，按完成顺序在执行线程中调用
+     * @param completion          全部提交完成后回调，取消后不再回调
+     * @return 批量执行，可以取消剩余的提交
+     */
+    public BatchExecution execute(List<DockerCodeSandbox> dockerCodeSandboxes, List<ExecuteCodeRequest> executeCodeRequests,
+                                  BiConsumer<Integer, ExecuteCodeResponse> resultConsumer, Runnable completion) {
+        BatchExecution batchExecution = new BatchExecution(executionScheduler, Math.max(schedulerProperties.getBatchWindow(), 1),
+                dockerCodeSandboxes, executeCodeRequests, resultConsumer, completion);
+        batchExecution.start();
+        return batchExecution;
+    }
+}
@@ -0,0 +1,52 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteJobStatusEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import lombok.Data;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 调度器中的一次代码执行任务
+ *
+ * @author yanweiyi
+ */
+@Data
+public class ExecutionJob {
+
+    /**
+     * 任务 id
+     */
+    private final String jobId;
+
+    /**
+     * 执行结果
+     */
+    private final CompletableFuture<ExecuteCodeResponse> future = new CompletableFuture<>();
+
+    /**
+     * 取消信号
+     */
+    private final CancellationToken cancellationToken = new CancellationToken();
+
+    /**
+     * 排队时等待执行的任务，开始执行后不再使用
+     */
+    private volatile Runnable pendingTask;
+
+    /**
+     * 提交时间
+     */
+    private final long submitTime = System.currentTimeMillis();
+
+    /**
+     * 完成时间，未完成时为 0
+     */
+    private volatile long finishTime;
+
+    /**
+     * 任务状态
+     */
+    private volatile ExecuteJobStatusEnum status = ExecuteJobStatusEnum.QUEUED;
+}
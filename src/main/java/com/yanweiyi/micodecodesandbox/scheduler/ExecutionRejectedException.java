@@ -0,0 +1,13 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+/**
+ * 调度器等待队列已满时抛出
+ *
+ * @author yanweiyi
+ */
+public class ExecutionRejectedException extends RuntimeException {
+
+    public ExecutionRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,382 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteJobStatusEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 代码执行调度器
+ * <p>
+ * 同时执行的提交数受宿主机 CPU 核数和内存限制，超出并发数的提交按先后顺序在有界队列中等待，
+ * 队列已满时直接拒绝。一个提交完成后才从队列中取出下一个提交开始执行。
+ * 命中结果缓存或与执行中的提交相同的提交不排队，也不占用执行名额，见 {@link DockerCodeSandbox#findCached}。
+ * <p>
+ * 批量重判的提交进入单独的低优先级队列，只在等待队列为空时执行，不占用交互提交的队列容量；
+ * 批量提交的数量由 {@link BatchExecutor} 按窗口控制，任务也不登记到任务表中。
+ * <p>
+ * 执行方式由 {@link ExecutionProperties.Pipeline} 决定：BLOCKING 模式下每个执行中的提交占用一个工作线程；
+ * ASYNC 模式下工作线程只负责编译和准备容器，之后等待 Docker 的过程通过回调驱动，不占用线程；
+ * VIRTUAL_THREAD 模式下每个提交在虚拟线程中阻塞执行。
+ * <p>
+ * 调度节点上的提交由工作节点执行，并发数由 {@link #updateConcurrency(int)} 按工作节点的总并发数调整。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class ExecutionScheduler {
+
+    private final SchedulerProperties schedulerProperties;
+
+    private final ExecutionProperties executionProperties;
+
+    private final Map<String, ExecutionJob> jobs = new ConcurrentHashMap<>();
+
+    // 等待执行的提交，按提交顺序排列
+    private BlockingQueue<Runnable> pendingQueue;
+
+    // 等待执行的批量提交，等待队列为空时才取出
+    private final BlockingQueue<Runnable> batchQueue = new LinkedBlockingQueue<>();
+
+    // 正在执行的提交数
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    private volatile int concurrency;
+
+    private ExecutorService workerExecutor;
+
+    private volatile ExecutionProperties.Pipeline pipeline;
+
+    public ExecutionScheduler(SchedulerProperties schedulerProperties, ExecutionProperties executionProperties) {
+        this.schedulerProperties = schedulerProperties;
+        this.executionProperties = executionProperties;
+    }
+
+    @PostConstruct
+    public void initExecutor() {
+        concurrency = resolveConcurrency();
+        pendingQueue = new ArrayBlockingQueue<>(schedulerProperties.getQueueCapacity(), true);
+        pipeline = executionProperties.getPipeline();
+        workerExecutor = null;
+        if (pipeline == ExecutionProperties.Pipeline.VIRTUAL_THREAD) {
+            workerExecutor = newVirtualThreadExecutor();
+            if (workerExecutor == null) {
+                log.warn("virtual threads require java 21 or later, falling back to blocking pipeline");
+                pipeline = ExecutionProperties.Pipeline.BLOCKING;
+            }
+        }
+        if (workerExecutor == null) {
+            // 异步模式下工作线程只负责编译等计算任务，线程数不需要超过 CPU 核数
+            int workerCount = pipeline == ExecutionProperties.Pipeline.ASYNC
+                    ? Math.min(concurrency, Runtime.getRuntime().availableProcessors())
+                    : concurrency;
+            AtomicInteger threadCount = new AtomicInteger();
+            workerExecutor = Executors.newFixedThreadPool(workerCount,
+                    runnable -> new Thread(runnable, "sandbox-executor-" + threadCount.incrementAndGet()));
+        }
+        log.info("execution scheduler started, pipeline: {}, concurrency: {}, queue capacity: {}",
+                pipeline, concurrency, schedulerProperties.getQueueCapacity());
+    }
+
+    /**
+     * 提交代码执行任务
+     *
+     * @return 执行任务，可通过任务 id 查询结果
+     * @throws ExecutionRejectedException 等待队列已满
+     */
+    public ExecutionJob submit(DockerCodeSandbox dockerCodeSandbox, ExecuteCodeRequest executeCodeRequest) {
+        ExecutionJob job = new ExecutionJob(UUID.randomUUID().toString());
+        jobs.put(job.getJobId(), job);
+        if (completeFromCache(job, dockerCodeSandbox, executeCodeRequest)) {
+            return job;
+        }
+        try {
+            enqueue(job, dockerCodeSandbox, executeCodeRequest, pendingQueue);
+        } catch (ExecutionRejectedException e) {
+            jobs.remove(job.getJobId());
+            log.warn("execution queue is full, submission rejected");
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * 提交批量执行任务，在低优先级队列中等待，不会被拒绝
+     *
+     * @return 执行任务，不能通过任务 id 查询，使用 {@link #cancel(ExecutionJob)} 取消
+     */
+    public ExecutionJob submitBatch(DockerCodeSandbox dockerCodeSandbox, ExecuteCodeRequest executeCodeRequest) {
+        ExecutionJob job = new ExecutionJob(UUID.randomUUID().toString());
+        if (!completeFromCache(job, dockerCodeSandbox, executeCodeRequest)) {
+            enqueue(job, dockerCodeSandbox, executeCodeRequest, batchQueue);
+        }
+        return job;
+    }
+
+    /**
+     * 命中结果缓存或合并到执行中的相同提交时，以共享的结果完成任务
+     *
+     * @return 需要排队执行时返回 false
+     */
+    private boolean completeFromCache(ExecutionJob job, DockerCodeSandbox dockerCodeSandbox,
+                                      ExecuteCodeRequest executeCodeRequest) {
+        CompletableFuture<ExecuteCodeResponse> cachedFuture = dockerCodeSandbox.findCached(executeCodeRequest,
+                job.getCancellationToken());
+        if (cachedFuture == null) {
+            return false;
+        }
+        job.setStatus(ExecuteJobStatusEnum.RUNNING);
+        cachedFuture.whenComplete((executeCodeResponse, throwable) -> {
+            if (throwable != null) {
+                log.error("error waiting for shared execution of job {}: {}", job.getJobId(), throwable.getMessage());
+                executeCodeResponse = new ExecuteCodeResponse();
+                executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue());
+            }
+            finishJob(job, executeCodeResponse);
+        });
+        return true;
+    }
+
+    /**
+     * 有空闲执行名额时立即执行，否则放入给定的队列
+     *
+     * @throws ExecutionRejectedException 队列已满
+     */
+    private void enqueue(ExecutionJob job, DockerCodeSandbox dockerCodeSandbox, ExecuteCodeRequest executeCodeRequest,
+                         BlockingQueue<Runnable> queue) {
+        Runnable task = () -> startJob(job, dockerCodeSandbox, executeCodeRequest);
+        job.setPendingTask(task);
+        boolean startNow;
+        synchronized (this) {
+            startNow = runningCount.get() < concurrency;
+            if (startNow) {
+                runningCount.incrementAndGet();
+            } else if (!queue.offer(task)) {
+                throw new ExecutionRejectedException("execution queue is full");
+            }
+        }
+        if (startNow) {
+            task.run();
+        }
+    }
+
+    /**
+     * 根据任务 id 获取任务
+     *
+     * @return 执行任务，不存在或已过期时返回 null
+     */
+    public ExecutionJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 取消任务：排队中的任务直接移出队列，执行中的任务停止正在执行的用例并销毁其使用的容器
+     *
+     * @return 任务存在且尚未完成时返回 true
+     */
+    public boolean cancel(String jobId) {
+        ExecutionJob job = jobs.get(jobId);
+        return job != null && cancel(job);
+    }
+
+    /**
+     * 取消任务，批量执行任务也通过该方法取消
+     *
+     * @return 任务尚未完成时返回 true
+     */
+    public boolean cancel(ExecutionJob job) {
+        if (job.getFuture().isDone()) {
+            return false;
+        }
+        job.getCancellationToken().cancel();
+        boolean removed;
+        synchronized (this) {
+            Runnable pendingTask = job.getPendingTask();
+            removed = pendingTask != null && (pendingQueue.remove(pendingTask) || batchQueue.remove(pendingTask));
+        }
+        if (removed) {
+            finishJob(job, null);
+        }
+        log.info("job {} cancelled {}", job.getJobId(), removed ? "while queued" : "while running");
+        return true;
+    }
+
+    public int getQueueSize() {
+        return pendingQueue.size();
+    }
+
+    public int getBatchQueueSize() {
+        return batchQueue.size();
+    }
+
+    public int getActiveCount() {
+        return runningCount.get();
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * 调整并发数，调度节点在工作节点上下线时按工作节点的并发数之和调用
+     * <p>
+     * 转发到工作节点的提交通过回调完成，BLOCKING 模式改为 ASYNC 模式，工作线程不等待工作节点返回结果。
+     * 并发数增加时立即开始执行等待中的提交，减少时执行中的提交完成后不再取出下一个提交，直到低于新的并发数。
+     */
+    public void updateConcurrency(int concurrency) {
+        if (pipeline == ExecutionProperties.Pipeline.BLOCKING) {
+            pipeline = ExecutionProperties.Pipeline.ASYNC;
+            log.info("execution scheduler switched to async pipeline for remote execution");
+        }
+        List<Runnable> tasksToStart = new ArrayList<>();
+        synchronized (this) {
+            if (this.concurrency == concurrency) {
+                return;
+            }
+            log.info("execution scheduler concurrency changed from {} to {}", this.concurrency, concurrency);
+            this.concurrency = concurrency;
+            while (runningCount.get() < concurrency) {
+                Runnable nextTask = pollNextTask();
+                if (nextTask == null) {
+                    break;
+                }
+                runningCount.incrementAndGet();
+                tasksToStart.add(nextTask);
+            }
+        }
+        tasksToStart.forEach(Runnable::run);
+    }
+
+    /**
+     * 定时清理过期的任务结果
+     */
+    @Scheduled(fixedDelay = 60000L)
+    public void removeExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - schedulerProperties.getJobRetentionMillis();
+        jobs.values().removeIf(job -> job.getFinishTime() > 0 && job.getFinishTime() < expireBefore);
+    }
+
+    @PreDestroy
+    public void shutdownExecutor() {
+        workerExecutor.shutdownNow();
+    }
+
+    private void startJob(ExecutionJob job, DockerCodeSandbox dockerCodeSandbox, ExecuteCodeRequest executeCodeRequest) {
+        CompletableFuture<ExecuteCodeResponse> responseFuture;
+        try {
+            CancellationToken cancellationToken = job.getCancellationToken();
+            if (pipeline == ExecutionProperties.Pipeline.ASYNC) {
+                responseFuture = CompletableFuture.supplyAsync(() -> {
+                    job.setStatus(ExecuteJobStatusEnum.RUNNING);
+                    return dockerCodeSandbox.executeCodeAsync(executeCodeRequest, cancellationToken);
+                }, workerExecutor).thenCompose(future -> future);
+            } else {
+                responseFuture = CompletableFuture.supplyAsync(() -> {
+                    job.setStatus(ExecuteJobStatusEnum.RUNNING);
+                    return dockerCodeSandbox.executeCodeAsync(executeCodeRequest, cancellationToken).join();
+                }, workerExecutor);
+            }
+        } catch (RejectedExecutionException e) {
+            responseFuture = new CompletableFuture<>();
+            responseFuture.completeExceptionally(e);
+        }
+        responseFuture.whenComplete((executeCodeResponse, throwable) -> {
+            if (throwable != null) {
+                log.error("error executing job {}: {}", job.getJobId(), throwable.getMessage(), throwable);
+                executeCodeResponse = new ExecuteCodeResponse();
+                executeCodeResponse.setStatus(ExecuteInfoEnum.SYSTEM_ERROR.getValue());
+            }
+            finishJob(job, executeCodeResponse);
+            startNextJob();
+        });
+    }
+
+    /**
+     * 完成任务，已取消的任务以已取消状态结束
+     *
+     * @param executeCodeResponse 执行结果，为 null 时生成已取消的结果
+     */
+    private void finishJob(ExecutionJob job, ExecuteCodeResponse executeCodeResponse) {
+        boolean cancelled = job.getCancellationToken().isCancelled();
+        if (executeCodeResponse == null) {
+            executeCodeResponse = new ExecuteCodeResponse();
+            executeCodeResponse.setStatus(ExecuteInfoEnum.CANCELLED.getValue());
+        }
+        job.setPendingTask(null);
+        job.setFinishTime(System.currentTimeMillis());
+        job.setStatus(cancelled ? ExecuteJobStatusEnum.CANCELLED : ExecuteJobStatusEnum.FINISHED);
+        job.getFuture().complete(executeCodeResponse);
+    }
+
+    /**
+     * 一个提交完成后，从等待队列中取出下一个提交执行，都没有或并发数已调低时释放执行名额
+     */
+    private void startNextJob() {
+        Runnable nextTask;
+        synchronized (this) {
+            nextTask = runningCount.get() <= concurrency ? pollNextTask() : null;
+            if (nextTask == null) {
+                runningCount.decrementAndGet();
+            }
+        }
+        if (nextTask != null) {
+            nextTask.run();
+        }
+    }
+
+    /**
+     * 取出下一个等待中的提交，等待队列为空时取批量提交
+     */
+    private Runnable pollNextTask() {
+        Runnable nextTask = pendingQueue.poll();
+        return nextTask != null ? nextTask : batchQueue.poll();
+    }
+
+    /**
+     * 计算并发数：取 CPU 核数和宿主机内存可容纳的提交数中的较小值
+     */
+    private int resolveConcurrency() {
+        if (schedulerProperties.getConcurrency() > 0) {
+            return schedulerProperties.getConcurrency();
+        }
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+        if (operatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean) {
+            long totalMemory = ((com.sun.management.OperatingSystemMXBean) operatingSystemMXBean).getTotalPhysicalMemorySize();
+            concurrency = (int) Math.min(concurrency, totalMemory / schedulerProperties.getMemoryPerSubmission());
+        }
+        return Math.max(concurrency, 1);
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，运行环境低于 Java 21 时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.yanweiyi.micodecodesandbox.testdata;
+
+import com.yanweiyi.micodecodesandbox.config.InputCacheProperties;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.input.InputFileCache;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按内容寻址的测试数据集存储
+ * <p>
+ * 同一题目的输入和预期输出只需上传一次，之后的执行请求通过数据集 id 引用，不需要每次携带全部用例。
+ * 数据集按用例执行器的输入格式编码后存放在只属于宿主机的目录中，id 即编码内容的哈希，
+ * 该目录不挂载到容器，用户代码无法读取预期输出；服务端需要用例内容时通过内存映射读取并解码，解码结果按 LRU 保留在内存中。
+ * 批量执行时只把用例输入编码到共享的 {@link InputFileCache} 中供执行器读取。
+ * 数据集按 LRU 淘汰，被淘汰后需要重新上传。
+ *
+ * @author yanweiyi
+ */
+@Slf4j
+@Component
+public class TestDataStore {
+
+    // 默认的数据集目录
+    private static final String DEFAULT_TEST_DATA_DIRECTORY = "tempCode" + File.separator + "testdata";
+
+    private final InputFileCache inputFileCache;
+
+    // 完整的数据集文件（输入和预期输出），只在宿主机上读取
+    private final InputFileCache testDataFiles;
+
+    // 已解码的数据集，按访问顺序淘汰
+    private final Map<String, CaseRunnerCodec.CaseInputs> decodedCache;
+
+    // 数据集 id 到输入缓存中只含输入的文件哈希，按访问顺序淘汰
+    private final Map<String, String> inputHashes;
+
+    // 上传过的数据集 id，已被淘汰的在查询时移除
+    private final Set<String> testDataIds = ConcurrentHashMap.newKeySet();
+
+    public TestDataStore(InputFileCache inputFileCache, InputCacheProperties inputCacheProperties) {
+        this.inputFileCache = inputFileCache;
+        // 数据集文件与输入缓存的存放方式相同，只是使用不挂载到容器的目录
+        InputCacheProperties testDataProperties = new InputCacheProperties();
+        testDataProperties.setDirectory(StrUtil.isBlank(inputCacheProperties.getTestDataDirectory())
+                ? Paths.get(System.getProperty("user.dir"), DEFAULT_TEST_DATA_DIRECTORY).toString()
+                : inputCacheProperties.getTestDataDirectory());
+        testDataProperties.setMaxBytes(inputCacheProperties.getTestDataMaxBytes());
+        this.testDataFiles = new InputFileCache(testDataProperties);
+        int cacheSize = inputCacheProperties.getTestDataCacheSize();
+        this.decodedCache = new LinkedHashMap<String, CaseRunnerCodec.CaseInputs>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CaseRunnerCodec.CaseInputs> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.inputHashes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * 上传测试数据集，内容相同的数据集返回相同的 id
+     *
+     * @param expectedOutputList 预期输出，可选
+     * @return 数据集 id
+     * @throws IOException 写入文件失败
+     */
+    public String upload(List<String> inputList, List<String> expectedOutputList) throws IOException {
+        try (InputFileCache.Lease lease = testDataFiles.store(CaseRunnerCodec.encodeInputs(inputList, expectedOutputList))) {
+            testDataIds.add(lease.getHash());
+            log.info("test data uploaded, id: {}, cases: {}", lease.getHash(), inputList.size());
+            return lease.getHash();
+        }
+    }
+
+    /**
+     * 读取测试数据集
+     *
+     * @return 解码后的用例输入和预期输出，数据集不存在或已被淘汰时返回 null
+     * @throws IOException 读取文件失败
+     */
+    public CaseRunnerCodec.CaseInputs load(String testDataId) throws IOException {
+        synchronized (decodedCache) {
+            CaseRunnerCodec.CaseInputs caseInputs = decodedCache.get(testDataId);
+            if (caseInputs != null) {
+                return caseInputs;
+            }
+        }
+        try (InputFileCache.Lease lease = testDataFiles.open(testDataId)) {
+            if (lease == null) {
+                return null;
+            }
+            CaseRunnerCodec.CaseInputs caseInputs;
+            try (FileChannel fileChannel = FileChannel.open(lease.getHostPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                caseInputs = CaseRunnerCodec.decodeInputs(buffer);
+            }
+            synchronized (decodedCache) {
+                decodedCache.put(testDataId, caseInputs);
+            }
+            return caseInputs;
+        }
+    }
+
+    /**
+     * 数据集是否存在（文件仍在缓存中或解码结果仍在内存中）
+     */
+    public boolean exists(String testDataId) {
+        synchronized (decodedCache) {
+            if (decodedCache.containsKey(testDataId)) {
+                return true;
+            }
+        }
+        try (InputFileCache.Lease lease = testDataFiles.open(testDataId)) {
+            return lease != null;
+        }
+    }
+
+    /**
+     * 占用数据集中只含用例输入的文件，供批量执行时容器内的执行器读取
+     * <p>
+     * 文件仍在输入缓存中时不需要重新解码和编码
+     *
+     * @return 输入缓存中的文件租约，数据集不存在或已被淘汰时返回 null
+     * @throws IOException 读取数据集或写入文件失败
+     */
+    public InputFileCache.Lease openInputs(String testDataId) throws IOException {
+        String inputHash;
+        synchronized (inputHashes) {
+            inputHash = inputHashes.get(testDataId);
+        }
+        InputFileCache.Lease lease = inputHash == null ? null : inputFileCache.open(inputHash);
+        if (lease != null) {
+            return lease;
+        }
+        CaseRunnerCodec.CaseInputs caseInputs = load(testDataId);
+        if (caseInputs == null) {
+            return null;
+        }
+        lease = inputFileCache.store(CaseRunnerCodec.encodeInputs(caseInputs.getInputList()));
+        synchronized (inputHashes) {
+            inputHashes.put(testDataId, lease.getHash());
+        }
+        return lease;
+    }
+
+    /**
+     * 仍然可用的数据集 id，多节点部署时随心跳汇报给调度节点
+     */
+    public List<String> getTestDataIds() {
+        testDataIds.removeIf(testDataId -> !exists(testDataId));
+        return new ArrayList<>(testDataIds);
+    }
+}
@@ -0,0 +1,417 @@
+# -*- coding: utf-8 -*-
+"""
+在容器内依次运行全部 Python 用例的执行器
+
+启动时预先导入常用模块并编译用户代码，每个用例从已初始化好的解释器 fork 出子进程执行，
+不需要为每个用例重新启动解释器。执行结果按 CaseRunnerCodec 约定的帧格式写到标准输出，每个帧带有启动参数中的帧标识，
+与 Java 的 CaseRunner 一致：标准输出超出上限或与预期输出不一致时立即停止该用例，错误输出超出上限时只截断。
+用户代码存在语法错误时只输出一个编译错误帧。
+
+子进程只保留重定向后的标准输入输出，执行器设置为不可转储，同一用户的子进程无法通过 /proc 打开执行器的标准输出，
+用户代码只能写自己的输出管道，不能伪造结果帧。
+
+用例的时间限制按子进程自身的 CPU 时间（user + sys）判定，不受宿主机负载影响；
+另设墙钟时间上限，防止 sleep 或等待输入的用例一直占用容器。
+内存由容器的内存限制约束，子进程被信号停止且容器 cgroup 的 oom_kill 计数增加时判定为内存超限，
+被执行器停止时判定为超时，其他情况（包括读取不到计数时）按运行错误处理。
+
+启动参数：用户代码文件、单个用例的 CPU 时间上限（ms，0 表示只限制墙钟时间）、标准输出上限（byte）、
+错误输出上限（byte）、编码后的用例输入文件（为 "-" 时从标准输入读取）、
+是否在第一个失败的用例后停止（1 表示停止）、单个用例的墙钟时间上限（ms）、结果帧标识
+
+只能依赖标准库，需要兼容 Python 3.5+。
+"""
+import io
+import os
+import resource
+import select
+import signal
+import sys
+import time
+import traceback
+
+# 预先导入的常用模块，fork 出的子进程直接复用
+PRELOAD_MODULES = ('array', 'bisect', 'collections', 'copy', 'decimal', 'fractions', 'functools', 'heapq',
+                   'itertools', 'math', 'operator', 'random', 're', 'string')
+
+FRAME_MARKER = b'#CASE'
+
+COMPILE_ERROR_MARKER = b'#COMPILE_ERROR'
+
+STATUS_FINISHED = 0
+STATUS_TIMEOUT = 1
+STATUS_OUTPUT_LIMIT_EXCEEDED = 2
+STATUS_WRONG_ANSWER = 3
+STATUS_MEMORY_LIMIT_EXCEEDED = 4
+
+# 单次读写管道的字节数
+CHUNK_BYTES = 65536
+
+# 检查子进程 CPU 时间的间隔（s）
+CPU_POLL_SECONDS = 0.01
+
+CLOCK_TICKS = os.sysconf('SC_CLK_TCK') if hasattr(os, 'sysconf') else 100
+
+PR_SET_DUMPABLE = 4
+
+# 无法列出 /proc/self/fd 时子进程关闭的文件描述符上限
+CLOSE_FD_LIMIT = 1024
+
+# 容器内可见的 cgroup OOM 事件文件：cgroup v2 为 memory.events，cgroup v1 为 memory.oom_control
+OOM_EVENT_PATHS = ('/sys/fs/cgroup/memory.events', '/sys/fs/cgroup/memory/memory.oom_control')
+
+
+class CaseOutput(object):
+    """限制字节数的用例输出，可选地与预期输出逐字节比对，规则与 CaseOutputStream 一致"""
+
+    def __init__(self, limit_bytes, expected_output, stop_on_limit):
+        self.limit_bytes = limit_bytes
+        if expected_output is not None and expected_output.endswith(b'\n'):
+            expected_output = expected_output[:-1]
+        self.expected_output = expected_output
+        self.stop_on_limit = stop_on_limit
+        self.buffer = bytearray()
+        self.written_bytes = 0
+        self.limit_exceeded = False
+        self.mismatched = False
+
+    def stopped(self):
+        return self.mismatched or (self.limit_exceeded and self.stop_on_limit)
+
+    def write(self, data):
+        if self.stopped() or not data:
+            return
+        accept_length = min(len(data), self.limit_bytes - self.written_bytes)
+        if self.expected_output is not None:
+            expected = self.expected_output
+            # 预期输出范围内逐段比对，超出部分只允许一个末尾换行
+            prefix_length = max(min(self.written_bytes + accept_length, len(expected)) - self.written_bytes, 0)
+            extra_length = accept_length - prefix_length
+            if data[:prefix_length] != expected[self.written_bytes:self.written_bytes + prefix_length] \
+                    or extra_length > 1 or extra_length == 1 and data[prefix_length] != 0x0A:
+                self.mismatched = True
+                return
+        else:
+            self.buffer.extend(data[:accept_length])
+        self.written_bytes += accept_length
+        if accept_length < len(data):
+            self.limit_exceeded = True
+
+    def finish(self):
+        if self.expected_output is not None and not self.stopped() \
+                and self.written_bytes < len(self.expected_output):
+            self.mismatched = True
+
+    def to_bytes(self):
+        data = bytes(self.buffer)
+        if self.limit_exceeded:
+            # 去掉末尾不完整的 UTF-8 字符
+            for trim_length in range(min(len(data), 3) + 1):
+                try:
+                    data[:len(data) - trim_length].decode('utf-8')
+                    return data[:len(data) - trim_length]
+                except UnicodeDecodeError:
+                    pass
+        return data
+
+
+def read_line(stream):
+    return stream.readline().decode('ascii').strip()
+
+
+def read_block(stream):
+    return stream.read(int(read_line(stream)))
+
+
+def read_inputs(stream):
+    """读取输入：格式与 CaseRunnerCodec.encodeInputs 一致"""
+    header = read_line(stream).split(' ')
+    case_count = int(header[0])
+    with_expected_outputs = len(header) > 1 and header[1] == '1'
+    inputs = []
+    expected_outputs = []
+    for _ in range(case_count):
+        inputs.append(read_block(stream))
+        if with_expected_outputs:
+            expected_outputs.append(read_block(stream))
+    return inputs, expected_outputs
+
+
+def write_frame(frame_nonce, case_index, wall_nanos, cpu_nanos, memory_kb, status, output, error_output):
+    header = '%s %s %d %d %d %d %d %d %d\n' % (FRAME_MARKER.decode('ascii'), frame_nonce, case_index, wall_nanos,
+                                               cpu_nanos, memory_kb, status, len(output), len(error_output))
+    out = sys.stdout.buffer
+    out.write(header.encode('ascii'))
+    out.write(output)
+    out.write(error_output)
+    out.flush()
+
+
+def read_cpu_nanos(pid):
+    """从 /proc 读取进程已使用的 CPU 时间（user + sys），无法读取时返回 None"""
+    try:
+        with open('/proc/%d/stat' % pid, 'rb') as stat_file:
+            stat = stat_file.read()
+    except (IOError, OSError):
+        return None
+    # 进程名可能包含空格，从最后一个 ')' 之后开始按空格分割，utime、stime 为第 14、15 个字段
+    fields = stat[stat.rfind(b')') + 2:].split()
+    return (int(fields[11]) + int(fields[12])) * 1000000000 // CLOCK_TICKS
+
+
+def read_oom_kill_count():
+    """读取容器 cgroup 中 OOM killer 停止进程的累计次数，无法读取时返回 None"""
+    for path in OOM_EVENT_PATHS:
+        try:
+            with open(path, 'rb') as events_file:
+                for line in events_file:
+                    fields = line.split()
+                    if len(fields) == 2 and fields[0] == b'oom_kill':
+                        return int(fields[1])
+        except (IOError, OSError, ValueError):
+            pass
+    return None
+
+
+def disable_dumpable():
+    """设置为不可转储，没有 CAP_SYS_PTRACE 的进程不能打开执行器的 /proc/<pid>/fd、mem 等文件，无法设置时忽略"""
+    try:
+        import ctypes
+        ctypes.CDLL(None, use_errno=True).prctl(PR_SET_DUMPABLE, 0, 0, 0, 0)
+    except (ImportError, OSError, AttributeError):
+        pass
+
+
+def close_inherited_fds():
+    """关闭从执行器继承的除标准输入输出外的文件描述符"""
+    try:
+        fds = [int(name) for name in os.listdir('/proc/self/fd')]
+    except OSError:
+        fds = range(3, CLOSE_FD_LIMIT)
+    for fd in fds:
+        if fd > 2:
+            try:
+                os.close(fd)
+            except OSError:
+                pass
+
+
+def run_child(code, in_r, out_w, err_w, cpu_limit_millis):
+    """子进程：重定向标准输入输出后执行用户代码，不返回"""
+    exit_status = 0
+    try:
+        # 独立的进程组，超时时连同用户创建的子进程一起停止
+        os.setpgid(0, 0)
+        if cpu_limit_millis > 0:
+            # 内核按秒限制 CPU 时间，作为父进程轮询之外的兜底
+            cpu_limit_seconds = (cpu_limit_millis + 999) // 1000 + 1
+            resource.setrlimit(resource.RLIMIT_CPU, (cpu_limit_seconds, cpu_limit_seconds + 1))
+        os.dup2(in_r, 0)
+        os.dup2(out_w, 1)
+        os.dup2(err_w, 2)
+        close_inherited_fds()
+        sys.stdin = io.open(0, 'r', encoding='utf-8', closefd=False)
+        sys.stdout = io.open(1, 'w', encoding='utf-8', closefd=False)
+        sys.stderr = io.open(2, 'w', encoding='utf-8', closefd=False)
+        signal.signal(signal.SIGPIPE, signal.SIG_DFL)
+        try:
+            exec(code, {'__name__': '__main__', '__builtins__': __builtins__})
+        except SystemExit as e:
+            if e.code is None:
+                exit_status = 0
+            elif isinstance(e.code, int):
+                exit_status = e.code
+            else:
+                sys.stderr.write(str(e.code) + '\n')
+                exit_status = 1
+        except BaseException:
+            # 去掉执行器自身的栈帧，使输出与直接运行用户代码时一致
+            exc_type, exc_value, exc_traceback = sys.exc_info()
+            traceback.print_exception(exc_type, exc_value, exc_traceback.tb_next)
+            exit_status = 1
+        try:
+            sys.stdout.flush()
+        except BaseException:
+            pass
+        try:
+            sys.stderr.flush()
+        except BaseException:
+            pass
+    finally:
+        os._exit(exit_status & 0xFF)
+
+
+def kill_group(pid):
+    try:
+        os.killpg(pid, signal.SIGKILL)
+    except OSError:
+        pass
+
+
+def wait_child(pid, deadline, cpu_limit_nanos):
+    """等待子进程结束，超过墙钟时间或 CPU 时间上限时返回 None"""
+    while True:
+        waited_pid, wait_status, rusage = os.wait4(pid, os.WNOHANG)
+        if waited_pid == pid:
+            return wait_status, rusage
+        remaining = deadline - time.monotonic()
+        if remaining <= 0:
+            return None
+        if cpu_limit_nanos > 0:
+            cpu_nanos = read_cpu_nanos(pid)
+            if cpu_nanos is not None and cpu_nanos > cpu_limit_nanos:
+                return None
+        time.sleep(min(remaining, CPU_POLL_SECONDS))
+
+
+def run_case(code, input_bytes, expected_output, cpu_limit_millis, wall_limit_millis, output_limit, error_limit,
+             baseline_kb):
+    in_r, in_w = os.pipe()
+    out_r, out_w = os.pipe()
+    err_r, err_w = os.pipe()
+    start_oom_kill_count = read_oom_kill_count()
+    start = time.monotonic()
+    pid = os.fork()
+    if pid == 0:
+        os.close(in_w)
+        os.close(out_r)
+        os.close(err_r)
+        run_child(code, in_r, out_w, err_w, cpu_limit_millis)
+    os.close(in_r)
+    os.close(out_w)
+    os.close(err_w)
+
+    output = CaseOutput(output_limit, expected_output, True)
+    error_output = CaseOutput(error_limit, None, False)
+    readers = {out_r: output, err_r: error_output}
+    pending_input = memoryview(input_bytes)
+    if not pending_input:
+        os.close(in_w)
+        in_w = None
+    deadline = start + wall_limit_millis / 1000.0
+    cpu_limit_nanos = cpu_limit_millis * 1000000
+    timeout = False
+    while readers:
+        remaining = deadline - time.monotonic()
+        if remaining <= 0:
+            timeout = True
+            break
+        if cpu_limit_nanos > 0:
+            cpu_nanos = read_cpu_nanos(pid)
+            if cpu_nanos is not None and cpu_nanos > cpu_limit_nanos:
+                timeout = True
+                break
+            remaining = min(remaining, CPU_POLL_SECONDS)
+        readable, writable, _ = select.select(list(readers), [in_w] if in_w is not None else [], [], remaining)
+        if writable:
+            try:
+                written = os.write(in_w, pending_input[:CHUNK_BYTES])
+                pending_input = pending_input[written:]
+            except OSError:
+                # 用户代码没有读完输入就结束了
+                pending_input = pending_input[:0]
+            if not pending_input:
+                os.close(in_w)
+                in_w = None
+        for fd in readable:
+            data = os.read(fd, CHUNK_BYTES)
+            if not data:
+                os.close(fd)
+                del readers[fd]
+            else:
+                readers[fd].write(data)
+        if output.stopped():
+            break
+    killed = timeout or output.stopped()
+    # 关闭了标准输出和错误输出的用例可能仍在运行，等待同样受时间上限约束
+    waited = None if killed else wait_child(pid, deadline, cpu_limit_nanos)
+    if waited is None:
+        timeout = timeout or not output.stopped()
+        killed = True
+        kill_group(pid)
+        _, wait_status, rusage = os.wait4(pid, 0)
+    else:
+        wait_status, rusage = waited
+    wall_nanos = int((time.monotonic() - start) * 1e9)
+    # 用户代码启动的后台进程一并停止
+    kill_group(pid)
+    for fd in list(readers) + ([in_w] if in_w is not None else []):
+        os.close(fd)
+
+    cpu_nanos = int((rusage.ru_utime + rusage.ru_stime) * 1e9)
+    if not killed and 0 < cpu_limit_nanos < cpu_nanos:
+        # 两次轮询之间超出 CPU 时间上限后结束，或被内核按 RLIMIT_CPU 停止
+        timeout = True
+        killed = True
+    if not timeout:
+        output.finish()
+    error_bytes = error_output.to_bytes()
+    memory_limit_exceeded = False
+    if not killed and os.WIFSIGNALED(wait_status):
+        # 只有 OOM 事件计数增加时判定为内存超限，SIGKILL 也可能来自用户代码自身
+        end_oom_kill_count = read_oom_kill_count()
+        memory_limit_exceeded = start_oom_kill_count is not None and end_oom_kill_count is not None \
+            and end_oom_kill_count > start_oom_kill_count
+        # 被信号停止时没有错误输出，补充说明，未判定为内存超限时按运行错误处理
+        error_bytes += ('process killed by signal %d\n' % os.WTERMSIG(wait_status)).encode('ascii')
+    if output.limit_exceeded:
+        status = STATUS_OUTPUT_LIMIT_EXCEEDED
+    elif output.mismatched:
+        status = STATUS_WRONG_ANSWER
+    elif memory_limit_exceeded:
+        status = STATUS_MEMORY_LIMIT_EXCEEDED
+    elif timeout:
+        status = STATUS_TIMEOUT
+    else:
+        status = STATUS_FINISHED
+    # 子进程的峰值内存包含从执行器继承的部分，只统计用户代码额外使用的内存
+    memory_kb = max(rusage.ru_maxrss - baseline_kb, 0)
+    return wall_nanos, cpu_nanos, memory_kb, status, output.to_bytes(), error_bytes
+
+
+def main(args):
+    code_path = args[0]
+    cpu_limit_millis = int(args[1])
+    output_limit = int(args[2])
+    error_limit = int(args[3])
+    input_path = args[4]
+    fail_fast = args[5] == '1'
+    wall_limit_millis = int(args[6])
+    frame_nonce = args[7]
+
+    disable_dumpable()
+    for module_name in PRELOAD_MODULES:
+        try:
+            __import__(module_name)
+        except ImportError:
+            pass
+    with io.open(code_path, 'rb') as code_file:
+        source = code_file.read()
+    try:
+        code = compile(source, os.path.basename(code_path), 'exec')
+    except (SyntaxError, ValueError):
+        message = ''.join(traceback.format_exception_only(*sys.exc_info()[:2])).encode('utf-8')
+        out = sys.stdout.buffer
+        out.write(COMPILE_ERROR_MARKER + (' %s %d\n' % (frame_nonce, len(message))).encode('ascii') + message)
+        out.flush()
+        return
+    if input_path == '-':
+        inputs, expected_outputs = read_inputs(sys.stdin.buffer)
+    else:
+        with io.open(input_path, 'rb') as input_file:
+            inputs, expected_outputs = read_inputs(input_file)
+    baseline_kb = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+
+    for i in range(len(inputs)):
+        expected_output = expected_outputs[i] if expected_outputs else None
+        wall_nanos, cpu_nanos, memory_kb, status, output, error_output = run_case(
+            code, inputs[i], expected_output, cpu_limit_millis, wall_limit_millis, output_limit, error_limit,
+            baseline_kb)
+        write_frame(frame_nonce, i + 1, wall_nanos, cpu_nanos, memory_kb, status, output, error_output)
+        if fail_fast and (status != STATUS_FINISHED or error_output.strip()):
+            # 用例失败，剩余用例不再执行
+            break
+
+
+if __name__ == '__main__':
+    main(sys.argv[1:])
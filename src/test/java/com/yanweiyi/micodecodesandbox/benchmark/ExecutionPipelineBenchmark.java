@@ -0,0 +1,117 @@
+package com.yanweiyi.micodecodesandbox.benchmark;
+
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionJob;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 对比不同执行流水线在高并发下的线程数和延迟
+ * <p>
+ * 使用模拟沙箱代替 Docker：每个提交等待固定时长后完成，阻塞版本在调用线程上 sleep，
+ * 异步版本由定时线程回调完成，与 Docker 回调的行为一致。
+ * <p>
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.yanweiyi.micodecodesandbox.benchmark.ExecutionPipelineBenchmark [-Dexec.args="提交数 等待时长ms"]
+ *
+ * @author yanweiyi
+ */
+public class ExecutionPipelineBenchmark {
+
+    // 空闲时 JVM 中的线程数上限，用于等待上一轮的线程退出
+    private static int IDLE_THREAD_COUNT;
+
+    public static void main(String[] args) throws Exception {
+        int submissionCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long dockerMillis = args.length > 1 ? Long.parseLong(args[1]) : 200L;
+        System.out.printf("submissions: %d, simulated docker wait: %d ms, java: %s%n",
+                submissionCount, dockerMillis, System.getProperty("java.version"));
+        IDLE_THREAD_COUNT = ManagementFactory.getThreadMXBean().getThreadCount() + 2;
+        for (ExecutionProperties.Pipeline pipeline : ExecutionProperties.Pipeline.values()) {
+            run(pipeline, submissionCount, dockerMillis);
+        }
+    }
+
+    private static void run(ExecutionProperties.Pipeline pipeline, int submissionCount, long dockerMillis)
+            throws Exception {
+        ScheduledExecutorService dockerCallbacks = Executors.newSingleThreadScheduledExecutor();
+        DockerCodeSandbox simulatedSandbox = new DockerCodeSandbox() {
+            @Override
+            public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+                try {
+                    Thread.sleep(dockerMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return successResponse();
+            }
+
+            @Override
+            public CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest) {
+                CompletableFuture<ExecuteCodeResponse> future = new CompletableFuture<>();
+                dockerCallbacks.schedule(() -> future.complete(successResponse()), dockerMillis, TimeUnit.MILLISECONDS);
+                return future;
+            }
+        };
+
+        SchedulerProperties schedulerProperties = new SchedulerProperties();
+        schedulerProperties.setConcurrency(submissionCount);
+        schedulerProperties.setQueueCapacity(1);
+        ExecutionProperties executionProperties = new ExecutionProperties();
+        executionProperties.setPipeline(pipeline);
+        ExecutionScheduler executionScheduler = new ExecutionScheduler(schedulerProperties, executionProperties);
+        executionScheduler.initExecutor();
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        // 等待上一轮的线程全部退出后再统计
+        while (threadMXBean.getThreadCount() > IDLE_THREAD_COUNT) {
+            Thread.sleep(50L);
+        }
+        threadMXBean.resetPeakThreadCount();
+        int baselineThreads = threadMXBean.getThreadCount();
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<ExecuteCodeResponse>> futures = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < submissionCount; i++) {
+            long submitNanos = System.nanoTime();
+            ExecutionJob job = executionScheduler.submit(simulatedSandbox, new ExecuteCodeRequest());
+            futures.add(job.getFuture().whenComplete((response, throwable) ->
+                    latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitNanos))));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.MINUTES);
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        int peakThreads = threadMXBean.getPeakThreadCount();
+
+        executionScheduler.shutdownExecutor();
+        dockerCallbacks.shutdownNow();
+
+        List<Long> sortedLatencies = new ArrayList<>(latencies);
+        Collections.sort(sortedLatencies);
+        System.out.printf("%-15s peak threads: %5d (+%d)  total: %6d ms  p50: %5d ms  p99: %5d ms%n",
+                pipeline, peakThreads, peakThreads - baselineThreads, totalMillis,
+                percentile(sortedLatencies, 0.50), percentile(sortedLatencies, 0.99));
+    }
+
+    private static long percentile(List<Long> sortedValues, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(index, 0));
+    }
+
+    private static ExecuteCodeResponse successResponse() {
+        ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+        executeCodeResponse.setStatus(ExecuteInfoEnum.SUCCESS.getValue());
+        return executeCodeResponse;
+    }
+}
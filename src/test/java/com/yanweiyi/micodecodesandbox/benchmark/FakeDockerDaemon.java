@@ -0,0 +1,283 @@
+package com.yanweiyi.micodecodesandbox.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内的模拟 Docker 服务
+ * <p>
+ * 只实现沙箱用到的接口：查询服务信息，创建、启动、查看、删除容器和创建、执行命令。所有请求立即返回，
+ * 执行命令时输出一帧按命令生成的标准输出，基准测试中测得的是服务自身（客户端序列化、连接、回调）的开销，
+ * 单元测试中用于在不依赖 Docker 的情况下驱动容器池和执行引擎。
+ *
+ * @author yanweiyi
+ */
+public class FakeDockerDaemon {
+
+    // 去掉可选的 API 版本前缀
+    private static final Pattern PATH_PATTERN = Pattern.compile("^(?:/v[0-9.]+)?(/.*)$");
+
+    private static final Pattern CONTAINER_PATTERN = Pattern.compile("^/containers/([^/]+)(/[a-z]+)?$");
+
+    private static final Pattern EXEC_PATTERN = Pattern.compile("^/exec/([^/]+)/(start|json)$");
+
+    // Docker 多路复用流中标准输出的帧类型
+    private static final byte STDOUT_STREAM_TYPE = 1;
+
+    static {
+        // 响应头和响应体分两次写出，不关闭 Nagle 算法时客户端的延迟确认会给每个请求增加约 40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer httpServer;
+
+    private final ExecutorService requestExecutor;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Function<List<String>, byte[]> execHandler;
+
+    // 创建容器的请求，key 为容器 id
+    private final Map<String, JsonNode> containerConfigs = new ConcurrentHashMap<>();
+
+    // 已停止运行的容器
+    private final Set<String> exitedContainers = ConcurrentHashMap.newKeySet();
+
+    // 已删除的容器
+    private final Set<String> removedContainers = ConcurrentHashMap.newKeySet();
+
+    // 各容器接口的请求次数，key 为请求方法和接口，如 "GET /top"
+    private final Map<String, AtomicInteger> containerRequestCounts = new ConcurrentHashMap<>();
+
+    // 已创建的命令，key 为 exec id
+    private final Map<String, List<String>> execCommands = new ConcurrentHashMap<>();
+
+    private volatile int cpuCount = 4;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * @param execOutput 每次执行命令返回的标准输出
+     */
+    public FakeDockerDaemon(byte[] execOutput) throws IOException {
+        this(command -> execOutput);
+    }
+
+    /**
+     * @param execHandler 按执行的命令生成标准输出
+     */
+    public FakeDockerDaemon(Function<List<String>, byte[]> execHandler) throws IOException {
+        this.execHandler = execHandler;
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.requestExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-docker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(requestExecutor);
+        httpServer.createContext("/", this::handle);
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        requestExecutor.shutdownNow();
+    }
+
+    /**
+     * DOCKER_HOST 格式的地址
+     */
+    public String getDockerHost() {
+        InetSocketAddress address = httpServer.getAddress();
+        return "tcp://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 创建容器时的请求内容
+     */
+    public JsonNode getContainerConfig(String containerId) {
+        return containerConfigs.get(containerId);
+    }
+
+    /**
+     * 容器接口的请求次数
+     *
+     * @param request 请求方法和接口，如 "GET /top"，删除容器为 "DELETE "
+     */
+    public int getContainerRequestCount(String request) {
+        AtomicInteger count = containerRequestCounts.get(request);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 将容器标记为已停止运行，之后查看容器时返回未运行
+     */
+    public void exitContainer(String containerId) {
+        exitedContainers.add(containerId);
+    }
+
+    public boolean isRemoved(String containerId) {
+        return removedContainers.contains(containerId);
+    }
+
+    /**
+     * 设置服务信息中报告的 CPU 核数
+     */
+    public void setCpuCount(int cpuCount) {
+        this.cpuCount = cpuCount;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            byte[] requestBody = readAll(exchange.getRequestBody());
+            Matcher pathMatcher = PATH_PATTERN.matcher(exchange.getRequestURI().getPath());
+            String path = pathMatcher.matches() ? pathMatcher.group(1) : exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+
+            if ("POST".equals(method) && "/containers/create".equals(path)) {
+                String containerId = newId();
+                containerConfigs.put(containerId, OBJECT_MAPPER.readTree(requestBody));
+                sendJson(exchange, 201, "{\"Id\":\"" + containerId + "\",\"Warnings\":[]}");
+                return;
+            }
+            Matcher containerMatcher = CONTAINER_PATTERN.matcher(path);
+            if (containerMatcher.matches()) {
+                String containerId = containerMatcher.group(1);
+                String action = containerMatcher.group(2);
+                containerRequestCounts.computeIfAbsent(method + " " + (action == null ? "" : action),
+                        key -> new AtomicInteger()).incrementAndGet();
+                if ("DELETE".equals(method) && action == null) {
+                    removedContainers.add(containerId);
+                    sendEmpty(exchange, 204);
+                } else if ("POST".equals(method) && "/start".equals(action)) {
+                    sendEmpty(exchange, 204);
+                } else if ("GET".equals(method) && "/json".equals(action)) {
+                    boolean running = !exitedContainers.contains(containerId);
+                    sendJson(exchange, 200, "{\"Id\":\"" + containerId + "\",\"State\":{\"Status\":\""
+                            + (running ? "running" : "exited") + "\",\"Running\":" + running + "}}");
+                } else if ("GET".equals(method) && "/top".equals(action)) {
+                    sendJson(exchange, 200, "{\"Titles\":[\"PID\",\"CMD\"],\"Processes\":[[\"1\",\"sh\"]]}");
+                } else if ("POST".equals(method) && "/exec".equals(action)) {
+                    String execId = newId();
+                    execCommands.put(execId, parseCommand(requestBody));
+                    sendJson(exchange, 201, "{\"Id\":\"" + execId + "\"}");
+                } else {
+                    sendJson(exchange, 404, "{\"message\":\"not supported by fake daemon\"}");
+                }
+                return;
+            }
+            Matcher execMatcher = EXEC_PATTERN.matcher(path);
+            if (execMatcher.matches()) {
+                if ("start".equals(execMatcher.group(2))) {
+                    List<String> command = execCommands.remove(execMatcher.group(1));
+                    sendStream(exchange, execHandler.apply(command == null ? new ArrayList<>() : command));
+                } else {
+                    sendJson(exchange, 200, "{\"ID\":\"" + execMatcher.group(1) + "\",\"Running\":false,\"ExitCode\":0}");
+                }
+                return;
+            }
+            if ("GET".equals(method) && "/info".equals(path)) {
+                sendJson(exchange, 200, "{\"NCPU\":" + cpuCount + "}");
+                return;
+            }
+            if ("/_ping".equals(path)) {
+                sendJson(exchange, 200, "OK");
+                return;
+            }
+            sendJson(exchange, 404, "{\"message\":\"not supported by fake daemon\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int statusCode) throws IOException {
+        exchange.sendResponseHeaders(statusCode, -1);
+    }
+
+    /**
+     * 按 Docker 多路复用流格式返回输出：1 字节流类型、3 字节填充、4 字节大端长度，之后是数据
+     */
+    private static void sendStream(HttpExchange exchange, byte[] payload) throws IOException {
+        ByteArrayOutputStream frameStream = new ByteArrayOutputStream(payload.length + 8);
+        if (payload.length > 0) {
+            frameStream.write(STDOUT_STREAM_TYPE);
+            frameStream.write(new byte[3], 0, 3);
+            frameStream.write(payload.length >>> 24);
+            frameStream.write(payload.length >>> 16);
+            frameStream.write(payload.length >>> 8);
+            frameStream.write(payload.length);
+            frameStream.write(payload, 0, payload.length);
+        }
+        byte[] bytes = frameStream.toByteArray();
+        exchange.getResponseHeaders().set("Content-Type", "application/vnd.docker.raw-stream");
+        exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int length = inputStream.read(buffer); length >= 0; length = inputStream.read(buffer)) {
+            outputStream.write(buffer, 0, length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 读取创建命令请求中的 Cmd
+     */
+    private static List<String> parseCommand(byte[] requestBody) throws IOException {
+        List<String> command = new ArrayList<>();
+        JsonNode cmd = OBJECT_MAPPER.readTree(requestBody).path("Cmd");
+        cmd.forEach(argument -> command.add(argument.asText()));
+        return command;
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
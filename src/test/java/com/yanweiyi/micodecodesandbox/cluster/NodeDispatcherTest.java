@@ -0,0 +1,342 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.InputCacheProperties;
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.controller.MainController;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.ExecuteJobResponse;
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+import com.yanweiyi.micodecodesandbox.model.TestDataResponse;
+import com.yanweiyi.micodecodesandbox.model.TestDataUploadRequest;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteJobStatusEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.input.InputFileCache;
+import com.yanweiyi.micodecodesandbox.scheduler.ExecutionScheduler;
+import com.yanweiyi.micodecodesandbox.testdata.TestDataStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeDispatcherTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final List<FakeWorker> workers = new ArrayList<>();
+
+    private NodeRegistry nodeRegistry;
+
+    private TestDataStore testDataStore;
+
+    private ExecutionScheduler executionScheduler;
+
+    private NodeDispatcher nodeDispatcher;
+
+    @BeforeEach
+    void setUp(@TempDir Path directory) {
+        ClusterProperties clusterProperties = new ClusterProperties();
+        clusterProperties.setPollWaitMillis(100L);
+        nodeRegistry = new NodeRegistry(clusterProperties);
+        InputCacheProperties inputCacheProperties = new InputCacheProperties();
+        inputCacheProperties.setDirectory(directory.resolve("inputs").toString());
+        inputCacheProperties.setTestDataDirectory(directory.resolve("testdata").toString());
+        testDataStore = new TestDataStore(new InputFileCache(inputCacheProperties), inputCacheProperties);
+        executionScheduler = new ExecutionScheduler(new SchedulerProperties(), new ExecutionProperties());
+        executionScheduler.initExecutor();
+        nodeDispatcher = new NodeDispatcher(clusterProperties, nodeRegistry, testDataStore, executionScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.forEach(FakeWorker::stop);
+        nodeDispatcher.shutdownExecutor();
+        executionScheduler.shutdownExecutor();
+    }
+
+    @Test
+    void retryOnAnotherNodeWhenNodeFails() throws IOException {
+        FakeWorker down = startWorker("down", 0);
+        FakeWorker busy = startWorker("busy", 1);
+        FakeWorker lost = startWorker("lost", 2);
+        FakeWorker healthy = startWorker("healthy", 3);
+        down.stop();
+        busy.rejectSubmissions = true;
+        lost.loseJobs = true;
+
+        // 依次尝试负载最低的节点：无法访问、队列已满、执行中失联的节点都换一个节点重试
+        ClusterProperties clusterProperties = new ClusterProperties();
+        clusterProperties.setPollWaitMillis(100L);
+        clusterProperties.setMaxAttempts(4);
+        NodeDispatcher dispatcher = new NodeDispatcher(clusterProperties, nodeRegistry, testDataStore, executionScheduler);
+        ExecuteCodeResponse executeCodeResponse = dispatcher.dispatch("java", newRequest(null), new CancellationToken());
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), executeCodeResponse.getStatus());
+        assertEquals(Collections.singletonList("healthy"), executeCodeResponse.getOutputList());
+        assertEquals(1, busy.submitCount.get());
+        assertEquals(1, lost.submitCount.get());
+
+        // 相同代码直接发往上次执行成功的节点
+        ExecuteCodeResponse retried = nodeDispatcher.dispatch("java", newRequest(null), new CancellationToken());
+        assertEquals(Collections.singletonList("healthy"), retried.getOutputList());
+        assertEquals(1, busy.submitCount.get());
+        assertEquals(2, healthy.submitCount.get());
+
+        // 队列已满的节点仍然可用，失败的节点在下一次心跳前不再选择
+        ExecuteCodeRequest otherCode = newRequest(null);
+        otherCode.setCode("class Other {}");
+        nodeDispatcher.dispatch("java", otherCode, new CancellationToken());
+        assertEquals(2, busy.submitCount.get());
+        assertEquals(1, lost.submitCount.get());
+        assertEquals(3, healthy.submitCount.get());
+    }
+
+    @Test
+    void cancelAcceptedJobBeforeRetrying() throws IOException {
+        FakeWorker flaky = startWorker("flaky", 0);
+        FakeWorker healthy = startWorker("healthy", 1);
+        flaky.failPolls = true;
+
+        // 查询结果失败时节点可能仍在执行，换节点前先取消
+        ExecuteCodeResponse executeCodeResponse = nodeDispatcher.dispatch("java", newRequest(null),
+                new CancellationToken());
+        assertEquals(Collections.singletonList("healthy"), executeCodeResponse.getOutputList());
+        assertEquals(1, flaky.submitCount.get());
+        assertEquals(1, flaky.cancelCount.get());
+        assertEquals(0, healthy.cancelCount.get());
+    }
+
+    @Test
+    void uploadTestDataToNodeWithoutIt() throws IOException {
+        FakeWorker worker = startWorker("worker", 0);
+        String testDataId = testDataStore.upload(Arrays.asList("1 2", "3 4"), Arrays.asList("3", "7"));
+
+        for (int i = 0; i < 2; i++) {
+            ExecuteCodeResponse executeCodeResponse = nodeDispatcher.dispatch("java", newRequest(testDataId),
+                    new CancellationToken());
+            assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), executeCodeResponse.getStatus());
+        }
+        // 上传一次后记录节点已持有该数据集
+        assertEquals(1, worker.uploads.size());
+        assertEquals(Arrays.asList("1 2", "3 4"), worker.uploads.get(0).getInputList());
+        assertEquals(Arrays.asList("3", "7"), worker.uploads.get(0).getExpectedOutputList());
+        assertEquals(testDataId, worker.submissions.get(1).getTestDataId());
+    }
+
+    @Test
+    void uploadAgainWhenNodeEvictedTestData() throws IOException {
+        String testDataId = testDataStore.upload(Arrays.asList("1 2", "3 4"), Arrays.asList("3", "7"));
+        FakeWorker worker = startWorker("worker", 0, testDataId);
+        worker.testDataEvicted = true;
+
+        // 节点心跳中仍持有数据集，提交时返回 404，重新上传后在同一节点上重试
+        ExecuteCodeResponse executeCodeResponse = nodeDispatcher.dispatch("java", newRequest(testDataId),
+                new CancellationToken());
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), executeCodeResponse.getStatus());
+        assertEquals(1, worker.uploads.size());
+        assertEquals(2, worker.submitCount.get());
+        // 节点没有被标记为失败
+        assertEquals("worker", nodeRegistry.select("java", "code", testDataId, Collections.emptySet()).getNodeId());
+    }
+
+    @Test
+    void systemErrorWhenLocalTestDataMissing() throws IOException {
+        FakeWorker worker = startWorker("worker", 0);
+
+        ExecuteCodeResponse executeCodeResponse = nodeDispatcher.dispatch("java", newRequest("missing"),
+                new CancellationToken());
+        assertEquals(ExecuteInfoEnum.SYSTEM_ERROR.getValue(), executeCodeResponse.getStatus());
+        assertEquals("test data not found: missing", executeCodeResponse.getErrorMessage());
+        assertEquals(0, worker.submitCount.get());
+    }
+
+    @Test
+    void systemErrorWithoutAvailableNodes() throws IOException {
+        FakeWorker worker = startWorker("worker", 0);
+        worker.stop();
+
+        ExecuteCodeResponse executeCodeResponse = nodeDispatcher.dispatch("java", newRequest(null),
+                new CancellationToken());
+        assertEquals(ExecuteInfoEnum.SYSTEM_ERROR.getValue(), executeCodeResponse.getStatus());
+        assertEquals(ExecuteInfoEnum.SYSTEM_ERROR.getValue(),
+                nodeDispatcher.dispatch("python", newRequest(null), new CancellationToken()).getStatus());
+    }
+
+    @Test
+    void concurrencyFollowsWorkerCapacity() throws Exception {
+        // 没有工作节点时保留一个名额
+        assertEquals(1, executionScheduler.getConcurrency());
+        startWorker("a", 0);
+        startWorker("b", 0);
+        assertEquals(16, executionScheduler.getConcurrency());
+
+        // 转发在单独的线程中进行，工作节点返回结果时完成
+        CompletableFuture<ExecuteCodeResponse> future = new RemoteCodeSandbox("java", nodeDispatcher)
+                .executeCodeAsync(newRequest(null), new CancellationToken());
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), future.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    /**
+     * 启动一个模拟工作节点并注册，activeCount 越小负载越低
+     */
+    private FakeWorker startWorker(String nodeId, int activeCount) throws IOException {
+        return startWorker(nodeId, activeCount, null);
+    }
+
+    private FakeWorker startWorker(String nodeId, int activeCount, String testDataId) throws IOException {
+        FakeWorker worker = new FakeWorker(nodeId);
+        workers.add(worker);
+        NodeHeartbeat heartbeat = new NodeHeartbeat();
+        heartbeat.setNodeId(nodeId);
+        heartbeat.setUrl(worker.getUrl());
+        heartbeat.setConcurrency(8);
+        heartbeat.setActiveCount(activeCount);
+        heartbeat.setIdleContainers(Collections.singletonMap("java", 1));
+        if (testDataId != null) {
+            heartbeat.setTestDataIds(Collections.singletonList(testDataId));
+        }
+        nodeRegistry.heartbeat(heartbeat);
+        return worker;
+    }
+
+    private static ExecuteCodeRequest newRequest(String testDataId) {
+        ExecuteCodeRequest executeCodeRequest = new ExecuteCodeRequest();
+        executeCodeRequest.setLanguage("java");
+        executeCodeRequest.setCode("public class Main {}");
+        if (testDataId == null) {
+            executeCodeRequest.setInputList(Collections.singletonList("1 2"));
+        } else {
+            executeCodeRequest.setTestDataId(testDataId);
+        }
+        return executeCodeRequest;
+    }
+
+    /**
+     * 模拟工作节点的执行接口：提交后第一次查询返回执行中，第二次返回以节点 id 为输出的结果
+     */
+    private static class FakeWorker {
+
+        private final String nodeId;
+
+        private final HttpServer httpServer;
+
+        private final AtomicInteger submitCount = new AtomicInteger();
+
+        private final AtomicInteger pollCount = new AtomicInteger();
+
+        private final AtomicInteger cancelCount = new AtomicInteger();
+
+        private final List<ExecuteCodeRequest> submissions = new CopyOnWriteArrayList<>();
+
+        private final List<TestDataUploadRequest> uploads = new CopyOnWriteArrayList<>();
+
+        private volatile boolean rejectSubmissions;
+
+        private volatile boolean loseJobs;
+
+        private volatile boolean failPolls;
+
+        private volatile boolean testDataEvicted;
+
+        FakeWorker(String nodeId) throws IOException {
+            this.nodeId = nodeId;
+            this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            httpServer.createContext("/", this::handle);
+            httpServer.start();
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + httpServer.getAddress().getPort();
+        }
+
+        void stop() {
+            httpServer.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            if (!MainController.AUTH_REQUEST_SECRET.equals(
+                    exchange.getRequestHeaders().getFirst(MainController.AUTH_REQUEST_HEADER))) {
+                respond(exchange, 403, null);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/testData")) {
+                uploads.add(OBJECT_MAPPER.readValue(exchange.getRequestBody(), TestDataUploadRequest.class));
+                testDataEvicted = false;
+                TestDataResponse testDataResponse = new TestDataResponse();
+                testDataResponse.setTestDataId("uploaded");
+                respond(exchange, 200, testDataResponse);
+            } else if (path.equals("/executeCode/async")) {
+                submitCount.incrementAndGet();
+                ExecuteCodeRequest submission = OBJECT_MAPPER.readValue(exchange.getRequestBody(),
+                        ExecuteCodeRequest.class);
+                submissions.add(submission);
+                if (testDataEvicted && submission.getTestDataId() != null) {
+                    respond(exchange, 404, null);
+                    return;
+                }
+                if (rejectSubmissions) {
+                    respond(exchange, 429, null);
+                    return;
+                }
+                respond(exchange, 202, toJob(ExecuteJobStatusEnum.QUEUED, null));
+            } else if (path.startsWith("/executeCode/result/")) {
+                if (loseJobs) {
+                    respond(exchange, 404, null);
+                } else if (failPolls) {
+                    respond(exchange, 500, null);
+                } else if (pollCount.incrementAndGet() % 2 == 1) {
+                    respond(exchange, 200, toJob(ExecuteJobStatusEnum.RUNNING, null));
+                } else {
+                    ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+                    executeCodeResponse.setStatus(ExecuteInfoEnum.SUCCESS.getValue());
+                    executeCodeResponse.setOutputList(Collections.singletonList(nodeId));
+                    respond(exchange, 200, toJob(ExecuteJobStatusEnum.FINISHED, executeCodeResponse));
+                }
+            } else if (path.startsWith("/executeCode/cancel/")) {
+                cancelCount.incrementAndGet();
+                respond(exchange, 200, toJob(ExecuteJobStatusEnum.CANCELLED, null));
+            } else {
+                respond(exchange, 404, null);
+            }
+        }
+
+        private static ExecuteJobResponse toJob(ExecuteJobStatusEnum status, ExecuteCodeResponse result) {
+            ExecuteJobResponse executeJobResponse = new ExecuteJobResponse();
+            executeJobResponse.setJobId("job-1");
+            executeJobResponse.setStatus(status.getValue());
+            executeJobResponse.setResult(result);
+            return executeJobResponse;
+        }
+
+        private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+            byte[] bytes = body == null ? new byte[0] : OBJECT_MAPPER.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        }
+    }
+}
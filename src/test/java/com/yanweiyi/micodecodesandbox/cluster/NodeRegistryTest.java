@@ -0,0 +1,83 @@
+package com.yanweiyi.micodecodesandbox.cluster;
+
+import com.yanweiyi.micodecodesandbox.config.ClusterProperties;
+import com.yanweiyi.micodecodesandbox.model.NodeHeartbeat;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeRegistryTest {
+
+    private static final long NOW = 1000000L;
+
+    @Test
+    void selectLeastLoadedNode() {
+        NodeRegistry nodeRegistry = new NodeRegistry(new ClusterProperties());
+        nodeRegistry.heartbeat(heartbeat("busy", 4, 3, 1), NOW);
+        nodeRegistry.heartbeat(heartbeat("idle", 4, 1, 2), NOW);
+        nodeRegistry.heartbeat(heartbeat("idle-more-containers", 4, 1, 3), NOW);
+
+        // 负载率相同时选择空闲容器多的节点
+        assertEquals("idle-more-containers", select(nodeRegistry, null, Collections.emptySet()).getNodeId());
+        // 已尝试过的节点不再选择
+        assertEquals("idle", select(nodeRegistry, null, Collections.singleton("idle-more-containers")).getNodeId());
+        // 不支持该语言的节点不参与选择
+        assertNull(nodeRegistry.select("cpp", "code", null, Collections.emptySet(), NOW));
+    }
+
+    @Test
+    void preferNodeHoldingTestDataOrCompiledCode() {
+        NodeRegistry nodeRegistry = new NodeRegistry(new ClusterProperties());
+        NodeHeartbeat holder = heartbeat("holder", 4, 2, 1);
+        holder.setTestDataIds(Collections.singletonList("data-1"));
+        nodeRegistry.heartbeat(holder, NOW);
+        nodeRegistry.heartbeat(heartbeat("other", 4, 0, 2), NOW);
+
+        // 持有测试数据集的节点仍有空闲执行名额，优先于负载更低的节点
+        assertEquals("holder", select(nodeRegistry, "data-1", Collections.emptySet()).getNodeId());
+        assertEquals("other", select(nodeRegistry, null, Collections.emptySet()).getNodeId());
+
+        // 最近执行过相同代码的节点
+        WorkerNode holderNode = select(nodeRegistry, "data-1", Collections.emptySet());
+        nodeRegistry.recordSuccess(holderNode, "code");
+        assertEquals("holder", select(nodeRegistry, null, Collections.emptySet()).getNodeId());
+
+        // 节点已满时选择负载最低的节点
+        nodeRegistry.heartbeat(heartbeat("holder", 4, 4, 0), NOW);
+        assertEquals("other", select(nodeRegistry, "data-1", Collections.emptySet()).getNodeId());
+    }
+
+    @Test
+    void skipFailedAndSilentNodes() {
+        ClusterProperties clusterProperties = new ClusterProperties();
+        clusterProperties.setNodeTimeout(5000L);
+        NodeRegistry nodeRegistry = new NodeRegistry(clusterProperties);
+        nodeRegistry.heartbeat(heartbeat("a", 4, 0, 1), NOW);
+        nodeRegistry.heartbeat(heartbeat("b", 4, 2, 1), NOW - 6000L);
+        assertEquals("a", select(nodeRegistry, null, Collections.emptySet()).getNodeId());
+
+        // 请求失败的节点直到下一次心跳前不再选择
+        WorkerNode node = select(nodeRegistry, null, Collections.emptySet());
+        nodeRegistry.markFailed(node, NOW + 1);
+        assertNull(nodeRegistry.select("java", "code", null, Collections.emptySet(), NOW + 1));
+        nodeRegistry.heartbeat(heartbeat("a", 4, 0, 1), NOW + 2);
+        assertEquals("a", nodeRegistry.select("java", "code", null, Collections.emptySet(), NOW + 2).getNodeId());
+    }
+
+    private static WorkerNode select(NodeRegistry nodeRegistry, String testDataId, Set<String> excluded) {
+        return nodeRegistry.select("java", "code", testDataId, excluded, NOW);
+    }
+
+    private static NodeHeartbeat heartbeat(String nodeId, int concurrency, int activeCount, int idleContainers) {
+        NodeHeartbeat heartbeat = new NodeHeartbeat();
+        heartbeat.setNodeId(nodeId);
+        heartbeat.setUrl("http://" + nodeId);
+        heartbeat.setConcurrency(concurrency);
+        heartbeat.setActiveCount(activeCount);
+        heartbeat.setIdleContainers(Collections.singletonMap("java", idleContainers));
+        return heartbeat;
+    }
+}
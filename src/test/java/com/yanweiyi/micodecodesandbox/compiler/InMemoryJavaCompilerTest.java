@@ -0,0 +1,50 @@
+package com.yanweiyi.micodecodesandbox.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryJavaCompilerTest {
+
+    private static final String HELLO_CODE = "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        Runnable runnable = new Runnable() { public void run() { System.out.println(\"hello\"); } };\n"
+            + "        runnable.run();\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    void compileInMemory() {
+        InMemoryJavaCompiler compiler = new InMemoryJavaCompiler(16);
+        CompileResult compileResult = compiler.compile("Main", HELLO_CODE);
+        assertTrue(compileResult.isSuccess());
+        assertTrue(compileResult.getClassFiles().containsKey("Main"));
+        assertTrue(compileResult.getClassFiles().containsKey("Main$1"));
+        // class 文件主版本号为 52，即 Java 8
+        byte[] classBytes = compileResult.getClassFiles().get("Main");
+        assertEquals(52, ((classBytes[6] & 0xff) << 8) | (classBytes[7] & 0xff));
+    }
+
+    @Test
+    void compileError() {
+        InMemoryJavaCompiler compiler = new InMemoryJavaCompiler(16);
+        CompileResult compileResult = compiler.compile("Main", "public class Main { int x = ; }");
+        assertFalse(compileResult.isSuccess());
+        assertTrue(compileResult.getErrorMessage().startsWith("Main.java:1: error:"));
+    }
+
+    @Test
+    void cacheHitAndEviction() {
+        InMemoryJavaCompiler compiler = new InMemoryJavaCompiler(1);
+        CompiledClassCache cache = compiler.getCompiledClassCache();
+        CompileResult first = compiler.compile("Main", HELLO_CODE);
+        assertSame(first, compiler.compile("Main", HELLO_CODE));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        compiler.compile("Main", "public class Main { }");
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+        assertNotSame(first, compiler.compile("Main", HELLO_CODE));
+    }
+}
@@ -0,0 +1,49 @@
+package com.yanweiyi.micodecodesandbox.metrics;
+
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SandboxMetricsTest {
+
+    @Test
+    void timersAreTaggedByLanguage() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SandboxMetrics sandboxMetrics = new SandboxMetrics(meterRegistry);
+        sandboxMetrics.recordCompile("java", true, TimeUnit.MILLISECONDS.toNanos(30));
+        sandboxMetrics.recordCompile("java", false, TimeUnit.MILLISECONDS.toNanos(10));
+        sandboxMetrics.recordCaseExec("java", 120L);
+        sandboxMetrics.recordCaseExec("java", 80L);
+        sandboxMetrics.recordContainerCleanup("java", "destroy", TimeUnit.MILLISECONDS.toNanos(5));
+
+        Timer compileTimer = meterRegistry.get(SandboxMetrics.COMPILE_TIMER)
+                .tags(SandboxMetrics.LANGUAGE_TAG, "java", "result", "success").timer();
+        assertEquals(1, compileTimer.count());
+        Timer caseTimer = meterRegistry.get(SandboxMetrics.CASE_EXEC_TIMER).tag(SandboxMetrics.LANGUAGE_TAG, "java").timer();
+        assertEquals(2, caseTimer.count());
+        assertEquals(200.0, caseTimer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertNotNull(meterRegistry.find(SandboxMetrics.CONTAINER_CLEANUP_TIMER).tag("action", "destroy").timer());
+        assertNull(meterRegistry.find(SandboxMetrics.CONTAINER_CLEANUP_TIMER).tag("action", "reset").timer());
+    }
+
+    @Test
+    void outcomesAreCountedSeparately() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SandboxMetrics sandboxMetrics = new SandboxMetrics(meterRegistry);
+        sandboxMetrics.recordOutcome("java", ExecuteInfoEnum.SUCCESS);
+        sandboxMetrics.recordOutcome("java", ExecuteInfoEnum.SUCCESS);
+        sandboxMetrics.recordOutcome("java", ExecuteInfoEnum.WRONG_ANSWER);
+        sandboxMetrics.recordOutcome("java", ExecuteInfoEnum.SUCCESS, true);
+
+        assertEquals(2.0, meterRegistry.get(SandboxMetrics.EXECUTION_COUNTER)
+                .tags("outcome", "success", "source", "execution").counter().count());
+        assertEquals(1.0, meterRegistry.get(SandboxMetrics.EXECUTION_COUNTER)
+                .tags("outcome", "success", "source", "cache").counter().count());
+        assertEquals(1.0, meterRegistry.get(SandboxMetrics.EXECUTION_COUNTER).tag("outcome", "wrong_answer").counter().count());
+    }
+}
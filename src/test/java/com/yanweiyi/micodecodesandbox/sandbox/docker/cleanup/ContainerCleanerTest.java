@@ -0,0 +1,109 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.RemoveContainerCmd;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ContainerCleanerTest {
+
+    @Test
+    void removeContainerAndWorkspace(@TempDir Path directory) throws Exception {
+        RemoveContainerCmd removeContainerCmd = mockRemoveContainerCmd();
+        DockerClient dockerClient = mock(DockerClient.class);
+        when(dockerClient.removeContainerCmd("c1")).thenReturn(removeContainerCmd);
+        ContainerCleaner containerCleaner = newCleaner(dockerClient);
+
+        Path workspacePath = Files.createDirectories(directory.resolve("java-1"));
+        Files.write(workspacePath.resolve("Main.class"), new byte[]{1, 2, 3});
+        CountDownLatch finishedLatch = new CountDownLatch(1);
+        assertTrue(containerCleaner.submit("java", "c1", workspacePath, finishedLatch::countDown));
+        assertTrue(finishedLatch.await(5, TimeUnit.SECONDS));
+
+        verify(removeContainerCmd).withForce(true);
+        verify(removeContainerCmd).exec();
+        assertFalse(Files.exists(workspacePath));
+        assertFalse(containerCleaner.isPending("c1"));
+        containerCleaner.shutdown();
+    }
+
+    @Test
+    void retryFailedRemoval() throws Exception {
+        RemoveContainerCmd removeContainerCmd = mockRemoveContainerCmd();
+        doThrow(new RuntimeException("daemon busy")).doNothing().when(removeContainerCmd).exec();
+        RemoveContainerCmd missingContainerCmd = mockRemoveContainerCmd();
+        when(missingContainerCmd.exec()).thenThrow(new NotFoundException("no such container"));
+        DockerClient dockerClient = mock(DockerClient.class);
+        when(dockerClient.removeContainerCmd("c1")).thenReturn(removeContainerCmd);
+        when(dockerClient.removeContainerCmd("c2")).thenReturn(missingContainerCmd);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ContainerCleaner containerCleaner = newCleaner(dockerClient, meterRegistry);
+
+        CountDownLatch finishedLatch = new CountDownLatch(2);
+        containerCleaner.submit("java", "c1", null, finishedLatch::countDown);
+        containerCleaner.submit("java", "c2", null, finishedLatch::countDown);
+        assertTrue(finishedLatch.await(5, TimeUnit.SECONDS));
+
+        verify(removeContainerCmd, times(2)).exec();
+        // 容器已不存在时不重试
+        verify(missingContainerCmd, times(1)).exec();
+        assertNull(meterRegistry.find(SandboxMetrics.CLEANUP_FAILURE_COUNTER).counter());
+        containerCleaner.shutdown();
+    }
+
+    @Test
+    void rejectDuplicateAndDrainOnShutdown(@TempDir Path directory) throws IOException {
+        RemoveContainerCmd removeContainerCmd = mockRemoveContainerCmd();
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        when(removeContainerCmd.exec()).thenAnswer(invocation -> {
+            releaseLatch.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        DockerClient dockerClient = mock(DockerClient.class);
+        when(dockerClient.removeContainerCmd(anyString())).thenReturn(removeContainerCmd);
+        ContainerCleaner containerCleaner = newCleaner(dockerClient);
+
+        Path workspacePath = Files.createDirectories(directory.resolve("java-2"));
+        assertTrue(containerCleaner.submit("java", "c1", null, null));
+        assertTrue(containerCleaner.submit("java", "c2", workspacePath, null));
+        assertFalse(containerCleaner.submit("java", "c2", workspacePath, null));
+        assertTrue(containerCleaner.getBacklog() >= 1);
+
+        releaseLatch.countDown();
+        containerCleaner.shutdown();
+        assertEquals(0, containerCleaner.getBacklog());
+        assertFalse(Files.exists(workspacePath));
+    }
+
+    private static RemoveContainerCmd mockRemoveContainerCmd() {
+        RemoveContainerCmd removeContainerCmd = mock(RemoveContainerCmd.class);
+        when(removeContainerCmd.withForce(anyBoolean())).thenReturn(removeContainerCmd);
+        when(removeContainerCmd.withRemoveVolumes(anyBoolean())).thenReturn(removeContainerCmd);
+        return removeContainerCmd;
+    }
+
+    private static ContainerCleaner newCleaner(DockerClient dockerClient) {
+        return newCleaner(dockerClient, new SimpleMeterRegistry());
+    }
+
+    private static ContainerCleaner newCleaner(DockerClient dockerClient, SimpleMeterRegistry meterRegistry) {
+        CleanupProperties cleanupProperties = new CleanupProperties();
+        cleanupProperties.setThreads(1);
+        cleanupProperties.setRetryBackoffMillis(10L);
+        cleanupProperties.setOwner("test");
+        return new ContainerCleaner(cleanupProperties, dockerClient, new SandboxMetrics(meterRegistry));
+    }
+}
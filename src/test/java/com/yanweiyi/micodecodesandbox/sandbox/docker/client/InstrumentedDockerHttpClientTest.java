@@ -0,0 +1,69 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.client;
+
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.transport.DockerHttpClient;
+import com.yanweiyi.micodecodesandbox.config.DockerClientProperties;
+import com.yanweiyi.micodecodesandbox.config.DockerConfig;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InstrumentedDockerHttpClientTest {
+
+    @Test
+    void recordCallsByEndpoint() {
+        DockerHttpClient delegate = mock(DockerHttpClient.class);
+        DockerHttpClient.Response response = mock(DockerHttpClient.Response.class);
+        when(response.getStatusCode()).thenReturn(201);
+        when(delegate.execute(any())).thenReturn(response);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InstrumentedDockerHttpClient dockerHttpClient =
+                new InstrumentedDockerHttpClient(delegate, new SandboxMetrics(meterRegistry));
+
+        for (String containerId : new String[]{"0123456789ab", "ba9876543210"}) {
+            dockerHttpClient.execute(DockerHttpClient.Request.builder()
+                    .method(DockerHttpClient.Request.Method.POST)
+                    .path("/v1.41/containers/" + containerId + "/exec")
+                    .build());
+        }
+
+        // 不同容器的调用归为同一个接口
+        Timer timer = meterRegistry.get(SandboxMetrics.DOCKER_API_TIMER)
+                .tag("method", "POST")
+                .tag("endpoint", "/containers/{id}/exec")
+                .tag("status", "2xx")
+                .timer();
+        assertEquals(2, timer.count());
+        // 无法获取连接池时不影响调用
+        assertNull(dockerHttpClient.getConnectionPoolStats());
+    }
+
+    @Test
+    void normalizeEndpoint() {
+        assertEquals("/exec/{id}/start", InstrumentedDockerHttpClient.toEndpoint(
+                "/v1.41/exec/" + "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef" + "/start"));
+        assertEquals("/images/create", InstrumentedDockerHttpClient.toEndpoint("/images/create?fromImage=openjdk"));
+        assertEquals("/containers/json", InstrumentedDockerHttpClient.toEndpoint("/containers/json?all=true"));
+    }
+
+    @Test
+    void exposeHttpClient5ConnectionPool() throws Exception {
+        DockerClientProperties dockerClientProperties = new DockerClientProperties();
+        dockerClientProperties.setHost("tcp://127.0.0.1:2375");
+        dockerClientProperties.setMaxConnections(64);
+        DockerClientConfig dockerClientConfig = DockerConfig.createClientConfig(dockerClientProperties);
+        try (InstrumentedDockerHttpClient dockerHttpClient = new InstrumentedDockerHttpClient(
+                DockerConfig.createHttpClient(dockerClientConfig, dockerClientProperties),
+                new SandboxMetrics(new SimpleMeterRegistry()))) {
+            PoolStats poolStats = dockerHttpClient.getConnectionPoolStats();
+            assertNotNull(poolStats);
+            assertEquals(64, poolStats.getMax());
+            assertEquals(0, poolStats.getLeased());
+        }
+    }
+}
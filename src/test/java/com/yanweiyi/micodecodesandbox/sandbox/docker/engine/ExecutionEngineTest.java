@@ -0,0 +1,346 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.engine;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.yanweiyi.micodecodesandbox.benchmark.FakeDockerDaemon;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.config.DockerClientProperties;
+import com.yanweiyi.micodecodesandbox.config.DockerConfig;
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.InputCacheProperties;
+import com.yanweiyi.micodecodesandbox.config.ResultCacheProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.exec.AsyncDockerExecutor;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.input.InputFileCache;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.ResourceMeter;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.metering.ResourceUsage;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPool;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.pool.DockerContainerPoolManager;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.DirectoryWorkspaceProvider;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.CompiledProgram;
+import com.yanweiyi.micodecodesandbox.sandbox.runtime.LanguageRuntime;
+import com.yanweiyi.micodecodesandbox.testdata.TestDataStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 执行引擎在模拟 Docker 服务上的分片执行和结果合并
+ * <p>
+ * 模拟的程序输出与输入相同，输入以 error 开头时输出错误信息；批量执行由模拟服务按执行器的帧格式返回每个用例的结果
+ */
+class ExecutionEngineTest {
+
+    private static final String LANGUAGE = "fake";
+
+    private static final int CONTAINER_COUNT = 3;
+
+    @TempDir
+    Path directory;
+
+    private final List<List<String>> shardInputs = new CopyOnWriteArrayList<>();
+
+    // 批量执行时执行器收到的预期输出
+    private final List<List<String>> harnessExpectedOutputs = new CopyOnWriteArrayList<>();
+
+    private FakeDockerDaemon fakeDockerDaemon;
+
+    private InputFileCache inputFileCache;
+
+    private ContainerCleaner containerCleaner;
+
+    private DockerContainerPool containerPool;
+
+    private AsyncDockerExecutor asyncDockerExecutor;
+
+    private ExecutionProperties executionProperties;
+
+    private ExecutionEngine executionEngine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InputCacheProperties inputCacheProperties = new InputCacheProperties();
+        inputCacheProperties.setDirectory(directory.resolve("inputs").toString());
+        inputFileCache = new InputFileCache(inputCacheProperties);
+        fakeDockerDaemon = new FakeDockerDaemon(this::runCommand);
+        fakeDockerDaemon.start();
+        DockerClientProperties dockerClientProperties = new DockerClientProperties();
+        dockerClientProperties.setHost(fakeDockerDaemon.getDockerHost());
+        DockerClientConfig dockerClientConfig = DockerConfig.createClientConfig(dockerClientProperties);
+        DockerClient dockerClient = DockerClientImpl.getInstance(dockerClientConfig,
+                DockerConfig.createHttpClient(dockerClientConfig, dockerClientProperties));
+
+        SandboxMetrics sandboxMetrics = new SandboxMetrics(new SimpleMeterRegistry());
+        containerCleaner = new ContainerCleaner(new CleanupProperties(), dockerClient, sandboxMetrics);
+        ContainerPoolProperties.LanguagePool config = new ContainerPoolProperties.LanguagePool();
+        config.setImage("fake:latest");
+        config.setMinIdle(CONTAINER_COUNT);
+        config.setMaxTotal(CONTAINER_COUNT);
+        containerPool = new DockerContainerPool(LANGUAGE, config, dockerClient,
+                new DirectoryWorkspaceProvider(directory.resolve("workspaces"), 67108864L, true),
+                sandboxMetrics, containerCleaner);
+        // 额外的分片只使用已预热的空闲容器
+        containerPool.replenish();
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (containerPool.getIdleCount() < CONTAINER_COUNT && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(CONTAINER_COUNT, containerPool.getIdleCount());
+
+        DockerContainerPoolManager dockerContainerPoolManager = mock(DockerContainerPoolManager.class);
+        when(dockerContainerPoolManager.getPool(LANGUAGE)).thenReturn(containerPool);
+        asyncDockerExecutor = new AsyncDockerExecutor(dockerClient);
+        executionProperties = new ExecutionProperties();
+        executionProperties.setCaseParallelism(CONTAINER_COUNT);
+        ResourceMeter resourceMeter = containerId -> ResourceUsage::new;
+
+        executionEngine = new ExecutionEngine();
+        ReflectionTestUtils.setField(executionEngine, "dockerContainerPoolManager", dockerContainerPoolManager);
+        ReflectionTestUtils.setField(executionEngine, "containerPoolProperties", new ContainerPoolProperties());
+        ReflectionTestUtils.setField(executionEngine, "executionProperties", executionProperties);
+        ReflectionTestUtils.setField(executionEngine, "asyncDockerExecutor", asyncDockerExecutor);
+        ReflectionTestUtils.setField(executionEngine, "resourceMeter", resourceMeter);
+        ReflectionTestUtils.setField(executionEngine, "inputFileCache", inputFileCache);
+        ReflectionTestUtils.setField(executionEngine, "testDataStore", mock(TestDataStore.class));
+        ReflectionTestUtils.setField(executionEngine, "sandboxMetrics", sandboxMetrics);
+        ReflectionTestUtils.setField(executionEngine, "executionResultCache",
+                new ExecutionResultCache(new ResultCacheProperties(), sandboxMetrics));
+    }
+
+    @AfterEach
+    void tearDown() {
+        containerPool.shutdown();
+        containerCleaner.shutdown();
+        asyncDockerExecutor.shutdown();
+        fakeDockerDaemon.stop();
+    }
+
+    @Test
+    void mergeBatchShardsInInputOrder() {
+        List<String> inputList = Arrays.asList("1", "2", "3", "4", "5", "6", "7");
+        ExecuteCodeResponse executeCodeResponse = execute(inputList, true);
+
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), executeCodeResponse.getStatus());
+        assertEquals(inputList, executeCodeResponse.getOutputList());
+        assertEquals(Collections.nCopies(inputList.size(), ExecuteInfoEnum.SUCCESS.getValue()),
+                executeCodeResponse.getCaseStatusList());
+        // 用例按序号轮流分配到各容器
+        assertEquals(new HashSet<>(Arrays.asList(Arrays.asList("1", "4", "7"), Arrays.asList("2", "5"),
+                Arrays.asList("3", "6"))), new HashSet<>(shardInputs));
+    }
+
+    @Test
+    void stopMergingAtFirstFailedCaseWhenFailFast() {
+        ExecuteCodeResponse executeCodeResponse = execute(Arrays.asList("1", "2", "error3", "4", "5", "6"), true);
+
+        // 第三个容器在失败的用例后停止，结果截止到失败的用例
+        assertEquals(ExecuteInfoEnum.EXECUTION_ERROR.getValue(), executeCodeResponse.getStatus());
+        assertEquals("error3", executeCodeResponse.getErrorMessage());
+        assertEquals(Arrays.asList(ExecuteInfoEnum.SUCCESS.getValue(), ExecuteInfoEnum.SUCCESS.getValue(),
+                ExecuteInfoEnum.EXECUTION_ERROR.getValue()), executeCodeResponse.getCaseStatusList());
+        assertEquals(Arrays.asList("1", "2"), executeCodeResponse.getOutputList());
+    }
+
+    @Test
+    void reportEveryCaseWithoutFailFast() {
+        List<String> inputList = Arrays.asList("1", "error2", "3", "4");
+        ExecuteCodeResponse executeCodeResponse = execute(inputList, false);
+
+        assertEquals(ExecuteInfoEnum.EXECUTION_ERROR.getValue(), executeCodeResponse.getStatus());
+        assertEquals(inputList, executeCodeResponse.getOutputList());
+        assertEquals(Arrays.asList(ExecuteInfoEnum.SUCCESS.getValue(), ExecuteInfoEnum.EXECUTION_ERROR.getValue(),
+                ExecuteInfoEnum.SUCCESS.getValue(), ExecuteInfoEnum.SUCCESS.getValue()),
+                executeCodeResponse.getCaseStatusList());
+    }
+
+    @Test
+    void mergeOneByOneShardsInInputOrder() {
+        executionProperties.setBatchEnabled(false);
+        List<String> inputList = Arrays.asList("1", "2", "3", "4", "5");
+        ExecuteCodeResponse executeCodeResponse = execute(inputList, true);
+
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), executeCodeResponse.getStatus());
+        assertEquals(inputList, executeCodeResponse.getOutputList());
+        assertEquals(inputList.size(), shardInputs.size());
+    }
+
+    @Test
+    void compareWithExpectedOutputsOnHost() {
+        List<String> inputList = Arrays.asList("1", "2", "3");
+        List<String> expectedOutputList = Arrays.asList("1", "x", "3\n");
+        for (boolean batchEnabled : new boolean[]{true, false}) {
+            executionProperties.setBatchEnabled(batchEnabled);
+            ExecuteCodeResponse executeCodeResponse = execute(inputList, expectedOutputList, false);
+
+            // 返回程序的实际输出，预期输出不传入容器
+            assertEquals(ExecuteInfoEnum.WRONG_ANSWER.getValue(), executeCodeResponse.getStatus());
+            assertEquals(Arrays.asList(ExecuteInfoEnum.SUCCESS.getValue(), ExecuteInfoEnum.WRONG_ANSWER.getValue(),
+                    ExecuteInfoEnum.SUCCESS.getValue()), executeCodeResponse.getCaseStatusList());
+            assertEquals(inputList, executeCodeResponse.getOutputList());
+        }
+        assertFalse(harnessExpectedOutputs.isEmpty());
+        harnessExpectedOutputs.forEach(Assertions::assertNull);
+    }
+
+    @Test
+    void judgeMemoryOverflowOnlyByExactPeak() {
+        executionProperties.setBatchEnabled(false);
+        ResourceUsage resourceUsage = new ResourceUsage();
+        resourceUsage.setPeakMemoryBytes(Long.MAX_VALUE);
+        ReflectionTestUtils.setField(executionEngine, "resourceMeter", (ResourceMeter) containerId -> () -> resourceUsage);
+
+        // 峰值内存可能来自之前的用例时不判定为内存溢出
+        resourceUsage.setPeakMemoryExact(false);
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), execute(Arrays.asList("1", "2"), false).getStatus());
+        resourceUsage.setPeakMemoryExact(true);
+        assertEquals(ExecuteInfoEnum.MEMORY_OVERFLOW.getValue(), execute(Arrays.asList("3", "4"), false).getStatus());
+    }
+
+    @Test
+    void systemErrorWithoutInputs() {
+        ExecuteCodeResponse executeCodeResponse = execute(null, true);
+
+        assertEquals(ExecuteInfoEnum.SYSTEM_ERROR.getValue(), executeCodeResponse.getStatus());
+        assertTrue(shardInputs.isEmpty());
+        assertEquals(CONTAINER_COUNT, containerPool.getIdleCount());
+    }
+
+    private ExecuteCodeResponse execute(List<String> inputList, boolean failFast) {
+        return execute(inputList, null, failFast);
+    }
+
+    private ExecuteCodeResponse execute(List<String> inputList, List<String> expectedOutputList, boolean failFast) {
+        ExecuteCodeRequest executeCodeRequest = new ExecuteCodeRequest();
+        executeCodeRequest.setLanguage(LANGUAGE);
+        executeCodeRequest.setCode("echo");
+        executeCodeRequest.setInputList(inputList);
+        executeCodeRequest.setExpectedOutputList(expectedOutputList);
+        executeCodeRequest.setFailFast(failFast);
+        return executionEngine.execute(new EchoRuntime(), executeCodeRequest, new CancellationToken()).join();
+    }
+
+    /**
+     * 模拟容器中的命令：逐个执行时输出输入文件的内容，批量执行时按执行器的帧格式输出每个用例的结果，停止进程的命令不输出
+     */
+    private byte[] runCommand(List<String> command) {
+        try {
+            if (command.size() == 3 && command.get(2).startsWith("kill")) {
+                // 停止提前结束的命令
+                return new byte[0];
+            }
+            if (command.size() == 3 && "sh".equals(command.get(0))) {
+                String input = new String(readInput(command.get(2).substring("cat ".length())), StandardCharsets.UTF_8);
+                shardInputs.add(Collections.singletonList(input));
+                return input.getBytes(StandardCharsets.UTF_8);
+            }
+            CaseRunnerCodec.CaseInputs caseInputs = CaseRunnerCodec.decodeInputs(ByteBuffer.wrap(readInput(command.get(1))));
+            List<String> inputList = caseInputs.getInputList();
+            shardInputs.add(inputList);
+            harnessExpectedOutputs.add(caseInputs.getExpectedOutputList());
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            for (int i = 0; i < inputList.size(); i++) {
+                boolean error = inputList.get(i).startsWith("error");
+                byte[] output = inputList.get(i).getBytes(StandardCharsets.UTF_8);
+                String header = "#CASE " + command.get(3) + " " + (i + 1) + " 1000000 1000000 128 0 "
+                        + output.length + " " + (error ? output.length : 0) + "\n";
+                frames.write(header.getBytes(StandardCharsets.UTF_8));
+                frames.write(output);
+                if (error) {
+                    frames.write(output);
+                    if ("1".equals(command.get(2))) {
+                        break;
+                    }
+                }
+            }
+            return frames.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 输入文件只放在执行用例的容器的工作目录中
+     */
+    private byte[] readInput(String containerPath) throws IOException {
+        Path relativePath = Paths.get(DockerContainerPool.CONTAINER_WORK_DIRECTORY).relativize(Paths.get(containerPath));
+        try (Stream<Path> workspaces = Files.list(directory.resolve("workspaces"))) {
+            Path inputPath = workspaces.map(workspace -> workspace.resolve(relativePath))
+                    .filter(Files::exists)
+                    .findFirst()
+                    .orElseThrow(() -> new IOException("input not staged: " + containerPath));
+            return Files.readAllBytes(inputPath);
+        }
+    }
+
+    private static class EchoRuntime implements LanguageRuntime {
+
+        @Override
+        public String getLanguage() {
+            return LANGUAGE;
+        }
+
+        @Override
+        public String getDefaultImage() {
+            return "fake:latest";
+        }
+
+        @Override
+        public CompiledProgram compile(String code) {
+            return CompiledProgram.success(Collections.emptyMap());
+        }
+
+        @Override
+        public Map<String, byte[]> getHarnessFiles() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String[] getBatchCommand(String inputPath, long cpuLimitMillis, long wallLimitMillis,
+                                        long memoryLimitBytes, long outputLimitBytes, long errorOutputLimitBytes,
+                                        boolean failFast, String frameNonce) {
+            return new String[]{"run", inputPath, failFast ? "1" : "0", frameNonce};
+        }
+
+        @Override
+        public boolean supportsPerCaseExec() {
+            return true;
+        }
+
+        @Override
+        public String getCaseCommand(String inputPath, long memoryLimitBytes) {
+            return "cat " + inputPath;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.engine;
+
+import com.yanweiyi.micodecodesandbox.config.ResultCacheProperties;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionResultCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ResultCacheProperties resultCacheProperties;
+
+    private ExecutionResultCache executionResultCache;
+
+    // 每次实际执行收到的取消信号和返回的结果
+    private final List<CancellationToken> executionTokens = new CopyOnWriteArrayList<>();
+
+    private final List<CompletableFuture<ExecuteCodeResponse>> executions = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        resultCacheProperties = new ResultCacheProperties();
+        resultCacheProperties.setEnabled(true);
+        executionResultCache = new ExecutionResultCache(resultCacheProperties, new SandboxMetrics(meterRegistry));
+    }
+
+    @Test
+    void returnCachedResultForIdenticalSubmission() {
+        CompletableFuture<ExecuteCodeResponse> first = execute(newRequest("1 2"), new CancellationToken());
+        ExecuteCodeResponse executeCodeResponse = newResponse(ExecuteInfoEnum.SUCCESS);
+        executeCodeResponse.setOutputList(new ArrayList<>(Collections.singletonList("3")));
+        executions.get(0).complete(executeCodeResponse);
+        ExecuteCodeResponse cached = execute(newRequest("1 2"), new CancellationToken()).join();
+        assertEquals(first.join(), cached);
+        assertEquals(1, executions.size());
+        // 命中时返回副本，调用方修改结果不影响缓存
+        assertNotSame(first.join(), cached);
+        first.join().getOutputList().set(0, "changed");
+        cached.getOutputList().set(0, "changed");
+        assertEquals(Collections.singletonList("3"),
+                execute(newRequest("1 2"), new CancellationToken()).join().getOutputList());
+
+        // 输入或限制不同时重新执行
+        execute(newRequest("3 4"), new CancellationToken());
+        ExecuteCodeRequest limited = newRequest("1 2");
+        limited.setTimeLimit(500L);
+        execute(limited, new CancellationToken());
+        assertEquals(3, executions.size());
+
+        // 跳过缓存时重新执行
+        ExecuteCodeRequest bypass = newRequest("1 2");
+        bypass.setBypassCache(true);
+        execute(bypass, new CancellationToken());
+        assertEquals(4, executions.size());
+
+        assertEquals(2, count("hit"));
+        assertEquals(3, count("miss"));
+        assertEquals(1, count("bypass"));
+    }
+
+    @Test
+    void coalesceConcurrentSubmissions() {
+        CompletableFuture<ExecuteCodeResponse> first = execute(newRequest("1 2"), new CancellationToken());
+        CompletableFuture<ExecuteCodeResponse> second = execute(newRequest("1 2"), new CancellationToken());
+        assertEquals(1, executions.size());
+        assertFalse(second.isDone());
+
+        ExecuteCodeResponse executeCodeResponse = newResponse(ExecuteInfoEnum.WRONG_ANSWER);
+        executeCodeResponse.setOutputList(Collections.singletonList("3"));
+        executions.get(0).complete(executeCodeResponse);
+        // 每个请求得到各自的副本，修改其中一个不影响其他请求和缓存
+        assertEquals(executeCodeResponse, first.join());
+        assertEquals(executeCodeResponse, second.join());
+        assertNotSame(first.join(), second.join());
+        first.join().getOutputList().set(0, "changed");
+        assertEquals(executeCodeResponse, second.join());
+        assertEquals(executeCodeResponse, execute(newRequest("1 2"), new CancellationToken()).join());
+        assertEquals(1, count("coalesced"));
+        assertEquals(1, executionResultCache.size());
+    }
+
+    @Test
+    void lookupWithoutExecuting() {
+        // 需要执行时不登记为执行中的提交
+        assertNull(executionResultCache.lookup("java", newRequest("1 2"), new CancellationToken()));
+        CompletableFuture<ExecuteCodeResponse> first = execute(newRequest("1 2"), new CancellationToken());
+        CompletableFuture<ExecuteCodeResponse> coalesced = executionResultCache.lookup("java", newRequest("1 2"),
+                new CancellationToken());
+        assertNotNull(coalesced);
+        assertFalse(coalesced.isDone());
+
+        executions.get(0).complete(newResponse(ExecuteInfoEnum.SUCCESS));
+        assertEquals(first.join(), coalesced.join());
+        assertNotSame(first.join(), coalesced.join());
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(),
+                executionResultCache.lookup("java", newRequest("1 2"), new CancellationToken()).join().getStatus());
+        assertEquals(1, executions.size());
+
+        // 跳过缓存的请求不查询
+        ExecuteCodeRequest bypass = newRequest("1 2");
+        bypass.setBypassCache(true);
+        assertNull(executionResultCache.lookup("java", bypass, new CancellationToken()));
+
+        // 命中和合并的结果以 source=cache 单独计数
+        assertEquals(2.0, meterRegistry.get(SandboxMetrics.EXECUTION_COUNTER).tags("source", "cache", "outcome", "success")
+                .counter().count());
+        assertNull(meterRegistry.find(SandboxMetrics.EXECUTION_COUNTER).tag("source", "execution").counter());
+    }
+
+    @Test
+    void stopSharedExecutionOnlyWhenAllWaitersCancel() {
+        CancellationToken firstToken = new CancellationToken();
+        CancellationToken secondToken = new CancellationToken();
+        CompletableFuture<ExecuteCodeResponse> first = execute(newRequest("1 2"), firstToken);
+        CompletableFuture<ExecuteCodeResponse> second = execute(newRequest("1 2"), secondToken);
+
+        firstToken.cancel();
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), first.join().getStatus());
+        assertFalse(second.isDone());
+        assertFalse(executionTokens.get(0).isCancelled());
+
+        secondToken.cancel();
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), second.join().getStatus());
+        assertTrue(executionTokens.get(0).isCancelled());
+
+        // 已取消的执行不再合并新的请求，结果也不缓存
+        execute(newRequest("1 2"), new CancellationToken());
+        assertEquals(2, executions.size());
+        executions.get(0).complete(newResponse(ExecuteInfoEnum.CANCELLED));
+        assertEquals(0, executionResultCache.size());
+    }
+
+    @Test
+    void skipResultsThatDependOnHostLoad() {
+        execute(newRequest("1 2"), new CancellationToken());
+        executions.get(0).complete(newResponse(ExecuteInfoEnum.EXECUTION_TIMEOUT));
+        execute(newRequest("1 2"), new CancellationToken());
+        executions.get(1).complete(newResponse(ExecuteInfoEnum.SYSTEM_ERROR));
+        assertEquals(0, executionResultCache.size());
+
+        // 不快速失败时后面的用例超时或内存溢出，同样不缓存
+        for (ExecuteInfoEnum caseStatus : Arrays.asList(ExecuteInfoEnum.EXECUTION_TIMEOUT, ExecuteInfoEnum.MEMORY_OVERFLOW)) {
+            execute(newRequest("1 2"), new CancellationToken());
+            ExecuteCodeResponse partial = newResponse(ExecuteInfoEnum.WRONG_ANSWER);
+            partial.setCaseStatusList(Arrays.asList(ExecuteInfoEnum.WRONG_ANSWER.getValue(), caseStatus.getValue()));
+            executions.get(executions.size() - 1).complete(partial);
+        }
+        assertEquals(0, executionResultCache.size());
+
+        // 输出过长的结果不缓存
+        resultCacheProperties.setMaxEntryChars(3L);
+        execute(newRequest("3 4"), new CancellationToken());
+        ExecuteCodeResponse executeCodeResponse = newResponse(ExecuteInfoEnum.SUCCESS);
+        executeCodeResponse.setOutputList(Arrays.asList("12", "34"));
+        executions.get(executions.size() - 1).complete(executeCodeResponse);
+        assertEquals(0, executionResultCache.size());
+    }
+
+    @Test
+    void executeDirectlyWhenDisabled() {
+        resultCacheProperties.setEnabled(false);
+        CancellationToken cancellationToken = new CancellationToken();
+        execute(newRequest("1 2"), cancellationToken);
+        execute(newRequest("1 2"), cancellationToken);
+        assertEquals(2, executions.size());
+        assertSame(cancellationToken, executionTokens.get(0));
+        assertNull(meterRegistry.find(SandboxMetrics.RESULT_CACHE_COUNTER).counter());
+    }
+
+    private CompletableFuture<ExecuteCodeResponse> execute(ExecuteCodeRequest executeCodeRequest,
+                                                           CancellationToken cancellationToken) {
+        return executionResultCache.execute("java", executeCodeRequest, cancellationToken, token -> {
+            CompletableFuture<ExecuteCodeResponse> execution = new CompletableFuture<>();
+            executionTokens.add(token);
+            executions.add(execution);
+            return execution;
+        });
+    }
+
+    private double count(String result) {
+        return meterRegistry.get(SandboxMetrics.RESULT_CACHE_COUNTER).tag("result", result).counter().count();
+    }
+
+    private static ExecuteCodeRequest newRequest(String input) {
+        ExecuteCodeRequest executeCodeRequest = new ExecuteCodeRequest();
+        executeCodeRequest.setLanguage("java");
+        executeCodeRequest.setCode("public class Main {}");
+        executeCodeRequest.setInputList(Collections.singletonList(input));
+        return executeCodeRequest;
+    }
+
+    private static ExecuteCodeResponse newResponse(ExecuteInfoEnum status) {
+        ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+        executeCodeResponse.setStatus(status.getValue());
+        return executeCodeResponse;
+    }
+}
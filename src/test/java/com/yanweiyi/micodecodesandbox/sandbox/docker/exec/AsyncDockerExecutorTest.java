@@ -0,0 +1,105 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.exec;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.ExecCreateCmd;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.command.ExecStartCmd;
+import com.github.dockerjava.api.command.InspectExecCmd;
+import com.github.dockerjava.api.command.InspectExecResponse;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncDockerExecutorTest {
+
+    private static final String[] KILL_COMMAND = {"sh", "-c", "kill -9 -1"};
+
+    @Test
+    void completedExecIsNotKilled() throws Exception {
+        DockerClient dockerClient = mockDockerClient();
+        mockExecCreate(dockerClient, "exec-1", "run");
+        mockExecStart(dockerClient, "exec-1", callback -> {
+            callback.onNext(new Frame(StreamType.STDOUT, "3\n".getBytes(StandardCharsets.UTF_8)));
+            callback.onComplete();
+        });
+        AsyncDockerExecutor asyncDockerExecutor = new AsyncDockerExecutor(dockerClient);
+
+        ExecResult execResult = asyncDockerExecutor.exec("c1", new String[]{"run"}, 1000L,
+                new ExecOutputSink(1024L, 1024L, null)).get(5, TimeUnit.SECONDS);
+        assertTrue(execResult.isCompleted());
+        assertEquals("3\n", new String(execResult.getStdout(), StandardCharsets.UTF_8));
+        assertNull(execResult.getKillLatencyNanos());
+        verify(dockerClient, never()).inspectExecCmd(anyString());
+        asyncDockerExecutor.shutdown();
+    }
+
+    @Test
+    void timedOutExecIsKilledBeforeReturning() throws Exception {
+        DockerClient dockerClient = mockDockerClient();
+        mockExecCreate(dockerClient, "exec-1", "run");
+        mockExecCreate(dockerClient, "kill-1", KILL_COMMAND);
+        // 用户程序一直运行，直到容器中的进程被停止
+        AtomicBoolean killed = new AtomicBoolean();
+        mockExecStart(dockerClient, "exec-1", callback -> {
+        });
+        mockExecStart(dockerClient, "kill-1", callback -> {
+            killed.set(true);
+            callback.onComplete();
+        });
+        InspectExecResponse inspectExecResponse = mock(InspectExecResponse.class);
+        when(inspectExecResponse.isRunning()).thenAnswer(invocation -> !killed.get());
+        InspectExecCmd inspectExecCmd = mock(InspectExecCmd.class);
+        when(inspectExecCmd.exec()).thenReturn(inspectExecResponse);
+        when(dockerClient.inspectExecCmd("exec-1")).thenReturn(inspectExecCmd);
+        AsyncDockerExecutor asyncDockerExecutor = new AsyncDockerExecutor(dockerClient);
+
+        ExecResult execResult = asyncDockerExecutor.exec("c1", new String[]{"run"}, 100L,
+                new ExecOutputSink(1024L, 1024L, null)).get(5, TimeUnit.SECONDS);
+        assertFalse(execResult.isCompleted());
+        assertTrue(killed.get());
+        assertNotNull(execResult.getKillLatencyNanos());
+        assertTrue(execResult.getKillLatencyNanos() >= 0);
+        verify(inspectExecCmd, atLeastOnce()).exec();
+        asyncDockerExecutor.shutdown();
+    }
+
+    private static DockerClient mockDockerClient() {
+        DockerClient dockerClient = mock(DockerClient.class);
+        when(dockerClient.execCreateCmd("c1")).thenReturn(mock(ExecCreateCmd.class, RETURNS_SELF));
+        return dockerClient;
+    }
+
+    /**
+     * 容器 c1 中执行 command 时返回 execId
+     */
+    private static void mockExecCreate(DockerClient dockerClient, String execId, String... command) {
+        ExecCreateCmd execCreateCmd = mock(ExecCreateCmd.class, RETURNS_SELF);
+        ExecCreateCmdResponse execCreateCmdResponse = mock(ExecCreateCmdResponse.class);
+        when(execCreateCmdResponse.getId()).thenReturn(execId);
+        doReturn(execCreateCmdResponse).when(execCreateCmd).exec();
+        when(dockerClient.execCreateCmd("c1").withCmd(command)).thenReturn(execCreateCmd);
+    }
+
+    private static void mockExecStart(DockerClient dockerClient, String execId, ExecBehaviour execBehaviour) {
+        ExecStartCmd execStartCmd = mock(ExecStartCmd.class, RETURNS_SELF);
+        doAnswer(invocation -> {
+            ResultCallback.Adapter<Frame> callback = invocation.getArgument(0);
+            execBehaviour.run(callback);
+            return callback;
+        }).when(execStartCmd).exec(any());
+        when(dockerClient.execStartCmd(execId)).thenReturn(execStartCmd);
+    }
+
+    private interface ExecBehaviour {
+
+        void run(ResultCallback.Adapter<Frame> callback) throws Exception;
+    }
+}
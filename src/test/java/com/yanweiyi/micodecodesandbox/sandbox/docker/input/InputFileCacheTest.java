@@ -0,0 +1,65 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.input;
+
+import com.yanweiyi.micodecodesandbox.config.InputCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputFileCacheTest {
+
+    @Test
+    void storeOncePerContent(@TempDir Path directory) throws IOException {
+        InputFileCache inputFileCache = new InputFileCache(properties(directory, 1024));
+        try (InputFileCache.Lease first = inputFileCache.store(bytes("1 2\n"));
+             InputFileCache.Lease second = inputFileCache.store(bytes("1 2\n"))) {
+            assertEquals(first.getHostPath(), second.getHostPath());
+            assertEquals(first.getHash(), second.getHash());
+            assertEquals("1 2\n", new String(Files.readAllBytes(first.getHostPath()), StandardCharsets.UTF_8));
+        }
+        assertEquals(1, inputFileCache.size());
+        assertEquals(4, inputFileCache.getTotalBytes());
+    }
+
+    @Test
+    void evictOnlyReleasedFiles(@TempDir Path directory) throws IOException {
+        InputFileCache inputFileCache = new InputFileCache(properties(directory, 8));
+        InputFileCache.Lease leased = inputFileCache.store(bytes("aaaaaa"));
+        inputFileCache.store(bytes("bbbbbb")).close();
+        // 超出上限，但第一个文件仍被占用，淘汰第二个
+        assertTrue(Files.exists(leased.getHostPath()));
+        assertEquals(1, inputFileCache.size());
+
+        leased.close();
+        InputFileCache.Lease third = inputFileCache.store(bytes("cccccc"));
+        assertFalse(Files.exists(leased.getHostPath()));
+        assertTrue(Files.exists(third.getHostPath()));
+        third.close();
+    }
+
+    @Test
+    void reloadExistingFiles(@TempDir Path directory) throws IOException {
+        new InputFileCache(properties(directory, 1024)).store(bytes("data")).close();
+        Files.write(directory.resolve("partial.tmp-1"), bytes("x"));
+
+        InputFileCache reloaded = new InputFileCache(properties(directory, 1024));
+        assertEquals(1, reloaded.size());
+        assertFalse(Files.exists(directory.resolve("partial.tmp-1")));
+    }
+
+    private static InputCacheProperties properties(Path directory, long maxBytes) {
+        InputCacheProperties inputCacheProperties = new InputCacheProperties();
+        inputCacheProperties.setDirectory(directory.toString());
+        inputCacheProperties.setMaxBytes(maxBytes);
+        return inputCacheProperties;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
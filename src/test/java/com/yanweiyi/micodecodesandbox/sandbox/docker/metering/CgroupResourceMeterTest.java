@@ -0,0 +1,92 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.metering;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CgroupResourceMeterTest {
+
+    private static final String CONTAINER_ID = "0123456789ab";
+
+    @Test
+    void meterUnifiedHierarchy(@TempDir Path cgroupRoot) throws IOException {
+        write(cgroupRoot.resolve("cgroup.controllers"), "cpu memory pids");
+        Path containerPath = cgroupRoot.resolve("system.slice").resolve("docker-" + CONTAINER_ID + ".scope");
+        write(containerPath.resolve("cpu.stat"), "usage_usec 1000\nuser_usec 800\nsystem_usec 200\n");
+        write(containerPath.resolve("memory.peak"), "0");
+
+        ResourceMeter.Session session = new CgroupResourceMeter(cgroupRoot, null).start(CONTAINER_ID);
+        write(containerPath.resolve("cpu.stat"), "usage_usec 251000\nuser_usec 200800\nsystem_usec 50200\n");
+        write(containerPath.resolve("memory.peak"), "52428800\n");
+        ResourceUsage resourceUsage = session.stop();
+
+        assertEquals(52428800L, resourceUsage.getPeakMemoryBytes());
+        assertEquals(250_000_000L, resourceUsage.getCpuTimeNanos());
+    }
+
+    @Test
+    void meterLegacyHierarchy(@TempDir Path cgroupRoot) throws IOException {
+        Path memoryPath = cgroupRoot.resolve("memory").resolve("docker").resolve(CONTAINER_ID);
+        Path cpuPath = cgroupRoot.resolve("cpu,cpuacct").resolve("docker").resolve(CONTAINER_ID);
+        write(memoryPath.resolve("memory.max_usage_in_bytes"), "999999999");
+        write(cpuPath.resolve("cpuacct.usage"), "5000000");
+
+        ResourceMeter.Session session = new CgroupResourceMeter(cgroupRoot, null).start(CONTAINER_ID);
+        // 开始计量时峰值被重置
+        assertEquals("0", new String(Files.readAllBytes(memoryPath.resolve("memory.max_usage_in_bytes")), StandardCharsets.US_ASCII));
+        write(memoryPath.resolve("memory.max_usage_in_bytes"), "1048576\n");
+        write(cpuPath.resolve("cpuacct.usage"), "15000000\n");
+        ResourceUsage resourceUsage = session.stop();
+
+        assertEquals(1048576L, resourceUsage.getPeakMemoryBytes());
+        assertEquals(10_000_000L, resourceUsage.getCpuTimeNanos());
+    }
+
+    @Test
+    void countOomKills(@TempDir Path cgroupRoot) throws IOException {
+        write(cgroupRoot.resolve("cgroup.controllers"), "cpu memory pids");
+        Path containerPath = cgroupRoot.resolve("docker").resolve(CONTAINER_ID);
+        write(containerPath.resolve("cpu.stat"), "usage_usec 0\n");
+        write(containerPath.resolve("memory.peak"), "0");
+        write(containerPath.resolve("memory.events"), "low 0\nhigh 0\nmax 3\noom 1\noom_kill 1\n");
+        CgroupResourceMeter cgroupResourceMeter = new CgroupResourceMeter(cgroupRoot, null);
+
+        ResourceMeter.Session session = cgroupResourceMeter.start(CONTAINER_ID);
+        write(containerPath.resolve("memory.peak"), "1048576\n");
+        write(containerPath.resolve("memory.events"), "low 0\nhigh 0\nmax 9\noom 2\noom_kill 2\n");
+        // 只统计计量期间的 OOM 事件
+        assertEquals(1L, session.stop().getOomKillCount());
+        assertEquals(2L, cgroupResourceMeter.readOomKillCount(CONTAINER_ID));
+    }
+
+    @Test
+    void countLegacyOomKills(@TempDir Path cgroupRoot) throws IOException {
+        Path memoryPath = cgroupRoot.resolve("memory").resolve("docker").resolve(CONTAINER_ID);
+        write(memoryPath.resolve("memory.oom_control"), "oom_kill_disable 0\nunder_oom 0\noom_kill 4\n");
+
+        assertEquals(4L, new CgroupResourceMeter(cgroupRoot, null).readOomKillCount(CONTAINER_ID));
+    }
+
+    @Test
+    void fallbackWhenContainerNotFound(@TempDir Path cgroupRoot) throws IOException {
+        write(cgroupRoot.resolve("cgroup.controllers"), "cpu memory pids");
+        ResourceUsage fallbackUsage = new ResourceUsage();
+        fallbackUsage.setPeakMemoryBytes(1024L);
+        ResourceMeter fallbackMeter = containerId -> () -> fallbackUsage;
+
+        ResourceUsage resourceUsage = new CgroupResourceMeter(cgroupRoot, fallbackMeter).start(CONTAINER_ID).stop();
+
+        assertSame(fallbackUsage, resourceUsage);
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,218 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.pool;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.yanweiyi.micodecodesandbox.benchmark.FakeDockerDaemon;
+import com.yanweiyi.micodecodesandbox.config.CleanupProperties;
+import com.yanweiyi.micodecodesandbox.config.ContainerPoolProperties;
+import com.yanweiyi.micodecodesandbox.config.DockerClientProperties;
+import com.yanweiyi.micodecodesandbox.config.DockerConfig;
+import com.yanweiyi.micodecodesandbox.metrics.SandboxMetrics;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.cleanup.ContainerCleaner;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.workspace.DirectoryWorkspaceProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DockerContainerPoolTest {
+
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 5000L;
+
+    @TempDir
+    Path directory;
+
+    private FakeDockerDaemon fakeDockerDaemon;
+
+    private DockerClient dockerClient;
+
+    private SandboxMetrics sandboxMetrics;
+
+    private ContainerCleaner containerCleaner;
+
+    private DockerContainerPool containerPool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fakeDockerDaemon = new FakeDockerDaemon("ok\n".getBytes(StandardCharsets.UTF_8));
+        fakeDockerDaemon.start();
+        DockerClientProperties dockerClientProperties = new DockerClientProperties();
+        dockerClientProperties.setHost(fakeDockerDaemon.getDockerHost());
+        DockerClientConfig dockerClientConfig = DockerConfig.createClientConfig(dockerClientProperties);
+        dockerClient = DockerClientImpl.getInstance(dockerClientConfig,
+                DockerConfig.createHttpClient(dockerClientConfig, dockerClientProperties));
+        sandboxMetrics = new SandboxMetrics(new SimpleMeterRegistry());
+        containerCleaner = new ContainerCleaner(new CleanupProperties(), dockerClient, sandboxMetrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (containerPool != null) {
+            containerPool.shutdown();
+        }
+        containerCleaner.shutdown();
+        fakeDockerDaemon.stop();
+    }
+
+    @Test
+    void reuseReleasedContainerWithoutHealthCheck() throws Exception {
+        containerPool = newPool(newConfig(1));
+        PooledContainer container = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        assertNotNull(container);
+        // 容器数达到上限时等待超时
+        assertNull(containerPool.acquire(100L));
+
+        int inspectCount = fakeDockerDaemon.getContainerRequestCount("GET /json");
+        int topCount = fakeDockerDaemon.getContainerRequestCount("GET /top");
+        containerPool.release(container, false);
+        assertEquals(inspectCount, fakeDockerDaemon.getContainerRequestCount("GET /json"));
+        assertEquals(topCount, fakeDockerDaemon.getContainerRequestCount("GET /top"));
+        assertEquals(1, containerPool.getIdleCount());
+
+        PooledContainer reused = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        assertEquals(container.getContainerId(), reused.getContainerId());
+        assertEquals(1, reused.getUseCount());
+        assertEquals(1, containerPool.getTotalCount());
+    }
+
+    @Test
+    void checkHealthAfterFailedRun() throws Exception {
+        containerPool = newPool(newConfig(1));
+        PooledContainer healthy = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        int inspectCount = fakeDockerDaemon.getContainerRequestCount("GET /json");
+        containerPool.release(healthy, false, true);
+        assertEquals(inspectCount + 1, fakeDockerDaemon.getContainerRequestCount("GET /json"));
+        assertEquals(1, containerPool.getIdleCount());
+
+        PooledContainer exited = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        assertEquals(healthy.getContainerId(), exited.getContainerId());
+        fakeDockerDaemon.exitContainer(exited.getContainerId());
+        containerPool.release(exited, false, true);
+        awaitRemoved(exited.getContainerId());
+        assertEquals(0, containerPool.getIdleCount());
+
+        // 销毁后释放名额，可以创建新的容器
+        PooledContainer replacement = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        assertNotNull(replacement);
+        assertNotEquals(exited.getContainerId(), replacement.getContainerId());
+    }
+
+    @Test
+    void replaceContaminatedAndWornOutContainers() throws Exception {
+        ContainerPoolProperties.LanguagePool config = newConfig(2);
+        config.setMinIdle(1);
+        config.setMaxUses(2);
+        containerPool = newPool(config);
+
+        PooledContainer contaminated = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        containerPool.release(contaminated, true);
+        awaitRemoved(contaminated.getContainerId());
+        PooledContainer replacement = awaitIdle();
+        assertNotEquals(contaminated.getContainerId(), replacement.getContainerId());
+
+        // 达到使用次数上限后销毁并补充
+        containerPool.release(replacement, false);
+        PooledContainer wornOut = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        assertEquals(replacement.getContainerId(), wornOut.getContainerId());
+        containerPool.release(wornOut, false);
+        awaitRemoved(wornOut.getContainerId());
+        assertNotEquals(wornOut.getContainerId(), awaitIdle().getContainerId());
+    }
+
+    @Test
+    void maintainRemovesUnhealthyIdleContainers() throws Exception {
+        containerPool = newPool(newConfig(2));
+        PooledContainer healthy = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        PooledContainer exited = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        containerPool.release(healthy, false);
+        containerPool.release(exited, false);
+        fakeDockerDaemon.exitContainer(exited.getContainerId());
+
+        containerPool.maintain();
+        awaitRemoved(exited.getContainerId());
+        assertEquals(1, containerPool.getIdleCount());
+        assertEquals(healthy.getContainerId(), containerPool.tryAcquireIdle().getContainerId());
+    }
+
+    @Test
+    void shutdownDestroysIdleAndReturnedContainers() throws Exception {
+        containerPool = newPool(newConfig(2));
+        PooledContainer idle = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        PooledContainer leased = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+        containerPool.release(idle, false);
+
+        containerPool.shutdown();
+        awaitRemoved(idle.getContainerId());
+        assertFalse(fakeDockerDaemon.isRemoved(leased.getContainerId()));
+        assertNull(containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS));
+
+        // 关闭后归还的容器直接销毁
+        containerPool.release(leased, false);
+        awaitRemoved(leased.getContainerId());
+        assertEquals(0, containerPool.getIdleCount());
+        assertTrue(containerPool.getLiveContainers().isEmpty());
+    }
+
+    @Test
+    void pinContainersToDockerHostCpus() throws Exception {
+        // Docker 宿主机的核数与本机无关
+        fakeDockerDaemon.setCpuCount(2);
+        ContainerPoolProperties.LanguagePool config = newConfig(3);
+        config.setCpuPinning(true);
+        containerPool = newPool(config);
+
+        List<String> cpusets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PooledContainer container = containerPool.acquire(ACQUIRE_TIMEOUT_MILLIS);
+            cpusets.add(fakeDockerDaemon.getContainerConfig(container.getContainerId())
+                    .path("HostConfig").path("CpusetCpus").asText());
+        }
+        assertEquals(Arrays.asList("0", "1", "0"), cpusets);
+    }
+
+    private void awaitRemoved(String containerId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT_MILLIS;
+        while (!fakeDockerDaemon.isRemoved(containerId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertTrue(fakeDockerDaemon.isRemoved(containerId), containerId);
+    }
+
+    /**
+     * 等待后台补充的空闲容器并借出
+     */
+    private PooledContainer awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT_MILLIS;
+        PooledContainer container = containerPool.tryAcquireIdle();
+        while (container == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            container = containerPool.tryAcquireIdle();
+        }
+        assertNotNull(container);
+        return container;
+    }
+
+    private static ContainerPoolProperties.LanguagePool newConfig(int maxTotal) {
+        ContainerPoolProperties.LanguagePool config = new ContainerPoolProperties.LanguagePool();
+        config.setImage("fake:latest");
+        config.setMinIdle(0);
+        config.setMaxTotal(maxTotal);
+        return config;
+    }
+
+    private DockerContainerPool newPool(ContainerPoolProperties.LanguagePool config) {
+        return new DockerContainerPool("java", config, dockerClient,
+                new DirectoryWorkspaceProvider(directory.resolve("workspaces"), 67108864L, true),
+                sandboxMetrics, containerCleaner);
+    }
+}
@@ -0,0 +1,86 @@
+package com.yanweiyi.micodecodesandbox.sandbox.docker.workspace;
+
+import cn.hutool.core.io.FileUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class WorkspaceProviderTest {
+
+    @Test
+    void writeAndReset(@TempDir Path directory) throws IOException {
+        WorkspaceProvider workspaceProvider = new DirectoryWorkspaceProvider(directory, 1024, true);
+        Workspace workspace = workspaceProvider.create("java");
+        assertTrue(workspace.getPath().getFileName().toString().startsWith("java-"));
+
+        workspace.write("Main.class", new byte[]{1, 2, 3});
+        workspace.write("harness/com/example/Runner.class", new byte[]{4, 5});
+        assertTrue(Files.exists(workspace.getPath().resolve("harness/com/example/Runner.class")));
+        assertEquals(5, workspace.getUsedBytes());
+
+        workspaceProvider.reset(workspace);
+        assertTrue(Files.isDirectory(workspace.getPath()));
+        assertEquals(0, FileUtil.ls(workspace.getPath().toString()).length);
+        assertEquals(0, workspace.getUsedBytes());
+    }
+
+    @Test
+    void rejectWritesOverQuota(@TempDir Path directory) throws IOException {
+        Workspace workspace = new DirectoryWorkspaceProvider(directory, 8, true).create("java");
+        workspace.write("a.class", new byte[6]);
+        assertThrows(IOException.class, () -> workspace.write("b.class", new byte[6]));
+        assertFalse(Files.exists(workspace.getPath().resolve("b.class")));
+        assertEquals(6, workspace.getUsedBytes());
+        // 不能写到工作目录之外
+        assertThrows(IOException.class, () -> workspace.write("../escape.class", new byte[1]));
+    }
+
+    @Test
+    void linkInputFiles(@TempDir Path directory) throws IOException {
+        Path source = Files.write(directory.resolve("input"), new byte[]{1, 2, 3});
+
+        // 只读挂载的工作目录与源文件共享内容，不计入配额
+        Workspace readOnly = new DirectoryWorkspaceProvider(directory.resolve("ro"), 1024, true).create("java");
+        readOnly.link(".input/a", source);
+        readOnly.link(".input/a", source);
+        assertTrue(Files.isSameFile(source, readOnly.getPath().resolve(".input/a")));
+        assertEquals(0, readOnly.getUsedBytes());
+
+        // 容器可以写入的工作目录使用副本
+        Workspace writable = new DirectoryWorkspaceProvider(directory.resolve("rw"), 1024, false).create("java");
+        writable.link(".input/a", source);
+        Path copy = writable.getPath().resolve(".input/a");
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(copy));
+        assertEquals(2, Files.getAttribute(source, "unix:nlink"));
+        assertEquals(3, writable.getUsedBytes());
+    }
+
+    @Test
+    void tmpfsWorkspace() throws IOException {
+        Path root = Paths.get("/dev/shm", "workspace-test-" + UUID.randomUUID());
+        assumeTrue(TmpfsWorkspaceProvider.isSupported(root));
+        try {
+            WorkspaceProvider workspaceProvider = new TmpfsWorkspaceProvider(root, 1024, true);
+            assertTrue(workspaceProvider.isMemoryBacked());
+            Workspace workspace = workspaceProvider.create("java");
+            workspace.write("Main.class", new byte[]{1});
+            assertEquals("tmpfs", Files.getFileStore(workspace.getPath()).type());
+        } finally {
+            FileUtil.del(root);
+        }
+    }
+
+    @Test
+    void tmpfsRequiresMemoryFileSystem(@TempDir Path directory) {
+        assumeTrue(!TmpfsWorkspaceProvider.isSupported(directory));
+        assertThrows(IllegalStateException.class, () -> new TmpfsWorkspaceProvider(directory, 1024, true));
+    }
+}
@@ -0,0 +1,67 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaseOutputStreamTest {
+
+    @Test
+    void stopOnLimitAndTrimIncompleteCharacter() {
+        AtomicInteger stopCount = new AtomicInteger();
+        CaseOutputStream outputStream = new CaseOutputStream(4, null, stopCount::incrementAndGet);
+        byte[] bytes = "a你好".getBytes(StandardCharsets.UTF_8);
+        outputStream.write(bytes, 0, 2);
+        outputStream.write(bytes, 2, bytes.length - 2);
+        outputStream.write('b');
+
+        assertTrue(outputStream.isLimitExceeded());
+        assertEquals(1, stopCount.get());
+        assertEquals("a你", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void truncateWithoutStopListener() {
+        CaseOutputStream outputStream = new CaseOutputStream(3, null, null);
+        outputStream.write("abcdef".getBytes(StandardCharsets.US_ASCII), 0, 6);
+        outputStream.write('g');
+
+        assertTrue(outputStream.isLimitExceeded());
+        assertEquals("abc", new String(outputStream.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void compareWithExpectedOutput() {
+        byte[] expected = "1 2\n".getBytes(StandardCharsets.US_ASCII);
+
+        CaseOutputStream matched = new CaseOutputStream(1024, expected, null);
+        matched.write("1 ".getBytes(StandardCharsets.US_ASCII), 0, 2);
+        matched.write("2\n".getBytes(StandardCharsets.US_ASCII), 0, 2);
+        matched.finish();
+        assertFalse(matched.isMismatched());
+        assertEquals("1 2\n", new String(matched.toByteArray(), StandardCharsets.US_ASCII));
+
+        AtomicInteger stopCount = new AtomicInteger();
+        CaseOutputStream mismatched = new CaseOutputStream(1024, expected, stopCount::incrementAndGet);
+        mismatched.write("1 3".getBytes(StandardCharsets.US_ASCII), 0, 3);
+        mismatched.write('\n');
+        assertTrue(mismatched.isMismatched());
+        assertEquals(1, stopCount.get());
+        // 答案错误时保留停止前收到的实际输出
+        assertEquals("1 3", new String(mismatched.toByteArray(), StandardCharsets.US_ASCII));
+        // 答案错误时保留停止前收到的实际输出
+        assertEquals("1 3", new String(mismatched.toByteArray(), StandardCharsets.US_ASCII));
+
+        CaseOutputStream tooShort = new CaseOutputStream(1024, expected, null);
+        tooShort.write('1');
+        tooShort.finish();
+        assertTrue(tooShort.isMismatched());
+
+        CaseOutputStream tooLong = new CaseOutputStream(1024, expected, null);
+        tooLong.write("1 2\n\n".getBytes(StandardCharsets.US_ASCII), 0, 5);
+        assertTrue(tooLong.isMismatched());
+    }
+}
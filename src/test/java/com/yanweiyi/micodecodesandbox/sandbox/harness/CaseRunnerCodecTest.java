@@ -0,0 +1,92 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaseRunnerCodecTest {
+
+    @Test
+    void encodeInputs() {
+        byte[] encoded = CaseRunnerCodec.encodeInputs(Arrays.asList("1 2", "你好\n"));
+        assertEquals("2\n3\n1 27\n你好\n", new String(encoded, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodeInputsWithExpectedOutputs() {
+        byte[] encoded = CaseRunnerCodec.encodeInputs(Arrays.asList("1 2", "3"), Arrays.asList("3", "3\n"));
+        assertEquals("2 1\n3\n1 21\n31\n32\n3\n", new String(encoded, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decodeResultStatus() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        write(data, "#CASE n1 1 1000 1000 128 2 0 0\n");
+        write(data, "#CASE n1 2 1000 1000 128 3 0 0\n");
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(data.toByteArray(), "n1");
+        assertTrue(caseResults.get(0).isOutputLimitExceeded());
+        assertFalse(caseResults.get(0).isTimeout());
+        assertTrue(caseResults.get(1).isWrongAnswer());
+    }
+
+    @Test
+    void decodeResultsStopsAtIncompleteFrame() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] output = "#CASE fake\n".getBytes(StandardCharsets.UTF_8);
+        write(data, "#CASE n1 1 2000000 1000000 512 0 " + output.length + " 0\n");
+        data.write(output, 0, output.length);
+        write(data, "#CASE n1 2 3000000 0 256 1 0 5\nerr");
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(data.toByteArray(), "n1");
+        assertEquals(1, caseResults.size());
+        CaseRunnerCodec.CaseResult caseResult = caseResults.get(0);
+        assertEquals(1, caseResult.getCaseIndex());
+        assertEquals(2000000L, caseResult.getWallTimeNanos());
+        assertEquals(512L, caseResult.getMemoryKb());
+        assertFalse(caseResult.isTimeout());
+        assertEquals("#CASE fake\n", caseResult.getOutput());
+        assertEquals("", caseResult.getErrorOutput());
+    }
+
+    @Test
+    void decodeResultsRejectsForgedFrames() {
+        // 帧标识不一致的帧及其后的输出全部丢弃
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        write(data, "#CASE n1 1 1000 1000 128 0 0 0\n");
+        write(data, "#CASE n2 2 1000 1000 128 0 0 0\n");
+        write(data, "#CASE n1 2 1000 1000 128 0 0 0\n");
+        assertEquals(1, CaseRunnerCodec.decodeResults(data.toByteArray(), "n1").size());
+        assertTrue(CaseRunnerCodec.decodeResults(data.toByteArray(), "n2").isEmpty());
+
+        // 序号不连续的帧同样丢弃
+        data.reset();
+        write(data, "#CASE n1 1 1000 1000 128 0 0 0\n");
+        write(data, "#CASE n1 3 1000 1000 128 0 0 0\n");
+        write(data, "#CASE n1 2 1000 1000 128 0 0 0\n");
+        assertEquals(1, CaseRunnerCodec.decodeResults(data.toByteArray(), "n1").size());
+        // 旧格式的帧没有标识
+        assertTrue(CaseRunnerCodec.decodeResults("#CASE 1 1000 1000 128 0 0 0\n".getBytes(StandardCharsets.UTF_8), "n1")
+                .isEmpty());
+
+        byte[] compileError = "#COMPILE_ERROR n1 5\nerror".getBytes(StandardCharsets.UTF_8);
+        assertEquals("error", CaseRunnerCodec.decodeCompileError(compileError, "n1"));
+        assertNull(CaseRunnerCodec.decodeCompileError(compileError, "n2"));
+    }
+
+    @Test
+    void harnessClassFilesLoaded() {
+        assertTrue(CaseRunnerCodec.getHarnessClassFiles()
+                .containsKey("com/yanweiyi/micodecodesandbox/sandbox/harness/CaseRunner.class"));
+    }
+
+    private static void write(ByteArrayOutputStream data, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        data.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,180 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import cn.hutool.core.io.IoUtil;
+import com.yanweiyi.micodecodesandbox.compiler.CompileResult;
+import com.yanweiyi.micodecodesandbox.compiler.InMemoryJavaCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在本机单独启动一个 JVM 运行 Java 用例执行器
+ */
+class CaseRunnerTest {
+
+    private static final String FRAME_NONCE = "nonce";
+
+    @Test
+    void limitCpuTimeRatherThanWallTime(@TempDir Path directory) throws Exception {
+        String code = "public class Main {\n"
+                + "    public static void main(String[] args) throws Exception {\n"
+                + "        String mode = new java.util.Scanner(System.in).next();\n"
+                + "        if (mode.equals(\"sleep\")) {\n"
+                + "            Thread.sleep(500);\n"
+                + "        } else {\n"
+                + "            Thread worker = new Thread(() -> { while (true) { } });\n"
+                + "            worker.start();\n"
+                + "            worker.join();\n"
+                + "        }\n"
+                + "        System.out.println(\"done\");\n"
+                + "    }\n"
+                + "}\n";
+        List<CaseRunnerCodec.CaseResult> caseResults = runCaseRunner(directory, code, 300, 5000,
+                CaseRunnerCodec.encodeInputs(Arrays.asList("sleep", "spin")));
+
+        assertEquals(2, caseResults.size());
+        // sleep 不消耗 CPU 时间，墙钟时间超过 CPU 时间上限也不算超时
+        assertFalse(caseResults.get(0).isTimeout());
+        assertEquals("done\n", caseResults.get(0).getOutput());
+        assertTrue(caseResults.get(0).getWallTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(caseResults.get(0).getCpuTimeNanos() < TimeUnit.MILLISECONDS.toNanos(300));
+        // 用户创建的线程消耗的 CPU 时间同样计入，超出上限后停止，不等到墙钟时间上限
+        assertTrue(caseResults.get(1).isTimeout());
+        assertTrue(caseResults.get(1).getCpuTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertTrue(caseResults.get(1).getWallTimeNanos() < TimeUnit.MILLISECONDS.toNanos(5000));
+    }
+
+    @Test
+    void reportOutOfMemoryAsMemoryLimitExceeded(@TempDir Path directory) throws Exception {
+        String code = "public class Main {\n"
+                + "    public static void main(String[] args) throws Exception {\n"
+                + "        String mode = new java.util.Scanner(System.in).next();\n"
+                + "        if (mode.equals(\"thread\")) {\n"
+                + "            Thread worker = new Thread(() -> System.out.println(new long[1 << 30].length));\n"
+                + "            worker.start();\n"
+                + "            worker.join();\n"
+                + "        } else if (mode.equals(\"main\")) {\n"
+                + "            System.out.println(new long[1 << 30].length);\n"
+                + "        }\n"
+                + "        System.out.println(\"done\");\n"
+                + "    }\n"
+                + "}\n";
+        List<CaseRunnerCodec.CaseResult> caseResults = runCaseRunner(directory, code, 5000, 5000,
+                CaseRunnerCodec.encodeInputs(Arrays.asList("thread", "main", "none")));
+
+        assertEquals(3, caseResults.size());
+        // 用户创建的线程和主线程抛出的 OutOfMemoryError 都判定为内存超限，并保留异常输出
+        assertTrue(caseResults.get(0).isMemoryLimitExceeded());
+        assertTrue(caseResults.get(0).getErrorOutput().contains("java.lang.OutOfMemoryError"));
+        assertTrue(caseResults.get(1).isMemoryLimitExceeded());
+        assertTrue(caseResults.get(1).getErrorOutput().contains("java.lang.OutOfMemoryError"));
+        // 每个用例重新判定
+        assertFalse(caseResults.get(2).isMemoryLimitExceeded());
+        assertEquals("done\n", caseResults.get(2).getOutput());
+    }
+
+    @Test
+    void isolateThreadsAndSystemPropertiesBetweenCases(@TempDir Path directory) throws Exception {
+        String code = "public class Main {\n"
+                + "    public static void main(String[] args) throws Exception {\n"
+                + "        String mode = new java.util.Scanner(System.in).next();\n"
+                + "        System.out.println(System.getProperty(\"leak\") + \" \" + Thread.activeCount());\n"
+                + "        System.setProperty(\"leak\", mode);\n"
+                + "        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);\n"
+                + "        Runnable spin = mode.equals(\"stubborn\")\n"
+                + "                ? () -> { while (true) { try { started.countDown(); while (true) { } } catch (Throwable e) { } } }\n"
+                + "                : () -> { started.countDown(); while (true) { } };\n"
+                + "        Thread daemon = new Thread(spin);\n"
+                + "        daemon.setDaemon(true);\n"
+                + "        daemon.start();\n"
+                + "        started.await();\n"
+                + "    }\n"
+                + "}\n";
+        List<CaseRunnerCodec.CaseResult> caseResults = runCaseRunner(directory, code, 5000, 5000,
+                CaseRunnerCodec.encodeInputs(Arrays.asList("first", "second", "stubborn", "fourth")));
+
+        // 上一个用例设置的系统属性被恢复，遗留的守护线程被停止
+        assertEquals(3, caseResults.size());
+        assertEquals("null 1\n", caseResults.get(0).getOutput());
+        assertEquals("null 1\n", caseResults.get(1).getOutput());
+        assertTrue(caseResults.get(1).getErrorOutput().isEmpty());
+        // 无法停止的线程判定为运行错误，剩余用例不再执行
+        assertTrue(caseResults.get(2).getErrorOutput().contains("threads still running"));
+        assertFalse(caseResults.get(2).isTimeout());
+    }
+
+    @Test
+    void denyUserCodeOutsideRedirectedStreams(@TempDir Path directory) throws Exception {
+        String code = "public class Main {\n"
+                + "    public static void main(String[] args) throws Exception {\n"
+                + "        String mode = new java.util.Scanner(System.in).next();\n"
+                + "        try {\n"
+                + "            if (mode.equals(\"fd\")) {\n"
+                + "                new java.io.FileOutputStream(java.io.FileDescriptor.out).write('#');\n"
+                + "            } else if (mode.equals(\"proc\")) {\n"
+                + "                new java.io.FileInputStream(\"/proc/self/cmdline\").read();\n"
+                + "            } else if (mode.equals(\"env\")) {\n"
+                + "                System.getenv();\n"
+                + "            } else if (mode.equals(\"write\")) {\n"
+                + "                new java.io.FileOutputStream(\"/dev/stdout\");\n"
+                + "            } else {\n"
+                + "                System.out.println(System.getProperty(\"sun.java.command\"));\n"
+                + "            }\n"
+                + "        } catch (SecurityException e) {\n"
+                + "            System.out.println(\"denied\");\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+        List<CaseRunnerCodec.CaseResult> caseResults = runCaseRunner(directory, code, 5000, 5000,
+                CaseRunnerCodec.encodeInputs(Arrays.asList("fd", "proc", "env", "write", "command")));
+
+        // 用户代码不能绕过重定向写出结果帧，也读不到启动参数中的帧标识
+        assertEquals(5, caseResults.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("denied\n", caseResults.get(i).getOutput());
+        }
+        assertEquals("null\n", caseResults.get(4).getOutput());
+    }
+
+    private static List<CaseRunnerCodec.CaseResult> runCaseRunner(Path directory, String code, long cpuLimitMillis,
+                                                                  long wallLimitMillis, byte[] encodedInputs)
+            throws Exception {
+        Path harnessDirectory = writeFiles(directory.resolve("harness"), CaseRunnerCodec.getHarnessClassFiles());
+        CompileResult compileResult = new InMemoryJavaCompiler(1).compile("Main", code);
+        assertTrue(compileResult.isSuccess(), compileResult.getErrorMessage());
+        Path userDirectory = directory.resolve("user");
+        Files.createDirectories(userDirectory);
+        for (Map.Entry<String, byte[]> classFile : compileResult.getClassFiles().entrySet()) {
+            Files.write(userDirectory.resolve(classFile.getKey() + ".class"), classFile.getValue());
+        }
+        Path inputPath = Files.write(directory.resolve("inputs"), encodedInputs);
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-Xmx128m", "-cp", harnessDirectory.toString(), CaseRunner.class.getName(),
+                "Main", String.valueOf(cpuLimitMillis), userDirectory.toString(), "65536", "65536",
+                inputPath.toString(), "0", String.valueOf(wallLimitMillis), FRAME_NONCE)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        byte[] stdout = IoUtil.readBytes(process.getInputStream());
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        return CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+    }
+
+    private static Path writeFiles(Path directory, Map<String, byte[]> files) throws Exception {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Path path = directory.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.write(path, file.getValue());
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,187 @@
+package com.yanweiyi.micodecodesandbox.sandbox.harness;
+
+import cn.hutool.core.io.IoUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 在本机的 Python 解释器上运行 Python 用例执行器，本机没有 python3 时跳过
+ */
+class PythonSupervisorTest {
+
+    private static final String FRAME_NONCE = "nonce";
+
+    private static boolean pythonAvailable;
+
+    @BeforeAll
+    static void checkPython() {
+        try {
+            pythonAvailable = new ProcessBuilder("python3", "--version").start().waitFor(10, TimeUnit.SECONDS);
+        } catch (IOException | InterruptedException e) {
+            pythonAvailable = false;
+        }
+    }
+
+    @Test
+    void runCasesWithForkedInterpreters(@TempDir Path directory) throws Exception {
+        String code = "import sys\n"
+                + "a, b = map(int, input().split())\n"
+                + "print(a + b)\n"
+                + "if a < 0:\n"
+                + "    raise ValueError('negative')\n";
+        byte[] stdout = runSupervisor(directory, code, 1000, "0",
+                CaseRunnerCodec.encodeInputs(Arrays.asList("1 2", "-1 5", "3 4")));
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(3, caseResults.size());
+        assertEquals("3\n", caseResults.get(0).getOutput());
+        assertEquals("", caseResults.get(0).getErrorOutput());
+        assertEquals("4\n", caseResults.get(1).getOutput());
+        assertTrue(caseResults.get(1).getErrorOutput().contains("ValueError: negative"));
+        // 错误栈中不包含执行器自身
+        assertFalse(caseResults.get(1).getErrorOutput().contains("supervisor.py"));
+        assertEquals("7\n", caseResults.get(2).getOutput());
+    }
+
+    @Test
+    void stopTimedOutAndMismatchedCases(@TempDir Path directory) throws Exception {
+        String code = "n = int(input())\n"
+                + "while n > 0:\n"
+                + "    pass\n"
+                + "print(n)\n";
+        byte[] stdout = runSupervisor(directory, code, 300, "0",
+                CaseRunnerCodec.encodeInputs(Arrays.asList("1", "0", "-1"), Arrays.asList("1", "0", "0")));
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(3, caseResults.size());
+        assertTrue(caseResults.get(0).isTimeout());
+        assertFalse(caseResults.get(0).isWrongAnswer());
+        assertFalse(caseResults.get(1).isTimeout());
+        assertFalse(caseResults.get(1).isWrongAnswer());
+        assertTrue(caseResults.get(2).isWrongAnswer());
+    }
+
+    @Test
+    void limitCpuTimeRatherThanWallTime(@TempDir Path directory) throws Exception {
+        String code = "import time\n"
+                + "if input() == 'sleep':\n"
+                + "    time.sleep(0.5)\n"
+                + "else:\n"
+                + "    while True:\n"
+                + "        pass\n"
+                + "print('done')\n";
+        byte[] stdout = runSupervisor(directory, code, 200, 3000, "0",
+                CaseRunnerCodec.encodeInputs(Arrays.asList("sleep", "spin")));
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(2, caseResults.size());
+        // sleep 不消耗 CPU 时间，墙钟时间超过 CPU 时间上限也不算超时
+        assertFalse(caseResults.get(0).isTimeout());
+        assertEquals("done\n", caseResults.get(0).getOutput());
+        assertTrue(caseResults.get(0).getWallTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(caseResults.get(0).getCpuTimeNanos() < TimeUnit.MILLISECONDS.toNanos(200));
+        // 死循环在 CPU 时间超出上限后停止，不等到墙钟时间上限
+        assertTrue(caseResults.get(1).isTimeout());
+        assertTrue(caseResults.get(1).getCpuTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(caseResults.get(1).getWallTimeNanos() < TimeUnit.MILLISECONDS.toNanos(3000));
+    }
+
+    @Test
+    void limitWallTimeAfterOutputClosed(@TempDir Path directory) throws Exception {
+        String code = "import os, time\n"
+                + "os.close(1)\n"
+                + "os.close(2)\n"
+                + "time.sleep(30)\n";
+        byte[] stdout = runSupervisor(directory, code, 200, 500, "0",
+                CaseRunnerCodec.encodeInputs(Collections.singletonList("")));
+
+        // 关闭输出后仍在运行的用例同样在墙钟时间上限后停止
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(1, caseResults.size());
+        assertTrue(caseResults.get(0).isTimeout());
+        assertTrue(caseResults.get(0).getWallTimeNanos() < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    void reportSelfKillAsRuntimeError(@TempDir Path directory) throws Exception {
+        String code = "import os, signal\n"
+                + "os.kill(os.getpid(), signal.SIGKILL)\n";
+        byte[] stdout = runSupervisor(directory, code, 1000, "0",
+                CaseRunnerCodec.encodeInputs(Collections.singletonList("")));
+
+        // 不是执行器发出且 OOM 事件计数没有增加的 SIGKILL 不判定为内存超限或超时
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(1, caseResults.size());
+        assertFalse(caseResults.get(0).isMemoryLimitExceeded());
+        assertFalse(caseResults.get(0).isTimeout());
+        assertEquals("process killed by signal 9\n", caseResults.get(0).getErrorOutput());
+    }
+
+    @Test
+    void stopAfterFirstFailure(@TempDir Path directory) throws Exception {
+        byte[] stdout = runSupervisor(directory, "print(input())\n", 1000, "1",
+                CaseRunnerCodec.encodeInputs(Arrays.asList("a", "b", "c"), Arrays.asList("a", "x", "c")));
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(2, caseResults.size());
+        assertTrue(caseResults.get(1).isWrongAnswer());
+    }
+
+    @Test
+    void reportCompileError(@TempDir Path directory) throws Exception {
+        byte[] stdout = runSupervisor(directory, "def main(:\n", 1000, "0",
+                CaseRunnerCodec.encodeInputs(Collections.singletonList("")));
+
+        assertTrue(CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE).isEmpty());
+        String compileError = CaseRunnerCodec.decodeCompileError(stdout, FRAME_NONCE);
+        assertNotNull(compileError);
+        assertTrue(compileError.contains("SyntaxError"));
+    }
+
+    @Test
+    void isolateUserCodeFromSupervisorOutput(@TempDir Path directory) throws Exception {
+        // 子进程只有标准输入输出三个文件描述符（另一个是列出目录时打开的），并继承执行器的不可转储设置
+        String code = "import ctypes, os\n"
+                + "print(len(os.listdir('/proc/self/fd')), ctypes.CDLL(None).prctl(3, 0, 0, 0, 0))\n";
+        byte[] stdout = runSupervisor(directory, code, 1000, "0",
+                CaseRunnerCodec.encodeInputs(Collections.singletonList("")));
+
+        List<CaseRunnerCodec.CaseResult> caseResults = CaseRunnerCodec.decodeResults(stdout, FRAME_NONCE);
+        assertEquals(1, caseResults.size());
+        assertEquals("4 0\n", caseResults.get(0).getOutput());
+    }
+
+    private static byte[] runSupervisor(Path directory, String code, long timeoutMillis, String failFast,
+                                        byte[] encodedInputs) throws IOException, InterruptedException {
+        return runSupervisor(directory, code, timeoutMillis, timeoutMillis, failFast, encodedInputs);
+    }
+
+    private static byte[] runSupervisor(Path directory, String code, long cpuLimitMillis, long wallLimitMillis,
+                                        String failFast, byte[] encodedInputs) throws IOException, InterruptedException {
+        assumeTrue(pythonAvailable, "python3 not available");
+        Path supervisorPath = Files.write(directory.resolve("supervisor.py"), CaseRunnerCodec.getPythonSupervisor());
+        Path codePath = Files.write(directory.resolve("Main.py"), code.getBytes(StandardCharsets.UTF_8));
+        Path inputPath = Files.write(directory.resolve("inputs"), encodedInputs);
+        Process process = new ProcessBuilder("python3", "-B", supervisorPath.toString(), codePath.toString(),
+                String.valueOf(cpuLimitMillis), "65536", "65536", inputPath.toString(), failFast,
+                String.valueOf(wallLimitMillis), FRAME_NONCE)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        byte[] stdout = IoUtil.readBytes(process.getInputStream());
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        return stdout;
+    }
+}
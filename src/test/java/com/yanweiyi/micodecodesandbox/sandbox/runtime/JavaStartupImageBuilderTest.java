@@ -0,0 +1,95 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunner;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaStartupImageBuilderTest {
+
+    private static final List<String> JVM_OPTIONS = Arrays.asList("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC");
+
+    @Test
+    void buildContextIsDeterministic() throws IOException {
+        Map<String, byte[]> first = createBuildContext();
+        Map<String, byte[]> second = createBuildContext();
+        assertEquals(first.keySet(), second.keySet());
+        first.forEach((path, content) -> assertArrayEquals(content, second.get(path), path));
+        // 内容不变时复用已构建的镜像，基础镜像或参数变化时重新构建
+        assertEquals(JavaStartupImageBuilder.computeTag("sha256:base", first),
+                JavaStartupImageBuilder.computeTag("sha256:base", second));
+        assertNotEquals(JavaStartupImageBuilder.computeTag("sha256:base", first),
+                JavaStartupImageBuilder.computeTag("sha256:other", first));
+        Map<String, byte[]> tuned = JavaStartupImageBuilder.createBuildContext("openjdk:8-alpine",
+                Collections.singletonList("-XX:+UseSerialGC"), Collections.singletonMap("Main", new byte[]{1}));
+        assertNotEquals(JavaStartupImageBuilder.computeTag("sha256:base", first),
+                JavaStartupImageBuilder.computeTag("sha256:base", tuned));
+    }
+
+    @Test
+    void archiveUsesHarnessClasspathAndJvmOptions() throws IOException {
+        Map<String, byte[]> buildContext = createBuildContext();
+        String dockerfile = new String(buildContext.get("Dockerfile"), StandardCharsets.UTF_8);
+        assertTrue(dockerfile.startsWith("FROM openjdk:8-alpine\n"));
+        // 记录类列表和生成归档使用相同的类路径和参数
+        assertTrue(dockerfile.contains("-XX:DumpLoadedClassList=/opt/sandbox/classes.lst -XX:TieredStopAtLevel=1 -XX:+UseSerialGC"
+                + " -cp /opt/sandbox/harness.jar " + CaseRunner.class.getName() + " Main 5000 /opt/sandbox/warmup"));
+        assertTrue(dockerfile.contains("-XX:SharedArchiveFile=/opt/sandbox/app.jsa -XX:TieredStopAtLevel=1 -XX:+UseSerialGC"
+                + " -cp /opt/sandbox/harness.jar"));
+        assertArrayEquals(new byte[]{1}, buildContext.get("warmup/Main.class"));
+        assertArrayEquals(CaseRunnerCodec.encodeInputs(Collections.singletonList("1 2\n")), buildContext.get("warmup/input"));
+
+        List<String> entries = new ArrayList<>();
+        try (JarInputStream jarInputStream = new JarInputStream(new ByteArrayInputStream(buildContext.get("harness.jar")))) {
+            for (ZipEntry entry = jarInputStream.getNextEntry(); entry != null; entry = jarInputStream.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        assertEquals(CaseRunnerCodec.getHarnessClassFiles().size(), entries.size());
+        assertTrue(entries.containsAll(CaseRunnerCodec.getHarnessClassFiles().keySet()));
+    }
+
+    @Test
+    void parseArchiveOptions() {
+        assertEquals(Collections.emptyList(), JavaStartupImageBuilder.parseArchiveOptions("\n"));
+        assertEquals(Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=/opt/sandbox/app.jsa"),
+                JavaStartupImageBuilder.parseArchiveOptions("-Xshare:auto -XX:SharedArchiveFile=/opt/sandbox/app.jsa\n"));
+    }
+
+    @Test
+    void allowSecurityManagerOnJdk18AndLater() throws IOException {
+        assertEquals(8, JavaStartupImageBuilder.parseJavaVersion("openjdk version \"1.8.0_212\"\nOpenJDK Runtime Environment"));
+        assertEquals(17, JavaStartupImageBuilder.parseJavaVersion("openjdk version \"17.0.2\" 2022-01-18"));
+        assertEquals(19, JavaStartupImageBuilder.parseJavaVersion("openjdk version \"19\" 2022-09-20"));
+        assertEquals(-1, JavaStartupImageBuilder.parseJavaVersion("sh: java: not found"));
+
+        assertSame(JVM_OPTIONS, JavaStartupImageBuilder.resolveJvmOptions(JVM_OPTIONS, 17));
+        List<String> jvmOptions = JavaStartupImageBuilder.resolveJvmOptions(JVM_OPTIONS, 18);
+        assertEquals(Arrays.asList("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC",
+                JavaStartupImageBuilder.ALLOW_SECURITY_MANAGER_OPTION), jvmOptions);
+        assertEquals(jvmOptions, JavaStartupImageBuilder.resolveJvmOptions(jvmOptions, 19));
+
+        // 构建时由执行器运行预热程序，同样需要该参数
+        String dockerfile = new String(JavaStartupImageBuilder.createBuildContext("openjdk:18", jvmOptions,
+                Collections.singletonMap("Main", new byte[]{1})).get("Dockerfile"), StandardCharsets.UTF_8);
+        assertTrue(dockerfile.contains(JavaStartupImageBuilder.ALLOW_SECURITY_MANAGER_OPTION
+                + " -cp /opt/sandbox/harness.jar " + CaseRunner.class.getName()));
+    }
+
+    private static Map<String, byte[]> createBuildContext() throws IOException {
+        return JavaStartupImageBuilder.createBuildContext("openjdk:8-alpine", JVM_OPTIONS,
+                Collections.singletonMap("Main", new byte[]{1}));
+    }
+}
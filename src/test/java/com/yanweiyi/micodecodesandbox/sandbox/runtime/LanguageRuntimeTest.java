@@ -0,0 +1,95 @@
+package com.yanweiyi.micodecodesandbox.sandbox.runtime;
+
+import com.yanweiyi.micodecodesandbox.compiler.InMemoryJavaCompiler;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.factory.DockerCodeSandboxFactory;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.impl.RuntimeDockerCodeSandbox;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LanguageRuntimeTest {
+
+    @Test
+    void javaRuntimeCompilesToClassFiles() {
+        JavaLanguageRuntime runtime = new JavaLanguageRuntime(new InMemoryJavaCompiler(16), null);
+        CompiledProgram compiledProgram = runtime.compile("public class Main { public static void main(String[] args) {} }");
+        assertTrue(compiledProgram.isSuccess());
+        assertTrue(compiledProgram.getFiles().containsKey("Main.class"));
+
+        CompiledProgram failedProgram = runtime.compile("public class Main {");
+        assertFalse(failedProgram.isSuccess());
+        assertTrue(failedProgram.getFiles().isEmpty());
+        assertNotNull(failedProgram.getErrorMessage());
+    }
+
+    @Test
+    void javaRuntimeReservesNonHeapMemory() {
+        JavaLanguageRuntime runtime = new JavaLanguageRuntime(new InMemoryJavaCompiler(16), null);
+        String[] command = runtime.getBatchCommand("/input/1", 5000L, 15000L, 268435456L, 1024L, 512L, true, "nonce");
+        assertEquals("java", command[0]);
+        assertEquals("-Xmx192m", command[1]);
+        assertTrue(runtime.supportsPerCaseExec());
+        assertTrue(runtime.getCaseCommand("/input/1", 268435456L).startsWith("exec java -Xmx192m "));
+        // 内存上限较小时至少预留 48MB，较大时预留 1/4
+        assertEquals("-Xmx80m", JavaLanguageRuntime.getMaxHeapOption(128L << 20));
+        assertEquals("-Xmx16m", JavaLanguageRuntime.getMaxHeapOption(32L << 20));
+        assertEquals("-Xmx1536m", JavaLanguageRuntime.getMaxHeapOption(2048L << 20));
+    }
+
+    @Test
+    void javaRuntimeUsesVerifiedStartupImage() {
+        JavaStartupImageBuilder javaStartupImageBuilder = mock(JavaStartupImageBuilder.class);
+        JavaLanguageRuntime runtime = new JavaLanguageRuntime(new InMemoryJavaCompiler(16), javaStartupImageBuilder);
+        // 构建或校验失败时使用原镜像，执行器写入工作目录
+        assertEquals("openjdk:8-alpine", runtime.prepareImage("openjdk:8-alpine"));
+        assertFalse(runtime.getHarnessFiles().isEmpty());
+
+        when(javaStartupImageBuilder.prepare("openjdk:8-alpine")).thenReturn(new JavaStartupImage("micode-sandbox-java:1",
+                Arrays.asList("-XX:+UseSerialGC", "-Xshare:auto"), JavaStartupImageBuilder.HARNESS_JAR_PATH));
+        assertEquals("micode-sandbox-java:1", runtime.prepareImage("openjdk:8-alpine"));
+        assertTrue(runtime.getHarnessFiles().isEmpty());
+        String[] command = runtime.getBatchCommand("/input/1", 5000L, 15000L, 268435456L, 1024L, 512L, true, "nonce");
+        assertEquals(Arrays.asList("java", "-XX:+UseSerialGC", "-Xshare:auto", "-Xmx192m", "-cp",
+                JavaStartupImageBuilder.HARNESS_JAR_PATH), Arrays.asList(command).subList(0, 6));
+        assertEquals("exec java -XX:+UseSerialGC -Xshare:auto -Xmx192m -cp /opt/sandbox/harness.jar:/app Main < /input/1",
+                runtime.getCaseCommand("/input/1", 268435456L));
+    }
+
+    @Test
+    void pythonRuntimeRunsOnlyInBatch() {
+        PythonLanguageRuntime runtime = new PythonLanguageRuntime();
+        CompiledProgram compiledProgram = runtime.compile("print(1)");
+        assertArrayEquals("print(1)".getBytes(StandardCharsets.UTF_8), compiledProgram.getFiles().get("Main.py"));
+        assertFalse(runtime.supportsPerCaseExec());
+        assertThrows(UnsupportedOperationException.class, () -> runtime.getCaseCommand("/input/1", 268435456L));
+        assertTrue(runtime.getHarnessFiles().containsKey("supervisor.py"));
+        String[] command = runtime.getBatchCommand("/input/1", 5000L, 15000L, 268435456L, 1024L, 512L, true, "nonce");
+        assertEquals("/app/.harness/supervisor.py", command[2]);
+        assertEquals("5000", command[4]);
+        assertEquals("1", command[command.length - 3]);
+        assertEquals("15000", command[command.length - 2]);
+        assertEquals("nonce", command[command.length - 1]);
+    }
+
+    @Test
+    void factoryRegistersEveryRuntime() {
+        JavaLanguageRuntime javaRuntime = new JavaLanguageRuntime(new InMemoryJavaCompiler(16), null);
+        PythonLanguageRuntime pythonRuntime = new PythonLanguageRuntime();
+        DockerCodeSandboxFactory factory = new DockerCodeSandboxFactory(Arrays.asList(javaRuntime, pythonRuntime), null, null);
+
+        DockerCodeSandbox javaSandbox = factory.getCodeSandbox("java");
+        assertSame(javaRuntime, ((RuntimeDockerCodeSandbox) javaSandbox).getLanguageRuntime());
+        // 同一语言每次返回同一个沙箱
+        assertSame(javaSandbox, factory.getCodeSandbox("java"));
+        assertSame(pythonRuntime, ((RuntimeDockerCodeSandbox) factory.getCodeSandbox("python")).getLanguageRuntime());
+        assertNull(factory.getCodeSandbox("cpp"));
+
+        assertThrows(IllegalStateException.class,
+                () -> new DockerCodeSandboxFactory(Arrays.asList(pythonRuntime, pythonRuntime), null, null));
+    }
+}
@@ -0,0 +1,154 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchExecutorTest {
+
+    // 已开始执行的提交，由测试决定何时完成
+    private final BlockingQueue<PendingExecution> startedExecutions = new LinkedBlockingQueue<>();
+
+    private final DockerCodeSandbox controlledSandbox = new DockerCodeSandbox() {
+        @Override
+        public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest,
+                                                                       CancellationToken cancellationToken) {
+            CompletableFuture<ExecuteCodeResponse> future = new CompletableFuture<>();
+            cancellationToken.onCancel(() -> future.complete(newResponse(ExecuteInfoEnum.CANCELLED, null)));
+            startedExecutions.add(new PendingExecution(executeCodeRequest.getCode(), future));
+            return future;
+        }
+    };
+
+    private final Map<Integer, ExecuteCodeResponse> results = new ConcurrentHashMap<>();
+
+    private final CountDownLatch completionLatch = new CountDownLatch(1);
+
+    private ExecutionScheduler executionScheduler;
+
+    private BatchExecutor batchExecutor;
+
+    @BeforeEach
+    void setUp() {
+        SchedulerProperties schedulerProperties = new SchedulerProperties();
+        schedulerProperties.setConcurrency(4);
+        schedulerProperties.setBatchWindow(2);
+        executionScheduler = new ExecutionScheduler(schedulerProperties, new ExecutionProperties());
+        executionScheduler.initExecutor();
+        batchExecutor = new BatchExecutor(executionScheduler, schedulerProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executionScheduler.shutdownExecutor();
+    }
+
+    @Test
+    void executeIdenticalCodeOnceWithinWindow() throws Exception {
+        BatchExecution batchExecution = execute("a", "b", "a", "c", "d");
+        assertEquals(4, batchExecution.getExecutionCount());
+
+        List<String> executedCodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            PendingExecution execution = startedExecutions.poll(5, TimeUnit.SECONDS);
+            assertNotNull(execution);
+            // 同时执行的提交数不超过窗口
+            assertTrue(startedExecutions.size() <= 1);
+            executedCodes.add(execution.code);
+            execution.future.complete(newResponse(ExecuteInfoEnum.SUCCESS, execution.code));
+        }
+        assertTrue(completionLatch.await(5, TimeUnit.SECONDS));
+        // 多个工作线程开始执行的顺序不固定
+        Collections.sort(executedCodes);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), executedCodes);
+        // 相同的代码共享一次执行的结果
+        assertEquals(5, results.size());
+        assertEquals(Collections.singletonList("a"), results.get(0).getOutputList());
+        assertEquals(Collections.singletonList("a"), results.get(2).getOutputList());
+        assertEquals(Collections.singletonList("d"), results.get(4).getOutputList());
+        assertNull(startedExecutions.poll());
+    }
+
+    @Test
+    void cancelRemainingSubmissions() throws Exception {
+        BatchExecution batchExecution = execute("a", "b", "c");
+        PendingExecution first = startedExecutions.poll(5, TimeUnit.SECONDS);
+        PendingExecution second = startedExecutions.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        first.future.complete(newResponse(ExecuteInfoEnum.SUCCESS, first.code));
+        PendingExecution third = startedExecutions.poll(5, TimeUnit.SECONDS);
+        assertNotNull(third);
+
+        batchExecution.cancel();
+        // 执行中的提交收到取消信号，之后不再回调
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), second.future.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), third.future.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(Collections.singleton("a".equals(first.code) ? 0 : 1), results.keySet());
+        assertEquals(1, completionLatch.getCount());
+        // 执行名额全部释放
+        for (int i = 0; i < 50 && executionScheduler.getActiveCount() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, executionScheduler.getActiveCount());
+    }
+
+    private BatchExecution execute(String... codes) {
+        List<DockerCodeSandbox> dockerCodeSandboxes = new ArrayList<>();
+        List<ExecuteCodeRequest> executeCodeRequests = new ArrayList<>();
+        for (String code : codes) {
+            ExecuteCodeRequest executeCodeRequest = new ExecuteCodeRequest();
+            executeCodeRequest.setLanguage("java");
+            executeCodeRequest.setCode(code);
+            executeCodeRequest.setTestDataId("data-1");
+            dockerCodeSandboxes.add(controlledSandbox);
+            executeCodeRequests.add(executeCodeRequest);
+        }
+        return batchExecutor.execute(dockerCodeSandboxes, executeCodeRequests, results::put, completionLatch::countDown);
+    }
+
+    private static ExecuteCodeResponse newResponse(ExecuteInfoEnum status, String output) {
+        ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+        executeCodeResponse.setStatus(status.getValue());
+        executeCodeResponse.setOutputList(output == null ? null : Collections.singletonList(output));
+        return executeCodeResponse;
+    }
+
+    private static class PendingExecution {
+
+        private final String code;
+
+        private final CompletableFuture<ExecuteCodeResponse> future;
+
+        PendingExecution(String code, CompletableFuture<ExecuteCodeResponse> future) {
+            this.code = code;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.yanweiyi.micodecodesandbox.scheduler;
+
+import com.yanweiyi.micodecodesandbox.config.ExecutionProperties;
+import com.yanweiyi.micodecodesandbox.config.SchedulerProperties;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeRequest;
+import com.yanweiyi.micodecodesandbox.model.ExecuteCodeResponse;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteInfoEnum;
+import com.yanweiyi.micodecodesandbox.model.enums.ExecuteJobStatusEnum;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.CancellationToken;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.DockerCodeSandbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionSchedulerTest {
+
+    private final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+    private final DockerCodeSandbox blockingSandbox = executeCodeRequest -> {
+        try {
+            releaseLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+        executeCodeResponse.setStatus(ExecuteInfoEnum.SUCCESS.getValue());
+        return executeCodeResponse;
+    };
+
+    private ExecutionScheduler executionScheduler;
+
+    @BeforeEach
+    void setUp() {
+        SchedulerProperties schedulerProperties = new SchedulerProperties();
+        schedulerProperties.setConcurrency(1);
+        schedulerProperties.setQueueCapacity(1);
+        executionScheduler = new ExecutionScheduler(schedulerProperties, new ExecutionProperties());
+        executionScheduler.initExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseLatch.countDown();
+        executionScheduler.shutdownExecutor();
+    }
+
+    @Test
+    void rejectWhenQueueIsFull() throws Exception {
+        ExecutionJob runningJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        ExecutionJob queuedJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        assertThrows(ExecutionRejectedException.class,
+                () -> executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest()));
+        assertEquals(ExecuteJobStatusEnum.QUEUED, queuedJob.getStatus());
+
+        releaseLatch.countDown();
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), queuedJob.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(ExecuteJobStatusEnum.FINISHED, runningJob.getStatus());
+        assertSame(queuedJob, executionScheduler.getJob(queuedJob.getJobId()));
+    }
+
+    @Test
+    void startQueuedJobsWhenConcurrencyIncreases() throws Exception {
+        ExecutionJob runningJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        ExecutionJob queuedJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        assertEquals(ExecuteJobStatusEnum.QUEUED, queuedJob.getStatus());
+
+        executionScheduler.updateConcurrency(2);
+        assertEquals(0, executionScheduler.getQueueSize());
+        assertEquals(2, executionScheduler.getActiveCount());
+
+        // 调低并发数后，执行中的提交完成时不再取出下一个提交
+        executionScheduler.updateConcurrency(1);
+        ExecutionJob nextJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        releaseLatch.countDown();
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), nextJob.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(ExecuteJobStatusEnum.FINISHED, runningJob.getStatus());
+        assertEquals(ExecuteJobStatusEnum.FINISHED, queuedJob.getStatus());
+    }
+
+    @Test
+    void cachedSubmissionsSkipQueue() throws Exception {
+        ExecuteCodeResponse cachedResponse = new ExecuteCodeResponse();
+        cachedResponse.setStatus(ExecuteInfoEnum.WRONG_ANSWER.getValue());
+        DockerCodeSandbox cachedSandbox = new DockerCodeSandbox() {
+            @Override
+            public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+                throw new IllegalStateException("cached submission executed");
+            }
+
+            @Override
+            public CompletableFuture<ExecuteCodeResponse> findCached(ExecuteCodeRequest executeCodeRequest,
+                                                                     CancellationToken cancellationToken) {
+                return CompletableFuture.completedFuture(cachedResponse);
+            }
+        };
+        executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+
+        // 队列已满时命中缓存的提交仍然直接完成，不占用执行名额
+        ExecutionJob cachedJob = executionScheduler.submit(cachedSandbox, new ExecuteCodeRequest());
+        assertSame(cachedResponse, cachedJob.getFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(ExecuteJobStatusEnum.FINISHED, cachedJob.getStatus());
+        assertSame(cachedJob, executionScheduler.getJob(cachedJob.getJobId()));
+        assertEquals(1, executionScheduler.getActiveCount());
+        assertEquals(1, executionScheduler.getQueueSize());
+    }
+
+    @Test
+    void cancelQueuedJob() throws Exception {
+        ExecutionJob runningJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        ExecutionJob queuedJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+
+        assertTrue(executionScheduler.cancel(queuedJob.getJobId()));
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), queuedJob.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(ExecuteJobStatusEnum.CANCELLED, queuedJob.getStatus());
+        assertEquals(0, executionScheduler.getQueueSize());
+        // 已完成的任务不能再取消
+        assertFalse(executionScheduler.cancel(queuedJob.getJobId()));
+
+        releaseLatch.countDown();
+        runningJob.getFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(ExecuteJobStatusEnum.FINISHED, runningJob.getStatus());
+    }
+
+    @Test
+    void cancelRunningJob() throws Exception {
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        DockerCodeSandbox cancellableSandbox = new DockerCodeSandbox() {
+            @Override
+            public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<ExecuteCodeResponse> executeCodeAsync(ExecuteCodeRequest executeCodeRequest,
+                                                                           CancellationToken cancellationToken) {
+                CompletableFuture<ExecuteCodeResponse> future = new CompletableFuture<>();
+                cancellationToken.onCancel(() -> {
+                    ExecuteCodeResponse executeCodeResponse = new ExecuteCodeResponse();
+                    executeCodeResponse.setStatus(ExecuteInfoEnum.CANCELLED.getValue());
+                    future.complete(executeCodeResponse);
+                });
+                startedLatch.countDown();
+                return future;
+            }
+        };
+        ExecutionJob job = executionScheduler.submit(cancellableSandbox, new ExecuteCodeRequest());
+        assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+
+        assertTrue(executionScheduler.cancel(job.getJobId()));
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), job.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(ExecuteJobStatusEnum.CANCELLED, job.getStatus());
+        // 执行名额已释放，后续任务可以立即执行
+        ExecutionJob nextJob = executionScheduler.submit(blockingSandbox, new ExecuteCodeRequest());
+        releaseLatch.countDown();
+        assertEquals(ExecuteInfoEnum.SUCCESS.getValue(), nextJob.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    void batchSubmissionsRunAfterQueuedSubmissions() throws Exception {
+        List<String> executionOrder = new CopyOnWriteArrayList<>();
+        DockerCodeSandbox recordingSandbox = executeCodeRequest -> {
+            executionOrder.add(executeCodeRequest.getCode());
+            return blockingSandbox.executeCode(executeCodeRequest);
+        };
+        ExecutionJob runningJob = executionScheduler.submit(recordingSandbox, newRequest("running"));
+        ExecutionJob batchJob = executionScheduler.submitBatch(recordingSandbox, newRequest("batch"));
+        // 批量提交不占用等待队列的容量，也不会被拒绝
+        ExecutionJob queuedJob = executionScheduler.submit(recordingSandbox, newRequest("queued"));
+        ExecutionJob cancelledBatchJob = executionScheduler.submitBatch(recordingSandbox, newRequest("cancelled"));
+        assertEquals(1, executionScheduler.getQueueSize());
+        assertEquals(2, executionScheduler.getBatchQueueSize());
+        assertNull(executionScheduler.getJob(batchJob.getJobId()));
+
+        assertTrue(executionScheduler.cancel(cancelledBatchJob));
+        assertEquals(ExecuteInfoEnum.CANCELLED.getValue(), cancelledBatchJob.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+        releaseLatch.countDown();
+        batchJob.getFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(ExecuteJobStatusEnum.FINISHED, runningJob.getStatus());
+        assertEquals(ExecuteJobStatusEnum.FINISHED, queuedJob.getStatus());
+        // 等待队列中的提交先于更早提交的批量提交执行
+        assertEquals(Arrays.asList("running", "queued", "batch"), executionOrder);
+    }
+
+    @Test
+    void sandboxExceptionBecomesSystemError() throws Exception {
+        ExecutionJob job = executionScheduler.submit(executeCodeRequest -> {
+            throw new IllegalStateException("docker unavailable");
+        }, new ExecuteCodeRequest());
+        assertEquals(ExecuteInfoEnum.SYSTEM_ERROR.getValue(), job.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    private static ExecuteCodeRequest newRequest(String code) {
+        ExecuteCodeRequest executeCodeRequest = new ExecuteCodeRequest();
+        executeCodeRequest.setCode(code);
+        return executeCodeRequest;
+    }
+}
@@ -0,0 +1,72 @@
+package com.yanweiyi.micodecodesandbox.testdata;
+
+import com.yanweiyi.micodecodesandbox.config.InputCacheProperties;
+import com.yanweiyi.micodecodesandbox.sandbox.docker.input.InputFileCache;
+import com.yanweiyi.micodecodesandbox.sandbox.harness.CaseRunnerCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestDataStoreTest {
+
+    @Test
+    void uploadAndLoad(@TempDir Path directory) throws IOException {
+        TestDataStore testDataStore = newStore(directory);
+        String testDataId = testDataStore.upload(Arrays.asList("1 2", "你好\n"), Arrays.asList("3", "你好"));
+        assertEquals(testDataId, testDataStore.upload(Arrays.asList("1 2", "你好\n"), Arrays.asList("3", "你好")));
+        assertTrue(testDataStore.exists(testDataId));
+
+        // 新的存储实例没有解码缓存，从内存映射的文件中读取
+        CaseRunnerCodec.CaseInputs caseInputs = newStore(directory).load(testDataId);
+        assertEquals(Arrays.asList("1 2", "你好\n"), caseInputs.getInputList());
+        assertEquals(Arrays.asList("3", "你好"), caseInputs.getExpectedOutputList());
+    }
+
+    @Test
+    void loadWithoutExpectedOutputs(@TempDir Path directory) throws IOException {
+        TestDataStore testDataStore = newStore(directory);
+        String testDataId = testDataStore.upload(Arrays.asList("a", ""), null);
+        CaseRunnerCodec.CaseInputs caseInputs = testDataStore.load(testDataId);
+        assertEquals(Arrays.asList("a", ""), caseInputs.getInputList());
+        assertNull(caseInputs.getExpectedOutputList());
+        assertSame(caseInputs, testDataStore.load(testDataId));
+    }
+
+    @Test
+    void keepExpectedOutputsOutOfInputCache(@TempDir Path directory) throws IOException {
+        TestDataStore testDataStore = newStore(directory);
+        String testDataId = testDataStore.upload(Arrays.asList("1 2", "3 4"), Arrays.asList("3", "7"));
+        assertFalse(Files.exists(directory.resolve("inputs").resolve(testDataId)));
+
+        // 容器可读取的输入缓存中只有用例输入
+        try (InputFileCache.Lease lease = testDataStore.openInputs(testDataId)) {
+            CaseRunnerCodec.CaseInputs caseInputs = CaseRunnerCodec.decodeInputs(
+                    ByteBuffer.wrap(Files.readAllBytes(lease.getHostPath())));
+            assertEquals(Arrays.asList("1 2", "3 4"), caseInputs.getInputList());
+            assertNull(caseInputs.getExpectedOutputList());
+            assertTrue(lease.getHostPath().startsWith(directory.resolve("inputs")));
+        }
+        assertNull(testDataStore.openInputs("0000"));
+    }
+
+    @Test
+    void unknownTestData(@TempDir Path directory) throws IOException {
+        TestDataStore testDataStore = newStore(directory);
+        assertFalse(testDataStore.exists("../../etc/passwd"));
+        assertNull(testDataStore.load("0000"));
+    }
+
+    private static TestDataStore newStore(Path directory) {
+        InputCacheProperties inputCacheProperties = new InputCacheProperties();
+        inputCacheProperties.setDirectory(directory.resolve("inputs").toString());
+        inputCacheProperties.setTestDataDirectory(directory.resolve("testdata").toString());
+        return new TestDataStore(new InputFileCache(inputCacheProperties), inputCacheProperties);
+    }
+}